@@ -0,0 +1,207 @@
+package eli.ikea.mart;
+
+import java.text.MessageFormat;
+
+import eli.veritas.Verifier;
+import eli.veritas.exception.AssertionException;
+
+/**
+ * An immutable predicate on a single column of a {@link Table}, matching either a single value or an inclusive range of values. <code>NULL</code>
+ * values never match a condition.
+ *
+ * @author The Architect
+ * @param <COLUMNS> The column enumeration of the table.
+ */
+public final class Condition<COLUMNS extends Enum<COLUMNS> & IHeaderColumn>
+{
+    private final COLUMNS column;
+    private final Object  lowerBound;
+    private final Object  upperBound;
+    private final boolean equality;
+
+    private Condition(final COLUMNS column, final Object lowerBound, final Object upperBound, final boolean equality)
+    {
+        this.column = column;
+        this.lowerBound = lowerBound;
+        this.upperBound = upperBound;
+        this.equality = equality;
+    }
+
+    /**
+     * @param column The column to match. [Non-Null]
+     * @param value The value to match. Must be an instance of the column's data type. [Non-Null]
+     * @return A new non-null condition matching rows whose column value equals the value.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public static <COLUMNS extends Enum<COLUMNS> & IHeaderColumn> Condition<COLUMNS> equalTo(final COLUMNS column, final Object value)
+        throws AssertionException
+    {
+        Verifier.assertNotNull("Must specify a column to match.", column);
+        Verifier.assertNotNull("Must specify a non-null value to match.", value);
+        validateBound(column, value);
+
+        return new Condition<>(column, value, value, true);
+    }
+
+    /**
+     * @param column The column to match. Its data type must be {@link Comparable}. [Non-Null]
+     * @param lowerBound The inclusive lower bound of the range. (<code>NULL</code> if unbounded)
+     * @param upperBound The inclusive upper bound of the range. (<code>NULL</code> if unbounded)
+     * @return A new non-null condition matching rows whose column value falls inside the range.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public static <COLUMNS extends Enum<COLUMNS> & IHeaderColumn> Condition<COLUMNS> between(final COLUMNS column,
+                                                                                             final Object lowerBound,
+                                                                                             final Object upperBound)
+        throws AssertionException
+    {
+        Verifier.assertNotNull("Must specify a column to match.", column);
+        Verifier.Equality.assertEqual(MessageFormat.format("The column <{0}> data type <{1}> must be comparable in order to match a range.",
+                                                           column,
+                                                           column.getDataType()),
+                                      Comparable.class.isAssignableFrom(column.getDataType()),
+                                      true);
+        validateBound(column, lowerBound);
+        validateBound(column, upperBound);
+
+        return new Condition<>(column, lowerBound, upperBound, false);
+    }
+
+    /**
+     * @param column The column to match. Its data type must be {@link Comparable}. [Non-Null]
+     * @param lowerBound The inclusive lower bound of the range. [Non-Null]
+     * @return A new non-null condition matching rows whose column value is at least the lower bound.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public static <COLUMNS extends Enum<COLUMNS> & IHeaderColumn> Condition<COLUMNS> atLeast(final COLUMNS column, final Object lowerBound)
+        throws AssertionException
+    {
+        Verifier.assertNotNull("Must specify a non-null lower bound.", lowerBound);
+
+        return between(column, lowerBound, null);
+    }
+
+    /**
+     * @param column The column to match. Its data type must be {@link Comparable}. [Non-Null]
+     * @param upperBound The inclusive upper bound of the range. [Non-Null]
+     * @return A new non-null condition matching rows whose column value is at most the upper bound.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public static <COLUMNS extends Enum<COLUMNS> & IHeaderColumn> Condition<COLUMNS> atMost(final COLUMNS column, final Object upperBound)
+        throws AssertionException
+    {
+        Verifier.assertNotNull("Must specify a non-null upper bound.", upperBound);
+
+        return between(column, null, upperBound);
+    }
+
+    /**
+     * @param column The column to match. [Non-Null]
+     * @return A new non-null condition matching rows whose column value is not <code>NULL</code>.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public static <COLUMNS extends Enum<COLUMNS> & IHeaderColumn> Condition<COLUMNS> notNull(final COLUMNS column) throws AssertionException
+    {
+        Verifier.assertNotNull("Must specify a column to match.", column);
+
+        return new Condition<>(column, null, null, false);
+    }
+
+    /**
+     * @return Indicator if the condition matches every value other than <code>NULL</code>.
+     */
+    public boolean isNotNull()
+    {
+        return !equality && lowerBound == null && upperBound == null;
+    }
+
+    /**
+     * @return The non-null column to match.
+     */
+    public COLUMNS getColumn()
+    {
+        return column;
+    }
+
+    /**
+     * @return The inclusive lower bound, or the matched value of an equality condition. (<code>NULL</code> if unbounded)
+     */
+    public Object getLowerBound()
+    {
+        return lowerBound;
+    }
+
+    /**
+     * @return The inclusive upper bound, or the matched value of an equality condition. (<code>NULL</code> if unbounded)
+     */
+    public Object getUpperBound()
+    {
+        return upperBound;
+    }
+
+    /**
+     * @return Indicator if the condition matches a single value.
+     */
+    public boolean isEquality()
+    {
+        return equality;
+    }
+
+    /**
+     * @param value The column value of a row. [Nullable]
+     * @return Indicator if the value satisfies the condition.
+     */
+    @SuppressWarnings("unchecked")
+    public boolean test(final Object value)
+    {
+        if (value == null)
+        {
+            return false;
+        }
+        if (equality)
+        {
+            return lowerBound.equals(value);
+        }
+        if (lowerBound == null && upperBound == null)
+        {
+            return true;
+        }
+
+        final Comparable<Object> comparable = (Comparable<Object>) value;
+
+        return (lowerBound == null || comparable.compareTo(lowerBound) >= 0) && (upperBound == null || comparable.compareTo(upperBound) <= 0);
+    }
+
+    @Override
+    public String toString()
+    {
+        if (equality)
+        {
+            return MessageFormat.format("{0} = {1}", column.getName(), String.valueOf(lowerBound));
+        }
+        if (upperBound == null)
+        {
+            return lowerBound == null ? MessageFormat.format("{0} IS NOT NULL", column.getName())
+                                      : MessageFormat.format("{0} >= {1}", column.getName(), String.valueOf(lowerBound));
+        }
+        if (lowerBound == null)
+        {
+            return MessageFormat.format("{0} <= {1}", column.getName(), String.valueOf(upperBound));
+        }
+
+        return MessageFormat.format("{0} BETWEEN {1} AND {2}", column.getName(), String.valueOf(lowerBound), String.valueOf(upperBound));
+    }
+
+    private static <COLUMNS extends Enum<COLUMNS> & IHeaderColumn> void validateBound(final COLUMNS column, final Object bound) throws AssertionException
+    {
+        if (bound != null)
+        {
+            Verifier.Equality.assertEqual(MessageFormat.format("The value's data type <{0}> must match the column's <{1}> data type <{2}>.",
+                                                               bound.getClass(),
+                                                               column,
+                                                               column.getDataType()),
+                                          column.getDataType().isInstance(bound),
+                                          true);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package eli.ikea.mart;
+
+import java.text.MessageFormat;
+
+/**
+ * Thrown when an insert into a {@link Table} would exceed the memory budget of the table, and its {@link OverflowPolicy} cannot make room.
+ *
+ * @author The Architect
+ */
+public class MemoryBudgetExceededException extends IllegalStateException
+{
+    private static final long serialVersionUID = 1L;
+
+    private final long        requiredBytes;
+    private final long        budgetBytes;
+
+    /**
+     * @param requiredBytes The estimated number of bytes the table would hold after the insert.
+     * @param budgetBytes The memory budget of the table.
+     * @param policy The policy that failed to make room. [Non-Null]
+     */
+    public MemoryBudgetExceededException(final long requiredBytes, final long budgetBytes, final OverflowPolicy policy)
+    {
+        super(MessageFormat.format("The insert requires an estimated {0,number,#} bytes, which exceeds the memory budget of {1,number,#} bytes (policy {2}).",
+                                   requiredBytes,
+                                   budgetBytes,
+                                   policy));
+        this.requiredBytes = requiredBytes;
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * @return The estimated number of bytes the table would hold after the insert.
+     */
+    public long getRequiredBytes()
+    {
+        return requiredBytes;
+    }
+
+    /**
+     * @return The memory budget of the table.
+     */
+    public long getBudgetBytes()
+    {
+        return budgetBytes;
+    }
+}
@@ -0,0 +1,253 @@
+package eli.ikea.mart;
+
+import java.text.MessageFormat;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * An immutable estimate of the memory held by a {@link Table}, broken down by column and by the structures that support the rows. The estimates
+ * assume a 64-bit JVM with compressed references, and are meant for capacity planning rather than exact accounting.
+ *
+ * @author The Architect
+ */
+public final class MemoryStats<COLUMNS extends Enum<COLUMNS>>
+{
+    private final int                        rowCount;
+    private final Map<COLUMNS, ColumnMemory> columns;
+    private final long                       rowMapBytes;
+    private final long                       blockOverheadBytes;
+    private final long                       indexBytes;
+    private final long                       bloomFilterBytes;
+    private final long                       sequencerBytes;
+    private final long                       offHeapBytes;
+    private final long                       spilledBytes;
+
+    MemoryStats(final int rowCount, final Map<COLUMNS, ColumnMemory> columns, final long rowMapBytes, final long blockOverheadBytes,
+                final long indexBytes, final long bloomFilterBytes, final long sequencerBytes, final long offHeapBytes, final long spilledBytes)
+    {
+        this.rowCount = rowCount;
+        this.columns = Collections.unmodifiableMap(columns);
+        this.rowMapBytes = rowMapBytes;
+        this.blockOverheadBytes = blockOverheadBytes;
+        this.indexBytes = indexBytes;
+        this.bloomFilterBytes = bloomFilterBytes;
+        this.sequencerBytes = sequencerBytes;
+        this.offHeapBytes = offHeapBytes;
+        this.spilledBytes = spilledBytes;
+    }
+
+    /**
+     * @return The number of rows in the table.
+     */
+    public int getRowCount()
+    {
+        return rowCount;
+    }
+
+    /**
+     * @return The non-null estimates of every column.
+     */
+    public Map<COLUMNS, ColumnMemory> getColumns()
+    {
+        return columns;
+    }
+
+    /**
+     * @param column The column of the table. [Non-Null]
+     * @return The estimate of the column. [Nullable]
+     */
+    public ColumnMemory getColumn(final COLUMNS column)
+    {
+        return columns.get(column);
+    }
+
+    /**
+     * @return The estimated number of bytes of the map from reference identifiers to the locations of the rows.
+     */
+    public long getRowMapBytes()
+    {
+        return rowMapBytes;
+    }
+
+    /**
+     * @return The estimated number of bytes of the storage blocks apart from their columns, namely their reference identifiers, zone maps and bloom
+     *         filters.
+     */
+    public long getBlockOverheadBytes()
+    {
+        return blockOverheadBytes;
+    }
+
+    /**
+     * @return The estimated number of bytes of the secondary indexes.
+     */
+    public long getIndexBytes()
+    {
+        return indexBytes;
+    }
+
+    /**
+     * @return The estimated number of bytes of the table-wide bloom filters.
+     */
+    public long getBloomFilterBytes()
+    {
+        return bloomFilterBytes;
+    }
+
+    /**
+     * @return The estimated number of bytes of the reference identifiers held by the {@link ReferenceSequencer} for reuse.
+     */
+    public long getSequencerBytes()
+    {
+        return sequencerBytes;
+    }
+
+    /**
+     * @return The number of bytes reserved outside the Java heap.
+     */
+    public long getOffHeapBytes()
+    {
+        return offHeapBytes;
+    }
+
+    /**
+     * @return The number of bytes of the blocks spilled to local files, which are not part of the total.
+     */
+    public long getSpilledBytes()
+    {
+        return spilledBytes;
+    }
+
+    /**
+     * @return The estimated number of bytes held on the Java heap.
+     */
+    public long getHeapBytes()
+    {
+        long bytes = rowMapBytes + blockOverheadBytes + indexBytes + bloomFilterBytes + sequencerBytes;
+        for (final ColumnMemory column : columns.values())
+        {
+            bytes += column.getHeapBytes();
+        }
+
+        return bytes;
+    }
+
+    /**
+     * @return The estimated number of bytes held both on and outside the Java heap.
+     */
+    public long getTotalBytes()
+    {
+        return getHeapBytes() + offHeapBytes;
+    }
+
+    /**
+     * @return The estimated number of bytes held per row, or <code>0</code> if the table is empty.
+     */
+    public double getBytesPerRow()
+    {
+        return rowCount == 0 ? 0.0 : (double) getTotalBytes() / rowCount;
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(MessageFormat.format("rows={0,number,#} heap={1,number,#} offHeap={2,number,#} bytesPerRow={3,number,#.#} rowMap={4,number,#} "
+                                            + "blocks={5,number,#} indexes={6,number,#} bloomFilters={7,number,#} sequencer={8,number,#} "
+                                            + "spilled={9,number,#}",
+                                            rowCount,
+                                            getHeapBytes(),
+                                            offHeapBytes,
+                                            getBytesPerRow(),
+                                            rowMapBytes,
+                                            blockOverheadBytes,
+                                            indexBytes,
+                                            bloomFilterBytes,
+                                            sequencerBytes,
+                                            spilledBytes));
+        for (final Map.Entry<COLUMNS, ColumnMemory> entry : columns.entrySet())
+        {
+            builder.append(System.lineSeparator()).append("  ").append(entry.getKey()).append(": ").append(entry.getValue());
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * An estimate of the memory held by the values of a single column.
+     */
+    public static final class ColumnMemory
+    {
+        private final long valueBytes;
+        private final long nullBitmapBytes;
+        private final long dictionaryBytes;
+        private final long offHeapBytes;
+
+        ColumnMemory(final long valueBytes, final long nullBitmapBytes, final long dictionaryBytes, final long offHeapBytes)
+        {
+            this.valueBytes = valueBytes;
+            this.nullBitmapBytes = nullBitmapBytes;
+            this.dictionaryBytes = dictionaryBytes;
+            this.offHeapBytes = offHeapBytes;
+        }
+
+        /**
+         * @return The estimated number of bytes of the values, or of their codes for a dictionary encoded column, including any value referenced
+         *         from the column.
+         */
+        public long getValueBytes()
+        {
+            return valueBytes;
+        }
+
+        /**
+         * @return The estimated number of bytes of the bitmaps of the <code>NULL</code> values.
+         */
+        public long getNullBitmapBytes()
+        {
+            return nullBitmapBytes;
+        }
+
+        /**
+         * @return The estimated number of bytes of the dictionary shared by the blocks of the column.
+         */
+        public long getDictionaryBytes()
+        {
+            return dictionaryBytes;
+        }
+
+        /**
+         * @return The number of bytes of the values and bitmaps held outside the Java heap.
+         */
+        public long getOffHeapBytes()
+        {
+            return offHeapBytes;
+        }
+
+        /**
+         * @return The estimated number of bytes of the column held on the Java heap.
+         */
+        public long getHeapBytes()
+        {
+            return getTotalBytes() - offHeapBytes;
+        }
+
+        /**
+         * @return The estimated number of bytes of the column.
+         */
+        public long getTotalBytes()
+        {
+            return valueBytes + nullBitmapBytes + dictionaryBytes;
+        }
+
+        @Override
+        public String toString()
+        {
+            return MessageFormat.format("values={0,number,#} nulls={1,number,#} dictionary={2,number,#} offHeap={3,number,#}",
+                                        valueBytes,
+                                        nullBitmapBytes,
+                                        dictionaryBytes,
+                                        offHeapBytes);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package eli.ikea.mart;
+
+/**
+ * The reaction of a {@link Table} to an insert that would exceed its memory budget.
+ *
+ * @author The Architect
+ */
+public enum OverflowPolicy
+{
+    /**
+     * The insert waits until rows are removed or the budget is raised, and fails with a {@link MemoryBudgetExceededException} if the wait times
+     * out.
+     */
+    BLOCK,
+    /**
+     * The insert fails immediately with a {@link MemoryBudgetExceededException}.
+     */
+    REJECT,
+    /**
+     * The column vectors of the least recently accessed blocks are spilled to local files, and paged back in on access. The insert fails with a
+     * {@link MemoryBudgetExceededException} once no block is left to spill.
+     */
+    SPILL;
+}
@@ -0,0 +1,222 @@
+package eli.ikea.mart;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A small file shared by every process appending to the same table store, from which each {@link ReferenceSequencer} leases ranges of reference
+ * identifiers, so that the processes never hand out the same identifier without coordinating on every insert. The file holds the first
+ * identifier never leased, and the ranges returned by processes that shut down before using them up. Every lease and return holds an exclusive
+ * {@link FileChannel#lock() lock} of the file while it reads and rewrites it, and forces the file before releasing the lock, so that a range is
+ * never leased twice even if a process fails right afterwards. A process that fails without returning its range only leaves a gap of unused
+ * identifiers.
+ * <p>
+ * File locks are held on behalf of the whole process, so the leases of a single process are also serialized by a monitor per file.
+ *
+ * @author The Architect
+ */
+public final class ReferenceLease implements AutoCloseable
+{
+    private static final long                        MAGIC    = 0x494B45414C454153L;
+    private static final int                         VERSION  = 1;
+    private static final ConcurrentMap<Path, Object> MONITORS = new ConcurrentHashMap<>();
+
+    private final FileChannel channel;
+    private final Object      monitor;
+
+    /**
+     * @param path The lease file, which is created if it does not exist. [Non-Null]
+     * @throws IOException If the file cannot be opened.
+     */
+    public ReferenceLease(final Path path) throws IOException
+    {
+        final Path absolutePath = path.toAbsolutePath().normalize();
+        this.channel = FileChannel.open(absolutePath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.monitor = MONITORS.computeIfAbsent(absolutePath, key -> new Object());
+    }
+
+    /**
+     * Leases a range of identifiers, preferring the lowest range returned by another process over identifiers never leased.
+     *
+     * @param size The maximum number of identifiers to lease. [Positive]
+     * @param minimum The lowest identifier the range may hold, such as the first identifier past the rows already stored.
+     * @return The non-null first identifier of the range and the identifier past its end, where the range holds at least one and at most the
+     *         requested number of identifiers.
+     * @throws IOException If the file cannot be read or written, or is not a lease file.
+     */
+    public long[] acquire(final int size, final long minimum) throws IOException
+    {
+        synchronized (monitor)
+        {
+            final FileLock lock = channel.lock();
+            try
+            {
+                final List<long[]> returned = new ArrayList<>();
+                long next = read(returned);
+                next = Math.max(next, minimum);
+                for (int index = 0; index < returned.size(); index++)
+                {
+                    final long[] range = returned.get(index);
+                    range[0] = Math.max(range[0], minimum);
+                    if (range[0] >= range[1])
+                    {
+                        returned.remove(index--);
+                    }
+                }
+
+                final long[] leased;
+                if (returned.isEmpty())
+                {
+                    leased = new long[] {next, next + size};
+                    next += size;
+                }
+                else
+                {
+                    final long[] range = returned.get(0);
+                    leased = new long[] {range[0], Math.min(range[1], range[0] + size)};
+                    range[0] = leased[1];
+                    if (range[0] == range[1])
+                    {
+                        returned.remove(0);
+                    }
+                }
+                write(next, returned);
+
+                return leased;
+            }
+            finally
+            {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * Returns the unused part of a leased range, so that the next lease of any process may hand it out again.
+     *
+     * @param start The first unused identifier of the range.
+     * @param end The identifier past the end of the range.
+     * @throws IOException If the file cannot be read or written, or is not a lease file.
+     */
+    public void release(final long start, final long end) throws IOException
+    {
+        if (start >= end)
+        {
+            return;
+        }
+        synchronized (monitor)
+        {
+            final FileLock lock = channel.lock();
+            try
+            {
+                final List<long[]> returned = new ArrayList<>();
+                long next = read(returned);
+                returned.add(new long[] {start, end});
+                returned.sort((first, second) -> Long.compare(first[0], second[0]));
+
+                // Adjacent ranges are merged, and a range ending at the first identifier never leased is folded back into it.
+                final List<long[]> merged = new ArrayList<>();
+                for (final long[] range : returned)
+                {
+                    final long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+                    if (last != null && last[1] >= range[0])
+                    {
+                        last[1] = Math.max(last[1], range[1]);
+                    }
+                    else
+                    {
+                        merged.add(range);
+                    }
+                }
+                if (!merged.isEmpty() && merged.get(merged.size() - 1)[1] >= next)
+                {
+                    next = merged.remove(merged.size() - 1)[0];
+                }
+                write(next, merged);
+            }
+            finally
+            {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+
+    /**
+     * @param returned The list to add the returned ranges to. [Non-Null]
+     * @return The first identifier never leased.
+     */
+    private long read(final List<long[]> returned) throws IOException
+    {
+        final long size = channel.size();
+        if (size == 0L)
+        {
+            return 1L;
+        }
+        final ByteBuffer bytes = ByteBuffer.allocate((int) size);
+        while (bytes.hasRemaining())
+        {
+            if (channel.read(bytes, bytes.position()) < 0)
+            {
+                throw new EOFException("The lease file ends early.");
+            }
+        }
+        final DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.array()));
+        if (input.readLong() != MAGIC || input.readInt() != VERSION)
+        {
+            throw new IOException("The file is not a reference lease file of version " + VERSION + ".");
+        }
+        final long next = input.readLong();
+        final int rangeCount = input.readInt();
+        for (int index = 0; index < rangeCount; index++)
+        {
+            returned.add(new long[] {input.readLong(), input.readLong()});
+        }
+
+        return next;
+    }
+
+    private void write(final long next, final List<long[]> returned) throws IOException
+    {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream output = new DataOutputStream(bytes);
+        output.writeLong(MAGIC);
+        output.writeInt(VERSION);
+        output.writeLong(next);
+        output.writeInt(returned.size());
+        for (final long[] range : returned)
+        {
+            output.writeLong(range[0]);
+            output.writeLong(range[1]);
+        }
+
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer, buffer.position());
+        }
+        channel.truncate(buffer.limit());
+        channel.force(true);
+    }
+}
@@ -1,22 +1,42 @@
 package eli.ikea.mart;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
+import eli.ikea.mart.storage.MemoryEstimator;
 import eli.veritas.Verifier;
 import eli.veritas.exception.AssertionException;
 
 /**
  * Sequencer to generate unique identifier values. These values are only guaranteed to be unique for the current instance and are not guaranteed to be
  * returned in any defined order.
+ * <p>
+ * Once {@link #enableLeasing(Path, int) leasing} is enabled, the values are also unique across every process sharing the same
+ * {@link ReferenceLease lease file}: the sequencer hands out values only from ranges it leased from the file, and only reuses the restored values
+ * of its current range, since any other value may still be in use by another process.
  *
  * @author The Architect
  */
-public class ReferenceSequencer
+public class ReferenceSequencer implements AutoCloseable
 {
-    private long      nextReferenceIdentifier;
-    private int       bufferIncrements;
-    private Set<Long> referenceSequence;
+    private long                      nextReferenceIdentifier;
+    private int                       bufferIncrements;
+    private Set<Long>                 referenceSequence;
+    private final TreeMap<Long, Long> skippedRanges = new TreeMap<>();
+    private long                      skippedCount;
+    private ReferenceLease            lease;
+    private int                       leaseSize;
+    private long                      leaseMinimum;
+    private long                      leaseStart;
+    private long                      leaseEnd;
 
     private ReferenceSequencer(final int initialCapacity)
     {
@@ -31,7 +51,20 @@ public class ReferenceSequencer
 
     private ReferenceSequencer(final int initialCapacity, final Set<Long> excludedIdentifiers)
     {
+        this(initialCapacity);
+        referenceSequence.removeAll(excludedIdentifiers);
+        for (final long excludedIdentifier : excludedIdentifiers)
+        {
+            // Identifiers past the initial range are never handed out again, together with any gaps below them.
+            nextReferenceIdentifier = Math.max(nextReferenceIdentifier, excludedIdentifier + 1);
+        }
+    }
 
+    private ReferenceSequencer(final long nextReferenceIdentifier, final int bufferIncrements, final Set<Long> referenceSequence)
+    {
+        this.nextReferenceIdentifier = nextReferenceIdentifier;
+        this.bufferIncrements = bufferIncrements;
+        this.referenceSequence = referenceSequence;
     }
 
     /**
@@ -64,6 +97,54 @@ public class ReferenceSequencer
         return new ReferenceSequencer(initialCapacity, excludedIdentifiers);
     }
 
+    /**
+     * @param input The input holding a sequencer written by {@link #writeTo(DataOutput)}. [Non-Null]
+     * @return A new non-null sequencer that continues where the written sequencer stopped.
+     * @throws IOException If the sequencer cannot be read.
+     */
+    public static ReferenceSequencer readFrom(final DataInput input) throws IOException
+    {
+        final long nextReferenceIdentifier = input.readLong();
+        final int bufferIncrements = input.readInt();
+        final int availableCount = input.readInt();
+        final Set<Long> referenceSequence = new HashSet<>(availableCount);
+        for (int index = 0; index < availableCount; index++)
+        {
+            referenceSequence.add(input.readLong());
+        }
+        final ReferenceSequencer sequencer = new ReferenceSequencer(nextReferenceIdentifier, bufferIncrements, referenceSequence);
+        final int skippedRangeCount = input.readInt();
+        for (int index = 0; index < skippedRangeCount; index++)
+        {
+            sequencer.skip(input.readLong(), input.readLong());
+        }
+
+        return sequencer;
+    }
+
+    /**
+     * Writes the state of the sequencer, including every identifier held for reuse, and the ranges of identifiers skipped by claims.
+     *
+     * @param output The output to write to. [Non-Null]
+     * @throws IOException If the sequencer cannot be written.
+     */
+    public void writeTo(final DataOutput output) throws IOException
+    {
+        output.writeLong(nextReferenceIdentifier);
+        output.writeInt(bufferIncrements);
+        output.writeInt(referenceSequence.size());
+        for (final long referenceIdentifier : referenceSequence)
+        {
+            output.writeLong(referenceIdentifier);
+        }
+        output.writeInt(skippedRanges.size());
+        for (final Map.Entry<Long, Long> range : skippedRanges.entrySet())
+        {
+            output.writeLong(range.getKey());
+            output.writeLong(range.getValue());
+        }
+    }
+
     /**
      * @param bufferIncrements
      * @throws AssertionException
@@ -75,12 +156,109 @@ public class ReferenceSequencer
         this.bufferIncrements = bufferIncrements;
     }
 
+    /**
+     * Leases the values of the sequencer from a lease file shared by every process appending to the same table store, from now on. The values held
+     * for reuse are discarded, and the leased values start past every value handed out so far.
+     *
+     * @param path The lease file, which is created if it does not exist. [Non-Null]
+     * @param leaseSize The number of values leased at a time. [Positive]
+     * @throws AssertionException If any of the parameter conditions are not met, or leasing is already enabled.
+     * @throws IOException If the lease file cannot be opened.
+     */
+    public void enableLeasing(final Path path, final int leaseSize) throws AssertionException, IOException
+    {
+        Verifier.assertNotNull("Must specify the lease file.", path);
+        Verifier.Inequality.assertGreaterThan("The lease size must be positive.", leaseSize, 0);
+        Verifier.Equality.assertEqual("Leasing must not be enabled yet.", lease == null, true);
+
+        this.lease = new ReferenceLease(path);
+        this.leaseSize = leaseSize;
+        referenceSequence.clear();
+        skippedRanges.clear();
+        skippedCount = 0L;
+        // An empty range, so that the next value leases a range, none of whose values were handed out by this sequencer before.
+        leaseMinimum = nextReferenceIdentifier;
+        leaseStart = nextReferenceIdentifier;
+        leaseEnd = nextReferenceIdentifier;
+    }
+
+    /**
+     * @return Indicator if the values are leased from a lease file.
+     */
+    public boolean isLeasing()
+    {
+        return lease != null;
+    }
+
+    /**
+     * Returns the unused values of the current lease to the lease file, and closes it. The sequencer must not hand out values afterwards. Without
+     * leasing, this does nothing.
+     *
+     * @throws UncheckedIOException If the unused values cannot be returned.
+     */
+    @Override
+    public void close()
+    {
+        if (lease == null)
+        {
+            return;
+        }
+        try
+        {
+            final long[] unused = new long[referenceSequence.size()];
+            int count = 0;
+            for (final long referenceIdentifier : referenceSequence)
+            {
+                unused[count++] = referenceIdentifier;
+            }
+            Arrays.sort(unused);
+            // The values held for reuse and the remainder of the range are returned as runs of consecutive values.
+            long runStart = nextReferenceIdentifier;
+            for (int index = count - 1; index >= 0 && unused[index] == runStart - 1; index--, count--)
+            {
+                runStart--;
+            }
+            lease.release(runStart, leaseEnd);
+            for (final Map.Entry<Long, Long> range : skippedRanges.entrySet())
+            {
+                lease.release(range.getKey(), range.getValue());
+            }
+            for (int index = 0; index < count; index++)
+            {
+                final int first = index;
+                while (index + 1 < count && unused[index + 1] == unused[index] + 1)
+                {
+                    index++;
+                }
+                lease.release(unused[first], unused[index] + 1);
+            }
+            lease.close();
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        finally
+        {
+            referenceSequence.clear();
+            skippedRanges.clear();
+            skippedCount = 0L;
+            leaseStart = leaseEnd = nextReferenceIdentifier;
+            lease = null;
+        }
+    }
+
     /**
      * @return the next value from the sequence.
      */
     public long peekNextReferenceIdentifier()
     {
-        return referenceSequence.isEmpty() ? nextReferenceIdentifier : referenceSequence.iterator().next();
+        if (!referenceSequence.isEmpty())
+        {
+            return referenceSequence.iterator().next();
+        }
+
+        return skippedRanges.isEmpty() ? nextReferenceIdentifier : skippedRanges.firstKey();
     }
 
     /**
@@ -88,9 +266,38 @@ public class ReferenceSequencer
      */
     public long getNextReferenceIdentifier()
     {
+        if (referenceSequence.isEmpty() && !skippedRanges.isEmpty())
+        {
+            // Identifiers skipped by claims are handed out before the sequence advances, a buffer at a time.
+            final Map.Entry<Long, Long> range = skippedRanges.pollFirstEntry();
+            final long end = Math.min(range.getValue(), range.getKey() + bufferIncrements);
+            for (long refId = range.getKey(); refId < end; refId++)
+            {
+                referenceSequence.add(refId);
+            }
+            if (end < range.getValue())
+            {
+                skippedRanges.put(end, range.getValue());
+            }
+            skippedCount -= end - range.getKey();
+        }
+        if (referenceSequence.isEmpty() && lease != null && nextReferenceIdentifier == leaseEnd)
+        {
+            try
+            {
+                final long[] range = lease.acquire(leaseSize, leaseMinimum);
+                leaseStart = nextReferenceIdentifier = range[0];
+                leaseEnd = range[1];
+            }
+            catch (final IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        }
         if (referenceSequence.isEmpty())
         {
-            for (int refCounter = 0; refCounter < bufferIncrements; refCounter++, nextReferenceIdentifier++)
+            final long end = lease == null ? Long.MAX_VALUE : leaseEnd;
+            for (int refCounter = 0; refCounter < bufferIncrements && nextReferenceIdentifier < end; refCounter++, nextReferenceIdentifier++)
             {
                 referenceSequence.add(nextReferenceIdentifier);
             }
@@ -107,11 +314,88 @@ public class ReferenceSequencer
      */
     public void restoreReferenceIdentifier(final long referenceIdentifier) throws AssertionException
     {
+        if (lease != null && (referenceIdentifier < leaseStart || referenceIdentifier >= leaseEnd))
+        {
+            // Values of earlier ranges may have been leased by another process since, so they are not reused.
+            return;
+        }
         Verifier.Ranges.assertInsideRange("Reference Identifier must be a previously used value.", referenceIdentifier, 0, nextReferenceIdentifier);
 
-        if (!Verifier.Collections.containsValue(referenceSequence, referenceIdentifier))
+        referenceSequence.add(referenceIdentifier);
+    }
+
+    /**
+     * Removes a reference identifier from the sequence as if it had been handed out, such as while replaying the inserts of a journal. Identifiers
+     * past the current maximum advance the sequence, and the identifiers skipped below them remain available. Skipped identifiers are held as
+     * ranges, so a claim far past the current maximum takes constant memory. While leasing, only identifiers of the current range advance the
+     * sequence.
+     *
+     * @param referenceIdentifier The reference identifier to claim.
+     */
+    public void claimReferenceIdentifier(final long referenceIdentifier)
+    {
+        if (referenceSequence.remove(referenceIdentifier) || claimSkipped(referenceIdentifier))
+        {
+            return;
+        }
+        if (lease != null && (referenceIdentifier < nextReferenceIdentifier || referenceIdentifier >= leaseEnd))
+        {
+            // Values outside the unused part of the current range are not handed out by this sequencer.
+            return;
+        }
+        if (nextReferenceIdentifier < referenceIdentifier)
+        {
+            skip(nextReferenceIdentifier, referenceIdentifier);
+        }
+        nextReferenceIdentifier = Math.max(nextReferenceIdentifier, referenceIdentifier + 1);
+    }
+
+    private boolean claimSkipped(final long referenceIdentifier)
+    {
+        final Map.Entry<Long, Long> range = skippedRanges.floorEntry(referenceIdentifier);
+        if (range == null || referenceIdentifier >= range.getValue())
+        {
+            return false;
+        }
+
+        skippedRanges.remove(range.getKey());
+        if (range.getKey() < referenceIdentifier)
+        {
+            skippedRanges.put(range.getKey(), referenceIdentifier);
+        }
+        if (referenceIdentifier + 1 < range.getValue())
         {
-            referenceSequence.add(referenceIdentifier);
+            skippedRanges.put(referenceIdentifier + 1, range.getValue());
         }
+        skippedCount--;
+
+        return true;
+    }
+
+    /**
+     * @param start The first skipped identifier.
+     * @param end The identifier past the last skipped one.
+     */
+    private void skip(final long start, final long end)
+    {
+        skippedRanges.put(start, end);
+        skippedCount += end - start;
+    }
+
+    /**
+     * @return The number of reference identifiers held for reuse or ahead of use.
+     */
+    public int getAvailableCount()
+    {
+        return (int) Math.min(Integer.MAX_VALUE, referenceSequence.size() + skippedCount);
+    }
+
+    /**
+     * @return The estimated number of bytes held by the set of available reference identifiers and the ranges of skipped ones.
+     */
+    public long estimateBytes()
+    {
+        return MemoryEstimator.hashMap(referenceSequence.size()) + (long) referenceSequence.size() * MemoryEstimator.BOXED_LONG_BYTES
+               + (long) skippedRanges.size() * (MemoryEstimator.TREE_ENTRY_BYTES + 2 * MemoryEstimator.BOXED_LONG_BYTES);
     }
 }
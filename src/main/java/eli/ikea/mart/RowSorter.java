@@ -0,0 +1,277 @@
+package eli.ikea.mart;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.PriorityQueue;
+
+/**
+ * Sorting primitives used to order the rows of a {@link Table} by their reference identifiers, without moving the rows themselves. Numeric, temporal,
+ * character and boolean values are translated into order-preserving unsigned <code>long</code> keys and sorted with a least-significant-digit radix
+ * sort (or a bounded heap when only the first few rows are wanted), while any other {@link Comparable} value falls back to a comparison sort.
+ *
+ * @author The Architect
+ */
+final class RowSorter
+{
+    private static final int RADIX_BITS          = 8;
+    private static final int RADIX               = 1 << RADIX_BITS;
+    private static final int RADIX_MASK          = RADIX - 1;
+    private static final int INSERTION_THRESHOLD = 32;
+
+    private RowSorter()
+    {
+    }
+
+    /**
+     * @param type The data type of a column. [Non-Null]
+     * @return Indicator if values of the type can be translated into an order-preserving <code>long</code> key.
+     */
+    static boolean hasSortableKey(final Class<?> type)
+    {
+        return Long.class.equals(type) || Integer.class.equals(type) || Short.class.equals(type) || Byte.class.equals(type) || Double.class.equals(type)
+               || Float.class.equals(type) || Character.class.equals(type) || Boolean.class.equals(type) || Date.class.isAssignableFrom(type);
+    }
+
+    /**
+     * @param value A non-null value of a type accepted by {@link #hasSortableKey(Class)}.
+     * @return The key of the value, such that the unsigned ordering of the keys matches the natural ordering of the values.
+     */
+    static long toSortableKey(final Object value)
+    {
+        if (value instanceof Double || value instanceof Float)
+        {
+            final long bits = Double.doubleToLongBits(((Number) value).doubleValue());
+
+            return bits ^ (bits >> 63 | Long.MIN_VALUE);
+        }
+        if (value instanceof Number)
+        {
+            return ((Number) value).longValue() ^ Long.MIN_VALUE;
+        }
+        if (value instanceof Character)
+        {
+            return ((Character) value).charValue();
+        }
+        if (value instanceof Boolean)
+        {
+            return ((Boolean) value).booleanValue() ? 1L : 0L;
+        }
+
+        return ((Date) value).getTime() ^ Long.MIN_VALUE;
+    }
+
+    /**
+     * Orders the identifiers by their unsigned keys, and keeps only the first <code>limit</code> of them.
+     *
+     * @param keys The unsigned sort keys, parallel to the identifiers. (Contents are reordered)
+     * @param identifiers The identifiers to order. (Contents are reordered)
+     * @param length The number of populated elements in both arrays.
+     * @param limit The maximum number of identifiers to return.
+     * @return The identifiers with the smallest keys in ascending key order.
+     */
+    static long[] sortKeys(final long[] keys, final long[] identifiers, final int length, final int limit)
+    {
+        if (limit < length >>> 4)
+        {
+            return selectSmallest(keys, identifiers, length, limit);
+        }
+
+        if (length < INSERTION_THRESHOLD)
+        {
+            insertionSort(keys, identifiers, length);
+        }
+        else
+        {
+            radixSort(keys, identifiers, length);
+        }
+
+        return Arrays.copyOf(identifiers, limit);
+    }
+
+    /**
+     * Orders the identifiers by the natural ordering of their values, and keeps only the first <code>limit</code> of them.
+     *
+     * @param values The {@link Comparable} non-null values, parallel to the identifiers.
+     * @param identifiers The identifiers to order.
+     * @param length The number of populated elements in both arrays.
+     * @param descending Indicator if the largest values should be ordered first.
+     * @param limit The maximum number of identifiers to return.
+     * @return The ordered identifiers.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes", "boxing"})
+    static long[] sortComparable(final Object[] values, final long[] identifiers, final int length, final boolean descending, final int limit)
+    {
+        final Comparator<Integer> ascending = (left, right) -> ((Comparable) values[left]).compareTo(values[right]);
+        final Comparator<Integer> comparator = descending ? ascending.reversed() : ascending;
+        final long[] ordered = new long[limit];
+
+        if (limit < length >>> 4)
+        {
+            // Bounded heap that keeps the worst of the current best candidates at its head.
+            final PriorityQueue<Integer> heap = new PriorityQueue<>(limit + 1, comparator.reversed());
+            for (int position = 0; position < length; position++)
+            {
+                heap.add(position);
+                if (heap.size() > limit)
+                {
+                    heap.poll();
+                }
+            }
+            for (int index = limit - 1; index >= 0; index--)
+            {
+                ordered[index] = identifiers[heap.poll()];
+            }
+
+            return ordered;
+        }
+
+        final Integer[] positions = new Integer[length];
+        for (int position = 0; position < length; position++)
+        {
+            positions[position] = position;
+        }
+        Arrays.sort(positions, comparator);
+        for (int index = 0; index < limit; index++)
+        {
+            ordered[index] = identifiers[positions[index]];
+        }
+
+        return ordered;
+    }
+
+    private static long[] selectSmallest(final long[] keys, final long[] identifiers, final int length, final int limit)
+    {
+        // Max-heap of the smallest keys seen so far, so that the root is the next candidate to be displaced.
+        final long[] heapKeys = new long[limit];
+        final long[] heapIdentifiers = new long[limit];
+        int heapSize = 0;
+        for (int index = 0; index < length; index++)
+        {
+            if (heapSize < limit)
+            {
+                int child = heapSize++;
+                while (child > 0)
+                {
+                    final int parent = (child - 1) >>> 1;
+                    if (Long.compareUnsigned(heapKeys[parent], keys[index]) >= 0)
+                    {
+                        break;
+                    }
+                    heapKeys[child] = heapKeys[parent];
+                    heapIdentifiers[child] = heapIdentifiers[parent];
+                    child = parent;
+                }
+                heapKeys[child] = keys[index];
+                heapIdentifiers[child] = identifiers[index];
+            }
+            else if (Long.compareUnsigned(keys[index], heapKeys[0]) < 0)
+            {
+                siftDown(heapKeys, heapIdentifiers, heapSize, keys[index], identifiers[index]);
+            }
+        }
+
+        // Repeatedly move the root to the end of the heap, leaving the keys in ascending order.
+        for (int last = heapSize - 1; last > 0; last--)
+        {
+            final long rootKey = heapKeys[0];
+            final long rootIdentifier = heapIdentifiers[0];
+            siftDown(heapKeys, heapIdentifiers, last, heapKeys[last], heapIdentifiers[last]);
+            heapKeys[last] = rootKey;
+            heapIdentifiers[last] = rootIdentifier;
+        }
+
+        return heapIdentifiers;
+    }
+
+    private static void siftDown(final long[] heapKeys, final long[] heapIdentifiers, final int heapSize, final long key, final long identifier)
+    {
+        int parent = 0;
+        int child = 1;
+        while (child < heapSize)
+        {
+            if (child + 1 < heapSize && Long.compareUnsigned(heapKeys[child + 1], heapKeys[child]) > 0)
+            {
+                child++;
+            }
+            if (Long.compareUnsigned(key, heapKeys[child]) >= 0)
+            {
+                break;
+            }
+            heapKeys[parent] = heapKeys[child];
+            heapIdentifiers[parent] = heapIdentifiers[child];
+            parent = child;
+            child = 2 * parent + 1;
+        }
+        heapKeys[parent] = key;
+        heapIdentifiers[parent] = identifier;
+    }
+
+    private static void insertionSort(final long[] keys, final long[] identifiers, final int length)
+    {
+        for (int index = 1; index < length; index++)
+        {
+            final long key = keys[index];
+            final long identifier = identifiers[index];
+            int position = index - 1;
+            while (position >= 0 && Long.compareUnsigned(keys[position], key) > 0)
+            {
+                keys[position + 1] = keys[position];
+                identifiers[position + 1] = identifiers[position];
+                position--;
+            }
+            keys[position + 1] = key;
+            identifiers[position + 1] = identifier;
+        }
+    }
+
+    private static void radixSort(final long[] keys, final long[] identifiers, final int length)
+    {
+        long[] sourceKeys = keys;
+        long[] sourceIdentifiers = identifiers;
+        long[] targetKeys = new long[length];
+        long[] targetIdentifiers = new long[length];
+        final int[] offsets = new int[RADIX];
+
+        for (int shift = 0; shift < Long.SIZE; shift += RADIX_BITS)
+        {
+            Arrays.fill(offsets, 0);
+            for (int index = 0; index < length; index++)
+            {
+                offsets[(int) (sourceKeys[index] >>> shift) & RADIX_MASK]++;
+            }
+            if (offsets[(int) (sourceKeys[0] >>> shift) & RADIX_MASK] == length)
+            {
+                // Every key shares this digit, so the pass would not change the ordering.
+                continue;
+            }
+
+            int offset = 0;
+            for (int digit = 0; digit < RADIX; digit++)
+            {
+                final int count = offsets[digit];
+                offsets[digit] = offset;
+                offset += count;
+            }
+            for (int index = 0; index < length; index++)
+            {
+                final int target = offsets[(int) (sourceKeys[index] >>> shift) & RADIX_MASK]++;
+                targetKeys[target] = sourceKeys[index];
+                targetIdentifiers[target] = sourceIdentifiers[index];
+            }
+
+            final long[] swapKeys = sourceKeys;
+            sourceKeys = targetKeys;
+            targetKeys = swapKeys;
+            final long[] swapIdentifiers = sourceIdentifiers;
+            sourceIdentifiers = targetIdentifiers;
+            targetIdentifiers = swapIdentifiers;
+        }
+
+        if (sourceKeys != keys)
+        {
+            System.arraycopy(sourceKeys, 0, keys, 0, length);
+            System.arraycopy(sourceIdentifiers, 0, identifiers, 0, length);
+        }
+    }
+}
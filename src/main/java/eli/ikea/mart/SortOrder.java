@@ -0,0 +1,13 @@
+package eli.ikea.mart;
+
+/**
+ * Defines the direction in which the rows of a {@link Table} are ordered. <code>NULL</code> values are always considered the smallest value of a
+ * column, so that they lead an {@link #ASCENDING} ordering and trail a {@link #DESCENDING} ordering.
+ *
+ * @author The Architect
+ */
+public enum SortOrder
+{
+ ASCENDING,
+ DESCENDING;
+}
@@ -1,9 +1,60 @@
 package eli.ikea.mart;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheStats;
+
+import eli.ikea.mart.arrow.ArrowStreamReader;
+import eli.ikea.mart.arrow.ArrowStreamWriter;
+import eli.ikea.mart.arrow.ArrowType;
+import eli.ikea.mart.cache.EvictionPolicy;
+import eli.ikea.mart.formatter.RowFormatter;
+import eli.ikea.mart.formatter.TableFormatter;
+import eli.ikea.mart.journal.Journal;
+import eli.ikea.mart.journal.JournalRecord;
+import eli.ikea.mart.journal.SyncPolicy;
+import eli.ikea.mart.query.ColumnIndex;
+import eli.ikea.mart.query.ColumnStatistics;
+import eli.ikea.mart.query.HyperLogLog;
+import eli.ikea.mart.query.IndexType;
+import eli.ikea.mart.query.QuantileSketch;
+import eli.ikea.mart.query.QueryPlan;
+import eli.ikea.mart.query.QueryPlanner;
+import eli.ikea.mart.storage.BloomFilter;
+import eli.ikea.mart.storage.ColumnDictionary;
+import eli.ikea.mart.storage.ColumnarFile;
+import eli.ikea.mart.storage.ColumnVector;
+import eli.ikea.mart.storage.ColumnEncoding;
+import eli.ikea.mart.storage.CompressionCodec;
+import eli.ikea.mart.storage.LocationMap;
+import eli.ikea.mart.storage.RowCodec;
+import eli.ikea.mart.storage.SlabAllocator;
+import eli.ikea.mart.storage.StorageBlock;
+import eli.ikea.mart.storage.StorageSnapshot;
+import eli.ikea.mart.storage.StringPool;
+import eli.ikea.mart.storage.TableDiff;
+import eli.ikea.mart.storage.TableStorage;
+import eli.ikea.mart.storage.TimingWheel;
 import eli.veritas.Verifier;
 import eli.veritas.exception.AssertionException;
 
@@ -13,123 +64,2305 @@ import eli.veritas.exception.AssertionException;
  *
  * @author The Architect
  */
-public class Table<COLUMNS extends Enum<COLUMNS> & IHeaderColumn>
+public class Table<COLUMNS extends Enum<COLUMNS> & IHeaderColumn> implements AutoCloseable
 {
-    protected final Class<COLUMNS>     columnsType;
-    protected final Header             header;
-    protected final ReferenceSequencer referenceSequencer;
-    protected final Map<Long, Row>     rows;
+    private static final long       EXPIRY_TICK_NANOS   = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final int        EXPIRY_BUCKET_COUNT = 4096;
+    private static final AtomicLong LOCK_ORDERS         = new AtomicLong();
+
+    protected final Class<COLUMNS>                             columnsType;
+    protected final Header                                     header;
+    protected final ReferenceSequencer                         referenceSequencer;
+    protected final TableStorage                               storage;
+    protected final ColumnStatistics[]                         statistics;
+    protected final Map<COLUMNS, Map<IndexType, ColumnIndex>> indexes;
+    protected final BloomFilter[]                              bloomFilters;
+    protected final double[]                                   bloomFilterProbabilities;
+    protected final StringPool[]                               stringPools;
+    protected long                                             memoryBudget          = Long.MAX_VALUE;
+    protected OverflowPolicy                                   overflowPolicy        = OverflowPolicy.REJECT;
+    protected long                                             maximumBlockingMillis = Long.MAX_VALUE;
+    protected Ticker                                           ticker                = Ticker.systemTicker();
+    protected TimingWheel                                      expiryWheel;
+    protected LocationMap                                      expiryDeadlines;
+    protected long                                             expiryOrigin;
+    protected long                                             defaultTimeToLiveNanos;
+    protected int                                              maximumSize           = Integer.MAX_VALUE;
+    protected EvictionPolicy                                   evictionPolicy;
+    protected long                                             hitCount;
+    protected long                                             missCount;
+    protected long                                             evictionCount;
+    protected volatile Journal                                 journal;
+    protected long                                             snapshotSequenceNumber;
+    protected final long                                       lockOrder             = LOCK_ORDERS.getAndIncrement();
+
+    protected Table(final Class<COLUMNS> columnsType, final int blockCapacity) throws AssertionException
+    {
+        this(columnsType, blockCapacity, null);
+    }
+
+    protected Table(final Class<COLUMNS> columnsType, final int blockCapacity, final SlabAllocator allocator) throws AssertionException
+    {
+        this(columnsType, new TableStorage(dataTypesOf(columnsType), blockCapacity, allocator), ReferenceSequencer.create(100));
+        for (final COLUMNS column : header.columns)
+        {
+            if (String.class.equals(column.getDataType()))
+            {
+                storage.setColumnEncoding(column.ordinal(), ColumnEncoding.AUTO);
+            }
+        }
+    }
 
-    protected Table(final Class<COLUMNS> columnsType) throws AssertionException
+    protected Table(final Class<COLUMNS> columnsType, final TableStorage storage, final ReferenceSequencer referenceSequencer)
     {
         this.columnsType = columnsType;
         this.header = new Header();
-        this.referenceSequencer = ReferenceSequencer.create(100);
-        rows = new HashMap<>();
+        this.referenceSequencer = referenceSequencer;
+        this.storage = storage;
+        statistics = new ColumnStatistics[header.getHeaderSize()];
+        for (int index = 0; index < statistics.length; index++)
+        {
+            statistics[index] = new ColumnStatistics();
+        }
+        indexes = new EnumMap<>(columnsType);
+        bloomFilters = new BloomFilter[header.getHeaderSize()];
+        bloomFilterProbabilities = new double[header.getHeaderSize()];
+        stringPools = new StringPool[header.getHeaderSize()];
+    }
+
+    private static Class<?>[] dataTypesOf(final Class<? extends IHeaderColumn> columnsType)
+    {
+        final IHeaderColumn[] columns = columnsType.getEnumConstants();
+        final Class<?>[] dataTypes = new Class<?>[columns.length];
+        for (int index = 0; index < columns.length; index++)
+        {
+            dataTypes[index] = columns[index].getDataType();
+        }
+
+        return dataTypes;
     }
 
     public static <COLUMNS extends Enum<COLUMNS> & IHeaderColumn> Table<COLUMNS> create(final Class<COLUMNS> columnsType) throws AssertionException
+    {
+        return create(columnsType, TableStorage.DEFAULT_BLOCK_CAPACITY);
+    }
+
+    /**
+     * @param columnsType The column enumeration of the table. [Non-Null]
+     * @param blockCapacity The number of rows held by each storage block. Smaller blocks let range scans skip more rows at the cost of more block
+     *            metadata. [Positive]
+     * @return A new non-null empty table.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public static <COLUMNS extends Enum<COLUMNS> & IHeaderColumn> Table<COLUMNS> create(final Class<COLUMNS> columnsType, final int blockCapacity)
+        throws AssertionException
     {
         Verifier.assertNotNull("Must specify a defined column enumeration.", columnsType);
+        Verifier.Inequality.assertGreaterThan("The block capacity must be positive.", blockCapacity, 0);
 
-        return new Table<>(columnsType);
+        return new Table<>(columnsType, blockCapacity);
     }
 
-    public long insertRow(final Object[] columns) throws AssertionException
+    /**
+     * Creates a table whose {@link Long}, {@link Integer}, {@link Double} and {@link Boolean} columns, as well as the codes of its dictionary
+     * encoded columns, are held in direct buffers outside the Java heap. Rows and cursors read the same values as from an on-heap table. The
+     * table must be {@link #close() closed} to release its memory.
+     *
+     * @param columnsType The column enumeration of the table. [Non-Null]
+     * @param blockCapacity The number of rows held by each storage block. [Positive]
+     * @param memoryBudget The maximum number of bytes held outside the Java heap, past which inserts throw an {@link IllegalStateException}.
+     *            [Positive]
+     * @return A new non-null empty table.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public static <COLUMNS extends Enum<COLUMNS> & IHeaderColumn> Table<COLUMNS> createOffHeap(final Class<COLUMNS> columnsType,
+                                                                                                final int blockCapacity, final long memoryBudget)
+        throws AssertionException
     {
-        Verifier.Equality.assertEqual("Row column count must match header column count.", columns.length, header.getHeaderSize());
+        Verifier.assertNotNull("Must specify a defined column enumeration.", columnsType);
+        Verifier.Inequality.assertGreaterThan("The block capacity must be positive.", blockCapacity, 0);
 
-        final Row row = new Row(columns);
-        final long referenceIdentifier = referenceSequencer.getNextReferenceIdentifier();
-        rows.put(referenceIdentifier, row);
+        return new Table<>(columnsType, blockCapacity, SlabAllocator.create(memoryBudget));
+    }
 
-        return referenceIdentifier;
+    /**
+     * Opens a table from a file written by {@link #writeTo(Path)}. The rows are mapped into memory rather than read, so opening a table only reads
+     * its schema, statistics and dictionaries, and locates every row by its reference identifier; no value is decoded until it is read. Changes to
+     * the opened table are private to it and never reach the file. Indexes, Bloom filters, sketches, time-to-live deadlines and cache limits are not
+     * kept in the file.
+     *
+     * @param columnsType The column enumeration the table was written with. [Non-Null]
+     * @param path The file to open, which must be writable so that it can be mapped privately. [Non-Null]
+     * @return A new non-null table holding the rows of the file.
+     * @throws AssertionException If any of the parameter conditions are not met, or the columns of the file do not match the enumeration.
+     * @throws IOException If the file cannot be read, or is not a table file.
+     */
+    public static <COLUMNS extends Enum<COLUMNS> & IHeaderColumn> Table<COLUMNS> open(final Class<COLUMNS> columnsType, final Path path)
+        throws AssertionException, IOException
+    {
+        Verifier.assertNotNull("Must specify a defined column enumeration.", columnsType);
+        Verifier.assertNotNull("Must specify a file to open.", path);
+
+        final ColumnarFile file = ColumnarFile.open(path, dataTypesOf(columnsType));
+        final DataInputStream metadata = new DataInputStream(new ByteArrayInputStream(file.getMetadata()));
+        for (final COLUMNS column : columnsType.getEnumConstants())
+        {
+            Verifier.Equality.assertEqual("The columns of the file must have the names of the enumeration.", metadata.readUTF(), column.getName());
+            Verifier.Equality.assertEqual("The columns of the file must have the nullability of the enumeration.",
+                                          metadata.readBoolean(),
+                                          column.isNullable());
+        }
+        final Table<COLUMNS> table = new Table<>(columnsType, file.getStorage(), ReferenceSequencer.readFrom(metadata));
+        for (int index = 0; index < table.statistics.length; index++)
+        {
+            table.statistics[index] = ColumnStatistics.readFrom(metadata);
+        }
+        table.snapshotSequenceNumber = metadata.readLong();
+
+        return table;
     }
 
-    public class Header
+    /**
+     * Writes the rows of the table to a binary columnar file, together with its schema, column statistics and available reference identifiers, so
+     * that {@link #open(Class, Path)} can map it back into memory. Rows whose time to live passed are expired first, and deleted rows are left out.
+     * The file also records the last sequence number of the journal of the table, so that it serves as the snapshot from which the journal is
+     * replayed.
+     *
+     * @param path The file to write, which is replaced once it is complete. [Non-Null]
+     * @throws AssertionException If any of the parameter conditions are not met.
+     * @throws IOException If the file cannot be written, or a value cannot be encoded.
+     */
+    public synchronized void writeTo(final Path path) throws AssertionException, IOException
     {
-        protected final Map<COLUMNS, Integer> columnIndexByColumn;
+        Verifier.assertNotNull("Must specify a file to write to.", path);
 
-        protected Header()
+        expireRows();
+        ColumnarFile.write(storage, encodeMetadata(), path);
+    }
+
+    /**
+     * Writes an incremental checkpoint of the table into a directory, and truncates the journal of the table up to it. Only the blocks whose rows
+     * changed since the previous checkpoint of the directory are written; the checkpoint points at the earlier checkpoints holding the others, and
+     * the checkpoints no longer pointed at are deleted. Rows whose time to live passed are expired first. {@link #openCheckpoint(Class, Path)}
+     * restores the table from the latest checkpoint, and {@link #enableJournal(Path, SyncPolicy, long, TimeUnit)} then replays the records that
+     * followed it.
+     *
+     * @param directory The directory of the checkpoints of the table, which is created if it does not exist. [Non-Null]
+     * @return The number of blocks written, excluding the unchanged blocks kept by earlier checkpoints.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     * @throws IOException If the checkpoint cannot be written, a value cannot be encoded, or the journal cannot be truncated.
+     */
+    public synchronized int checkpoint(final Path directory) throws AssertionException, IOException
+    {
+        Verifier.assertNotNull("Must specify the directory of the checkpoints.", directory);
+
+        expireRows();
+        final long sequenceNumber = journal == null ? snapshotSequenceNumber : journal.getLastSequenceNumber();
+        final int writtenCount = ColumnarFile.writeCheckpoint(storage, encodeMetadata(), directory);
+        snapshotSequenceNumber = sequenceNumber;
+        if (journal != null)
         {
-            final COLUMNS[] columns = columnsType.getEnumConstants();
-            columnIndexByColumn = new HashMap<>(columns.length);
-            int index = 0;
-            for (final COLUMNS column : columns)
+            // The checkpoint is durable once written, so the records it holds are no longer needed to recover the table.
+            journal.truncate(sequenceNumber);
+        }
+
+        return writtenCount;
+    }
+
+    /**
+     * Opens a table from the latest checkpoint written by {@link #checkpoint(Path)} into a directory, as {@link #open(Class, Path)} opens a file.
+     *
+     * @param columnsType The column enumeration the table was written with. [Non-Null]
+     * @param directory The directory of the checkpoints of the table, which must hold at least one checkpoint. [Non-Null]
+     * @return A new non-null table holding the rows of the latest checkpoint.
+     * @throws AssertionException If any of the parameter conditions are not met, or the columns of the checkpoint do not match the enumeration.
+     * @throws IOException If a checkpoint cannot be read.
+     */
+    public static <COLUMNS extends Enum<COLUMNS> & IHeaderColumn> Table<COLUMNS> openCheckpoint(final Class<COLUMNS> columnsType,
+                                                                                                final Path directory)
+        throws AssertionException, IOException
+    {
+        Verifier.assertNotNull("Must specify the directory of the checkpoints.", directory);
+        final Path latest = ColumnarFile.latestCheckpoint(directory);
+        Verifier.assertNotNull("The directory must hold a checkpoint.", latest);
+
+        return open(columnsType, latest);
+    }
+
+    private byte[] encodeMetadata() throws IOException
+    {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream metadata = new DataOutputStream(bytes);
+        for (final COLUMNS column : header.columns)
+        {
+            metadata.writeUTF(column.getName());
+            metadata.writeBoolean(column.isNullable());
+        }
+        referenceSequencer.writeTo(metadata);
+        for (final ColumnStatistics columnStatistics : statistics)
+        {
+            columnStatistics.writeTo(metadata);
+        }
+        // The journal records up to this sequence number are part of the file, and skipped when the opened table replays its journal.
+        metadata.writeLong(journal == null ? snapshotSequenceNumber : journal.getLastSequenceNumber());
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Exports the rows of the table as an Arrow IPC stream, with one record batch per storage block, so that they can be consumed without parsing
+     * text. Rows whose time to live passed are expired first, and deleted rows are left out.
+     *
+     * @param output The output of the stream, which is flushed but not closed. [Non-Null]
+     * @return The number of rows exported.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     * @throws IOException If the stream cannot be written, or a value of a data type without an Arrow type cannot be encoded.
+     * @see ArrowType#of(Class)
+     */
+    public synchronized long exportArrow(final OutputStream output) throws AssertionException, IOException
+    {
+        Verifier.assertNotNull("Must specify the output of the stream.", output);
+
+        expireRows();
+        final String[] names = new String[header.getHeaderSize()];
+        final boolean[] nullable = new boolean[header.getHeaderSize()];
+        for (final COLUMNS column : header.columns)
+        {
+            names[column.ordinal()] = column.getName();
+            nullable[column.ordinal()] = column.isNullable();
+        }
+        final ArrowStreamWriter writer = new ArrowStreamWriter(output, names, dataTypesOf(columnsType), nullable);
+        long rowCount = 0L;
+        for (int blockIndex = 0; blockIndex < storage.getBlockCount(); blockIndex++)
+        {
+            rowCount += writer.writeBatch(storage.getBlock(blockIndex));
+        }
+        writer.finish();
+
+        return rowCount;
+    }
+
+    /**
+     * Imports the rows of an Arrow IPC stream, such as one written by {@link #exportArrow(OutputStream)}. Every record batch is inserted as
+     * {@link #insertRows(Iterable)} inserts a batch, so either all rows of a batch or none of them are inserted.
+     *
+     * @param input The input of the stream, which is not closed. [Non-Null]
+     * @return The non-null reference identifiers of the inserted rows, in the order of the stream.
+     * @throws AssertionException If any of the parameter conditions are not met, the columns of the stream do not have the names of the columns of
+     *             the table, or a row is not valid.
+     * @throws IOException If the stream cannot be read, or its columns do not have the Arrow types of the columns of the table.
+     */
+    public long[] importArrow(final InputStream input) throws AssertionException, IOException
+    {
+        Verifier.assertNotNull("Must specify the input of the stream.", input);
+
+        final ArrowStreamReader reader = new ArrowStreamReader(input, dataTypesOf(columnsType));
+        final String[] names = reader.getNames();
+        for (final COLUMNS column : header.columns)
+        {
+            Verifier.Equality.assertEqual("The columns of the stream must have the names of the table.", names[column.ordinal()], column.getName());
+        }
+        final List<Object[]> rows = new ArrayList<>();
+        long[] referenceIdentifiers = new long[0];
+        while (reader.readBatch(rows))
+        {
+            final long[] inserted = insertRows(rows);
+            referenceIdentifiers = Arrays.copyOf(referenceIdentifiers, referenceIdentifiers.length + inserted.length);
+            System.arraycopy(inserted, 0, referenceIdentifiers, referenceIdentifiers.length - inserted.length, inserted.length);
+            rows.clear();
+        }
+
+        return referenceIdentifiers;
+    }
+
+    /**
+     * Writes the rows inserted, updated and deleted since an earlier version of the table as a delta stream, so that a replica holding the earlier
+     * version can catch up by {@link #applyDelta(InputStream) applying} it instead of receiving every row. Unchanged blocks are recognized by their
+     * hash and skipped, so the stream holds only the changed rows. Rows whose time to live passed are expired first.
+     *
+     * @param before The earlier version, such as a table {@link #open(Class, Path) opened} from the file the replicas were last refreshed from,
+     *            which must not be modified while the delta is written. [Non-Null]
+     * @param output The output of the stream, which is flushed but not closed. [Non-Null]
+     * @return The non-null difference written.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     * @throws IOException If the stream cannot be written, or a value of another data type cannot be encoded.
+     * @see TableDiff
+     */
+    public TableDiff writeDelta(final Table<COLUMNS> before, final OutputStream output) throws AssertionException, IOException
+    {
+        Verifier.assertNotNull("Must specify the earlier version of the table.", before);
+        Verifier.assertNotNull("Must specify the output of the stream.", output);
+
+        // Locked in the same order as joins, so that deltas written in opposite directions cannot deadlock.
+        final boolean thisFirst = lockOrder <= before.lockOrder;
+        synchronized (thisFirst ? this : before)
+        {
+            synchronized (thisFirst ? before : this)
             {
-                columnIndexByColumn.put(column, index);
-                index++;
+                expireRows();
+                final TableDiff diff = TableDiff.compute(before.storage, storage);
+                diff.write(storage, output);
+
+                return diff;
             }
         }
+    }
 
-        public int getHeaderSize()
+    /**
+     * Applies a delta stream written by {@link #writeDelta(Table, OutputStream)}, so that the table holds the same rows under the same reference
+     * identifiers as the later version. Every change is verified before any is applied, so either the whole delta or none of it is applied. The
+     * changes are journaled, indexed and counted by the statistics like any other insert, update and delete.
+     *
+     * @param input The input of the stream, which is not closed. [Non-Null]
+     * @return The non-null difference applied, including the values of the inserted and updated rows.
+     * @throws AssertionException If any of the parameter conditions are not met, a row is not valid, or the table is not the earlier version the
+     *             delta was written against.
+     * @throws IOException If the stream cannot be read, or is not a delta stream of the columns of the table.
+     */
+    public TableDiff applyDelta(final InputStream input) throws AssertionException, IOException
+    {
+        Verifier.assertNotNull("Must specify the input of the stream.", input);
+
+        final TableDiff diff = TableDiff.read(input, dataTypesOf(columnsType));
+        final long[] inserted = diff.getInserted();
+        final long[] updated = diff.getUpdated();
+        final long[] deleted = diff.getDeleted();
+        synchronized (this)
         {
-            return columnIndexByColumn.size();
+            // Room for the rows the delta adds is made before anything is verified, since blocking on the memory budget releases the monitor.
+            if (inserted.length > deleted.length)
+            {
+                reserveMemory(inserted.length - deleted.length);
+            }
+            for (final Object[] row : diff.getInsertedRows())
+            {
+                validateRow(row);
+            }
+            for (final Object[] row : diff.getUpdatedRows())
+            {
+                validateRow(row);
+            }
+            for (final long referenceIdentifier : updated)
+            {
+                locate(referenceIdentifier);
+            }
+            for (final long referenceIdentifier : deleted)
+            {
+                locate(referenceIdentifier);
+            }
+            for (final long referenceIdentifier : inserted)
+            {
+                Verifier.Equality.assertEqual("The inserted rows must not be stored yet.", storage.contains(referenceIdentifier), false);
+            }
+
+            if (deleted.length > 0)
+            {
+                deleteRows(deleted);
+            }
+            for (int index = 0; index < inserted.length; index++)
+            {
+                final Object[] values = diff.getInsertedRows()[index];
+                referenceSequencer.claimReferenceIdentifier(inserted[index]);
+                if (journal != null)
+                {
+                    journal.logInsert(inserted[index], values);
+                }
+                storeRow(inserted[index], values);
+                scheduleExpiry(inserted[index], defaultTimeToLiveNanos);
+                admit(inserted[index]);
+            }
+            for (int index = 0; index < updated.length; index++)
+            {
+                final Object[] values = diff.getUpdatedRows()[index];
+                if (journal != null)
+                {
+                    journal.logUpdate(updated[index], values);
+                }
+                for (final COLUMNS column : header.columns)
+                {
+                    writeValue(updated[index], column, values[column.ordinal()]);
+                }
+            }
+            evictOverflow();
         }
+        awaitCommit();
 
-        public int getColumnIndex(final COLUMNS column) throws AssertionException
+        return diff;
+    }
+
+    /**
+     * Records every insert, update and delete of the table in a write-ahead journal, after replaying the records the journal already holds. A table
+     * {@link #open(Class, Path) opened} from a file replays only the records written after the file, so the file and the journal together restore
+     * the table as of its last journaled mutation. Inserts replay under the reference identifiers they were allocated. Time-to-live deadlines are
+     * not journaled, but the rows they expired and the rows evicted by a maximum size are.
+     * <p>
+     * Mutations are encoded while the table is locked, and written by the journal's writer thread. Under the {@link SyncPolicy#ALWAYS} policy the
+     * mutating methods return only once their records are forced to disk, which they wait for after releasing the table, so that concurrent
+     * writers share a single sync.
+     *
+     * @param path The file of the journal, which is created if it does not exist. [Non-Null]
+     * @param policy The moment at which records are forced to disk. [Non-Null]
+     * @param syncInterval The minimum time between two syncs under the {@link SyncPolicy#PERIODIC} policy. [Positive]
+     * @param unit The unit of the sync interval. [Non-Null]
+     * @throws AssertionException If any of the parameter conditions are not met, the table already has a journal, or a record cannot be replayed.
+     * @throws IOException If the journal cannot be read or written.
+     */
+    public synchronized void enableJournal(final Path path, final SyncPolicy policy, final long syncInterval, final TimeUnit unit)
+        throws AssertionException, IOException
+    {
+        Verifier.assertNotNull("Must specify the file of the journal.", path);
+        Verifier.assertNotNull("Must specify the sync policy of the journal.", policy);
+        Verifier.Inequality.assertGreaterThan("The sync interval must be positive.", syncInterval, 0L);
+        Verifier.assertNotNull("Must specify the unit of the sync interval.", unit);
+        Verifier.Equality.assertEqual("The table already has a journal.", journal == null, true);
+
+        journal = Journal.open(path, policy, unit.toNanos(syncInterval), snapshotSequenceNumber, this::replay);
+    }
+
+    /**
+     * @return The write-ahead journal of the table, which may be {@link Journal#flush() flushed} explicitly. [Nullable]
+     */
+    public Journal getJournal()
+    {
+        return journal;
+    }
+
+    /**
+     * Allocates the reference identifiers of inserted rows from ranges leased from a lease file shared with other processes appending to the same
+     * table store, so that the processes never allocate the same identifier without coordinating on every insert. The leased ranges start past
+     * every identifier allocated so far, and only the deleted identifiers of the current range are reused. The unused part of the current range is
+     * returned to the lease file when the table is {@link #close() closed}; a process that fails beforehand only leaves a gap of identifiers.
+     *
+     * @param path The lease file, which is created if it does not exist. [Non-Null]
+     * @param leaseSize The number of identifiers leased at a time. [Positive]
+     * @throws AssertionException If any of the parameter conditions are not met, or leasing is already enabled.
+     * @throws IOException If the lease file cannot be opened.
+     */
+    public synchronized void enableReferenceLeasing(final Path path, final int leaseSize) throws AssertionException, IOException
+    {
+        referenceSequencer.enableLeasing(path, leaseSize);
+    }
+
+    private void replay(final JournalRecord record) throws AssertionException
+    {
+        switch (record.getType())
         {
-            Verifier.assertNotNull("Must specify a valid column in order assign/retrieve a value to/from it.", column);
+            case INSERT:
+                validateRow(record.getValues());
+                referenceSequencer.claimReferenceIdentifier(record.getReferenceIdentifier());
+                storeRow(record.getReferenceIdentifier(), record.getValues());
+                break;
+            case UPDATE_ROW:
+                validateRow(record.getValues());
+                for (final COLUMNS column : header.columns)
+                {
+                    writeValue(record.getReferenceIdentifier(), column, record.getValues()[column.ordinal()]);
+                }
+                break;
+            case UPDATE_VALUE:
+                writeValue(record.getReferenceIdentifier(), header.columns[record.getColumn()], record.getValues()[0]);
+                break;
+            default:
+                deleteRows(record.getReferenceIdentifiers());
+                break;
+        }
+    }
 
-            return columnIndexByColumn.get(column);
+    private void awaitCommit()
+    {
+        final Journal current = journal;
+        if (current != null)
+        {
+            current.awaitCommit();
         }
     }
 
-    public class Row
+    /**
+     * @return The allocator of the columns held outside the Java heap, which reports the memory in use. [Nullable]
+     */
+    public SlabAllocator getOffHeapAllocator()
     {
-        protected final Object[] columnValues;
+        return storage.getAllocator();
+    }
 
-        protected Row(final Object[] columnValues) throws AssertionException
+    /**
+     * Estimates the memory held by the table. The estimate visits every storage block and index once, but none of the rows, so it is cheap enough
+     * to be polled periodically.
+     *
+     * @return A new non-null estimate of the memory held by the table.
+     */
+    public synchronized MemoryStats<COLUMNS> memoryStats()
+    {
+        final long[] valueBytes = new long[header.getHeaderSize()];
+        final long[] nullBitmapBytes = new long[header.getHeaderSize()];
+        final long[] offHeapBytes = new long[header.getHeaderSize()];
+        long blockOverheadBytes = 0L;
+        for (int blockIndex = 0; blockIndex < storage.getBlockCount(); blockIndex++)
         {
-            final COLUMNS[] columns = columnsType.getEnumConstants();
-            int index = 0;
-            for (final Object columnValue : columnValues)
+            final StorageBlock block = storage.getBlock(blockIndex);
+            blockOverheadBytes += block.estimateOverheadBytes();
+            for (int columnIndex = 0; columnIndex < valueBytes.length; columnIndex++)
             {
-                validateColumnAssignment(columns[index], columnValue);
-                index++;
+                final ColumnVector vector = block.getColumn(columnIndex);
+                valueBytes[columnIndex] += vector.estimateValueBytes();
+                nullBitmapBytes[columnIndex] += vector.estimateNullBytes();
+                if (vector.isOffHeap())
+                {
+                    offHeapBytes[columnIndex] += vector.estimateValueBytes() + vector.estimateNullBytes();
+                }
             }
+        }
 
-            this.columnValues = columnValues;
+        final Map<COLUMNS, MemoryStats.ColumnMemory> columns = new EnumMap<>(columnsType);
+        long bloomFilterBytes = 0L;
+        for (final COLUMNS column : header.columns)
+        {
+            final int columnIndex = column.ordinal();
+            columns.put(column,
+                        new MemoryStats.ColumnMemory(valueBytes[columnIndex],
+                                                     nullBitmapBytes[columnIndex],
+                                                     storage.estimateDictionaryBytes(columnIndex),
+                                                     offHeapBytes[columnIndex]));
+            if (bloomFilters[columnIndex] != null)
+            {
+                bloomFilterBytes += bloomFilters[columnIndex].estimateBytes();
+            }
+        }
+        long indexBytes = 0L;
+        for (final Map<IndexType, ColumnIndex> columnIndexes : indexes.values())
+        {
+            for (final ColumnIndex index : columnIndexes.values())
+            {
+                indexBytes += index.estimateBytes();
+            }
         }
 
-        protected Row()
+        return new MemoryStats<>(storage.size(),
+                                 columns,
+                                 storage.estimateLocationBytes(),
+                                 blockOverheadBytes,
+                                 indexBytes,
+                                 bloomFilterBytes,
+                                 referenceSequencer.estimateBytes(),
+                                 storage.getAllocator() == null ? 0L : storage.getAllocator().getAllocatedBytes(),
+                                 storage.getSpillManager() == null ? 0L : storage.getSpillManager().getSpilledBytes());
+    }
+
+    /**
+     * Removes every row and index, and releases the memory held outside the Java heap. Rows retrieved beforehand must not be used afterwards.
+     * The storage is released even if the journal or the lease of the reference identifiers cannot be closed.
+     *
+     * @throws UncheckedIOException If the journal cannot be closed, or the unused reference identifiers cannot be returned to the lease file.
+     */
+    @Override
+    public synchronized void close()
+    {
+        try
+        {
+            try
+            {
+                if (journal != null)
+                {
+                    journal.close();
+                }
+            }
+            finally
+            {
+                journal = null;
+                referenceSequencer.close();
+            }
+        }
+        finally
         {
-            this.columnValues = new Object[header.getHeaderSize()];
+            storage.close();
+            indexes.clear();
+            if (expiryWheel != null)
+            {
+                expiryWheel.clear();
+                expiryDeadlines.clear();
+            }
+            Arrays.fill(bloomFilters, null);
+            notifyAll();
         }
+    }
 
-        @SuppressWarnings("unchecked")
-        public <T> T getColumnValue(final COLUMNS column) throws AssertionException
+    /**
+     * Limits the estimated memory held by the table, as reported by {@link #memoryStats()}. The budget is enforced whenever an insert needs a new
+     * storage block, and before every batch of {@link #insertRows(Iterable)}, so the table may exceed it by at most a block of rows. Blocked inserts
+     * wait without a time limit.
+     *
+     * @param budgetBytes The maximum number of bytes held by the table. [Positive]
+     * @param policy The reaction to an insert that would exceed the budget. [Non-Null]
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public void setMemoryBudget(final long budgetBytes, final OverflowPolicy policy) throws AssertionException
+    {
+        setMemoryBudget(budgetBytes, policy, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param budgetBytes The maximum number of bytes held by the table. [Positive]
+     * @param policy The reaction to an insert that would exceed the budget. [Non-Null]
+     * @param maximumBlockingMillis The maximum time an insert waits for room under the {@link OverflowPolicy#BLOCK} policy. [Positive]
+     * @throws AssertionException If any of the parameter conditions are not met.
+     * @see #setMemoryBudget(long, OverflowPolicy)
+     */
+    public synchronized void setMemoryBudget(final long budgetBytes, final OverflowPolicy policy, final long maximumBlockingMillis)
+        throws AssertionException
+    {
+        Verifier.Inequality.assertGreaterThan("The memory budget must be positive.", budgetBytes, 0L);
+        Verifier.assertNotNull("Must specify the overflow policy.", policy);
+        Verifier.Inequality.assertGreaterThan("The maximum blocking time must be positive.", maximumBlockingMillis, 0L);
+
+        if (policy == OverflowPolicy.SPILL && storage.getSpillManager() == null)
         {
-            final int columnIndex = header.getColumnIndex(column);
+            try
+            {
+                storage.enableSpilling(Files.createTempDirectory("ikea-mart-spill"), true);
+            }
+            catch (final IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        }
+        this.memoryBudget = budgetBytes;
+        this.overflowPolicy = policy;
+        this.maximumBlockingMillis = maximumBlockingMillis;
+        notifyAll();
+    }
+
+    /**
+     * @param directory The directory of the files of spilled blocks under the {@link OverflowPolicy#SPILL} policy, instead of a new temporary
+     *            directory. [Non-Null]
+     * @throws AssertionException If any of the parameter conditions are not met.
+     * @throws IOException If the directory cannot be created.
+     */
+    public synchronized void setSpillDirectory(final Path directory) throws AssertionException, IOException
+    {
+        Verifier.assertNotNull("Must specify the spill directory.", directory);
 
-            return (T) columnValues[columnIndex];
+        storage.enableSpilling(directory);
+    }
+
+    /**
+     * @param columns The values of every column of the new row. [Non-Null]
+     * @return The reference identifier of the new row.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     * @throws MemoryBudgetExceededException If the row does not fit into the memory budget of the table.
+     */
+    public long insertRow(final Object[] columns) throws AssertionException
+    {
+        final long referenceIdentifier;
+        synchronized (this)
+        {
+            referenceIdentifier = insertRow(columns, defaultTimeToLiveNanos);
         }
+        awaitCommit();
 
-        public void setColumnValue(final COLUMNS column, final Object value) throws AssertionException
+        return referenceIdentifier;
+    }
+
+    /**
+     * @param columns The values of every column of the new row. [Non-Null]
+     * @param timeToLive The time after which the row expires, instead of the default time to live of the table. [Positive]
+     * @param unit The unit of the time to live. [Non-Null]
+     * @return The reference identifier of the new row.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     * @throws MemoryBudgetExceededException If the row does not fit into the memory budget of the table.
+     * @see #expireRows()
+     */
+    public long insertRow(final Object[] columns, final long timeToLive, final TimeUnit unit) throws AssertionException
+    {
+        Verifier.Inequality.assertGreaterThan("The time to live must be positive.", timeToLive, 0L);
+        Verifier.assertNotNull("Must specify the unit of the time to live.", unit);
+
+        final long referenceIdentifier;
+        synchronized (this)
         {
+            referenceIdentifier = insertRow(columns, unit.toNanos(timeToLive));
+        }
+        awaitCommit();
 
-            final int columnIndex = header.getColumnIndex(column);
-            validateColumnAssignment(column, value);
-            columnValues[columnIndex] = value;
+        return referenceIdentifier;
+    }
+
+    private long insertRow(final Object[] columns, final long timeToLiveNanos) throws AssertionException
+    {
+        validateRow(columns);
+        expireRows();
+        if (!storage.hasFreeSlot())
+        {
+            reserveMemory(storage.getBlockCapacity());
+        }
+
+        final long referenceIdentifier = insertValidatedRow(columns);
+        scheduleExpiry(referenceIdentifier, timeToLiveNanos);
+        admit(referenceIdentifier);
+        evictOverflow();
+
+        return referenceIdentifier;
+    }
+
+    /**
+     * Inserts a batch of rows, after verifying every one of them, so that either all rows or none are inserted.
+     *
+     * @param rows The values of every column of every row. [Non-Null]
+     * @return The non-null reference identifiers of the inserted rows, in the order of the batch.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     * @throws MemoryBudgetExceededException If the rows do not fit into the memory budget of the table.
+     */
+    public long[] insertRows(final Iterable<Object[]> rows) throws AssertionException
+    {
+        final long[] referenceIdentifiers;
+        synchronized (this)
+        {
+            referenceIdentifiers = insertBatch(rows);
+        }
+        awaitCommit();
+
+        return referenceIdentifiers;
+    }
+
+    private long[] insertBatch(final Iterable<Object[]> rows) throws AssertionException
+    {
+        Verifier.assertNotNull("Must specify the rows to insert.", rows);
+
+        final List<Object[]> batch = new ArrayList<>();
+        for (final Object[] columns : rows)
+        {
+            Verifier.assertNotNull("Must specify the values of every row.", columns);
+            validateRow(columns);
+            batch.add(columns);
         }
 
-        private void validateColumnAssignment(final COLUMNS column, final Object columnValue) throws AssertionException
+        expireRows();
+        reserveMemory(batch.size());
+
+        final long[] referenceIdentifiers = new long[batch.size()];
+        for (int index = 0; index < referenceIdentifiers.length; index++)
         {
-            if (columnValue != null)
+            referenceIdentifiers[index] = insertValidatedRow(batch.get(index));
+            scheduleExpiry(referenceIdentifiers[index], defaultTimeToLiveNanos);
+            admit(referenceIdentifiers[index]);
+        }
+        evictOverflow();
+
+        return referenceIdentifiers;
+    }
+
+    /**
+     * Replaces every value of a row, after verifying all of them, so that either every value or none is replaced.
+     *
+     * @param referenceIdentifier The reference identifier of the row.
+     * @param columns The new values of every column of the row. [Non-Null]
+     * @throws AssertionException If any of the parameter conditions are not met, or the reference identifier does not identify a row of the table.
+     */
+    public void updateRow(final long referenceIdentifier, final Object[] columns) throws AssertionException
+    {
+        synchronized (this)
+        {
+            Verifier.assertNotNull("Must specify the values of the row.", columns);
+            validateRow(columns);
+            locate(referenceIdentifier);
+
+            if (journal != null)
             {
-                Verifier.Equality.assertEqual(MessageFormat.format("The non-null value's data type <{0}> must match the column's <{1}> data type <{2}>.",
-                                                                   columnValue.getClass(),
-                                                                   column,
-                                                                   column.getDataType()),
-                                              column.getDataType().isInstance(columnValue),
-                                              true);
+                journal.logUpdate(referenceIdentifier, columns);
             }
-            else
+            for (final COLUMNS column : header.columns)
             {
-                Verifier.Equality.assertEqual(MessageFormat.format("The column <{0}> must be nullable in order to assign a null value.", column),
-                                              column.isNullable(),
-                                              true);
+                writeValue(referenceIdentifier, column, columns[column.ordinal()]);
+            }
+        }
+        awaitCommit();
+    }
+
+    /**
+     * Deletes a row, and returns its reference identifier to the sequencer so that a later insert may reuse it. Rows retrieved beforehand must not
+     * be used afterwards.
+     *
+     * @param referenceIdentifier The reference identifier of the row.
+     * @return Indicator if the row was stored, and is now deleted.
+     * @throws AssertionException If the reference identifier cannot be returned to the sequencer.
+     */
+    public boolean deleteRow(final long referenceIdentifier) throws AssertionException
+    {
+        synchronized (this)
+        {
+            final long location = storage.locate(referenceIdentifier);
+            if (location == LocationMap.MISSING)
+            {
+                return false;
+            }
+
+            if (journal != null)
+            {
+                journal.logDelete(new long[] {referenceIdentifier});
+            }
+            forgetRow(location, referenceIdentifier);
+            storage.delete(referenceIdentifier);
+            referenceSequencer.restoreReferenceIdentifier(referenceIdentifier);
+            // Inserts blocked on the memory budget may now fit.
+            notifyAll();
+        }
+        awaitCommit();
+
+        return true;
+    }
+
+    /**
+     * Deletes every row satisfying a condition, as a single batch that marks the rows as deleted block by block, and returns their reference
+     * identifiers to the sequencer.
+     *
+     * @param condition The condition the rows to delete must satisfy. [Non-Null]
+     * @return The number of rows deleted.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public int deleteWhere(final Condition<COLUMNS> condition) throws AssertionException
+    {
+        final int deletedCount;
+        synchronized (this)
+        {
+            final long[] referenceIdentifiers = select(condition);
+            deletedCount = referenceIdentifiers.length == 0 ? 0 : deleteRows(referenceIdentifiers);
+        }
+        awaitCommit();
+
+        return deletedCount;
+    }
+
+    /**
+     * Applies a time to live to every row inserted afterwards, unless the insert specifies a time to live of its own.
+     *
+     * @param timeToLive The time after which the rows expire, or 0 for rows that never expire. [Non-Negative]
+     * @param unit The unit of the time to live. [Non-Null]
+     * @throws AssertionException If any of the parameter conditions are not met.
+     * @see #expireRows()
+     */
+    public synchronized void setDefaultTimeToLive(final long timeToLive, final TimeUnit unit) throws AssertionException
+    {
+        Verifier.Inequality.assertGreaterThan("The time to live must not be negative.", timeToLive, -1L);
+        Verifier.assertNotNull("Must specify the unit of the time to live.", unit);
+
+        defaultTimeToLiveNanos = unit.toNanos(timeToLive);
+    }
+
+    /**
+     * Replaces the time to live of a row, counted from now.
+     *
+     * @param referenceIdentifier The reference identifier of the row.
+     * @param timeToLive The time after which the row expires, or 0 for a row that never expires. [Non-Negative]
+     * @param unit The unit of the time to live. [Non-Null]
+     * @throws AssertionException If any of the parameter conditions are not met, or the reference identifier does not identify a row of the table.
+     */
+    public synchronized void setTimeToLive(final long referenceIdentifier, final long timeToLive, final TimeUnit unit) throws AssertionException
+    {
+        Verifier.Inequality.assertGreaterThan("The time to live must not be negative.", timeToLive, -1L);
+        Verifier.assertNotNull("Must specify the unit of the time to live.", unit);
+        locate(referenceIdentifier);
+
+        scheduleExpiry(referenceIdentifier, unit.toNanos(timeToLive));
+    }
+
+    /**
+     * @param ticker The source of the time against which rows expire. Must be specified before any row is given a time to live. [Non-Null]
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public synchronized void setTicker(final Ticker ticker) throws AssertionException
+    {
+        Verifier.assertNotNull("Must specify the ticker.", ticker);
+        Verifier.Equality.assertEqual("The ticker must be specified before any row is given a time to live.", expiryWheel == null, true);
+
+        this.ticker = ticker;
+    }
+
+    /**
+     * Deletes every row whose time to live elapsed, and returns their reference identifiers to the sequencer. Expired rows are tracked by a hashed
+     * timing wheel, so only the rows that are due are visited, rather than every row of the table. Inserts expire the due rows first, while reads
+     * see expired rows until the next insert or call to this method.
+     *
+     * @return The number of rows deleted.
+     * @throws AssertionException If the reference identifiers cannot be returned to the sequencer.
+     */
+    public synchronized int expireRows() throws AssertionException
+    {
+        if (expiryWheel == null)
+        {
+            return 0;
+        }
+
+        final long now = ticker.read() - expiryOrigin;
+        final long[] due = expiryWheel.advance(now);
+        int expiredCount = 0;
+        for (final long referenceIdentifier : due)
+        {
+            // Rows given another time to live, or deleted and reused since, no longer match the deadline that fired.
+            final long deadline = expiryDeadlines.get(referenceIdentifier);
+            if (deadline != LocationMap.MISSING && deadline <= now)
+            {
+                expiryDeadlines.remove(referenceIdentifier);
+                if (storage.contains(referenceIdentifier))
+                {
+                    due[expiredCount++] = referenceIdentifier;
+                }
+            }
+        }
+
+        return expiredCount == 0 ? 0 : deleteRows(Arrays.copyOf(due, expiredCount));
+    }
+
+    private void scheduleExpiry(final long referenceIdentifier, final long timeToLiveNanos)
+    {
+        if (timeToLiveNanos > 0L)
+        {
+            if (expiryWheel == null)
+            {
+                expiryWheel = new TimingWheel(EXPIRY_BUCKET_COUNT, EXPIRY_TICK_NANOS);
+                expiryDeadlines = new LocationMap(storage.getBlockCapacity());
+                expiryOrigin = ticker.read();
+            }
+            final long deadline = ticker.read() - expiryOrigin + timeToLiveNanos;
+            expiryDeadlines.put(referenceIdentifier, deadline);
+            expiryWheel.schedule(referenceIdentifier, deadline);
+        }
+        else if (expiryDeadlines != null)
+        {
+            expiryDeadlines.remove(referenceIdentifier);
+        }
+    }
+
+    /**
+     * Deletes a batch of stored rows, and returns their reference identifiers to the sequencer.
+     */
+    private int deleteRows(final long[] referenceIdentifiers) throws AssertionException
+    {
+        if (journal != null)
+        {
+            journal.logDelete(referenceIdentifiers);
+        }
+        final long[] rowLocations = new long[referenceIdentifiers.length];
+        for (int index = 0; index < referenceIdentifiers.length; index++)
+        {
+            rowLocations[index] = storage.locate(referenceIdentifiers[index]);
+            forgetRow(rowLocations[index], referenceIdentifiers[index]);
+        }
+        final int deletedCount = storage.deleteAll(rowLocations);
+        for (final long referenceIdentifier : referenceIdentifiers)
+        {
+            referenceSequencer.restoreReferenceIdentifier(referenceIdentifier);
+        }
+        notifyAll();
+
+        return deletedCount;
+    }
+
+    /**
+     * Bounds the number of rows of the table, so that it may be used as a cache. Once an insert exceeds the maximum size, the policy selects the
+     * rows to evict, which are deleted and whose reference identifiers are returned to the sequencer. Reads through {@link #getRow(long)} are
+     * recorded by the policy while the table is locked, like every other read. Rows already in the table are handed to the policy in storage
+     * order.
+     *
+     * @param maximumSize The maximum number of rows of the table. [Positive]
+     * @param policy The policy selecting the rows to evict, such as a {@link eli.ikea.mart.cache.LruEvictionPolicy} or a
+     *            {@link eli.ikea.mart.cache.TinyLfuEvictionPolicy}. [Non-Null]
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public synchronized void setMaximumSize(final int maximumSize, final EvictionPolicy policy) throws AssertionException
+    {
+        Verifier.Inequality.assertGreaterThan("The maximum size of the table must be positive.", maximumSize, 0);
+        Verifier.assertNotNull("Must specify the eviction policy.", policy);
+
+        this.maximumSize = maximumSize;
+        this.evictionPolicy = policy;
+        final TableStorage.Cursor cursor = storage.cursor();
+        while (cursor.next())
+        {
+            policy.recordInsert(cursor.getReferenceIdentifier());
+        }
+        evictOverflow();
+    }
+
+    /**
+     * @return A new non-null snapshot of the hits and misses of {@link #getRow(long)}, and of the rows evicted, since the table was bounded by
+     *         {@link #setMaximumSize(int, EvictionPolicy)}. Load counts are always 0.
+     */
+    public synchronized CacheStats cacheStats()
+    {
+        return new CacheStats(hitCount, missCount, 0L, 0L, 0L, evictionCount);
+    }
+
+    private void admit(final long referenceIdentifier)
+    {
+        if (evictionPolicy != null)
+        {
+            evictionPolicy.recordInsert(referenceIdentifier);
+        }
+    }
+
+    private void evictOverflow() throws AssertionException
+    {
+        if (evictionPolicy == null || storage.size() <= maximumSize)
+        {
+            return;
+        }
+
+        final long[] victims = new long[storage.size() - maximumSize];
+        for (int index = 0; index < victims.length; index++)
+        {
+            victims[index] = evictionPolicy.selectVictim();
+        }
+        evictionCount += deleteRows(victims);
+    }
+
+    /**
+     * @param fragmentationThreshold The share of deleted rows at which a block is rewritten. [0 &lt; threshold &lt;= 1]
+     * @param timeSlice The time each step may hold the table for, beyond the rewrite of a single block. [Positive]
+     * @param unit The unit of the time slice. [Non-Null]
+     * @return A new non-null compactor of the fragmented blocks of the table, whose steps must be run or scheduled by the caller.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public TableCompactor createCompactor(final double fragmentationThreshold, final long timeSlice, final TimeUnit unit) throws AssertionException
+    {
+        Verifier.Equality.assertEqual("The fragmentation threshold must be greater than 0 and at most 1.",
+                                      fragmentationThreshold > 0.0 && fragmentationThreshold <= 1.0,
+                                      true);
+        Verifier.Inequality.assertGreaterThan("The time slice of the compactor must be positive.", timeSlice, 0L);
+        Verifier.assertNotNull("Must specify the unit of the time slice.", unit);
+
+        return new TableCompactor(this, fragmentationThreshold, unit.toNanos(timeSlice));
+    }
+
+    /**
+     * Canonicalizes the {@link String} values of every column through a single pool shared by the table, as rows are inserted or updated. Columns
+     * with a pool of their own keep it.
+     *
+     * @param maximumSize The maximum number of distinct strings retained by the pool. [Positive]
+     * @return The non-null pool, which reports its hit ratio and the bytes saved.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public synchronized StringPool enableDeduplication(final long maximumSize) throws AssertionException
+    {
+        final StringPool pool = StringPool.create(maximumSize);
+        for (final COLUMNS column : header.columns)
+        {
+            if (String.class.equals(column.getDataType()) && stringPools[column.ordinal()] == null)
+            {
+                stringPools[column.ordinal()] = pool;
+            }
+        }
+
+        return pool;
+    }
+
+    /**
+     * Canonicalizes the values of a {@link String} column through a pool of its own, as rows are inserted or updated.
+     *
+     * @param column The column to deduplicate. [Non-Null]
+     * @param maximumSize The maximum number of distinct strings retained by the pool. [Positive]
+     * @return The non-null pool, which reports its hit ratio and the bytes saved.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public synchronized StringPool enableDeduplication(final COLUMNS column, final long maximumSize) throws AssertionException
+    {
+        final int columnIndex = header.getColumnIndex(column);
+        Verifier.Equality.assertEqual(MessageFormat.format("The column <{0}> must hold strings in order to deduplicate it.", column),
+                                      column.getDataType(),
+                                      String.class);
+
+        stringPools[columnIndex] = StringPool.create(maximumSize);
+
+        return stringPools[columnIndex];
+    }
+
+    /**
+     * @param column The deduplicated column. [Non-Null]
+     * @return The pool of the column. [Nullable]
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public StringPool getStringPool(final COLUMNS column) throws AssertionException
+    {
+        return stringPools[header.getColumnIndex(column)];
+    }
+
+    /**
+     * Makes room for a number of additional rows, estimated at the current average size of a row, according to the overflow policy.
+     */
+    private void reserveMemory(final long rowCount)
+    {
+        if (memoryBudget == Long.MAX_VALUE)
+        {
+            return;
+        }
+
+        final long deadline = maximumBlockingMillis == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + maximumBlockingMillis;
+        while (true)
+        {
+            final MemoryStats<COLUMNS> stats = memoryStats();
+            final long requiredBytes = stats.getTotalBytes() + (long) Math.ceil(rowCount * stats.getBytesPerRow());
+            if (requiredBytes <= memoryBudget)
+            {
+                return;
+            }
+
+            switch (overflowPolicy)
+            {
+                case SPILL:
+                    try
+                    {
+                        if (!storage.spillColdestBlock())
+                        {
+                            throw new MemoryBudgetExceededException(requiredBytes, memoryBudget, overflowPolicy);
+                        }
+                    }
+                    catch (final IOException e)
+                    {
+                        throw new UncheckedIOException(e);
+                    }
+                    break;
+                case BLOCK:
+                    final long remainingMillis = deadline == Long.MAX_VALUE ? 0L : deadline - System.currentTimeMillis();
+                    if (deadline != Long.MAX_VALUE && remainingMillis <= 0L)
+                    {
+                        throw new MemoryBudgetExceededException(requiredBytes, memoryBudget, overflowPolicy);
+                    }
+                    try
+                    {
+                        wait(remainingMillis);
+                    }
+                    catch (final InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                        throw new MemoryBudgetExceededException(requiredBytes, memoryBudget, overflowPolicy);
+                    }
+                    break;
+                default:
+                    throw new MemoryBudgetExceededException(requiredBytes, memoryBudget, overflowPolicy);
+            }
+        }
+    }
+
+    private void validateRow(final Object[] columns) throws AssertionException
+    {
+        Verifier.Equality.assertEqual("Row column count must match header column count.", columns.length, header.getHeaderSize());
+
+        for (final COLUMNS column : header.columns)
+        {
+            validateColumnAssignment(column, columns[column.ordinal()]);
+        }
+    }
+
+    private long insertValidatedRow(final Object[] values)
+    {
+        final long referenceIdentifier = referenceSequencer.getNextReferenceIdentifier();
+        if (journal != null)
+        {
+            journal.logInsert(referenceIdentifier, values);
+        }
+        storeRow(referenceIdentifier, values);
+
+        return referenceIdentifier;
+    }
+
+    private void storeRow(final long referenceIdentifier, final Object[] values)
+    {
+        Object[] columns = values;
+        for (int columnIndex = 0; columnIndex < stringPools.length; columnIndex++)
+        {
+            if (stringPools[columnIndex] != null && columns[columnIndex] != null)
+            {
+                if (columns == values)
+                {
+                    // The caller's array is left untouched.
+                    columns = values.clone();
+                }
+                columns[columnIndex] = stringPools[columnIndex].intern((String) columns[columnIndex]);
+            }
+        }
+
+        storage.insert(referenceIdentifier, columns);
+
+        for (final COLUMNS column : header.columns)
+        {
+            final Object columnValue = columns[column.ordinal()];
+            statistics[column.ordinal()].recordInsert(columnValue);
+            recordBloomFilterValue(column.ordinal(), columnValue);
+            final Map<IndexType, ColumnIndex> columnIndexes = indexes.get(column);
+            if (columnIndexes != null)
+            {
+                for (final ColumnIndex index : columnIndexes.values())
+                {
+                    index.insert(columnValue, referenceIdentifier);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param column The column to describe. [Non-Null]
+     * @return The non-null statistics of the column, maintained incrementally as rows are inserted and updated.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public ColumnStatistics getStatistics(final COLUMNS column) throws AssertionException
+    {
+        return statistics[header.getColumnIndex(column)];
+    }
+
+    /**
+     * Attaches a {@link HyperLogLog} sketch to the statistics of a column, populated from the rows already in the table and maintained as rows are
+     * inserted and updated. The sketch is available through {@link ColumnStatistics#getDistinctSketch()}, and may be merged with the sketches of
+     * other partitions.
+     *
+     * @param column The column to sketch. [Non-Null]
+     * @param precision The precision of the sketch, between {@value HyperLogLog#MINIMUM_PRECISION} and {@value HyperLogLog#MAXIMUM_PRECISION}.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public synchronized void enableDistinctSketch(final COLUMNS column, final int precision) throws AssertionException
+    {
+        final HyperLogLog sketch = HyperLogLog.create(precision);
+        final int columnIndex = header.getColumnIndex(column);
+        final TableStorage.Cursor cursor = storage.cursor();
+        while (cursor.next())
+        {
+            final Object columnValue = cursor.getValue(columnIndex);
+            if (columnValue != null)
+            {
+                sketch.offer(columnValue);
+            }
+        }
+        statistics[columnIndex].setDistinctSketch(sketch);
+    }
+
+    /**
+     * Attaches a {@link QuantileSketch} to the statistics of a numeric column, populated from the rows already in the table and maintained as rows
+     * are inserted and updated. The sketch is available through {@link ColumnStatistics#getQuantileSketch()}, and may be merged with the sketches of
+     * other partitions.
+     *
+     * @param column The column to sketch. Its data type must be a {@link Number}. [Non-Null]
+     * @param relativeAccuracy The maximum relative error of the estimated quantiles. [0 &lt; accuracy &lt; 1]
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public synchronized void enableQuantileSketch(final COLUMNS column, final double relativeAccuracy) throws AssertionException
+    {
+        Verifier.assertNotNull("Must specify a column to sketch.", column);
+        Verifier.Equality.assertEqual(MessageFormat.format("The column <{0}> data type <{1}> must be numeric in order to estimate its quantiles.",
+                                                           column,
+                                                           column.getDataType()),
+                                      Number.class.isAssignableFrom(column.getDataType()),
+                                      true);
+
+        final QuantileSketch sketch = QuantileSketch.create(relativeAccuracy);
+        final int columnIndex = header.getColumnIndex(column);
+        final TableStorage.Cursor cursor = storage.cursor();
+        while (cursor.next())
+        {
+            final Object columnValue = cursor.getValue(columnIndex);
+            if (columnValue != null)
+            {
+                sketch.offer(((Number) columnValue).doubleValue());
+            }
+        }
+        statistics[columnIndex].setQuantileSketch(sketch);
+    }
+
+    /**
+     * Maintains a {@link BloomFilter} of the values of a column for the whole table, as well as for every storage block. Existence checks through
+     * {@link #contains(Enum, Object)}, equality selections and joins consult the filters before touching any index or storage, so that values that
+     * are absent are usually rejected without a probe. The table filter is rebuilt with twice the capacity whenever it fills up.
+     *
+     * @param column The column to filter. [Non-Null]
+     * @param falsePositiveProbability The false positive probability of each filter once it is full. [0 &lt; probability &lt; 1]
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public synchronized void enableBloomFilter(final COLUMNS column, final double falsePositiveProbability) throws AssertionException
+    {
+        Verifier.assertNotNull("Must specify a column to filter.", column);
+
+        final int columnIndex = header.getColumnIndex(column);
+        storage.enableBloomFilters(columnIndex, falsePositiveProbability);
+        bloomFilterProbabilities[columnIndex] = falsePositiveProbability;
+        rebuildBloomFilter(columnIndex, Math.max(storage.size() * 2L, storage.getBlockCapacity()));
+    }
+
+    /**
+     * @param column The column to search. [Non-Null]
+     * @param value The value to search for. Must be an instance of the column's data type. [Non-Null]
+     * @return Indicator if any row of the table contains the value in the column.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public synchronized boolean contains(final COLUMNS column, final Object value) throws AssertionException
+    {
+        final Condition<COLUMNS> condition = Condition.equalTo(column, value);
+        final int columnIndex = header.getColumnIndex(column);
+        if (bloomFilters[columnIndex] != null && !bloomFilters[columnIndex].mightContain(value))
+        {
+            return false;
+        }
+
+        final ColumnIndex index = getIndex(column, IndexType.HASH);
+        if (index != null)
+        {
+            return index.lookup(value).length > 0;
+        }
+        final ColumnDictionary dictionary = storage.getDictionary(columnIndex);
+        // The dictionary retains the values of updated and deleted rows, so only its misses are conclusive.
+        if (dictionary != null && dictionary.codeOf(value) == ColumnDictionary.NULL_CODE)
+        {
+            return false;
+        }
+
+        final TableStorage.Cursor cursor = storage.cursor(columnIndex, value, value);
+        while (cursor.next())
+        {
+            if (cursor.isEqual(columnIndex, condition.getLowerBound()))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Creates a secondary index on a column, populated from the rows already in the table. Creating an index that already exists has no effect.
+     *
+     * @param column The column to index. [Non-Null]
+     * @param type The structure of the index. {@link IndexType#SORTED Sorted} indexes require a {@link Comparable} data type. [Non-Null]
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public synchronized void createIndex(final COLUMNS column, final IndexType type) throws AssertionException
+    {
+        Verifier.assertNotNull("Must specify a column to index.", column);
+        Verifier.assertNotNull("Must specify the type of index to create.", type);
+        if (type == IndexType.SORTED)
+        {
+            Verifier.Equality.assertEqual(MessageFormat.format("The column <{0}> data type <{1}> must be comparable in order to sort it.",
+                                                               column,
+                                                               column.getDataType()),
+                                          Comparable.class.isAssignableFrom(column.getDataType()),
+                                          true);
+        }
+
+        final Map<IndexType, ColumnIndex> columnIndexes = indexes.computeIfAbsent(column, key -> new EnumMap<>(IndexType.class));
+        if (!columnIndexes.containsKey(type))
+        {
+            final ColumnIndex index = new ColumnIndex(type);
+            final int columnIndex = header.getColumnIndex(column);
+            final TableStorage.Cursor cursor = storage.cursor();
+            while (cursor.next())
+            {
+                index.insert(cursor.getValue(columnIndex), cursor.getReferenceIdentifier());
+            }
+            columnIndexes.put(type, index);
+        }
+    }
+
+    /**
+     * @param column The indexed column. [Non-Null]
+     * @param type The structure of the index to remove. [Non-Null]
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public synchronized void dropIndex(final COLUMNS column, final IndexType type) throws AssertionException
+    {
+        Verifier.assertNotNull("Must specify an indexed column.", column);
+        Verifier.assertNotNull("Must specify the type of index to remove.", type);
+
+        final Map<IndexType, ColumnIndex> columnIndexes = indexes.get(column);
+        if (columnIndexes != null)
+        {
+            columnIndexes.remove(type);
+        }
+    }
+
+    /**
+     * @param condition The condition the rows must satisfy. [Non-Null]
+     * @return The non-null plan chosen to select the rows matching the condition.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public synchronized QueryPlan explain(final Condition<COLUMNS> condition) throws AssertionException
+    {
+        Verifier.assertNotNull("Must specify a condition to plan.", condition);
+
+        final COLUMNS column = condition.getColumn();
+        final int columnIndex = header.getColumnIndex(column);
+
+        return QueryPlanner.planSelection(describe(column),
+                                          statistics[columnIndex],
+                                          storage.getBlockCount(),
+                                          storage.countCandidateBlocks(columnIndex, condition.getLowerBound(), condition.getUpperBound()),
+                                          condition.toString(),
+                                          condition.isEquality(),
+                                          condition.getLowerBound(),
+                                          condition.getUpperBound(),
+                                          getIndex(column, IndexType.HASH) != null,
+                                          getIndex(column, IndexType.SORTED) != null);
+    }
+
+    /**
+     * Selects the rows satisfying a condition, using whichever of a full scan or an index the planner estimates to be the cheapest.
+     *
+     * @param condition The condition the rows must satisfy. [Non-Null]
+     * @return The non-null reference identifiers of every matching row.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public synchronized long[] select(final Condition<COLUMNS> condition) throws AssertionException
+    {
+        final QueryPlan plan = explain(condition);
+        final COLUMNS column = condition.getColumn();
+        final BloomFilter bloomFilter = bloomFilters[header.getColumnIndex(column)];
+        if (condition.isEquality() && bloomFilter != null && !bloomFilter.mightContain(condition.getLowerBound()))
+        {
+            return new long[0];
+        }
+
+        switch (plan.getAccessPath())
+        {
+            case HASH_INDEX_LOOKUP:
+                return getIndex(column, IndexType.HASH).lookup(condition.getLowerBound());
+            case SORTED_INDEX_RANGE:
+                return getIndex(column, IndexType.SORTED).range(condition.getLowerBound(), condition.getUpperBound());
+            default:
+                final int columnIndex = header.getColumnIndex(column);
+                // Null and boolean tests are answered from the bitsets of the blocks, 64 rows at a time.
+                if (condition.isNotNull())
+                {
+                    return storage.selectNonNull(columnIndex);
+                }
+                if (condition.isEquality() && Boolean.class.equals(column.getDataType()))
+                {
+                    return storage.selectBoolean(columnIndex, (Boolean) condition.getLowerBound());
+                }
+                final ColumnDictionary dictionary = storage.getDictionary(columnIndex);
+                if (condition.isEquality() && dictionary != null && dictionary.codeOf(condition.getLowerBound()) == ColumnDictionary.NULL_CODE)
+                {
+                    return new long[0];
+                }
+
+                final TableStorage.Cursor cursor = storage.cursor(columnIndex, condition.getLowerBound(), condition.getUpperBound());
+                long[] matches = new long[16];
+                int matchCount = 0;
+                while (cursor.next())
+                {
+                    // Equality is tested on the dictionary codes of encoded blocks, without decoding or comparing the values.
+                    if (condition.isEquality() ? cursor.isEqual(columnIndex, condition.getLowerBound())
+                                               : condition.test(cursor.getValue(columnIndex)))
+                    {
+                        if (matchCount == matches.length)
+                        {
+                            matches = Arrays.copyOf(matches, matchCount * 2);
+                        }
+                        matches[matchCount++] = cursor.getReferenceIdentifier();
+                    }
+                }
+
+                return Arrays.copyOf(matches, matchCount);
+        }
+    }
+
+    /**
+     * @param column The join column of this table. [Non-Null]
+     * @param other The table to join with. [Non-Null]
+     * @param otherColumn The join column of the other table. Its data type must match the data type of this table's column. [Non-Null]
+     * @return The non-null plan chosen to join the tables.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public <OTHER extends Enum<OTHER> & IHeaderColumn> QueryPlan explainJoin(final COLUMNS column, final Table<OTHER> other, final OTHER otherColumn)
+        throws AssertionException
+    {
+        Verifier.assertNotNull("Must specify the join column of this table.", column);
+        Verifier.assertNotNull("Must specify the table to join with.", other);
+        Verifier.assertNotNull("Must specify the join column of the other table.", otherColumn);
+        Verifier.Equality.assertEqual(MessageFormat.format("The join columns <{0}> and <{1}> must share the same data type.", column, otherColumn),
+                                      column.getDataType(),
+                                      otherColumn.getDataType());
+
+        return QueryPlanner.planJoin(describe(column),
+                                     statistics[header.getColumnIndex(column)],
+                                     getIndex(column, IndexType.HASH) != null,
+                                     other.describe(otherColumn),
+                                     other.statistics[other.header.getColumnIndex(otherColumn)],
+                                     other.getIndex(otherColumn, IndexType.HASH) != null);
+    }
+
+    /**
+     * Joins the rows of this table with the rows of another table that share an equal, non-null, column value. The build side of the join is
+     * chosen by the planner. The monitors of both tables are held while they are joined, and are always taken in the same order, so that two
+     * tables may be joined with each other from both sides at once.
+     *
+     * @param column The join column of this table. [Non-Null]
+     * @param other The table to join with. [Non-Null]
+     * @param otherColumn The join column of the other table. Its data type must match the data type of this table's column. [Non-Null]
+     * @return A non-null pair of equally sized arrays, where the first holds the reference identifiers of this table's rows and the second holds the
+     *         reference identifiers of the matching rows of the other table.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public <OTHER extends Enum<OTHER> & IHeaderColumn> long[][] join(final COLUMNS column, final Table<OTHER> other, final OTHER otherColumn)
+        throws AssertionException
+    {
+        Verifier.assertNotNull("Must specify the table to join with.", other);
+
+        // Tables are locked in the order of their creation, so that joins in opposite directions cannot deadlock.
+        final boolean thisFirst = lockOrder <= other.lockOrder;
+        synchronized (thisFirst ? this : other)
+        {
+            synchronized (thisFirst ? other : this)
+            {
+                return joinRows(column, other, otherColumn);
+            }
+        }
+    }
+
+    private <OTHER extends Enum<OTHER> & IHeaderColumn> long[][] joinRows(final COLUMNS column, final Table<OTHER> other, final OTHER otherColumn)
+        throws AssertionException
+    {
+        final QueryPlan plan = explainJoin(column, other, otherColumn);
+        final int columnIndex = header.getColumnIndex(column);
+        final int otherColumnIndex = other.header.getColumnIndex(otherColumn);
+        final ColumnDictionary dictionary = storage.getDictionary(columnIndex);
+        final ColumnDictionary otherDictionary = other.storage.getDictionary(otherColumnIndex);
+        if (plan.getAccessPath() == QueryPlan.AccessPath.HASH_JOIN && dictionary != null && otherDictionary != null)
+        {
+            return plan.isLeftBuildSide() ? joinOnCodes(storage, columnIndex, dictionary, other.storage, otherColumnIndex, otherDictionary, true)
+                                          : joinOnCodes(other.storage, otherColumnIndex, otherDictionary, storage, columnIndex, dictionary, false);
+        }
+
+        final ColumnIndex build;
+        if (plan.getAccessPath() == QueryPlan.AccessPath.INDEX_NESTED_LOOP_JOIN)
+        {
+            build = plan.isLeftBuildSide() ? getIndex(column, IndexType.HASH) : other.getIndex(otherColumn, IndexType.HASH);
+        }
+        else
+        {
+            build = new ColumnIndex(IndexType.HASH);
+            final int buildColumnIndex = plan.isLeftBuildSide() ? columnIndex : otherColumnIndex;
+            final TableStorage.Cursor cursor = plan.isLeftBuildSide() ? storage.cursor() : other.storage.cursor();
+            while (cursor.next())
+            {
+                build.insert(cursor.getValue(buildColumnIndex), cursor.getReferenceIdentifier());
+            }
+        }
+
+        // Probe values that the build side's filter rules out never touch the hash table or index.
+        final BloomFilter buildFilter = plan.isLeftBuildSide() ? bloomFilters[columnIndex] : other.bloomFilters[otherColumnIndex];
+        long[] leftMatches = new long[16];
+        long[] rightMatches = new long[16];
+        int matchCount = 0;
+        final int probeColumnIndex = plan.isLeftBuildSide() ? otherColumnIndex : columnIndex;
+        final TableStorage.Cursor cursor = plan.isLeftBuildSide() ? other.storage.cursor() : storage.cursor();
+        while (cursor.next())
+        {
+            final Object probeValue = cursor.getValue(probeColumnIndex);
+            if (probeValue == null || buildFilter != null && !buildFilter.mightContain(probeValue))
+            {
+                continue;
+            }
+
+            for (final long buildIdentifier : build.lookup(probeValue))
+            {
+                if (matchCount == leftMatches.length)
+                {
+                    leftMatches = Arrays.copyOf(leftMatches, matchCount * 2);
+                    rightMatches = Arrays.copyOf(rightMatches, matchCount * 2);
+                }
+                leftMatches[matchCount] = plan.isLeftBuildSide() ? buildIdentifier : cursor.getReferenceIdentifier();
+                rightMatches[matchCount] = plan.isLeftBuildSide() ? cursor.getReferenceIdentifier() : buildIdentifier;
+                matchCount++;
+            }
+        }
+
+        return new long[][] {Arrays.copyOf(leftMatches, matchCount), Arrays.copyOf(rightMatches, matchCount)};
+    }
+
+    /**
+     * Groups the rows of the table by the value of a column. Dictionary encoded columns are grouped by their codes, without hashing the values.
+     *
+     * @param column The column to group the rows by. [Non-Null]
+     * @return The non-null reference identifiers of the rows of every distinct value of the column, including <code>NULL</code>.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public synchronized Map<Object, long[]> groupBy(final COLUMNS column) throws AssertionException
+    {
+        final int columnIndex = header.getColumnIndex(column);
+        final ColumnDictionary dictionary = storage.getDictionary(columnIndex);
+        final Map<Object, long[]> groups = new HashMap<>();
+        if (dictionary != null)
+        {
+            // Offsets of every code within a single array of identifiers, where the NULL code is shifted to the first group.
+            final int[] offsets = new int[dictionary.size() + 2];
+            TableStorage.Cursor cursor = storage.cursor();
+            while (cursor.next())
+            {
+                offsets[cursor.getCode(columnIndex) + 2]++;
+            }
+            for (int code = 1; code < offsets.length; code++)
+            {
+                offsets[code] += offsets[code - 1];
+            }
+            final long[] referenceIdentifiers = new long[storage.size()];
+            final int[] positions = Arrays.copyOf(offsets, offsets.length - 1);
+            cursor = storage.cursor();
+            while (cursor.next())
+            {
+                referenceIdentifiers[positions[cursor.getCode(columnIndex) + 1]++] = cursor.getReferenceIdentifier();
+            }
+            for (int code = ColumnDictionary.NULL_CODE; code < dictionary.size(); code++)
+            {
+                if (offsets[code + 2] > offsets[code + 1])
+                {
+                    groups.put(dictionary.decode(code), Arrays.copyOfRange(referenceIdentifiers, offsets[code + 1], offsets[code + 2]));
+                }
+            }
+
+            return groups;
+        }
+
+        final Map<Object, int[]> counts = new HashMap<>();
+        TableStorage.Cursor cursor = storage.cursor();
+        while (cursor.next())
+        {
+            counts.computeIfAbsent(cursor.getValue(columnIndex), key -> new int[1])[0]++;
+        }
+        for (final Map.Entry<Object, int[]> entry : counts.entrySet())
+        {
+            groups.put(entry.getKey(), new long[entry.getValue()[0]]);
+            entry.getValue()[0] = 0;
+        }
+        cursor = storage.cursor();
+        while (cursor.next())
+        {
+            final Object columnValue = cursor.getValue(columnIndex);
+            groups.get(columnValue)[counts.get(columnValue)[0]++] = cursor.getReferenceIdentifier();
+        }
+
+        return groups;
+    }
+
+    /**
+     * @param column The column to count the rows by. [Non-Null]
+     * @return The non-null number of rows of every distinct value of the column, including <code>NULL</code>.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public synchronized Map<Object, Long> countBy(final COLUMNS column) throws AssertionException
+    {
+        final int columnIndex = header.getColumnIndex(column);
+        final ColumnDictionary dictionary = storage.getDictionary(columnIndex);
+        final Map<Object, Long> counts = new HashMap<>();
+        final TableStorage.Cursor cursor = storage.cursor();
+        if (dictionary != null)
+        {
+            final long[] codeCounts = new long[dictionary.size() + 1];
+            while (cursor.next())
+            {
+                codeCounts[cursor.getCode(columnIndex) + 1]++;
+            }
+            for (int code = ColumnDictionary.NULL_CODE; code < dictionary.size(); code++)
+            {
+                if (codeCounts[code + 1] > 0)
+                {
+                    counts.put(dictionary.decode(code), codeCounts[code + 1]);
+                }
+            }
+
+            return counts;
+        }
+
+        while (cursor.next())
+        {
+            counts.merge(cursor.getValue(columnIndex), 1L, Long::sum);
+        }
+
+        return counts;
+    }
+
+    /**
+     * @param column The column to encode. [Non-Null]
+     * @param encoding The physical representation of the values of the column. Blocks already allocated are re-encoded. By default
+     *            {@link String} columns are {@link ColumnEncoding#AUTO} encoded, and every other column is {@link ColumnEncoding#PLAIN}. [Non-Null]
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public synchronized void setColumnEncoding(final COLUMNS column, final ColumnEncoding encoding) throws AssertionException
+    {
+        Verifier.assertNotNull("Must specify the encoding of the column.", encoding);
+
+        storage.setColumnEncoding(header.getColumnIndex(column), encoding);
+    }
+
+    /**
+     * @param column The encoded column. [Non-Null]
+     * @return The non-null encoding of the column.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public ColumnEncoding getColumnEncoding(final COLUMNS column) throws AssertionException
+    {
+        return storage.getColumnEncoding(header.getColumnIndex(column));
+    }
+
+    /**
+     * @param column The column to compress. [Non-Null]
+     * @param codec The codec that the column is compressed with in the files and checkpoints written afterwards, or <code>NULL</code> to write
+     *            the column uncompressed, which is the default. Unchanged blocks are rewritten by the next checkpoint. [Nullable]
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public synchronized void setColumnCompression(final COLUMNS column, final CompressionCodec codec) throws AssertionException
+    {
+        storage.setColumnCompression(header.getColumnIndex(column), codec);
+    }
+
+    /**
+     * @param column The compressed column. [Non-Null]
+     * @return The codec that the column is compressed with, or <code>NULL</code> if it is written uncompressed. [Nullable]
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public CompressionCodec getColumnCompression(final COLUMNS column) throws AssertionException
+    {
+        return storage.getColumnCompression(header.getColumnIndex(column));
+    }
+
+    /**
+     * @return A new non-null snapshot of the hits and misses of the cache of the decompressed column segments of the files the table was opened
+     *         from, where every miss is a decompression.
+     */
+    public CacheStats segmentCacheStats()
+    {
+        return storage.getSegmentCache().stats();
+    }
+
+    /**
+     * @param referenceIdentifier The reference identifier returned when the row was inserted.
+     * @return The row identified by the reference identifier. [Nullable]
+     */
+    public synchronized Row getRow(final long referenceIdentifier)
+    {
+        final boolean found = storage.contains(referenceIdentifier);
+        if (evictionPolicy != null)
+        {
+            if (found)
+            {
+                hitCount++;
+                evictionPolicy.recordAccess(referenceIdentifier);
+            }
+            else
+            {
+                missCount++;
+            }
+        }
+
+        return found ? new Row(referenceIdentifier) : null;
+    }
+
+    /**
+     * Creates a codec for shipping rows of the table between processes, whose encoding is driven by the data types of the columns. The codecs at
+     * both ends of a stream must be created with the same maximum dictionary size.
+     *
+     * @param maximumDictionarySize The maximum number of distinct strings per column that later rows may refer to, or 0 to write every string.
+     * @return A new non-null codec for the rows of the table.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     * @see #encodeRow(long, RowCodec, ByteBuffer)
+     * @see #insertRow(RowCodec, ByteBuffer)
+     */
+    public RowCodec newRowCodec(final int maximumDictionarySize) throws AssertionException
+    {
+        Verifier.Inequality.assertGreaterThan("The maximum dictionary size must not be negative.", maximumDictionarySize, -1);
+
+        return new RowCodec(dataTypesOf(columnsType), maximumDictionarySize);
+    }
+
+    /**
+     * Encodes a row straight from the storage of the table into a buffer.
+     *
+     * @param referenceIdentifier The reference identifier of the row.
+     * @param codec The codec of the stream, created by {@link #newRowCodec(int)} of a table with the same columns. [Non-Null]
+     * @param buffer The buffer to encode the row into, whose position advances past the row. [Non-Null]
+     * @return Indicator if the row was found and encoded.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     * @throws java.nio.BufferOverflowException If the row does not fit into the remaining bytes of the buffer, which is left unchanged.
+     */
+    public synchronized boolean encodeRow(final long referenceIdentifier, final RowCodec codec, final ByteBuffer buffer) throws AssertionException
+    {
+        Verifier.assertNotNull("Must specify the codec of the stream.", codec);
+        Verifier.assertNotNull("Must specify the buffer to encode into.", buffer);
+        Verifier.Equality.assertEqual("The codec must have the columns of the table.", codec.getColumnCount(), header.getHeaderSize());
+
+        final long location = storage.locate(referenceIdentifier);
+        if (location == LocationMap.MISSING)
+        {
+            return false;
+        }
+        codec.encode(storage, location, buffer);
+
+        return true;
+    }
+
+    /**
+     * Decodes the next row of a buffer, and inserts it as {@link #insertRow(Object[])} inserts its values.
+     *
+     * @param codec The codec of the stream, created by {@link #newRowCodec(int)} of a table with the same columns. [Non-Null]
+     * @param buffer The buffer to decode the row from, whose position advances past the row. [Non-Null]
+     * @return The reference identifier of the new row.
+     * @throws AssertionException If any of the parameter conditions are not met, including those of the decoded values.
+     * @throws java.nio.BufferUnderflowException If the buffer ends within the row, in which case its position is restored.
+     */
+    public long insertRow(final RowCodec codec, final ByteBuffer buffer) throws AssertionException
+    {
+        Verifier.assertNotNull("Must specify the codec of the stream.", codec);
+        Verifier.assertNotNull("Must specify the buffer to decode from.", buffer);
+        Verifier.Equality.assertEqual("The codec must have the columns of the table.", codec.getColumnCount(), header.getHeaderSize());
+
+        // The values are copied into the storage, so the array of the codec is reused for the next row.
+        return insertRow(codec.decode(buffer));
+    }
+
+    /**
+     * @return The number of rows currently stored in the table.
+     */
+    public int getRowCount()
+    {
+        return storage.size();
+    }
+
+    /**
+     * Takes a read-only snapshot of the rows of the table, for readers that need a consistent view while the table keeps changing. Taking the
+     * snapshot only records the current storage blocks, which the table then shares with the snapshot: until the snapshot is closed, the first
+     * change to a shared block replaces it with a copy. {@link #createOffHeap(Class, int, long) Off-heap} tables cannot be snapshot, since their
+     * allocator only reclaims memory once the table is closed, and would hold every copied block until then.
+     *
+     * @return The new non-null snapshot, which must be closed once its readers are done.
+     * @throws AssertionException If the table is held outside the Java heap.
+     */
+    public synchronized TableSnapshot<COLUMNS> snapshot() throws AssertionException
+    {
+        Verifier.Equality.assertEqual("Off-heap tables cannot be snapshot, since the memory of their copied blocks is only reclaimed once closed.",
+                                      storage.getAllocator() == null,
+                                      true);
+
+        return new TableSnapshot<>(this, storage.snapshot());
+    }
+
+    synchronized void releaseSnapshot(final StorageSnapshot snapshot)
+    {
+        storage.release(snapshot);
+    }
+
+    /**
+     * Orders the rows of the table by a single column. The rows themselves are not moved; instead the permutation of their reference identifiers is
+     * returned, which may be passed directly to {@link #toFormatter(long[])}.
+     *
+     * @param column The column to order the rows by. Its data type must be {@link Comparable}. [Non-Null]
+     * @param order The direction of the ordering. [Non-Null]
+     * @return The non-null reference identifiers of every row, in the requested order.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public synchronized long[] orderBy(final COLUMNS column, final SortOrder order) throws AssertionException
+    {
+        return sortRows(column, order, storage.size());
+    }
+
+    /**
+     * Selects the first rows of the table as if it were ordered by a single column, without ordering the remaining rows.
+     *
+     * @param column The column to order the rows by. Its data type must be {@link Comparable}. [Non-Null]
+     * @param order The direction of the ordering. [Non-Null]
+     * @param limit The maximum number of rows to select. [Positive]
+     * @return The non-null reference identifiers of at most <code>limit</code> rows, in the requested order.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public synchronized long[] topN(final COLUMNS column, final SortOrder order, final int limit) throws AssertionException
+    {
+        Verifier.Inequality.assertGreaterThan("The number of rows to select must be positive.", limit, 0);
+
+        return sortRows(column, order, Math.min(limit, storage.size()));
+    }
+
+    /**
+     * @return A new non-null {@link TableFormatter.Builder} populated with a header of the column names, followed by every row of the table.
+     * @throws AssertionException If the table cannot be rendered.
+     */
+    public synchronized TableFormatter.Builder toFormatter() throws AssertionException
+    {
+        final long[] referenceIdentifiers = new long[storage.size()];
+        int index = 0;
+        final TableStorage.Cursor cursor = storage.cursor();
+        while (cursor.next())
+        {
+            referenceIdentifiers[index++] = cursor.getReferenceIdentifier();
+        }
+
+        return toFormatter(referenceIdentifiers);
+    }
+
+    /**
+     * @param referenceIdentifiers The reference identifiers of the rows to render, in the order they should appear, such as the permutation returned
+     *            by {@link #orderBy(Enum, SortOrder)}. [Non-Null]
+     * @return A new non-null {@link TableFormatter.Builder} populated with a header of the column names, followed by the identified rows.
+     * @throws AssertionException If any of the reference identifiers does not identify a row of the table.
+     */
+    public synchronized TableFormatter.Builder toFormatter(final long[] referenceIdentifiers) throws AssertionException
+    {
+        Verifier.assertNotNull("Must specify the reference identifiers of the rows to render.", referenceIdentifiers);
+
+        final COLUMNS[] columns = header.columns;
+        final List<String> columnNames = new ArrayList<>(columns.length);
+        for (final COLUMNS column : columns)
+        {
+            columnNames.add(column.getName());
+        }
+
+        final List<RowFormatter.Builder> bodyRows = new ArrayList<>(referenceIdentifiers.length);
+        for (final long referenceIdentifier : referenceIdentifiers)
+        {
+            final long location = locate(referenceIdentifier);
+            final List<String> cellLines = new ArrayList<>(columns.length);
+            for (int columnIndex = 0; columnIndex < columns.length; columnIndex++)
+            {
+                cellLines.add(String.valueOf(storage.read(location, columnIndex)));
+            }
+            bodyRows.add(RowFormatter.Builder.of(cellLines));
+        }
+
+        return TableFormatter.Builder.of(bodyRows).withHeader(RowFormatter.Builder.of(columnNames));
+    }
+
+    private ColumnIndex getIndex(final COLUMNS column, final IndexType type)
+    {
+        final Map<IndexType, ColumnIndex> columnIndexes = indexes.get(column);
+
+        return columnIndexes == null ? null : columnIndexes.get(type);
+    }
+
+    private String describe(final COLUMNS column)
+    {
+        return columnsType.getSimpleName() + "." + column.getName();
+    }
+
+    private long locate(final long referenceIdentifier) throws AssertionException
+    {
+        final long location = storage.locate(referenceIdentifier);
+        Verifier.Equality.assertEqual(MessageFormat.format("The reference identifier <{0}> must identify a row of the table.", Long.toString(referenceIdentifier)),
+                                      location != LocationMap.MISSING,
+                                      true);
+
+        return location;
+    }
+
+    private void updateValue(final long referenceIdentifier, final COLUMNS column, final Object columnValue) throws AssertionException
+    {
+        locate(referenceIdentifier);
+        if (journal != null)
+        {
+            journal.logUpdate(referenceIdentifier, column.ordinal(), columnValue);
+        }
+        writeValue(referenceIdentifier, column, columnValue);
+    }
+
+    private void writeValue(final long referenceIdentifier, final COLUMNS column, final Object columnValue) throws AssertionException
+    {
+        final long location = locate(referenceIdentifier);
+        final int columnIndex = header.getColumnIndex(column);
+        final Object value = stringPools[columnIndex] == null ? columnValue : stringPools[columnIndex].intern((String) columnValue);
+        final Object previousValue = storage.read(location, columnIndex);
+        storage.write(location, columnIndex, value);
+        recordUpdate(column, previousValue, value, referenceIdentifier);
+    }
+
+    protected void validateColumnAssignment(final COLUMNS column, final Object columnValue) throws AssertionException
+    {
+        // The messages are only formatted on failure, since every inserted value passes through here.
+        if (columnValue != null)
+        {
+            if (!column.getDataType().isInstance(columnValue))
+            {
+                Verifier.Equality.assertEqual(MessageFormat.format("The non-null value's data type <{0}> must match the column's <{1}> data type <{2}>.",
+                                                                   columnValue.getClass(),
+                                                                   column,
+                                                                   column.getDataType()),
+                                              false,
+                                              true);
+            }
+        }
+        else if (!column.isNullable())
+        {
+            Verifier.Equality.assertEqual(MessageFormat.format("The column <{0}> must be nullable in order to assign a null value.", column), false, true);
+        }
+    }
+
+    /**
+     * Hash join of two dictionary encoded columns, where the build side is bucketed by code and every probe code is translated into a build code
+     * at most once, so that no value is hashed or compared per row.
+     */
+    private static long[][] joinOnCodes(final TableStorage build, final int buildColumnIndex, final ColumnDictionary buildDictionary,
+                                        final TableStorage probe, final int probeColumnIndex, final ColumnDictionary probeDictionary,
+                                        final boolean leftBuildSide)
+    {
+        final int[] offsets = new int[buildDictionary.size() + 1];
+        TableStorage.Cursor cursor = build.cursor();
+        while (cursor.next())
+        {
+            final int code = cursor.getCode(buildColumnIndex);
+            if (code != ColumnDictionary.NULL_CODE)
+            {
+                offsets[code + 1]++;
+            }
+        }
+        for (int code = 1; code < offsets.length; code++)
+        {
+            offsets[code] += offsets[code - 1];
+        }
+        final long[] buildIdentifiers = new long[offsets[offsets.length - 1]];
+        final int[] positions = Arrays.copyOf(offsets, offsets.length - 1);
+        cursor = build.cursor();
+        while (cursor.next())
+        {
+            final int code = cursor.getCode(buildColumnIndex);
+            if (code != ColumnDictionary.NULL_CODE)
+            {
+                buildIdentifiers[positions[code]++] = cursor.getReferenceIdentifier();
+            }
+        }
+
+        final int unresolved = Integer.MIN_VALUE;
+        final int[] translations = new int[probeDictionary.size()];
+        Arrays.fill(translations, unresolved);
+        long[] leftMatches = new long[16];
+        long[] rightMatches = new long[16];
+        int matchCount = 0;
+        cursor = probe.cursor();
+        while (cursor.next())
+        {
+            final int probeCode = cursor.getCode(probeColumnIndex);
+            if (probeCode == ColumnDictionary.NULL_CODE)
+            {
+                continue;
+            }
+            if (translations[probeCode] == unresolved)
+            {
+                translations[probeCode] = buildDictionary.codeOf(probeDictionary.decode(probeCode));
+            }
+            final int buildCode = translations[probeCode];
+            if (buildCode == ColumnDictionary.NULL_CODE)
+            {
+                continue;
+            }
+
+            for (int position = offsets[buildCode]; position < offsets[buildCode + 1]; position++)
+            {
+                if (matchCount == leftMatches.length)
+                {
+                    leftMatches = Arrays.copyOf(leftMatches, matchCount * 2);
+                    rightMatches = Arrays.copyOf(rightMatches, matchCount * 2);
+                }
+                leftMatches[matchCount] = leftBuildSide ? buildIdentifiers[position] : cursor.getReferenceIdentifier();
+                rightMatches[matchCount] = leftBuildSide ? cursor.getReferenceIdentifier() : buildIdentifiers[position];
+                matchCount++;
+            }
+        }
+
+        return new long[][] {Arrays.copyOf(leftMatches, matchCount), Arrays.copyOf(rightMatches, matchCount)};
+    }
+
+    private void recordBloomFilterValue(final int columnIndex, final Object value)
+    {
+        final BloomFilter bloomFilter = bloomFilters[columnIndex];
+        if (bloomFilter != null && value != null)
+        {
+            bloomFilter.put(value);
+            if (bloomFilter.getInsertions() > bloomFilter.getExpectedInsertions())
+            {
+                rebuildBloomFilter(columnIndex, bloomFilter.getExpectedInsertions() * 2);
+            }
+        }
+    }
+
+    private void rebuildBloomFilter(final int columnIndex, final long expectedInsertions)
+    {
+        final BloomFilter bloomFilter;
+        try
+        {
+            bloomFilter = BloomFilter.create(expectedInsertions, bloomFilterProbabilities[columnIndex]);
+        }
+        catch (final AssertionException e)
+        {
+            throw new IllegalStateException(e);
+        }
+
+        final TableStorage.Cursor cursor = storage.cursor();
+        while (cursor.next())
+        {
+            final Object value = cursor.getValue(columnIndex);
+            if (value != null)
+            {
+                bloomFilter.put(value);
+            }
+        }
+        bloomFilters[columnIndex] = bloomFilter;
+    }
+
+    /**
+     * Removes the values of a row that is about to be deleted from the statistics and indexes of every column, and from the eviction policy.
+     */
+    private void forgetRow(final long location, final long referenceIdentifier)
+    {
+        if (evictionPolicy != null)
+        {
+            evictionPolicy.recordRemoval(referenceIdentifier);
+        }
+        for (final COLUMNS column : header.columns)
+        {
+            final Object previousValue = storage.read(location, column.ordinal());
+            statistics[column.ordinal()].recordDelete(previousValue);
+            final Map<IndexType, ColumnIndex> columnIndexes = indexes.get(column);
+            if (columnIndexes != null)
+            {
+                for (final ColumnIndex index : columnIndexes.values())
+                {
+                    index.remove(previousValue, referenceIdentifier);
+                }
+            }
+        }
+    }
+
+    private void recordUpdate(final COLUMNS column, final Object previousValue, final Object value, final long referenceIdentifier)
+    {
+        statistics[column.ordinal()].recordUpdate(previousValue, value);
+        recordBloomFilterValue(column.ordinal(), value);
+        final Map<IndexType, ColumnIndex> columnIndexes = indexes.get(column);
+        if (columnIndexes != null)
+        {
+            for (final ColumnIndex index : columnIndexes.values())
+            {
+                index.remove(previousValue, referenceIdentifier);
+                index.insert(value, referenceIdentifier);
+            }
+        }
+    }
+
+    private long[] sortRows(final COLUMNS column, final SortOrder order, final int limit) throws AssertionException
+    {
+        Verifier.assertNotNull("Must specify a column to order the rows by.", column);
+        Verifier.assertNotNull("Must specify the direction to order the rows by.", order);
+        Verifier.Equality.assertEqual(MessageFormat.format("The column <{0}> data type <{1}> must be comparable in order to sort by it.",
+                                                           column,
+                                                           column.getDataType()),
+                                      Comparable.class.isAssignableFrom(column.getDataType()),
+                                      true);
+
+        final int columnIndex = header.getColumnIndex(column);
+        final boolean descending = order == SortOrder.DESCENDING;
+        final boolean primitive = RowSorter.hasSortableKey(column.getDataType());
+        final int rowCount = storage.size();
+        final long[] identifiers = new long[rowCount];
+        final long[] keys = primitive ? new long[rowCount] : null;
+        final Object[] values = primitive ? null : new Object[rowCount];
+        final long[] nullIdentifiers = new long[rowCount];
+        int valueCount = 0;
+        int nullCount = 0;
+        final TableStorage.Cursor cursor = storage.cursor();
+        while (cursor.next())
+        {
+            final Object columnValue = cursor.getValue(columnIndex);
+            if (columnValue == null)
+            {
+                nullIdentifiers[nullCount++] = cursor.getReferenceIdentifier();
+                continue;
+            }
+
+            identifiers[valueCount] = cursor.getReferenceIdentifier();
+            if (primitive)
+            {
+                // Inverting the key reverses its unsigned ordering, so descending orders share the ascending sort.
+                final long key = RowSorter.toSortableKey(columnValue);
+                keys[valueCount] = descending ? ~key : key;
+            }
+            else
+            {
+                values[valueCount] = columnValue;
+            }
+            valueCount++;
+        }
+
+        // NULL values lead an ascending ordering and trail a descending ordering.
+        final int leadingNulls = descending ? 0 : Math.min(nullCount, limit);
+        final int valueLimit = Math.min(valueCount, limit - leadingNulls);
+        final long[] ordered = new long[limit];
+        System.arraycopy(nullIdentifiers, 0, ordered, 0, leadingNulls);
+        if (valueLimit > 0)
+        {
+            final long[] orderedValues = primitive ? RowSorter.sortKeys(keys, identifiers, valueCount, valueLimit)
+                                                   : RowSorter.sortComparable(values, identifiers, valueCount, descending, valueLimit);
+            System.arraycopy(orderedValues, 0, ordered, leadingNulls, valueLimit);
+        }
+        System.arraycopy(nullIdentifiers, 0, ordered, leadingNulls + valueLimit, limit - leadingNulls - valueLimit);
+
+        return ordered;
+    }
+
+    public class Header
+    {
+        protected final Map<COLUMNS, Integer> columnIndexByColumn;
+        protected final COLUMNS[]             columns;
+
+        protected Header()
+        {
+            columns = columnsType.getEnumConstants();
+            columnIndexByColumn = new HashMap<>(columns.length);
+            int index = 0;
+            for (final COLUMNS column : columns)
+            {
+                columnIndexByColumn.put(column, index);
+                index++;
+            }
+        }
+
+        public int getHeaderSize()
+        {
+            return columnIndexByColumn.size();
+        }
+
+        public int getColumnIndex(final COLUMNS column) throws AssertionException
+        {
+            Verifier.assertNotNull("Must specify a valid column in order assign/retrieve a value to/from it.", column);
+
+            return columnIndexByColumn.get(column);
+        }
+    }
+
+    /**
+     * A view of a single row stored in the table. Reads and writes go directly to the table storage.
+     */
+    public class Row
+    {
+        protected final long referenceIdentifier;
+
+        protected Row(final long referenceIdentifier)
+        {
+            this.referenceIdentifier = referenceIdentifier;
+        }
+
+        /**
+         * @return The reference identifier of the row.
+         */
+        public long getReferenceIdentifier()
+        {
+            return referenceIdentifier;
+        }
+
+        @SuppressWarnings("unchecked")
+        public <T> T getColumnValue(final COLUMNS column) throws AssertionException
+        {
+            final int columnIndex = header.getColumnIndex(column);
+            synchronized (Table.this)
+            {
+                return (T) storage.read(locate(referenceIdentifier), columnIndex);
+            }
+        }
+
+        public void setColumnValue(final COLUMNS column, final Object value) throws AssertionException
+        {
+            Verifier.assertNotNull("Must specify a valid column in order assign/retrieve a value to/from it.", column);
+            validateColumnAssignment(column, value);
+            synchronized (Table.this)
+            {
+                updateValue(referenceIdentifier, column, value);
             }
+            awaitCommit();
         }
     }
 }
@@ -0,0 +1,162 @@
+package eli.ikea.mart;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import eli.ikea.mart.storage.StorageBlock;
+import eli.ikea.mart.storage.TableStorage;
+
+/**
+ * Incremental compaction of the storage blocks of a {@link Table} that were fragmented by deletes. Every {@link #run() step} holds the table's
+ * monitor for at most a time slice (plus the rewrite of a single block), in which it resumes the sweep over the blocks where the previous step
+ * stopped, and rewrites every block whose share of deleted rows reaches the fragmentation threshold into a dense block. Steps are meant to be
+ * repeated by a background thread, such as through {@link #schedule(ScheduledExecutorService, long, TimeUnit)}, so that foreground inserts and
+ * lookups wait for at most one time slice.
+ *
+ * @author The Architect
+ */
+public class TableCompactor implements Runnable
+{
+    private final Table<?> table;
+    private final double   fragmentationThreshold;
+    private final long     timeSliceNanos;
+    private int            nextBlockIndex;
+    private volatile long  stepCount;
+    private volatile long  passCount;
+    private volatile long  blocksCompacted;
+    private volatile long  rowsMoved;
+    private volatile long  slotsReclaimed;
+    private volatile long  lastStepNanos;
+    private volatile long  maximumStepNanos;
+
+    TableCompactor(final Table<?> table, final double fragmentationThreshold, final long timeSliceNanos)
+    {
+        this.table = table;
+        this.fragmentationThreshold = fragmentationThreshold;
+        this.timeSliceNanos = timeSliceNanos;
+    }
+
+    /**
+     * Performs a single time-sliced step of compaction.
+     */
+    @Override
+    public void run()
+    {
+        synchronized (table)
+        {
+            final long start = System.nanoTime();
+            final TableStorage storage = table.storage;
+            while (nextBlockIndex < storage.getBlockCount())
+            {
+                final StorageBlock block = storage.getBlock(nextBlockIndex);
+                if (block.getDeletedCount() > 0 && block.getDeletedCount() >= fragmentationThreshold * block.getSize())
+                {
+                    final int liveCount = block.getLiveCount();
+                    final int reclaimed = storage.compactBlock(nextBlockIndex);
+                    if (reclaimed > 0)
+                    {
+                        blocksCompacted++;
+                        rowsMoved += liveCount;
+                        slotsReclaimed += reclaimed;
+                    }
+                }
+                nextBlockIndex++;
+                if (System.nanoTime() - start >= timeSliceNanos)
+                {
+                    break;
+                }
+            }
+            if (nextBlockIndex >= storage.getBlockCount())
+            {
+                // The next step starts another sweep, so that an idle table is swept at most once per step.
+                nextBlockIndex = 0;
+                passCount++;
+            }
+
+            lastStepNanos = System.nanoTime() - start;
+            maximumStepNanos = Math.max(maximumStepNanos, lastStepNanos);
+            stepCount++;
+        }
+    }
+
+    /**
+     * @param executor The executor to run the steps on. [Non-Null]
+     * @param period The delay between the end of a step and the start of the next one. [Positive]
+     * @param unit The unit of the period. [Non-Null]
+     * @return The non-null future of the repeated steps, which stops the compaction once cancelled.
+     */
+    public ScheduledFuture<?> schedule(final ScheduledExecutorService executor, final long period, final TimeUnit unit)
+    {
+        return executor.scheduleWithFixedDelay(this, period, period, unit);
+    }
+
+    /**
+     * @return The share of the used slots of the table whose rows were deleted, between 0 and 1.
+     */
+    public double getFragmentation()
+    {
+        synchronized (table)
+        {
+            final long deletedCount = table.storage.getDeletedCount();
+
+            return deletedCount == 0L ? 0.0 : (double) deletedCount / (deletedCount + table.storage.size());
+        }
+    }
+
+    /**
+     * @return The number of steps performed.
+     */
+    public long getStepCount()
+    {
+        return stepCount;
+    }
+
+    /**
+     * @return The number of completed sweeps over every block of the table.
+     */
+    public long getPassCount()
+    {
+        return passCount;
+    }
+
+    /**
+     * @return The number of blocks rewritten.
+     */
+    public long getBlocksCompacted()
+    {
+        return blocksCompacted;
+    }
+
+    /**
+     * @return The number of rows moved into rewritten blocks.
+     */
+    public long getRowsMoved()
+    {
+        return rowsMoved;
+    }
+
+    /**
+     * @return The number of slots of deleted rows reclaimed.
+     */
+    public long getSlotsReclaimed()
+    {
+        return slotsReclaimed;
+    }
+
+    /**
+     * @return The duration of the most recent step, in nanoseconds.
+     */
+    public long getLastStepNanos()
+    {
+        return lastStepNanos;
+    }
+
+    /**
+     * @return The duration of the longest step, in nanoseconds.
+     */
+    public long getMaximumStepNanos()
+    {
+        return maximumStepNanos;
+    }
+}
@@ -0,0 +1,136 @@
+package eli.ikea.mart;
+
+import java.util.Arrays;
+
+import eli.ikea.mart.storage.LocationMap;
+import eli.ikea.mart.storage.StorageSnapshot;
+import eli.ikea.mart.storage.TableStorage;
+import eli.veritas.Verifier;
+import eli.veritas.exception.AssertionException;
+
+/**
+ * A read-only version of the rows of a {@link Table}, as of the moment it was {@link Table#snapshot() taken}, for readers that need a consistent
+ * view while the table keeps changing. The snapshot shares the storage blocks of the table, which copies a block only when it changes a block
+ * shared with an open snapshot, so taking a snapshot costs the same regardless of the size of the table. Reads do not hold the table's monitor,
+ * and may run on any number of threads.
+ * <p>
+ * Only the rows are part of the snapshot; indexes, statistics and time-to-live deadlines are not. A snapshot must be {@link #close() closed} once
+ * its readers are done, so that the table stops copying the blocks it shares, and must not be read once the table is closed.
+ *
+ * @author The Architect
+ */
+public class TableSnapshot<COLUMNS extends Enum<COLUMNS> & IHeaderColumn> implements AutoCloseable
+{
+    private final Table<COLUMNS>  table;
+    private final StorageSnapshot snapshot;
+
+    TableSnapshot(final Table<COLUMNS> table, final StorageSnapshot snapshot)
+    {
+        this.table = table;
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * @return The version of the table the snapshot was taken of, where later snapshots of the table have higher versions.
+     */
+    public long getVersion()
+    {
+        return snapshot.getVersion();
+    }
+
+    /**
+     * @return The number of rows stored in the table as of the snapshot.
+     */
+    public int getRowCount()
+    {
+        return snapshot.size();
+    }
+
+    /**
+     * @param referenceIdentifier The reference identifier returned when the row was inserted.
+     * @return Indicator if the row was stored in the table as of the snapshot.
+     */
+    public boolean containsRow(final long referenceIdentifier)
+    {
+        return snapshot.locate(referenceIdentifier) != LocationMap.MISSING;
+    }
+
+    /**
+     * @param referenceIdentifier The reference identifier of a row stored as of the snapshot.
+     * @param column The column to read. [Non-Null]
+     * @return The value of the column for the row, as of the snapshot. [Nullable]
+     * @throws AssertionException If any of the parameter conditions are not met, or the row was not stored as of the snapshot.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getColumnValue(final long referenceIdentifier, final COLUMNS column) throws AssertionException
+    {
+        Verifier.assertNotNull("Must specify a valid column in order assign/retrieve a value to/from it.", column);
+        final long location = snapshot.locate(referenceIdentifier);
+        Verifier.Equality.assertEqual("The row must be stored as of the snapshot.", location != LocationMap.MISSING, true);
+
+        return (T) snapshot.read(location, column.ordinal());
+    }
+
+    /**
+     * @param referenceIdentifier The reference identifier returned when the row was inserted.
+     * @return A new array of the values of every column of the row, as of the snapshot, or <code>NULL</code> if the row was not stored. [Nullable]
+     */
+    public Object[] getRowValues(final long referenceIdentifier)
+    {
+        final long location = snapshot.locate(referenceIdentifier);
+        if (location == LocationMap.MISSING)
+        {
+            return null;
+        }
+        final Object[] values = new Object[table.header.getHeaderSize()];
+        for (int column = 0; column < values.length; column++)
+        {
+            values[column] = snapshot.read(location, column);
+        }
+
+        return values;
+    }
+
+    /**
+     * @return The non-null reference identifiers of every row stored as of the snapshot, in storage order.
+     */
+    public long[] getReferenceIdentifiers()
+    {
+        final long[] referenceIdentifiers = new long[snapshot.size()];
+        int count = 0;
+        final TableStorage.Cursor cursor = snapshot.cursor();
+        while (cursor.next())
+        {
+            referenceIdentifiers[count++] = cursor.getReferenceIdentifier();
+        }
+
+        return count == referenceIdentifiers.length ? referenceIdentifiers : Arrays.copyOf(referenceIdentifiers, count);
+    }
+
+    /**
+     * @return A new non-null cursor over the rows stored as of the snapshot, in storage order, whose values are read with
+     *         {@link TableStorage.Cursor#getValue(int)}.
+     */
+    public TableStorage.Cursor cursor()
+    {
+        return snapshot.cursor();
+    }
+
+    /**
+     * @return Indicator if the snapshot was closed, after which it must not be read.
+     */
+    public boolean isClosed()
+    {
+        return snapshot.isReleased();
+    }
+
+    /**
+     * Releases the snapshot, so that the table changes the blocks it shared with the snapshot in place again, unless another open snapshot still
+     * shares them. Closing a snapshot twice has no effect.
+     */
+    @Override
+    public void close()
+    {
+        table.releaseSnapshot(snapshot);
+    }
+}
@@ -0,0 +1,233 @@
+package eli.ikea.mart.arrow;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import eli.ikea.mart.storage.ValueCodec;
+
+/**
+ * Reads the rows of an Arrow IPC stream, as written by an {@link ArrowStreamWriter} or by any other Arrow implementation, as long as every field
+ * has the {@link ArrowType} of the data type of its column, and the stream uses neither dictionaries nor compression. Both the current framing of
+ * messages and the legacy framing without a continuation marker are accepted.
+ *
+ * @author The Architect
+ */
+public final class ArrowStreamReader
+{
+    private static final short MINIMUM_METADATA_VERSION = 3;
+
+    private final DataInputStream input;
+    private final Class<?>[]      dataTypes;
+    private final ArrowType[]     types;
+    private final String[]        names;
+    private byte[]                bodyBytes = new byte[0];
+    private ByteBuffer            body;
+    private FlatTable             header;
+
+    /**
+     * Starts reading a stream by reading its schema.
+     *
+     * @param input The input of the stream, which is not closed by the reader. [Non-Null]
+     * @param dataTypes The data types of every column, whose {@link ArrowType} every field must have. [Non-Null]
+     * @throws IOException If the schema cannot be read, or does not match the data types.
+     */
+    public ArrowStreamReader(final InputStream input, final Class<?>[] dataTypes) throws IOException
+    {
+        this.input = new DataInputStream(input);
+        this.dataTypes = dataTypes;
+        this.types = new ArrowType[dataTypes.length];
+        this.names = new String[dataTypes.length];
+
+        if (readMessage() != ArrowStreamWriter.SCHEMA)
+        {
+            throw new IOException("The stream must start with a schema.");
+        }
+        final int fieldCount = header.getVectorLength(1);
+        if (fieldCount != dataTypes.length)
+        {
+            throw new IOException("The stream has " + fieldCount + " columns instead of " + dataTypes.length + ".");
+        }
+        for (int column = 0; column < fieldCount; column++)
+        {
+            final FlatTable field = header.getTable(1, column);
+            names[column] = field.getString(0);
+            if (field.hasField(4))
+            {
+                throw new IOException("The column " + names[column] + " is dictionary encoded, which is not supported.");
+            }
+            final ArrowType type = ArrowType.read(field.getByte(2, (byte) 0), field.getTable(3));
+            types[column] = ArrowType.of(dataTypes[column]);
+            if (type != types[column])
+            {
+                throw new IOException("The column " + names[column] + " must have the Arrow type " + types[column] + ".");
+            }
+        }
+    }
+
+    /**
+     * @return The non-null names of every column, from the schema of the stream.
+     */
+    public String[] getNames()
+    {
+        return names.clone();
+    }
+
+    /**
+     * Reads the rows of the next record batch of the stream.
+     *
+     * @param rows The list to add the values of every row of the batch to. [Non-Null]
+     * @return Indicator if a batch was read, rather than the end of the stream.
+     * @throws IOException If the batch cannot be read, or uses an unsupported feature.
+     */
+    public boolean readBatch(final List<Object[]> rows) throws IOException
+    {
+        final byte headerType = readMessage();
+        if (headerType == 0)
+        {
+            return false;
+        }
+        if (headerType != ArrowStreamWriter.RECORD_BATCH)
+        {
+            throw new IOException(headerType == ArrowStreamWriter.DICTIONARY_BATCH ? "Dictionary batches are not supported."
+                                                                                   : "Unexpected message " + headerType + ".");
+        }
+        if (header.hasField(3))
+        {
+            throw new IOException("Compressed record batches are not supported.");
+        }
+
+        final int length = (int) header.getLong(0, 0L);
+        final Object[][] batch = new Object[length][types.length];
+        int buffer = 0;
+        for (int column = 0; column < types.length; column++)
+        {
+            final ArrowType type = types[column];
+            final boolean hasNulls = header.getPair(1, column, 1) != 0 && header.getPair(2, buffer, 1) != 0;
+            final int validity = (int) header.getPair(2, buffer++, 0);
+            final int offsets = type.isVariableWidth() ? (int) header.getPair(2, buffer++, 0) : -1;
+            final int values = (int) header.getPair(2, buffer++, 0);
+            for (int row = 0; row < length; row++)
+            {
+                if (!hasNulls || isSet(validity, row))
+                {
+                    batch[row][column] = type.isVariableWidth() ? readVariableWidth(column, offsets, values, row) : readFixedWidth(type, values, row);
+                }
+            }
+        }
+        rows.addAll(Arrays.asList(batch));
+
+        return true;
+    }
+
+    private boolean isSet(final int bitmap, final int row)
+    {
+        return (body.get(bitmap + (row >>> 3)) & 1 << (row & 7)) != 0;
+    }
+
+    private Object readFixedWidth(final ArrowType type, final int values, final int row)
+    {
+        switch (type)
+        {
+            case INT8:
+                return body.get(values + row);
+            case INT16:
+                return body.getShort(values + row * Short.BYTES);
+            case INT32:
+                return body.getInt(values + row * Integer.BYTES);
+            case UINT16:
+                return body.getChar(values + row * Character.BYTES);
+            case FLOAT32:
+                return body.getFloat(values + row * Float.BYTES);
+            case FLOAT64:
+                return body.getDouble(values + row * Double.BYTES);
+            case BOOL:
+                return isSet(values, row);
+            case TIMESTAMP_MILLISECOND:
+                return new Date(body.getLong(values + row * Long.BYTES));
+            default:
+                return body.getLong(values + row * Long.BYTES);
+        }
+    }
+
+    private Object readVariableWidth(final int column, final int offsets, final int values, final int row) throws IOException
+    {
+        final int start = values + body.getInt(offsets + row * Integer.BYTES);
+        final int end = values + body.getInt(offsets + (row + 1) * Integer.BYTES);
+        if (types[column] == ArrowType.UTF8)
+        {
+            return new String(bodyBytes, start, end - start, StandardCharsets.UTF_8);
+        }
+        if (byte[].class.equals(dataTypes[column]))
+        {
+            return Arrays.copyOfRange(bodyBytes, start, end);
+        }
+
+        return ValueCodec.read(new DataInputStream(new ByteArrayInputStream(bodyBytes, start, end - start)));
+    }
+
+    /**
+     * Reads the next message into the header and the body.
+     *
+     * @return The type of the header of the message, or 0 at the end of the stream.
+     */
+    private byte readMessage() throws IOException
+    {
+        final int marker = readIntOrEnd();
+        final int length = marker == ArrowStreamWriter.CONTINUATION ? Integer.reverseBytes(input.readInt()) : marker;
+        if (length <= 0)
+        {
+            return 0;
+        }
+
+        final byte[] metadata = new byte[length];
+        input.readFully(metadata);
+        final FlatTable message = FlatTable.root(metadata);
+        if (message.getShort(0, (short) 0) < MINIMUM_METADATA_VERSION)
+        {
+            throw new IOException("Arrow metadata versions before V4 are not supported.");
+        }
+        header = message.getTable(2);
+        final long bodyLength = message.getLong(3, 0L);
+        if (bodyLength > Integer.MAX_VALUE)
+        {
+            throw new IOException("The body of the message is too large.");
+        }
+        if (bodyBytes.length < bodyLength)
+        {
+            bodyBytes = new byte[(int) bodyLength];
+        }
+        input.readFully(bodyBytes, 0, (int) bodyLength);
+        body = ByteBuffer.wrap(bodyBytes, 0, (int) bodyLength).order(ByteOrder.LITTLE_ENDIAN);
+
+        return message.getByte(1, (byte) 0);
+    }
+
+    /**
+     * @return The next little-endian <code>int</code> of the stream, or 0 if the stream ends before it.
+     */
+    private int readIntOrEnd() throws IOException
+    {
+        final int first = input.read();
+        if (first < 0)
+        {
+            return 0;
+        }
+        try
+        {
+            return first | input.readUnsignedByte() << 8 | input.readUnsignedByte() << 16 | input.readUnsignedByte() << 24;
+        }
+        catch (final EOFException e)
+        {
+            throw new EOFException("The stream ends within a message.");
+        }
+    }
+}
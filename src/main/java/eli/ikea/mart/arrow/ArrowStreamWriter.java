@@ -0,0 +1,349 @@
+package eli.ikea.mart.arrow;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import eli.ikea.mart.storage.ColumnVector;
+import eli.ikea.mart.storage.PrimitiveColumnVector;
+import eli.ikea.mart.storage.StorageBlock;
+import eli.ikea.mart.storage.ValueCodec;
+
+/**
+ * Writes the rows of a table in the Arrow IPC stream format: a schema message, followed by one record batch per storage block, and an end of
+ * stream marker. The values are written straight from the column vectors of every block into the body of its record batch, as a validity bitmap
+ * followed by the fixed-width values, or by the offsets and bytes of the variable-width values. Validity bitmaps are omitted for columns without
+ * <code>NULL</code> values, and are copied a word at a time from blocks without deleted rows.
+ *
+ * @author The Architect
+ */
+public final class ArrowStreamWriter
+{
+    static final int   CONTINUATION     = 0xFFFFFFFF;
+    static final short METADATA_VERSION = 4;
+    static final byte  SCHEMA           = 1;
+    static final byte  DICTIONARY_BATCH = 2;
+    static final byte  RECORD_BATCH     = 3;
+
+    private static final int  ALIGNMENT     = 8;
+    private static final byte LITTLE_ENDIAN = 0;
+
+    private final OutputStream          output;
+    private final Class<?>[]            dataTypes;
+    private final ArrowType[]           types;
+    private final long[]                nodes;
+    private final long[]                buffers;
+    private final ByteBuffer            prefix       = ByteBuffer.allocate(2 * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteArrayOutputStream encodedBytes = new ByteArrayOutputStream();
+    private final DataOutputStream      encoded      = new DataOutputStream(encodedBytes);
+    private ByteBuffer                  body         = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+    private int[]                       slots        = new int[0];
+    private int                         bufferCount;
+
+    /**
+     * Starts a stream by writing its schema.
+     *
+     * @param output The output of the stream, which is not closed by the writer. [Non-Null]
+     * @param names The names of every column. [Non-Null]
+     * @param dataTypes The data types of every column, which are mapped to their {@link ArrowType}. [Non-Null]
+     * @param nullable Indicators if every column allows <code>NULL</code> values. [Non-Null]
+     * @throws IOException If the schema cannot be written.
+     */
+    public ArrowStreamWriter(final OutputStream output, final String[] names, final Class<?>[] dataTypes, final boolean[] nullable)
+        throws IOException
+    {
+        this.output = output;
+        this.dataTypes = dataTypes;
+        this.types = new ArrowType[dataTypes.length];
+        this.nodes = new long[2 * dataTypes.length];
+        // Every column has a validity buffer, and at most two more buffers.
+        this.buffers = new long[2 * 3 * dataTypes.length];
+        for (int column = 0; column < dataTypes.length; column++)
+        {
+            types[column] = ArrowType.of(dataTypes[column]);
+        }
+
+        final FlatBufferBuilder builder = new FlatBufferBuilder();
+        final int[] fields = new int[names.length];
+        for (int column = 0; column < names.length; column++)
+        {
+            final int name = builder.createString(names[column]);
+            final int type = types[column].writeType(builder);
+            final int children = builder.createOffsetVector(new int[0]);
+            builder.startTable(7);
+            builder.addOffset(0, name);
+            builder.addBoolean(1, nullable[column]);
+            builder.addByte(2, types[column].getTypeIdentifier());
+            builder.addOffset(3, type);
+            builder.addOffset(5, children);
+            fields[column] = builder.endTable();
+        }
+        final int fieldVector = builder.createOffsetVector(fields);
+        builder.startTable(4);
+        builder.addShort(0, LITTLE_ENDIAN);
+        builder.addOffset(1, fieldVector);
+        writeMessage(builder, SCHEMA, builder.endTable(), 0L);
+    }
+
+    /**
+     * Writes the rows of a block that were not deleted as a record batch. Blocks without such rows are skipped.
+     *
+     * @param block The block to write, whose columns have the data types of the stream. [Non-Null]
+     * @return The number of rows written.
+     * @throws IOException If the batch cannot be written, or a value of another data type cannot be encoded.
+     */
+    public int writeBatch(final StorageBlock block) throws IOException
+    {
+        final int count = block.getLiveCount();
+        if (count == 0)
+        {
+            return 0;
+        }
+        if (slots.length < count)
+        {
+            slots = new int[block.getCapacity()];
+        }
+        for (int slot = block.nextLiveSlot(0), index = 0; index < count; slot = block.nextLiveSlot(slot + 1))
+        {
+            slots[index++] = slot;
+        }
+
+        // Without deleted rows, the rows of the batch are the slots of the block, so bitmaps are copied a word at a time.
+        final boolean contiguous = block.getDeletedCount() == 0;
+        body.clear();
+        bufferCount = 0;
+        for (int column = 0; column < types.length; column++)
+        {
+            writeColumn(block.getColumn(column), column, count, contiguous);
+        }
+
+        final FlatBufferBuilder builder = new FlatBufferBuilder();
+        final int nodeVector = builder.createPairVector(nodes, types.length);
+        final int bufferVector = builder.createPairVector(buffers, bufferCount);
+        builder.startTable(5);
+        builder.addLong(0, count);
+        builder.addOffset(1, nodeVector);
+        builder.addOffset(2, bufferVector);
+        writeMessage(builder, RECORD_BATCH, builder.endTable(), body.position());
+        output.write(body.array(), 0, body.position());
+
+        return count;
+    }
+
+    /**
+     * Ends the stream. The output is flushed, but not closed.
+     *
+     * @throws IOException If the end of the stream cannot be written.
+     */
+    public void finish() throws IOException
+    {
+        prefix.clear();
+        prefix.putInt(CONTINUATION).putInt(0);
+        output.write(prefix.array());
+        output.flush();
+    }
+
+    private void writeMessage(final FlatBufferBuilder builder, final byte headerType, final int header, final long bodyLength) throws IOException
+    {
+        builder.startTable(5);
+        builder.addShort(0, METADATA_VERSION);
+        builder.addByte(1, headerType);
+        builder.addOffset(2, header);
+        builder.addLong(3, bodyLength);
+        final byte[] metadata = builder.finish(builder.endTable());
+
+        // The metadata is padded so that the body that follows it starts at a multiple of the alignment.
+        final int padding = -metadata.length & ALIGNMENT - 1;
+        prefix.clear();
+        prefix.putInt(CONTINUATION).putInt(metadata.length + padding);
+        output.write(prefix.array());
+        output.write(metadata);
+        output.write(new byte[padding]);
+    }
+
+    private void writeColumn(final ColumnVector vector, final int column, final int count, final boolean contiguous) throws IOException
+    {
+        final ArrowType type = types[column];
+        final int words = count + Long.SIZE - 1 >>> 6;
+        final int validityStart = body.position();
+        ensureCapacity(words * Long.BYTES);
+        long nullCount = 0L;
+        for (int word = 0; word < words; word++)
+        {
+            long valid = 0L;
+            if (contiguous)
+            {
+                valid = ~vector.getNullWord(word);
+            }
+            else
+            {
+                for (int bit = 0, index = word << 6; bit < Long.SIZE && index < count; bit++, index++)
+                {
+                    valid |= vector.isNull(slots[index]) ? 0L : 1L << bit;
+                }
+            }
+            valid &= wordMask(count, word);
+            nullCount += Math.min(Long.SIZE, count - (word << 6)) - Long.bitCount(valid);
+            body.putLong(valid);
+        }
+        nodes[2 * column] = count;
+        nodes[2 * column + 1] = nullCount;
+        if (nullCount == 0)
+        {
+            body.position(validityStart);
+        }
+        addBuffer(validityStart);
+
+        if (type == ArrowType.BOOL)
+        {
+            final int valuesStart = body.position();
+            ensureCapacity(words * Long.BYTES);
+            for (int word = 0; word < words; word++)
+            {
+                long bits = 0L;
+                if (contiguous)
+                {
+                    bits = vector.getTrueWord(word);
+                }
+                else
+                {
+                    for (int bit = 0, index = word << 6; bit < Long.SIZE && index < count; bit++, index++)
+                    {
+                        bits |= Boolean.TRUE.equals(vector.get(slots[index])) ? 1L << bit : 0L;
+                    }
+                }
+                body.putLong(bits & wordMask(count, word));
+            }
+            addBuffer(valuesStart);
+        }
+        else if (type.isVariableWidth())
+        {
+            final int offsetsStart = body.position();
+            ensureCapacity((count + 1) * Integer.BYTES + ALIGNMENT);
+            body.position(offsetsStart + (count + 1) * Integer.BYTES);
+            addBuffer(offsetsStart);
+            final int valuesStart = body.position();
+            for (int index = 0; index < count; index++)
+            {
+                body.putInt(offsetsStart + index * Integer.BYTES, body.position() - valuesStart);
+                final Object value = vector.get(slots[index]);
+                if (value != null)
+                {
+                    final byte[] bytes = encode(column, value);
+                    ensureCapacity(bytes.length);
+                    body.put(bytes);
+                }
+            }
+            body.putInt(offsetsStart + count * Integer.BYTES, body.position() - valuesStart);
+            addBuffer(valuesStart);
+        }
+        else
+        {
+            final int valuesStart = body.position();
+            ensureCapacity(count * type.getBitWidth() / Byte.SIZE);
+            final PrimitiveColumnVector primitives = vector instanceof PrimitiveColumnVector ? (PrimitiveColumnVector) vector : null;
+            for (int index = 0; index < count; index++)
+            {
+                final int slot = slots[index];
+                if (primitives != null && (type == ArrowType.INT64 || type == ArrowType.FLOAT64))
+                {
+                    // Doubles are held as their raw bits, which is how they are written.
+                    body.putLong(primitives.isNull(slot) ? 0L : primitives.getRawValue(slot));
+                }
+                else
+                {
+                    writeFixedWidth(type, vector.get(slot));
+                }
+            }
+            addBuffer(valuesStart);
+        }
+    }
+
+    /**
+     * @return The bits of a word of a bitmap that belong to rows of the batch.
+     */
+    private static long wordMask(final int count, final int word)
+    {
+        final int bits = count - (word << 6);
+
+        return bits >= Long.SIZE ? -1L : (1L << bits) - 1;
+    }
+
+    private void writeFixedWidth(final ArrowType type, final Object value)
+    {
+        switch (type)
+        {
+            case INT8:
+                body.put(value == null ? 0 : (Byte) value);
+                break;
+            case INT16:
+                body.putShort(value == null ? 0 : (Short) value);
+                break;
+            case INT32:
+                body.putInt(value == null ? 0 : (Integer) value);
+                break;
+            case UINT16:
+                body.putChar(value == null ? 0 : (Character) value);
+                break;
+            case FLOAT32:
+                body.putFloat(value == null ? 0.0f : (Float) value);
+                break;
+            case FLOAT64:
+                body.putDouble(value == null ? 0.0 : (Double) value);
+                break;
+            case TIMESTAMP_MILLISECOND:
+                body.putLong(value == null ? 0L : ((Date) value).getTime());
+                break;
+            default:
+                body.putLong(value == null ? 0L : (Long) value);
+                break;
+        }
+    }
+
+    private byte[] encode(final int column, final Object value) throws IOException
+    {
+        if (value instanceof String)
+        {
+            return ((String) value).getBytes(StandardCharsets.UTF_8);
+        }
+        if (byte[].class.equals(dataTypes[column]))
+        {
+            return (byte[]) value;
+        }
+        encodedBytes.reset();
+        ValueCodec.write(encoded, value);
+
+        return encodedBytes.toByteArray();
+    }
+
+    /**
+     * Records the buffer from a position of the body to its current position, and pads the body to the alignment.
+     */
+    private void addBuffer(final int start)
+    {
+        buffers[2 * bufferCount] = start;
+        buffers[2 * bufferCount + 1] = body.position() - start;
+        bufferCount++;
+        ensureCapacity(ALIGNMENT);
+        while (body.position() % ALIGNMENT != 0)
+        {
+            body.put((byte) 0);
+        }
+    }
+
+    private void ensureCapacity(final int bytes)
+    {
+        if (body.remaining() < bytes)
+        {
+            final ByteBuffer grown = ByteBuffer.allocate(Math.max(2 * body.capacity(), body.position() + bytes)).order(ByteOrder.LITTLE_ENDIAN);
+            body.flip();
+            grown.put(body);
+            body = grown;
+        }
+    }
+}
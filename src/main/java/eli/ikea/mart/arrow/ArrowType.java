@@ -0,0 +1,195 @@
+package eli.ikea.mart.arrow;
+
+import java.util.Date;
+
+/**
+ * The Arrow types that the data types of table columns map to. Values of data types without an Arrow counterpart are exported as
+ * {@link #BINARY} values holding their {@link eli.ikea.mart.storage.ValueCodec} encoding.
+ *
+ * @author The Architect
+ */
+public enum ArrowType
+{
+    INT8(ArrowType.INT, Byte.SIZE, true),
+    INT16(ArrowType.INT, Short.SIZE, true),
+    INT32(ArrowType.INT, Integer.SIZE, true),
+    INT64(ArrowType.INT, Long.SIZE, true),
+    /**
+     * The type of {@link Character} values, as their UTF-16 code unit.
+     */
+    UINT16(ArrowType.INT, Character.SIZE, false),
+    FLOAT32(ArrowType.FLOATING_POINT, Float.SIZE, true),
+    FLOAT64(ArrowType.FLOATING_POINT, Double.SIZE, true),
+    /**
+     * The type of {@link Boolean} values, packed one bit per value.
+     */
+    BOOL(ArrowType.BOOL_TYPE, 1, false),
+    UTF8(ArrowType.UTF8_TYPE, 0, false),
+    BINARY(ArrowType.BINARY_TYPE, 0, false),
+    /**
+     * The type of {@link Date} values, as milliseconds since the epoch without a time zone.
+     */
+    TIMESTAMP_MILLISECOND(ArrowType.TIMESTAMP, Long.SIZE, true);
+
+    // The members of the Type union of the Arrow schema.
+    static final byte INT            = 2;
+    static final byte FLOATING_POINT = 3;
+    static final byte BINARY_TYPE    = 4;
+    static final byte UTF8_TYPE      = 5;
+    static final byte BOOL_TYPE      = 6;
+    static final byte TIMESTAMP      = 10;
+
+    private static final short SINGLE_PRECISION = 1;
+    private static final short DOUBLE_PRECISION = 2;
+    private static final short MILLISECOND      = 1;
+
+    private final byte    typeIdentifier;
+    private final int     bitWidth;
+    private final boolean signed;
+
+    private ArrowType(final byte typeIdentifier, final int bitWidth, final boolean signed)
+    {
+        this.typeIdentifier = typeIdentifier;
+        this.bitWidth = bitWidth;
+        this.signed = signed;
+    }
+
+    /**
+     * @param dataType The data type of a column. [Nullable]
+     * @return The non-null Arrow type that the values of the data type are exported as.
+     */
+    public static ArrowType of(final Class<?> dataType)
+    {
+        if (Byte.class.equals(dataType))
+        {
+            return INT8;
+        }
+        if (Short.class.equals(dataType))
+        {
+            return INT16;
+        }
+        if (Integer.class.equals(dataType))
+        {
+            return INT32;
+        }
+        if (Long.class.equals(dataType))
+        {
+            return INT64;
+        }
+        if (Character.class.equals(dataType))
+        {
+            return UINT16;
+        }
+        if (Float.class.equals(dataType))
+        {
+            return FLOAT32;
+        }
+        if (Double.class.equals(dataType))
+        {
+            return FLOAT64;
+        }
+        if (Boolean.class.equals(dataType))
+        {
+            return BOOL;
+        }
+        if (String.class.equals(dataType))
+        {
+            return UTF8;
+        }
+        if (Date.class.equals(dataType))
+        {
+            return TIMESTAMP_MILLISECOND;
+        }
+
+        return BINARY;
+    }
+
+    /**
+     * @return Indicator if the values are held as offsets into a buffer of bytes, rather than at a fixed width.
+     */
+    public boolean isVariableWidth()
+    {
+        return bitWidth == 0;
+    }
+
+    /**
+     * @return The number of bits of every value, or 0 if the values are of variable width.
+     */
+    public int getBitWidth()
+    {
+        return bitWidth;
+    }
+
+    /**
+     * @return The member of the Type union of the Arrow schema.
+     */
+    byte getTypeIdentifier()
+    {
+        return typeIdentifier;
+    }
+
+    /**
+     * @param builder The builder of the schema. [Non-Null]
+     * @return The offset of the table describing the type.
+     */
+    int writeType(final FlatBufferBuilder builder)
+    {
+        switch (typeIdentifier)
+        {
+            case INT:
+                builder.startTable(2);
+                builder.addInt(0, bitWidth);
+                builder.addBoolean(1, signed);
+                break;
+            case FLOATING_POINT:
+                builder.startTable(1);
+                builder.addShort(0, bitWidth == Float.SIZE ? SINGLE_PRECISION : DOUBLE_PRECISION);
+                break;
+            case TIMESTAMP:
+                builder.startTable(2);
+                builder.addShort(0, MILLISECOND);
+                break;
+            default:
+                builder.startTable(0);
+                break;
+        }
+
+        return builder.endTable();
+    }
+
+    /**
+     * @param typeIdentifier The member of the Type union of a field.
+     * @param type The table describing the type. [Nullable]
+     * @return The Arrow type, or <code>NULL</code> if it is not supported. [Nullable]
+     */
+    static ArrowType read(final byte typeIdentifier, final FlatTable type)
+    {
+        switch (typeIdentifier)
+        {
+            case INT:
+                final int bitWidth = type.getInt(0, 0);
+                final boolean signed = type.getBoolean(1, false);
+                for (final ArrowType candidate : values())
+                {
+                    if (candidate.typeIdentifier == INT && candidate.bitWidth == bitWidth && candidate.signed == signed)
+                    {
+                        return candidate;
+                    }
+                }
+                return null;
+            case FLOATING_POINT:
+                final short precision = type.getShort(0, (short) 0);
+                return precision == SINGLE_PRECISION ? FLOAT32 : precision == DOUBLE_PRECISION ? FLOAT64 : null;
+            case BINARY_TYPE:
+                return BINARY;
+            case UTF8_TYPE:
+                return UTF8;
+            case BOOL_TYPE:
+                return BOOL;
+            case TIMESTAMP:
+                return type.getShort(0, (short) 0) == MILLISECOND ? TIMESTAMP_MILLISECOND : null;
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package eli.ikea.mart.arrow;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Minimal builder of little-endian FlatBuffers, as needed for the metadata of Arrow messages. As with the reference builder, the buffer is filled
+ * from its end towards its start, so that every object is written before the objects referring to it, and the offsets of objects are counted from
+ * the end of the buffer. Strings, vectors and nested tables must be created before the table referring to them is started.
+ *
+ * @author The Architect
+ */
+final class FlatBufferBuilder
+{
+    private byte[] bytes            = new byte[256];
+    private int    space            = bytes.length;
+    private int    minimumAlignment = 1;
+    private int[]  vtable;
+    private int    objectStart;
+
+    /**
+     * @return The number of bytes written so far, which is the offset of the object written last.
+     */
+    int offset()
+    {
+        return bytes.length - space;
+    }
+
+    /**
+     * @param value The string to write. [Non-Null]
+     * @return The offset of the string.
+     */
+    int createString(final String value)
+    {
+        final byte[] characters = value.getBytes(StandardCharsets.UTF_8);
+        prep(Integer.BYTES, characters.length + 1);
+        putByte(0);
+        space -= characters.length;
+        System.arraycopy(characters, 0, bytes, space, characters.length);
+        putInt(characters.length);
+
+        return offset();
+    }
+
+    /**
+     * @param offsets The offsets of the objects of the vector, in order. [Non-Null]
+     * @return The offset of the vector.
+     */
+    int createOffsetVector(final int[] offsets)
+    {
+        startVector(Integer.BYTES, offsets.length, Integer.BYTES);
+        for (int index = offsets.length - 1; index >= 0; index--)
+        {
+            putOffset(offsets[index]);
+        }
+
+        return endVector(offsets.length);
+    }
+
+    /**
+     * @param pairs The two <code>long</code> fields of every struct of the vector, in order. [Non-Null]
+     * @param count The number of structs of the vector, whose fields are the first <code>2 * count</code> values of the pairs.
+     * @return The offset of the vector of structs.
+     */
+    int createPairVector(final long[] pairs, final int count)
+    {
+        startVector(2 * Long.BYTES, count, Long.BYTES);
+        for (int index = 2 * count - 1; index >= 0; index--)
+        {
+            putLong(pairs[index]);
+        }
+
+        return endVector(count);
+    }
+
+    /**
+     * @param fieldCount The number of fields of the table.
+     */
+    void startTable(final int fieldCount)
+    {
+        vtable = new int[fieldCount];
+        objectStart = offset();
+    }
+
+    void addByte(final int field, final int value)
+    {
+        prep(1, 0);
+        putByte(value);
+        vtable[field] = offset();
+    }
+
+    void addBoolean(final int field, final boolean value)
+    {
+        addByte(field, value ? 1 : 0);
+    }
+
+    void addShort(final int field, final int value)
+    {
+        prep(Short.BYTES, 0);
+        putShort(value);
+        vtable[field] = offset();
+    }
+
+    void addInt(final int field, final int value)
+    {
+        prep(Integer.BYTES, 0);
+        putInt(value);
+        vtable[field] = offset();
+    }
+
+    void addLong(final int field, final long value)
+    {
+        prep(Long.BYTES, 0);
+        putLong(value);
+        vtable[field] = offset();
+    }
+
+    /**
+     * @param field The index of the field.
+     * @param target The offset of the string, vector or table the field refers to.
+     */
+    void addOffset(final int field, final int target)
+    {
+        putOffset(target);
+        vtable[field] = offset();
+    }
+
+    /**
+     * Writes the table started last, preceded by its vtable.
+     *
+     * @return The offset of the table.
+     */
+    int endTable()
+    {
+        prep(Integer.BYTES, 0);
+        putInt(0);
+        final int objectOffset = offset();
+        int fieldCount = vtable.length;
+        while (fieldCount > 0 && vtable[fieldCount - 1] == 0)
+        {
+            fieldCount--;
+        }
+        prep(Short.BYTES, (fieldCount + 2) * Short.BYTES);
+        for (int field = fieldCount - 1; field >= 0; field--)
+        {
+            putShort(vtable[field] == 0 ? 0 : objectOffset - vtable[field]);
+        }
+        putShort(objectOffset - objectStart);
+        putShort((fieldCount + 2) * Short.BYTES);
+
+        // The table starts with the signed distance back to its vtable, which was written in front of it.
+        final int position = bytes.length - objectOffset;
+        final int distance = offset() - objectOffset;
+        for (int index = 0; index < Integer.BYTES; index++)
+        {
+            bytes[position + index] = (byte) (distance >>> Byte.SIZE * index);
+        }
+        vtable = null;
+
+        return objectOffset;
+    }
+
+    /**
+     * @param root The offset of the root table.
+     * @return The non-null bytes of the buffer, whose length is a multiple of its largest alignment.
+     */
+    byte[] finish(final int root)
+    {
+        prep(minimumAlignment, Integer.BYTES);
+        putOffset(root);
+
+        return Arrays.copyOfRange(bytes, space, bytes.length);
+    }
+
+    private void startVector(final int elementBytes, final int count, final int alignment)
+    {
+        prep(Integer.BYTES, elementBytes * count);
+        prep(alignment, elementBytes * count);
+    }
+
+    private int endVector(final int count)
+    {
+        putInt(count);
+
+        return offset();
+    }
+
+    private void putOffset(final int target)
+    {
+        prep(Integer.BYTES, 0);
+        putInt(offset() + Integer.BYTES - target);
+    }
+
+    /**
+     * Pads the buffer so that it is aligned to a size once a number of additional bytes are written, and ensures the capacity for them.
+     */
+    private void prep(final int alignment, final int additionalBytes)
+    {
+        minimumAlignment = Math.max(minimumAlignment, alignment);
+        final int padding = -(offset() + additionalBytes) & alignment - 1;
+        while (space < padding + alignment + additionalBytes)
+        {
+            final int used = offset();
+            final byte[] grown = new byte[bytes.length * 2];
+            System.arraycopy(bytes, space, grown, grown.length - used, used);
+            bytes = grown;
+            space = grown.length - used;
+        }
+        for (int index = 0; index < padding; index++)
+        {
+            putByte(0);
+        }
+    }
+
+    private void putByte(final int value)
+    {
+        bytes[--space] = (byte) value;
+    }
+
+    private void putShort(final int value)
+    {
+        putByte(value >>> Byte.SIZE);
+        putByte(value);
+    }
+
+    private void putInt(final int value)
+    {
+        putShort(value >>> Short.SIZE);
+        putShort(value);
+    }
+
+    private void putLong(final long value)
+    {
+        putInt((int) (value >>> Integer.SIZE));
+        putInt((int) value);
+    }
+}
@@ -0,0 +1,148 @@
+package eli.ikea.mart.arrow;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Read-only view of a table of a little-endian FlatBuffer, whose fields are located through its vtable. Fields missing from the vtable read as
+ * their default value.
+ *
+ * @author The Architect
+ */
+final class FlatTable
+{
+    private final ByteBuffer buffer;
+    private final int        position;
+    private final int        vtable;
+    private final int        vtableBytes;
+
+    private FlatTable(final ByteBuffer buffer, final int position)
+    {
+        this.buffer = buffer;
+        this.position = position;
+        this.vtable = position - buffer.getInt(position);
+        this.vtableBytes = buffer.getShort(vtable) & 0xFFFF;
+    }
+
+    /**
+     * @param bytes The bytes of a whole FlatBuffer. [Non-Null]
+     * @return The non-null root table of the buffer.
+     */
+    static FlatTable root(final byte[] bytes)
+    {
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+
+        return new FlatTable(buffer, buffer.getInt(0));
+    }
+
+    private int fieldPosition(final int field)
+    {
+        final int entry = (field + 2) * Short.BYTES;
+        final int offset = entry < vtableBytes ? buffer.getShort(vtable + entry) & 0xFFFF : 0;
+
+        return offset == 0 ? -1 : position + offset;
+    }
+
+    private int referencePosition(final int field)
+    {
+        final int fieldPosition = fieldPosition(field);
+
+        return fieldPosition < 0 ? -1 : fieldPosition + buffer.getInt(fieldPosition);
+    }
+
+    byte getByte(final int field, final byte defaultValue)
+    {
+        final int fieldPosition = fieldPosition(field);
+
+        return fieldPosition < 0 ? defaultValue : buffer.get(fieldPosition);
+    }
+
+    boolean getBoolean(final int field, final boolean defaultValue)
+    {
+        final int fieldPosition = fieldPosition(field);
+
+        return fieldPosition < 0 ? defaultValue : buffer.get(fieldPosition) != 0;
+    }
+
+    short getShort(final int field, final short defaultValue)
+    {
+        final int fieldPosition = fieldPosition(field);
+
+        return fieldPosition < 0 ? defaultValue : buffer.getShort(fieldPosition);
+    }
+
+    int getInt(final int field, final int defaultValue)
+    {
+        final int fieldPosition = fieldPosition(field);
+
+        return fieldPosition < 0 ? defaultValue : buffer.getInt(fieldPosition);
+    }
+
+    long getLong(final int field, final long defaultValue)
+    {
+        final int fieldPosition = fieldPosition(field);
+
+        return fieldPosition < 0 ? defaultValue : buffer.getLong(fieldPosition);
+    }
+
+    /**
+     * @return Indicator if the field is present, such as a table or vector that may be omitted.
+     */
+    boolean hasField(final int field)
+    {
+        return fieldPosition(field) >= 0;
+    }
+
+    /**
+     * @return The table the field refers to, or <code>NULL</code> if the field is missing. [Nullable]
+     */
+    FlatTable getTable(final int field)
+    {
+        final int tablePosition = referencePosition(field);
+
+        return tablePosition < 0 ? null : new FlatTable(buffer, tablePosition);
+    }
+
+    /**
+     * @return The string the field refers to, or <code>NULL</code> if the field is missing. [Nullable]
+     */
+    String getString(final int field)
+    {
+        final int stringPosition = referencePosition(field);
+        if (stringPosition < 0)
+        {
+            return null;
+        }
+
+        return new String(buffer.array(), stringPosition + Integer.BYTES, buffer.getInt(stringPosition), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return The number of elements of the vector the field refers to, or 0 if the field is missing.
+     */
+    int getVectorLength(final int field)
+    {
+        final int vectorPosition = referencePosition(field);
+
+        return vectorPosition < 0 ? 0 : buffer.getInt(vectorPosition);
+    }
+
+    /**
+     * @return The table at an index of the vector of tables the field refers to. [Non-Null]
+     */
+    FlatTable getTable(final int field, final int index)
+    {
+        final int elementPosition = referencePosition(field) + Integer.BYTES + index * Integer.BYTES;
+
+        return new FlatTable(buffer, elementPosition + buffer.getInt(elementPosition));
+    }
+
+    /**
+     * @return A <code>long</code> field of the struct at an index of the vector of structs of two <code>long</code> fields the field refers to.
+     */
+    long getPair(final int field, final int index, final int member)
+    {
+        return buffer.getLong(referencePosition(field) + Integer.BYTES + (2 * index + member) * Long.BYTES);
+    }
+}
@@ -0,0 +1,160 @@
+package eli.ikea.mart.cache;
+
+import java.util.Arrays;
+
+import eli.ikea.mart.storage.LocationMap;
+
+/**
+ * Doubly linked list of reference identifiers in the order of their most recent access, from the eldest to the newest. Nodes are held in primitive
+ * arrays and recycled through a free list, and are located by identifier through a {@link LocationMap}.
+ *
+ * @author The Architect
+ */
+final class AccessOrder
+{
+    private static final int NONE = -1;
+
+    private final LocationMap nodes       = new LocationMap(16);
+    private long[]            identifiers = new long[16];
+    private int[]             previous    = new int[16];
+    private int[]             next        = new int[16];
+    private int               eldest      = NONE;
+    private int               newest      = NONE;
+    private int               freeNode    = NONE;
+    private int               nodeCount;
+
+    int size()
+    {
+        return nodes.size();
+    }
+
+    boolean contains(final long referenceIdentifier)
+    {
+        return nodes.get(referenceIdentifier) != LocationMap.MISSING;
+    }
+
+    /**
+     * Appends an identifier that is not already contained as the newest.
+     */
+    void add(final long referenceIdentifier)
+    {
+        final int node;
+        if (freeNode != NONE)
+        {
+            node = freeNode;
+            freeNode = next[node];
+        }
+        else
+        {
+            if (nodeCount == identifiers.length)
+            {
+                identifiers = Arrays.copyOf(identifiers, nodeCount * 2);
+                previous = Arrays.copyOf(previous, nodeCount * 2);
+                next = Arrays.copyOf(next, nodeCount * 2);
+            }
+            node = nodeCount++;
+        }
+        identifiers[node] = referenceIdentifier;
+        link(node);
+        nodes.put(referenceIdentifier, node);
+    }
+
+    /**
+     * @return Indicator if the identifier was contained, and is now the newest.
+     */
+    boolean touch(final long referenceIdentifier)
+    {
+        final long node = nodes.get(referenceIdentifier);
+        if (node == LocationMap.MISSING)
+        {
+            return false;
+        }
+        if (node != newest)
+        {
+            unlink((int) node);
+            link((int) node);
+        }
+
+        return true;
+    }
+
+    /**
+     * @return Indicator if the identifier was contained.
+     */
+    boolean remove(final long referenceIdentifier)
+    {
+        final long node = nodes.get(referenceIdentifier);
+        if (node == LocationMap.MISSING)
+        {
+            return false;
+        }
+        nodes.remove(referenceIdentifier);
+        unlink((int) node);
+        next[(int) node] = freeNode;
+        freeNode = (int) node;
+
+        return true;
+    }
+
+    /**
+     * @return The eldest identifier. Must not be empty.
+     */
+    long peekEldest()
+    {
+        return identifiers[eldest];
+    }
+
+    /**
+     * @return The newest identifier. Must not be empty.
+     */
+    long peekNewest()
+    {
+        return identifiers[newest];
+    }
+
+    /**
+     * @return The eldest identifier, which is removed. Must not be empty.
+     */
+    long pollEldest()
+    {
+        final long referenceIdentifier = identifiers[eldest];
+        remove(referenceIdentifier);
+
+        return referenceIdentifier;
+    }
+
+    private void link(final int node)
+    {
+        previous[node] = newest;
+        next[node] = NONE;
+        if (newest == NONE)
+        {
+            eldest = node;
+        }
+        else
+        {
+            next[newest] = node;
+        }
+        newest = node;
+    }
+
+    private void unlink(final int node)
+    {
+        if (previous[node] == NONE)
+        {
+            eldest = next[node];
+        }
+        else
+        {
+            next[previous[node]] = next[node];
+        }
+        if (next[node] == NONE)
+        {
+            newest = previous[node];
+        }
+        else
+        {
+            previous[next[node]] = previous[node];
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package eli.ikea.mart.cache;
+
+/**
+ * Decides which row a capacity-bounded {@link eli.ikea.mart.Table Table} evicts once it holds more rows than its maximum size. Policies are only
+ * called while the table is locked, so they need not be thread-safe.
+ *
+ * @author The Architect
+ */
+public interface EvictionPolicy
+{
+    /**
+     * @param referenceIdentifier The reference identifier of a row that was inserted.
+     */
+    void recordInsert(long referenceIdentifier);
+
+    /**
+     * @param referenceIdentifier The reference identifier of a row that was read. Rows the policy does not track are ignored.
+     */
+    void recordAccess(long referenceIdentifier);
+
+    /**
+     * @param referenceIdentifier The reference identifier of a row that was deleted or expired. Rows the policy does not track are ignored.
+     */
+    void recordRemoval(long referenceIdentifier);
+
+    /**
+     * Selects the row to evict, and stops tracking it.
+     *
+     * @return The reference identifier of the row to evict.
+     * @throws IllegalStateException If the policy tracks no rows.
+     */
+    long selectVictim();
+}
@@ -0,0 +1,91 @@
+package eli.ikea.mart.cache;
+
+/**
+ * Count-min sketch that estimates how often every key was accessed recently. Each of the four rows of the sketch is a 4-bit
+ * counter packed 16 to a <code>long</code>, so the estimate saturates at 15. Once the number of increments reaches ten times the maximum size of
+ * the cache, every counter is halved, so that the estimates age and favor recent popularity.
+ *
+ * @author The Architect
+ */
+final class FrequencySketch
+{
+    private static final long[] SEEDS         = {0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L};
+    private static final long   RESET_MASK    = 0x7777777777777777L;
+    private static final int    MAXIMUM_COUNT = 15;
+
+    private final long[]        table;
+    private final int           mask;
+    private final int           sampleSize;
+    private int                 additions;
+
+    /**
+     * @param maximumSize The number of rows the cache holds. [Positive]
+     */
+    FrequencySketch(final int maximumSize)
+    {
+        final int words = Integer.highestOneBit(Math.max(64, maximumSize) - 1) << 1;
+        this.table = new long[words];
+        this.mask = words - 1;
+        this.sampleSize = (int) Math.min(Integer.MAX_VALUE, 10L * maximumSize);
+    }
+
+    /**
+     * @return The estimated number of recent accesses of the key, at most 15.
+     */
+    int frequency(final long key)
+    {
+        int frequency = MAXIMUM_COUNT;
+        for (final long seed : SEEDS)
+        {
+            final long hash = mix(key, seed);
+            frequency = Math.min(frequency, (int) (table[index(hash)] >>> shift(hash)) & MAXIMUM_COUNT);
+        }
+
+        return frequency;
+    }
+
+    /**
+     * Counts an access of the key.
+     */
+    void increment(final long key)
+    {
+        boolean incremented = false;
+        for (final long seed : SEEDS)
+        {
+            final long hash = mix(key, seed);
+            final int index = index(hash);
+            final int shift = shift(hash);
+            if ((table[index] >>> shift & MAXIMUM_COUNT) < MAXIMUM_COUNT)
+            {
+                table[index] += 1L << shift;
+                incremented = true;
+            }
+        }
+
+        if (incremented && ++additions >= sampleSize)
+        {
+            for (int index = 0; index < table.length; index++)
+            {
+                table[index] = table[index] >>> 1 & RESET_MASK;
+            }
+            additions /= 2;
+        }
+    }
+
+    private int index(final long hash)
+    {
+        return (int) (hash >>> 32) & mask;
+    }
+
+    private static int shift(final long hash)
+    {
+        return ((int) hash & 15) << 2;
+    }
+
+    private static long mix(final long key, final long seed)
+    {
+        final long hash = (key + seed) * seed;
+
+        return hash ^ hash >>> 29;
+    }
+}
@@ -0,0 +1,40 @@
+package eli.ikea.mart.cache;
+
+/**
+ * Evicts the row that was least recently inserted or read.
+ *
+ * @author The Architect
+ */
+public class LruEvictionPolicy implements EvictionPolicy
+{
+    private final AccessOrder order = new AccessOrder();
+
+    @Override
+    public void recordInsert(final long referenceIdentifier)
+    {
+        order.add(referenceIdentifier);
+    }
+
+    @Override
+    public void recordAccess(final long referenceIdentifier)
+    {
+        order.touch(referenceIdentifier);
+    }
+
+    @Override
+    public void recordRemoval(final long referenceIdentifier)
+    {
+        order.remove(referenceIdentifier);
+    }
+
+    @Override
+    public long selectVictim()
+    {
+        if (order.size() == 0)
+        {
+            throw new IllegalStateException("The eviction policy tracks no rows.");
+        }
+
+        return order.pollEldest();
+    }
+}
@@ -0,0 +1,122 @@
+package eli.ikea.mart.cache;
+
+import eli.ikea.mart.storage.LocationMap;
+
+/**
+ * Window TinyLFU eviction. Inserted rows enter a small LRU window, and rows leaving the window are only admitted into the main space, at the expense
+ * of its eldest probationary row, if they were accessed more frequently according to a {@link FrequencySketch}. The main space is a segmented LRU,
+ * where rows read again while on probation are promoted to a protected segment, so that a burst of rows that are read only once cannot flush the
+ * rows that are read repeatedly. Frequencies are counted per insertion rather than per reference identifier, so that a row reusing the identifier of
+ * an evicted row does not inherit its popularity.
+ *
+ * @author The Architect
+ */
+public class TinyLfuEvictionPolicy implements EvictionPolicy
+{
+    private final int             windowCapacity;
+    private final int             protectedCapacity;
+    private final FrequencySketch sketch;
+    private final AccessOrder     window     = new AccessOrder();
+    private final AccessOrder     probation  = new AccessOrder();
+    private final AccessOrder     protection = new AccessOrder();
+    private final LocationMap     sketchKeys = new LocationMap(16);
+    private long                  candidate  = -1L;
+    private long                  insertionCount;
+
+    /**
+     * @param maximumSize The maximum number of rows of the table, which sizes the window (1%), the protected segment (80% of the remainder) and
+     *            the frequency sketch. [Positive]
+     */
+    public TinyLfuEvictionPolicy(final int maximumSize)
+    {
+        this.windowCapacity = Math.max(1, maximumSize / 100);
+        this.protectedCapacity = (int) ((maximumSize - windowCapacity) * 0.8);
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+
+    @Override
+    public void recordInsert(final long referenceIdentifier)
+    {
+        sketchKeys.put(referenceIdentifier, ++insertionCount);
+        sketch.increment(insertionCount);
+        window.add(referenceIdentifier);
+        if (window.size() > windowCapacity)
+        {
+            // The row leaving the window competes with the eldest probationary row on the next eviction.
+            candidate = window.pollEldest();
+            probation.add(candidate);
+        }
+    }
+
+    @Override
+    public void recordAccess(final long referenceIdentifier)
+    {
+        final long sketchKey = sketchKeys.get(referenceIdentifier);
+        if (sketchKey == LocationMap.MISSING)
+        {
+            return;
+        }
+        sketch.increment(sketchKey);
+        if (window.touch(referenceIdentifier) || protection.touch(referenceIdentifier))
+        {
+            return;
+        }
+        if (probation.remove(referenceIdentifier))
+        {
+            protection.add(referenceIdentifier);
+            if (protection.size() > protectedCapacity)
+            {
+                probation.add(protection.pollEldest());
+            }
+        }
+    }
+
+    @Override
+    public void recordRemoval(final long referenceIdentifier)
+    {
+        sketchKeys.remove(referenceIdentifier);
+        if (!window.remove(referenceIdentifier) && !probation.remove(referenceIdentifier))
+        {
+            protection.remove(referenceIdentifier);
+        }
+    }
+
+    @Override
+    public long selectVictim()
+    {
+        if (probation.size() > 0)
+        {
+            final long victim = probation.peekEldest();
+            if (victim != candidate && probation.contains(candidate) && frequency(candidate) <= frequency(victim))
+            {
+                // The candidate is rejected, and the eldest probationary row is retained.
+                probation.remove(candidate);
+                return forget(candidate);
+            }
+
+            return forget(probation.pollEldest());
+        }
+        if (protection.size() > 0)
+        {
+            return forget(protection.pollEldest());
+        }
+        if (window.size() > 0)
+        {
+            return forget(window.pollEldest());
+        }
+
+        throw new IllegalStateException("The eviction policy tracks no rows.");
+    }
+
+    private int frequency(final long referenceIdentifier)
+    {
+        return sketch.frequency(sketchKeys.get(referenceIdentifier));
+    }
+
+    private long forget(final long referenceIdentifier)
+    {
+        sketchKeys.remove(referenceIdentifier);
+
+        return referenceIdentifier;
+    }
+}
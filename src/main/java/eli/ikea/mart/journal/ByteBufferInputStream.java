@@ -0,0 +1,51 @@
+package eli.ikea.mart.journal;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link InputStream} over the remaining bytes of a buffer, which may be pointed at another buffer so that a single stream decodes many records.
+ *
+ * @author The Architect
+ */
+final class ByteBufferInputStream extends InputStream
+{
+    private ByteBuffer buffer;
+
+    /**
+     * @param buffer The buffer to read from next, whose position advances as it is read. [Non-Null]
+     */
+    void reset(final ByteBuffer buffer)
+    {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int read()
+    {
+        return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int offset, final int length)
+    {
+        if (length == 0)
+        {
+            return 0;
+        }
+        if (!buffer.hasRemaining())
+        {
+            return -1;
+        }
+        final int count = Math.min(length, buffer.remaining());
+        buffer.get(bytes, offset, count);
+
+        return count;
+    }
+
+    @Override
+    public int available()
+    {
+        return buffer.remaining();
+    }
+}
@@ -0,0 +1,634 @@
+package eli.ikea.mart.journal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import eli.ikea.mart.storage.ValueCodec;
+import eli.veritas.exception.AssertionException;
+
+/**
+ * Append-only write-ahead journal of the mutations of a table. Every record is framed by the length and the CRC-32 of its body, and carries a log
+ * sequence number that is one more than the number of the previous record. Callers encode their records into a shared pending buffer, and a
+ * single writer thread swaps that buffer for an empty one and writes every record queued since its previous write at once, forcing the file to
+ * disk as demanded by the {@link SyncPolicy}. Callers that must not continue before their records are durable wait in {@link #awaitCommit()},
+ * so that concurrent callers share a single sync (group commit).
+ * <p>
+ * Opening a journal replays its records, stops at the first torn or corrupt record, and truncates the file there, so that new records follow the
+ * last complete one. Replay maps the file into memory in large windows, and verifies every record without copying it. Once the records up to some
+ * sequence number are held by a checkpoint, the journal may be {@link #truncate(long) truncated} to the records that follow it.
+ *
+ * @author The Architect
+ */
+public class Journal implements AutoCloseable
+{
+    private static final int  HEADER_BYTES        = 2 * Integer.BYTES;
+    private static final int  MINIMUM_BODY_BYTES  = Long.BYTES + 1;
+    private static final long REPLAY_WINDOW_BYTES = 1L << 30;
+
+    private final Path        path;
+    private final SyncPolicy  policy;
+    private final long        syncIntervalNanos;
+    private final Thread      writer;
+    private FileChannel       channel;
+    private RecordBuffer      pending       = new RecordBuffer();
+    private RecordBuffer      spare         = new RecordBuffer();
+    private long              lastSequenceNumber;
+    private long              writtenSequenceNumber;
+    private long              durableSequenceNumber;
+    private long              requestedSequenceNumber;
+    private long              lastSyncNanos = System.nanoTime();
+    private boolean           writing;
+    private boolean           closed;
+    private IOException       failure;
+
+    private Journal(final Path path, final SyncPolicy policy, final long syncIntervalNanos, final long afterSequenceNumber,
+                    final JournalRecord.Handler handler)
+        throws IOException, AssertionException
+    {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.policy = policy;
+        this.syncIntervalNanos = syncIntervalNanos;
+        try
+        {
+            final long validBytes = replay(afterSequenceNumber, handler);
+            channel.truncate(validBytes);
+            channel.position(validBytes);
+            // A journal truncated up to a checkpoint may hold no record at all, so numbering continues after the checkpoint.
+            lastSequenceNumber = Math.max(lastSequenceNumber, afterSequenceNumber);
+        }
+        catch (final IOException | AssertionException | RuntimeException e)
+        {
+            channel.close();
+            throw e;
+        }
+        writtenSequenceNumber = lastSequenceNumber;
+        durableSequenceNumber = lastSequenceNumber;
+        writer = new Thread(this::writeRecords, "journal-writer-" + path.getFileName());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Opens a journal, creating its file if it does not exist, and replays the records it already holds.
+     *
+     * @param path The file of the journal. [Non-Null]
+     * @param policy The moment at which records are forced to disk. [Non-Null]
+     * @param syncIntervalNanos The minimum time between two syncs of the {@link SyncPolicy#PERIODIC} policy, in nanoseconds.
+     * @param afterSequenceNumber The sequence number of the last record already applied, such as by a snapshot; earlier records are skipped.
+     * @param handler The handler applying every replayed record, before any record is appended. [Non-Null]
+     * @return A new non-null journal that appends after the last complete record.
+     * @throws IOException If the journal cannot be read or written.
+     * @throws AssertionException If the handler cannot apply a record.
+     */
+    public static Journal open(final Path path, final SyncPolicy policy, final long syncIntervalNanos, final long afterSequenceNumber,
+                               final JournalRecord.Handler handler)
+        throws IOException, AssertionException
+    {
+        return new Journal(path, policy, syncIntervalNanos, afterSequenceNumber, handler);
+    }
+
+    /**
+     * @return The sync policy of the journal. [Non-Null]
+     */
+    public SyncPolicy getPolicy()
+    {
+        return policy;
+    }
+
+    /**
+     * @return The sequence number of the last record appended, or replayed if none was appended since the journal was opened.
+     */
+    public synchronized long getLastSequenceNumber()
+    {
+        return lastSequenceNumber;
+    }
+
+    /**
+     * @return The sequence number of the last record known to be forced to disk.
+     */
+    public synchronized long getDurableSequenceNumber()
+    {
+        return durableSequenceNumber;
+    }
+
+    /**
+     * @param referenceIdentifier The newly allocated reference identifier of the row.
+     * @param values The values of every column of the row. [Non-Null]
+     * @return The sequence number of the record.
+     */
+    public synchronized long logInsert(final long referenceIdentifier, final Object[] values)
+    {
+        return logRow(JournalRecord.Type.INSERT, referenceIdentifier, values);
+    }
+
+    /**
+     * @param referenceIdentifier The reference identifier of the row.
+     * @param values The new values of every column of the row. [Non-Null]
+     * @return The sequence number of the record.
+     */
+    public synchronized long logUpdate(final long referenceIdentifier, final Object[] values)
+    {
+        return logRow(JournalRecord.Type.UPDATE_ROW, referenceIdentifier, values);
+    }
+
+    /**
+     * @param referenceIdentifier The reference identifier of the row.
+     * @param column The index of the updated column.
+     * @param value The new value of the column. [Nullable]
+     * @return The sequence number of the record.
+     */
+    public synchronized long logUpdate(final long referenceIdentifier, final int column, final Object value)
+    {
+        final int start = begin(JournalRecord.Type.UPDATE_VALUE);
+        try
+        {
+            pending.data.writeLong(referenceIdentifier);
+            pending.data.writeInt(column);
+            ValueCodec.write(pending.data, value);
+        }
+        catch (final IOException e)
+        {
+            throw abort(start, e);
+        }
+
+        return end(start);
+    }
+
+    /**
+     * @param referenceIdentifiers The reference identifiers of the deleted rows. [Non-Null]
+     * @return The sequence number of the record.
+     */
+    public synchronized long logDelete(final long[] referenceIdentifiers)
+    {
+        final int start = begin(JournalRecord.Type.DELETE);
+        try
+        {
+            pending.data.writeInt(referenceIdentifiers.length);
+            for (final long referenceIdentifier : referenceIdentifiers)
+            {
+                pending.data.writeLong(referenceIdentifier);
+            }
+        }
+        catch (final IOException e)
+        {
+            throw abort(start, e);
+        }
+
+        return end(start);
+    }
+
+    /**
+     * Waits until every record appended so far is forced to disk, if the sync policy is {@link SyncPolicy#ALWAYS}. Other policies return at once.
+     *
+     * @throws UncheckedIOException If the journal failed to write, or the wait was interrupted.
+     */
+    public synchronized void awaitCommit()
+    {
+        if (policy == SyncPolicy.ALWAYS)
+        {
+            awaitDurable(lastSequenceNumber);
+        }
+    }
+
+    /**
+     * Forces every record appended so far to disk, regardless of the sync policy, and waits until it is durable.
+     *
+     * @throws UncheckedIOException If the journal failed to write, or the wait was interrupted.
+     */
+    public synchronized void flush()
+    {
+        requestedSequenceNumber = Math.max(requestedSequenceNumber, lastSequenceNumber);
+        notifyAll();
+        awaitDurable(lastSequenceNumber);
+    }
+
+    /**
+     * Discards the records up to a sequence number, such as the records held by a checkpoint, by copying the records that follow it into a new
+     * file that atomically replaces the journal. Appending waits until the copy is complete.
+     *
+     * @param upToSequenceNumber The sequence number of the last record to discard.
+     * @return The number of records discarded.
+     * @throws IOException If the journal cannot be rewritten.
+     */
+    public synchronized long truncate(final long upToSequenceNumber) throws IOException
+    {
+        // Every record appended so far is written first, so that the file holds the whole journal while it is copied.
+        while (writing || pending.size() > 0)
+        {
+            if (failure != null)
+            {
+                throw failure;
+            }
+            requestedSequenceNumber = Math.max(requestedSequenceNumber, lastSequenceNumber);
+            notifyAll();
+            try
+            {
+                wait();
+            }
+            catch (final InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while truncating the journal.");
+            }
+        }
+        if (closed)
+        {
+            throw new IllegalStateException("The journal is closed.");
+        }
+
+        final long size = channel.size();
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + Long.BYTES);
+        long position = 0L;
+        long discardedCount = 0L;
+        while (position < size)
+        {
+            header.clear();
+            channel.read(header, position);
+            if (header.getLong(HEADER_BYTES) > upToSequenceNumber)
+            {
+                break;
+            }
+            position += HEADER_BYTES + header.getInt(0);
+            discardedCount++;
+        }
+        if (discardedCount == 0)
+        {
+            return 0L;
+        }
+
+        final Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (final FileChannel copy = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                                                       StandardOpenOption.WRITE))
+        {
+            for (long copied = position; copied < size;)
+            {
+                copied += channel.transferTo(copied, size - copied, copy);
+            }
+            copy.force(false);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel.close();
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+
+        return discardedCount;
+    }
+
+    /**
+     * Flushes every record, and stops the writer thread. Records may no longer be appended afterwards.
+     *
+     * @throws UncheckedIOException If the journal failed to write, or cannot be closed.
+     */
+    @Override
+    public void close()
+    {
+        synchronized (this)
+        {
+            if (closed)
+            {
+                return;
+            }
+            if (failure == null)
+            {
+                flush();
+            }
+            // Records appended while the flush waited are still written and synced before the writer stops.
+            requestedSequenceNumber = lastSequenceNumber;
+            closed = true;
+            notifyAll();
+        }
+        try
+        {
+            writer.join();
+            channel.close();
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("Interrupted while closing the journal."));
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long logRow(final JournalRecord.Type type, final long referenceIdentifier, final Object[] values)
+    {
+        final int start = begin(type);
+        try
+        {
+            pending.data.writeLong(referenceIdentifier);
+            pending.data.writeInt(values.length);
+            for (final Object value : values)
+            {
+                ValueCodec.write(pending.data, value);
+            }
+        }
+        catch (final IOException e)
+        {
+            throw abort(start, e);
+        }
+
+        return end(start);
+    }
+
+    private int begin(final JournalRecord.Type type)
+    {
+        if (failure != null)
+        {
+            throw new UncheckedIOException(failure);
+        }
+        if (closed)
+        {
+            throw new IllegalStateException("The journal is closed.");
+        }
+
+        final int start = pending.size();
+        // The header is filled in by end(int) once the length of the body is known.
+        pending.skip(HEADER_BYTES);
+        pending.putLong(lastSequenceNumber + 1);
+        pending.write(type.ordinal());
+
+        return start;
+    }
+
+    private long end(final int start)
+    {
+        pending.seal(start);
+        lastSequenceNumber++;
+        notifyAll();
+
+        return lastSequenceNumber;
+    }
+
+    private UncheckedIOException abort(final int start, final IOException e)
+    {
+        pending.truncate(start);
+
+        return new UncheckedIOException(e);
+    }
+
+    private void awaitDurable(final long sequenceNumber)
+    {
+        while (durableSequenceNumber < sequenceNumber)
+        {
+            if (failure != null)
+            {
+                throw new UncheckedIOException(failure);
+            }
+            try
+            {
+                wait();
+            }
+            catch (final InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new UncheckedIOException(new InterruptedIOException("Interrupted while waiting for the journal."));
+            }
+        }
+    }
+
+    private void writeRecords()
+    {
+        while (true)
+        {
+            final FileChannel target;
+            final RecordBuffer batch;
+            final long batchSequenceNumber;
+            final boolean sync;
+            synchronized (this)
+            {
+                try
+                {
+                    while (!isWriteDue())
+                    {
+                        if (closed)
+                        {
+                            return;
+                        }
+                        final long untilSyncNanos = lastSyncNanos + syncIntervalNanos - System.nanoTime();
+                        if (policy == SyncPolicy.PERIODIC && writtenSequenceNumber > durableSequenceNumber)
+                        {
+                            wait(Math.max(1L, untilSyncNanos / 1_000_000L));
+                        }
+                        else
+                        {
+                            wait();
+                        }
+                    }
+                }
+                catch (final InterruptedException e)
+                {
+                    failure = new InterruptedIOException("The journal writer was interrupted.");
+                    notifyAll();
+                    return;
+                }
+                target = channel;
+                batch = pending;
+                pending = spare;
+                writing = true;
+                batchSequenceNumber = lastSequenceNumber;
+                sync = policy == SyncPolicy.ALWAYS || requestedSequenceNumber > durableSequenceNumber
+                       || policy == SyncPolicy.PERIODIC && System.nanoTime() - lastSyncNanos >= syncIntervalNanos;
+            }
+
+            try
+            {
+                final ByteBuffer bytes = batch.toByteBuffer();
+                while (bytes.hasRemaining())
+                {
+                    target.write(bytes);
+                }
+                if (sync)
+                {
+                    target.force(false);
+                }
+            }
+            catch (final IOException e)
+            {
+                synchronized (this)
+                {
+                    failure = e;
+                    writing = false;
+                    notifyAll();
+                }
+                return;
+            }
+
+            synchronized (this)
+            {
+                batch.reset();
+                spare = batch;
+                writing = false;
+                writtenSequenceNumber = batchSequenceNumber;
+                if (sync)
+                {
+                    durableSequenceNumber = batchSequenceNumber;
+                    lastSyncNanos = System.nanoTime();
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    private boolean isWriteDue()
+    {
+        return pending.size() > 0 || requestedSequenceNumber > durableSequenceNumber
+               || policy == SyncPolicy.PERIODIC && writtenSequenceNumber > durableSequenceNumber
+                  && System.nanoTime() - lastSyncNanos >= syncIntervalNanos;
+    }
+
+    private long replay(final long afterSequenceNumber, final JournalRecord.Handler handler) throws IOException, AssertionException
+    {
+        final long size = channel.size();
+        final CRC32 checksum = new CRC32();
+        final ByteBufferInputStream stream = new ByteBufferInputStream();
+        final DataInputStream input = new DataInputStream(stream);
+        MappedByteBuffer window = null;
+        long windowStart = 0L;
+        long position = 0L;
+        while (position + HEADER_BYTES <= size)
+        {
+            if (window == null || position + HEADER_BYTES > windowStart + window.limit())
+            {
+                windowStart = position;
+                window = channel.map(MapMode.READ_ONLY, windowStart, Math.min(REPLAY_WINDOW_BYTES, size - windowStart));
+            }
+            final int length = window.getInt((int) (position - windowStart));
+            final int expectedChecksum = window.getInt((int) (position - windowStart) + Integer.BYTES);
+            if (length < MINIMUM_BODY_BYTES || position + HEADER_BYTES + length > size)
+            {
+                break;
+            }
+            if (position + HEADER_BYTES + length > windowStart + window.limit())
+            {
+                // Records never straddle a window, so the window is moved to the start of the record.
+                windowStart = position;
+                window = channel.map(MapMode.READ_ONLY, windowStart, Math.min(Math.max(REPLAY_WINDOW_BYTES, HEADER_BYTES + length), size - windowStart));
+            }
+
+            final ByteBuffer body = window.duplicate();
+            body.position((int) (position - windowStart) + HEADER_BYTES);
+            body.limit(body.position() + length);
+            checksum.reset();
+            checksum.update(body.duplicate());
+            if ((int) checksum.getValue() != expectedChecksum)
+            {
+                break;
+            }
+
+            final long sequenceNumber = body.getLong();
+            if (sequenceNumber > afterSequenceNumber)
+            {
+                stream.reset(body);
+                handler.apply(decode(sequenceNumber, input));
+            }
+            lastSequenceNumber = sequenceNumber;
+            position += HEADER_BYTES + length;
+        }
+
+        return position;
+    }
+
+    private static JournalRecord decode(final long sequenceNumber, final DataInputStream input) throws IOException
+    {
+        final JournalRecord.Type type = JournalRecord.Type.values()[input.readByte()];
+        switch (type)
+        {
+            case INSERT:
+            case UPDATE_ROW:
+            {
+                final long referenceIdentifier = input.readLong();
+                final Object[] values = new Object[input.readInt()];
+                for (int index = 0; index < values.length; index++)
+                {
+                    values[index] = ValueCodec.read(input);
+                }
+
+                return new JournalRecord(type, sequenceNumber, new long[] {referenceIdentifier}, -1, values);
+            }
+            case UPDATE_VALUE:
+            {
+                final long referenceIdentifier = input.readLong();
+                final int column = input.readInt();
+
+                return new JournalRecord(type, sequenceNumber, new long[] {referenceIdentifier}, column, new Object[] {ValueCodec.read(input)});
+            }
+            default:
+            {
+                final long[] referenceIdentifiers = new long[input.readInt()];
+                for (int index = 0; index < referenceIdentifiers.length; index++)
+                {
+                    referenceIdentifiers[index] = input.readLong();
+                }
+
+                return new JournalRecord(type, sequenceNumber, referenceIdentifiers, -1, new Object[0]);
+            }
+        }
+    }
+
+    /**
+     * Growable buffer of encoded records, whose contents are written without being copied.
+     */
+    private static final class RecordBuffer extends ByteArrayOutputStream
+    {
+        private final DataOutputStream data  = new DataOutputStream(this);
+        private final CRC32            crc32 = new CRC32();
+
+        private RecordBuffer()
+        {
+            super(4096);
+        }
+
+        private void skip(final int length)
+        {
+            for (int index = 0; index < length; index++)
+            {
+                write(0);
+            }
+        }
+
+        private void putLong(final long value)
+        {
+            for (int shift = Long.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE)
+            {
+                write((int) (value >>> shift));
+            }
+        }
+
+        private void seal(final int start)
+        {
+            final int bodyStart = start + HEADER_BYTES;
+            crc32.reset();
+            crc32.update(buf, bodyStart, count - bodyStart);
+            final ByteBuffer header = ByteBuffer.wrap(buf, start, HEADER_BYTES);
+            header.putInt(count - bodyStart);
+            header.putInt((int) crc32.getValue());
+        }
+
+        private void truncate(final int size)
+        {
+            count = size;
+        }
+
+        private ByteBuffer toByteBuffer()
+        {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+}
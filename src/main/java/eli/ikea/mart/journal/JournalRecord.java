@@ -0,0 +1,111 @@
+package eli.ikea.mart.journal;
+
+import eli.veritas.exception.AssertionException;
+
+/**
+ * A single mutation read back from a {@link Journal}.
+ *
+ * @author The Architect
+ */
+public class JournalRecord
+{
+    /**
+     * The kinds of mutations recorded in a journal.
+     */
+    public static enum Type
+    {
+        /**
+         * A row was inserted under a newly allocated reference identifier.
+         */
+        INSERT,
+        /**
+         * Every value of a row was replaced.
+         */
+        UPDATE_ROW,
+        /**
+         * A single value of a row was replaced.
+         */
+        UPDATE_VALUE,
+        /**
+         * A batch of rows was deleted, and their reference identifiers returned to the sequencer.
+         */
+        DELETE;
+    }
+
+    /**
+     * Applies the records of a journal while it is replayed.
+     */
+    @FunctionalInterface
+    public static interface Handler
+    {
+        /**
+         * @param record The record to apply, in the order of the journal. [Non-Null]
+         * @throws AssertionException If the record does not apply to the current state.
+         */
+        void apply(JournalRecord record) throws AssertionException;
+    }
+
+    private final Type     type;
+    private final long     sequenceNumber;
+    private final long[]   referenceIdentifiers;
+    private final int      column;
+    private final Object[] values;
+
+    JournalRecord(final Type type, final long sequenceNumber, final long[] referenceIdentifiers, final int column, final Object[] values)
+    {
+        this.type = type;
+        this.sequenceNumber = sequenceNumber;
+        this.referenceIdentifiers = referenceIdentifiers;
+        this.column = column;
+        this.values = values;
+    }
+
+    /**
+     * @return The non-null kind of the mutation.
+     */
+    public Type getType()
+    {
+        return type;
+    }
+
+    /**
+     * @return The log sequence number of the record, which is one more than the number of the previous record.
+     */
+    public long getSequenceNumber()
+    {
+        return sequenceNumber;
+    }
+
+    /**
+     * @return The reference identifier of the mutated row, or the first of the deleted rows.
+     */
+    public long getReferenceIdentifier()
+    {
+        return referenceIdentifiers[0];
+    }
+
+    /**
+     * @return The non-null reference identifiers of the mutated rows.
+     */
+    public long[] getReferenceIdentifiers()
+    {
+        return referenceIdentifiers;
+    }
+
+    /**
+     * @return The index of the updated column of an {@link Type#UPDATE_VALUE} record, or -1.
+     */
+    public int getColumn()
+    {
+        return column;
+    }
+
+    /**
+     * @return The values of every column of an {@link Type#INSERT} or {@link Type#UPDATE_ROW} record, the single new value of an
+     *         {@link Type#UPDATE_VALUE} record, or an empty array. [Non-Null]
+     */
+    public Object[] getValues()
+    {
+        return values;
+    }
+}
@@ -0,0 +1,23 @@
+package eli.ikea.mart.journal;
+
+/**
+ * The moment at which a {@link Journal} forces its records to disk, trading the durability of the latest records for the throughput of writes.
+ *
+ * @author The Architect
+ */
+public enum SyncPolicy
+{
+    /**
+     * Every batch of records is forced to disk before the callers waiting for it continue, so no acknowledged record is lost by a crash.
+     * Concurrent callers share a single sync.
+     */
+    ALWAYS,
+    /**
+     * Records are forced to disk at most once per sync interval, so a crash of the machine loses at most the records of the last interval.
+     */
+    PERIODIC,
+    /**
+     * Records are handed to the operating system but never forced, so they survive a crash of the process but not of the machine.
+     */
+    NEVER;
+}
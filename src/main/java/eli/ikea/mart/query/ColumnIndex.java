@@ -0,0 +1,169 @@
+package eli.ikea.mart.query;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import eli.ikea.mart.storage.MemoryEstimator;
+
+/**
+ * Secondary index that maps the non-null values of a single column to the reference identifiers of the rows containing them. <code>NULL</code>
+ * values are never indexed.
+ *
+ * @author The Architect
+ */
+public class ColumnIndex
+{
+    private final IndexType              type;
+    private final Map<Object, Set<Long>> postings;
+    private long                         entryCount;
+
+    /**
+     * @param type The structure of the index. [Non-Null]
+     */
+    public ColumnIndex(final IndexType type)
+    {
+        this.type = type;
+        this.postings = type == IndexType.SORTED ? new TreeMap<>() : new HashMap<>();
+    }
+
+    /**
+     * @return The non-null structure of the index.
+     */
+    public IndexType getType()
+    {
+        return type;
+    }
+
+    /**
+     * @return The number of distinct values currently indexed.
+     */
+    public int getKeyCount()
+    {
+        return postings.size();
+    }
+
+    /**
+     * @return The number of reference identifiers currently indexed.
+     */
+    public long getEntryCount()
+    {
+        return entryCount;
+    }
+
+    /**
+     * @param value The column value. [Nullable]
+     * @param referenceIdentifier The reference identifier of the row containing the value.
+     */
+    public void insert(final Object value, final long referenceIdentifier)
+    {
+        if (value != null && postings.computeIfAbsent(value, key -> new HashSet<>(2)).add(referenceIdentifier))
+        {
+            entryCount++;
+        }
+    }
+
+    /**
+     * @param value The column value. [Nullable]
+     * @param referenceIdentifier The reference identifier of the row that no longer contains the value.
+     */
+    public void remove(final Object value, final long referenceIdentifier)
+    {
+        if (value == null)
+        {
+            return;
+        }
+
+        final Set<Long> referenceIdentifiers = postings.get(value);
+        if (referenceIdentifiers != null && referenceIdentifiers.remove(referenceIdentifier))
+        {
+            entryCount--;
+            if (referenceIdentifiers.isEmpty())
+            {
+                postings.remove(value);
+            }
+        }
+    }
+
+    /**
+     * @param value The value to match. [Non-Null]
+     * @return The non-null reference identifiers of every row containing the value.
+     */
+    public long[] lookup(final Object value)
+    {
+        final Set<Long> referenceIdentifiers = postings.get(value);
+
+        return referenceIdentifiers == null ? new long[0] : toArray(referenceIdentifiers, referenceIdentifiers.size());
+    }
+
+    /**
+     * @param lowerBound The inclusive lower bound of the range. (<code>NULL</code> if unbounded)
+     * @param upperBound The inclusive upper bound of the range. (<code>NULL</code> if unbounded)
+     * @return The non-null reference identifiers of every row with a value inside the range, in ascending value order.
+     * @throws UnsupportedOperationException If the index is not {@link IndexType#SORTED sorted}.
+     */
+    public long[] range(final Object lowerBound, final Object upperBound)
+    {
+        if (type != IndexType.SORTED)
+        {
+            throw new UnsupportedOperationException("Range scans require a sorted index.");
+        }
+
+        NavigableMap<Object, Set<Long>> range = (NavigableMap<Object, Set<Long>>) postings;
+        if (lowerBound != null)
+        {
+            range = range.tailMap(lowerBound, true);
+        }
+        if (upperBound != null)
+        {
+            range = range.headMap(upperBound, true);
+        }
+
+        final Collection<Set<Long>> matches = range.values();
+        int matchCount = 0;
+        for (final Set<Long> referenceIdentifiers : matches)
+        {
+            matchCount += referenceIdentifiers.size();
+        }
+
+        final long[] result = new long[matchCount];
+        int index = 0;
+        for (final Set<Long> referenceIdentifiers : matches)
+        {
+            for (final Long referenceIdentifier : referenceIdentifiers)
+            {
+                result[index++] = referenceIdentifier;
+            }
+        }
+
+        return result;
+    }
+
+    private static long[] toArray(final Set<Long> referenceIdentifiers, final int size)
+    {
+        final long[] result = new long[size];
+        int index = 0;
+        for (final Long referenceIdentifier : referenceIdentifiers)
+        {
+            result[index++] = referenceIdentifier;
+        }
+
+        return result;
+    }
+
+    /**
+     * @return The estimated number of bytes held by the index, excluding the indexed values, which are shared with the table.
+     */
+    public long estimateBytes()
+    {
+        final long keyBytes = type == IndexType.SORTED ? (long) postings.size() * MemoryEstimator.TREE_ENTRY_BYTES
+                                                       : MemoryEstimator.hashMap(postings.size());
+
+        // Every key holds a small set of boxed identifiers.
+        return keyBytes + postings.size() * MemoryEstimator.hashMap(2) + entryCount * (MemoryEstimator.HASH_ENTRY_BYTES + MemoryEstimator.BOXED_LONG_BYTES);
+    }
+}
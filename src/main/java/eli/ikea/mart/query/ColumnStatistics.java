@@ -0,0 +1,300 @@
+package eli.ikea.mart.query;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Date;
+
+import eli.ikea.mart.storage.ValueCodec;
+
+/**
+ * Incrementally maintained statistics of a single column, used to estimate the selectivity of query conditions. The minimum and maximum values only
+ * ever widen, so after updates and deletes they describe a conservative bound rather than the exact extremes, and the distinct count is an
+ * approximation taken from a fixed-size linear counting bitmap. Opt-in {@link HyperLogLog} and {@link QuantileSketch} sketches may be attached for
+ * more accurate distinct counts over large columns and for quantiles of numeric columns; sketches only ever grow, so values replaced by updates or
+ * deletes remain counted.
+ *
+ * @author The Architect
+ */
+public class ColumnStatistics
+{
+    private static final int    DISTINCT_BITMAP_BITS      = 1 << 14;
+    private static final double DEFAULT_RANGE_SELECTIVITY = 1.0 / 3.0;
+
+    private final long[]       distinctBitmap = new long[DISTINCT_BITMAP_BITS / Long.SIZE];
+    private int                distinctBitCount;
+    private long               rowCount;
+    private long               nullCount;
+    private Comparable<Object> minimum;
+    private Comparable<Object> maximum;
+    private HyperLogLog        distinctSketch;
+    private QuantileSketch     quantileSketch;
+
+    /**
+     * @param value The value of the column in a newly inserted row. [Nullable]
+     */
+    public void recordInsert(final Object value)
+    {
+        rowCount++;
+        recordValue(value);
+    }
+
+    /**
+     * @param previousValue The value of the column before the update. [Nullable]
+     * @param value The value of the column after the update. [Nullable]
+     */
+    public void recordUpdate(final Object previousValue, final Object value)
+    {
+        if (previousValue == null)
+        {
+            nullCount--;
+        }
+        recordValue(value);
+    }
+
+    /**
+     * @param previousValue The value of the column in a deleted row. [Nullable]
+     */
+    public void recordDelete(final Object previousValue)
+    {
+        rowCount--;
+        if (previousValue == null)
+        {
+            nullCount--;
+        }
+    }
+
+    /**
+     * @return The number of rows described by the statistics.
+     */
+    public long getRowCount()
+    {
+        return rowCount;
+    }
+
+    /**
+     * @return The number of <code>NULL</code> values in the column.
+     */
+    public long getNullCount()
+    {
+        return nullCount;
+    }
+
+    /**
+     * @return The number of non-null values in the column.
+     */
+    public long getValueCount()
+    {
+        return rowCount - nullCount;
+    }
+
+    /**
+     * @return The smallest non-null value ever stored in the column. [Nullable]
+     */
+    public Object getMinimum()
+    {
+        return minimum;
+    }
+
+    /**
+     * @return The largest non-null value ever stored in the column. [Nullable]
+     */
+    public Object getMaximum()
+    {
+        return maximum;
+    }
+
+    /**
+     * @return The distinct count sketch of the column. [Nullable]
+     */
+    public HyperLogLog getDistinctSketch()
+    {
+        return distinctSketch;
+    }
+
+    /**
+     * @param distinctSketch The sketch to maintain as values are recorded, or <code>NULL</code> to stop maintaining it. [Nullable]
+     */
+    public void setDistinctSketch(final HyperLogLog distinctSketch)
+    {
+        this.distinctSketch = distinctSketch;
+    }
+
+    /**
+     * @return The quantile sketch of the column. [Nullable]
+     */
+    public QuantileSketch getQuantileSketch()
+    {
+        return quantileSketch;
+    }
+
+    /**
+     * @param quantileSketch The sketch to maintain as numeric values are recorded, or <code>NULL</code> to stop maintaining it. [Nullable]
+     */
+    public void setQuantileSketch(final QuantileSketch quantileSketch)
+    {
+        this.quantileSketch = quantileSketch;
+    }
+
+    /**
+     * @return The approximate number of distinct non-null values in the column, taken from the distinct count sketch when one is attached.
+     */
+    public long estimateDistinctCount()
+    {
+        final long valueCount = getValueCount();
+        if (distinctSketch != null)
+        {
+            return Math.min(distinctSketch.estimate(), valueCount);
+        }
+        if (distinctBitCount == DISTINCT_BITMAP_BITS)
+        {
+            return valueCount;
+        }
+
+        final double emptyFraction = (double) (DISTINCT_BITMAP_BITS - distinctBitCount) / DISTINCT_BITMAP_BITS;
+        final long estimate = Math.round(-DISTINCT_BITMAP_BITS * Math.log(emptyFraction));
+
+        return Math.min(estimate, valueCount);
+    }
+
+    /**
+     * @return The estimated fraction of rows that are equal to a single non-null value.
+     */
+    public double estimateEqualitySelectivity()
+    {
+        if (rowCount == 0)
+        {
+            return 0.0;
+        }
+
+        return (double) getValueCount() / rowCount / Math.max(1L, estimateDistinctCount());
+    }
+
+    /**
+     * @param lowerBound The inclusive lower bound of the range. (<code>NULL</code> if unbounded)
+     * @param upperBound The inclusive upper bound of the range. (<code>NULL</code> if unbounded)
+     * @return The estimated fraction of rows with a value inside the range. Numeric and temporal columns are interpolated between the minimum and
+     *         maximum, while any other column assumes a fixed selectivity.
+     */
+    public double estimateRangeSelectivity(final Object lowerBound, final Object upperBound)
+    {
+        if (rowCount == 0 || minimum == null)
+        {
+            return 0.0;
+        }
+
+        final double valueFraction = (double) getValueCount() / rowCount;
+        final Double minimumPosition = toPosition(minimum);
+        final Double maximumPosition = toPosition(maximum);
+        if (minimumPosition == null || maximumPosition == null)
+        {
+            return valueFraction * (lowerBound == null && upperBound == null ? 1.0 : DEFAULT_RANGE_SELECTIVITY);
+        }
+
+        final double low = lowerBound == null ? minimumPosition : Math.max(minimumPosition, toPosition(lowerBound));
+        final double high = upperBound == null ? maximumPosition : Math.min(maximumPosition, toPosition(upperBound));
+        if (high < low)
+        {
+            return 0.0;
+        }
+        if (maximumPosition.doubleValue() == minimumPosition.doubleValue())
+        {
+            return valueFraction;
+        }
+
+        return valueFraction * Math.max((high - low) / (maximumPosition - minimumPosition), estimateEqualitySelectivity());
+    }
+
+    /**
+     * Writes the row counts, the distinct bitmap and the extremes of the statistics. Attached sketches are not written.
+     *
+     * @param output The output to write to. [Non-Null]
+     * @throws IOException If the statistics cannot be written, or an extreme cannot be encoded.
+     */
+    public void writeTo(final DataOutput output) throws IOException
+    {
+        output.writeLong(rowCount);
+        output.writeLong(nullCount);
+        for (final long word : distinctBitmap)
+        {
+            output.writeLong(word);
+        }
+        ValueCodec.write(output, minimum);
+        ValueCodec.write(output, maximum);
+    }
+
+    /**
+     * @param input The input holding statistics written by {@link #writeTo(DataOutput)}. [Non-Null]
+     * @return The new non-null statistics, without sketches.
+     * @throws IOException If the statistics cannot be read.
+     */
+    @SuppressWarnings("unchecked")
+    public static ColumnStatistics readFrom(final DataInput input) throws IOException
+    {
+        final ColumnStatistics statistics = new ColumnStatistics();
+        statistics.rowCount = input.readLong();
+        statistics.nullCount = input.readLong();
+        for (int word = 0; word < statistics.distinctBitmap.length; word++)
+        {
+            statistics.distinctBitmap[word] = input.readLong();
+            statistics.distinctBitCount += Long.bitCount(statistics.distinctBitmap[word]);
+        }
+        statistics.minimum = (Comparable<Object>) ValueCodec.read(input);
+        statistics.maximum = (Comparable<Object>) ValueCodec.read(input);
+
+        return statistics;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void recordValue(final Object value)
+    {
+        if (value == null)
+        {
+            nullCount++;
+            return;
+        }
+
+        final int bit = (int) ValueHasher.hash(value) & DISTINCT_BITMAP_BITS - 1;
+        final long mask = 1L << bit;
+        if ((distinctBitmap[bit >>> 6] & mask) == 0)
+        {
+            distinctBitmap[bit >>> 6] |= mask;
+            distinctBitCount++;
+        }
+        if (distinctSketch != null)
+        {
+            distinctSketch.offer(value);
+        }
+        if (quantileSketch != null && value instanceof Number)
+        {
+            quantileSketch.offer(((Number) value).doubleValue());
+        }
+
+        if (value instanceof Comparable)
+        {
+            final Comparable<Object> comparable = (Comparable<Object>) value;
+            if (minimum == null || comparable.compareTo(minimum) < 0)
+            {
+                minimum = comparable;
+            }
+            if (maximum == null || comparable.compareTo(maximum) > 0)
+            {
+                maximum = comparable;
+            }
+        }
+    }
+
+    private static Double toPosition(final Object value)
+    {
+        if (value instanceof Number)
+        {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof Date)
+        {
+            return (double) ((Date) value).getTime();
+        }
+
+        return null;
+    }
+}
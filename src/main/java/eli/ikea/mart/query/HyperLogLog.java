@@ -0,0 +1,166 @@
+package eli.ikea.mart.query;
+
+import java.text.MessageFormat;
+import java.util.Arrays;
+
+import eli.veritas.Verifier;
+import eli.veritas.exception.AssertionException;
+
+/**
+ * Mergeable HyperLogLog sketch estimating the number of distinct values offered to it. The harmonic sum of the registers is maintained as values are
+ * offered, so that {@link #estimate()} is a constant time read. The relative standard error of the estimate is approximately
+ * <code>1.04 / sqrt(2<sup>precision</sup>)</code>.
+ *
+ * @author The Architect
+ */
+public class HyperLogLog
+{
+    /**
+     * The smallest supported precision.
+     */
+    public static final int MINIMUM_PRECISION = 4;
+    /**
+     * The largest supported precision.
+     */
+    public static final int MAXIMUM_PRECISION = 18;
+
+    private final int    precision;
+    private final byte[] registers;
+    private double       inverseSum;
+    private int          zeroRegisters;
+
+    private HyperLogLog(final int precision)
+    {
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+        this.inverseSum = registers.length;
+        this.zeroRegisters = registers.length;
+    }
+
+    /**
+     * @param precision The number of hash bits used to select a register, between {@value #MINIMUM_PRECISION} and {@value #MAXIMUM_PRECISION}.
+     * @return A new non-null empty sketch with <code>2<sup>precision</sup></code> registers.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public static HyperLogLog create(final int precision) throws AssertionException
+    {
+        Verifier.Ranges.assertInsideRange(MessageFormat.format("The precision must be between {0} and {1}.", MINIMUM_PRECISION, MAXIMUM_PRECISION),
+                                          precision,
+                                          MINIMUM_PRECISION,
+                                          MAXIMUM_PRECISION);
+
+        return new HyperLogLog(precision);
+    }
+
+    /**
+     * @return The number of hash bits used to select a register.
+     */
+    public int getPrecision()
+    {
+        return precision;
+    }
+
+    /**
+     * @param value The value to count. [Non-Null]
+     */
+    public void offer(final Object value)
+    {
+        offerHash(ValueHasher.hash(value));
+    }
+
+    /**
+     * @param hash The well distributed 64-bit hash of the value to count.
+     */
+    public void offerHash(final long hash)
+    {
+        final int register = (int) (hash >>> Long.SIZE - precision);
+        // The sentinel bit bounds the rank, so that it always fits within the remaining hash bits.
+        final int rank = Long.numberOfLeadingZeros(hash << precision | 1L << precision - 1) + 1;
+        raise(register, rank);
+    }
+
+    /**
+     * @return The estimated number of distinct values offered to the sketch.
+     */
+    public long estimate()
+    {
+        final int registerCount = registers.length;
+        final double estimate = alpha(registerCount) * registerCount * registerCount / inverseSum;
+        if (estimate <= 2.5 * registerCount && zeroRegisters > 0)
+        {
+            // Linear counting is more accurate while most registers are still empty.
+            return Math.round(registerCount * Math.log((double) registerCount / zeroRegisters));
+        }
+
+        return Math.round(estimate);
+    }
+
+    /**
+     * Merges the registers of another sketch into this one, so that this sketch estimates the distinct values offered to either sketch.
+     *
+     * @param other The sketch to merge, such as the sketch of the same column in another partition. Must have the same precision. [Non-Null]
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public void merge(final HyperLogLog other) throws AssertionException
+    {
+        Verifier.assertNotNull("Must specify a sketch to merge.", other);
+        Verifier.Equality.assertEqual("Only sketches of the same precision may be merged.", other.precision, precision);
+
+        for (int register = 0; register < registers.length; register++)
+        {
+            raise(register, other.registers[register]);
+        }
+    }
+
+    /**
+     * @return A new non-null independent copy of the sketch.
+     */
+    public HyperLogLog copy()
+    {
+        final HyperLogLog copy = new HyperLogLog(precision);
+        System.arraycopy(registers, 0, copy.registers, 0, registers.length);
+        copy.inverseSum = inverseSum;
+        copy.zeroRegisters = zeroRegisters;
+
+        return copy;
+    }
+
+    /**
+     * Removes every value from the sketch.
+     */
+    public void clear()
+    {
+        Arrays.fill(registers, (byte) 0);
+        inverseSum = registers.length;
+        zeroRegisters = registers.length;
+    }
+
+    private void raise(final int register, final int rank)
+    {
+        final int current = registers[register];
+        if (rank > current)
+        {
+            registers[register] = (byte) rank;
+            inverseSum += Math.scalb(1.0, -rank) - Math.scalb(1.0, -current);
+            if (current == 0)
+            {
+                zeroRegisters--;
+            }
+        }
+    }
+
+    private static double alpha(final int registerCount)
+    {
+        switch (registerCount)
+        {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1.0 + 1.079 / registerCount);
+        }
+    }
+}
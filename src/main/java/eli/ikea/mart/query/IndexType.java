@@ -0,0 +1,18 @@
+package eli.ikea.mart.query;
+
+/**
+ * Defines the supported structures of a {@link ColumnIndex}.
+ *
+ * @author The Architect
+ */
+public enum IndexType
+{
+ /**
+  * Supports equality lookups with a single hash probe.
+  */
+ HASH,
+ /**
+  * Supports equality lookups and range scans over ordered keys.
+  */
+ SORTED;
+}
@@ -0,0 +1,247 @@
+package eli.ikea.mart.query;
+
+import eli.veritas.Verifier;
+import eli.veritas.exception.AssertionException;
+
+/**
+ * Mergeable quantile sketch with a relative accuracy guarantee, following the logarithmic bucketing of DDSketch. Each value is counted in the bucket
+ * <code>ceil(log<sub>&gamma;</sub>(|value|))</code>, where <code>&gamma; = (1 + &alpha;) / (1 - &alpha;)</code>, so that any quantile is returned
+ * within a relative error of <code>&alpha;</code> of an actual value at that rank. Recording a value is a constant time operation, and the number of
+ * buckets is bounded by the dynamic range of the values rather than their count. When the bucket limit is reached, the buckets closest to zero are
+ * collapsed together, which only affects the accuracy of the lowest quantiles.
+ *
+ * @author The Architect
+ */
+public class QuantileSketch
+{
+    private static final int MAXIMUM_BUCKETS = 2048;
+
+    private final double  relativeAccuracy;
+    private final double  logGamma;
+    private final Buckets positiveBuckets = new Buckets();
+    private final Buckets negativeBuckets = new Buckets();
+    private long          zeroCount;
+    private long          count;
+    private double        minimum         = Double.POSITIVE_INFINITY;
+    private double        maximum         = Double.NEGATIVE_INFINITY;
+
+    private QuantileSketch(final double relativeAccuracy)
+    {
+        this.relativeAccuracy = relativeAccuracy;
+        this.logGamma = Math.log((1.0 + relativeAccuracy) / (1.0 - relativeAccuracy));
+    }
+
+    /**
+     * @param relativeAccuracy The maximum relative error of the returned quantiles, such as <code>0.01</code> for one percent. [0 &lt; accuracy &lt;
+     *            1]
+     * @return A new non-null empty sketch.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public static QuantileSketch create(final double relativeAccuracy) throws AssertionException
+    {
+        Verifier.Equality.assertEqual("The relative accuracy must be between 0 and 1 exclusive.", relativeAccuracy > 0.0 && relativeAccuracy < 1.0, true);
+
+        return new QuantileSketch(relativeAccuracy);
+    }
+
+    /**
+     * @return The maximum relative error of the returned quantiles.
+     */
+    public double getRelativeAccuracy()
+    {
+        return relativeAccuracy;
+    }
+
+    /**
+     * @return The number of values recorded by the sketch.
+     */
+    public long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * @param value The value to record. <code>NaN</code> values are ignored.
+     */
+    public void offer(final double value)
+    {
+        if (Double.isNaN(value))
+        {
+            return;
+        }
+
+        count++;
+        minimum = Math.min(minimum, value);
+        maximum = Math.max(maximum, value);
+        if (value > Double.MIN_NORMAL)
+        {
+            positiveBuckets.add(bucketOf(value), 1);
+        }
+        else if (value < -Double.MIN_NORMAL)
+        {
+            negativeBuckets.add(bucketOf(-value), 1);
+        }
+        else
+        {
+            zeroCount++;
+        }
+    }
+
+    /**
+     * @param quantile The quantile to estimate, such as <code>0.5</code> for the median or <code>0.99</code> for the 99th percentile. [0 &le;
+     *            quantile &le; 1]
+     * @return The estimated value at the quantile, or <code>NaN</code> if the sketch is empty.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public double estimateQuantile(final double quantile) throws AssertionException
+    {
+        Verifier.Equality.assertEqual("The quantile must be between 0 and 1 inclusive.", quantile >= 0.0 && quantile <= 1.0, true);
+
+        if (count == 0)
+        {
+            return Double.NaN;
+        }
+        if (quantile == 0.0)
+        {
+            return minimum;
+        }
+        if (quantile == 1.0)
+        {
+            return maximum;
+        }
+
+        final long rank = (long) (quantile * (count - 1));
+        long seen = 0;
+        // Negative values are visited from the largest magnitude, followed by the zeros and the positive values from the smallest magnitude.
+        for (int index = negativeBuckets.counts.length - 1; index >= 0; index--)
+        {
+            seen += negativeBuckets.counts[index];
+            if (seen > rank)
+            {
+                return clamp(-valueOf(negativeBuckets.offset + index));
+            }
+        }
+        seen += zeroCount;
+        if (seen > rank)
+        {
+            return 0.0;
+        }
+        for (int index = 0; index < positiveBuckets.counts.length; index++)
+        {
+            seen += positiveBuckets.counts[index];
+            if (seen > rank)
+            {
+                return clamp(valueOf(positiveBuckets.offset + index));
+            }
+        }
+
+        return maximum;
+    }
+
+    /**
+     * Merges the counts of another sketch into this one, so that this sketch estimates the quantiles of the values recorded by either sketch.
+     *
+     * @param other The sketch to merge, such as the sketch of the same column in another partition. Must have the same relative accuracy. [Non-Null]
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public void merge(final QuantileSketch other) throws AssertionException
+    {
+        Verifier.assertNotNull("Must specify a sketch to merge.", other);
+        Verifier.Equality.assertEqual("Only sketches of the same relative accuracy may be merged.", other.relativeAccuracy, relativeAccuracy);
+
+        mergeCounts(other);
+    }
+
+    /**
+     * @return A new non-null independent copy of the sketch.
+     */
+    public QuantileSketch copy()
+    {
+        final QuantileSketch copy = new QuantileSketch(relativeAccuracy);
+        copy.mergeCounts(this);
+
+        return copy;
+    }
+
+    private void mergeCounts(final QuantileSketch other)
+    {
+        positiveBuckets.merge(other.positiveBuckets);
+        negativeBuckets.merge(other.negativeBuckets);
+        zeroCount += other.zeroCount;
+        count += other.count;
+        minimum = Math.min(minimum, other.minimum);
+        maximum = Math.max(maximum, other.maximum);
+    }
+
+    private int bucketOf(final double magnitude)
+    {
+        return (int) Math.ceil(Math.log(magnitude) / logGamma);
+    }
+
+    private double valueOf(final int bucket)
+    {
+        // The midpoint of the bucket in relative terms, so that every value within it is within the relative accuracy.
+        return 2.0 * Math.exp(bucket * logGamma) / (1.0 + Math.exp(logGamma));
+    }
+
+    private double clamp(final double value)
+    {
+        return Math.max(minimum, Math.min(maximum, value));
+    }
+
+    /**
+     * Dense, growable counts of consecutive bucket indexes.
+     */
+    private static class Buckets
+    {
+        private long[] counts = new long[0];
+        private int    offset;
+
+        private void add(final int bucket, final long bucketCount)
+        {
+            if (counts.length == 0)
+            {
+                counts = new long[16];
+                offset = bucket - counts.length / 2;
+            }
+            if (bucket < offset)
+            {
+                grow(bucket, offset + counts.length - 1);
+            }
+            else if (bucket >= offset + counts.length)
+            {
+                grow(offset, bucket);
+            }
+
+            counts[Math.max(bucket, offset) - offset] += bucketCount;
+        }
+
+        private void merge(final Buckets other)
+        {
+            for (int index = 0; index < other.counts.length; index++)
+            {
+                if (other.counts[index] != 0)
+                {
+                    add(other.offset + index, other.counts[index]);
+                }
+            }
+        }
+
+        private void grow(final int lowestBucket, final int highestBucket)
+        {
+            final int length = Math.min(MAXIMUM_BUCKETS, Math.max(counts.length * 2, highestBucket - lowestBucket + 1));
+            // When the range exceeds the limit, the buckets nearest zero are collapsed into the lowest retained bucket.
+            final int newOffset = Math.max(lowestBucket, highestBucket - length + 1);
+            final long[] resized = new long[length];
+            for (int index = 0; index < counts.length; index++)
+            {
+                if (counts[index] != 0)
+                {
+                    resized[Math.max(offset + index, newOffset) - newOffset] += counts[index];
+                }
+            }
+            counts = resized;
+            offset = newOffset;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package eli.ikea.mart.query;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable description of how a query against a table will be executed, as chosen by the {@link QueryPlanner}. The plan may be rendered in an
+ * EXPLAIN-style layout through {@link #explain()}.
+ *
+ * @author The Architect
+ */
+public class QueryPlan
+{
+    /**
+     * Defines the operations that may be chosen to execute a query.
+     */
+    public enum AccessPath
+    {
+     FULL_SCAN("FULL SCAN"),
+     HASH_INDEX_LOOKUP("HASH INDEX LOOKUP"),
+     SORTED_INDEX_RANGE("SORTED INDEX RANGE"),
+     HASH_JOIN("HASH JOIN"),
+     INDEX_NESTED_LOOP_JOIN("INDEX NESTED LOOP JOIN");
+
+        private final String label;
+
+        private AccessPath(final String label)
+        {
+            this.label = label;
+        }
+
+        /**
+         * @return The non-null label of the operation used within an EXPLAIN output.
+         */
+        public String getLabel()
+        {
+            return label;
+        }
+    }
+
+    private final AccessPath      accessPath;
+    private final String          detail;
+    private final double          estimatedRows;
+    private final double          estimatedCost;
+    private final boolean         leftBuildSide;
+    private final List<QueryPlan> inputs;
+
+    QueryPlan(final AccessPath accessPath, final String detail, final double estimatedRows, final double estimatedCost, final boolean leftBuildSide,
+              final QueryPlan ... inputs)
+    {
+        this.accessPath = accessPath;
+        this.detail = detail;
+        this.estimatedRows = estimatedRows;
+        this.estimatedCost = estimatedCost;
+        this.leftBuildSide = leftBuildSide;
+        this.inputs = Collections.unmodifiableList(Arrays.asList(inputs));
+    }
+
+    /**
+     * @return The non-null operation chosen to execute the query.
+     */
+    public AccessPath getAccessPath()
+    {
+        return accessPath;
+    }
+
+    /**
+     * @return The estimated number of rows produced by the operation.
+     */
+    public double getEstimatedRows()
+    {
+        return estimatedRows;
+    }
+
+    /**
+     * @return The estimated cost of the operation, including the cost of its inputs.
+     */
+    public double getEstimatedCost()
+    {
+        return estimatedCost;
+    }
+
+    /**
+     * @return Indicator if a join builds its hash table from (or probes the index of) the left table. Always <code>false</code> for single table
+     *         operations.
+     */
+    public boolean isLeftBuildSide()
+    {
+        return leftBuildSide;
+    }
+
+    /**
+     * @return The non-null, possibly empty, unmodifiable {@link List} of plans feeding this operation.
+     */
+    public List<QueryPlan> getInputs()
+    {
+        return inputs;
+    }
+
+    /**
+     * @return The non-null multi-line EXPLAIN-style rendering of the plan.
+     */
+    public String explain()
+    {
+        final StringBuilder builder = new StringBuilder();
+        explain(builder, 0);
+
+        return builder.toString();
+    }
+
+    @Override
+    public String toString()
+    {
+        return explain();
+    }
+
+    private void explain(final StringBuilder builder, final int depth)
+    {
+        for (int indent = 0; indent < depth; indent++)
+        {
+            builder.append("  ");
+        }
+        if (depth > 0)
+        {
+            builder.append("-> ");
+        }
+        builder.append(String.format("%s %s (rows=%.0f cost=%.2f)%n", accessPath.getLabel(), detail, estimatedRows, estimatedCost));
+        for (final QueryPlan input : inputs)
+        {
+            input.explain(builder, depth + 1);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package eli.ikea.mart.query;
+
+import eli.ikea.mart.query.QueryPlan.AccessPath;
+
+/**
+ * Cost-based planner that chooses between scanning a table and using one of its indexes, and which side of a join builds the hash table, based on the
+ * {@link ColumnStatistics} of the participating columns. Costs are expressed in abstract units where examining a single row during a scan costs one
+ * unit.
+ *
+ * @author The Architect
+ */
+public final class QueryPlanner
+{
+    private static final double SCAN_ROW_COST    = 1.0;
+    private static final double INDEX_ROW_COST   = 1.5;
+    private static final double HASH_PROBE_COST  = 2.0;
+    private static final double HASH_BUILD_COST  = 3.0;
+    private static final double SORTED_SEEK_COST = 1.0;
+
+    private QueryPlanner()
+    {
+    }
+
+    /**
+     * @param target The name of the queried column, used within the EXPLAIN output. [Non-Null]
+     * @param statistics The statistics of the queried column. [Non-Null]
+     * @param blockCount The number of storage blocks of the table.
+     * @param candidateBlockCount The number of storage blocks a scan must visit, after skipping those whose zone map rules out the condition.
+     * @param predicate The description of the condition, used within the EXPLAIN output. [Non-Null]
+     * @param equality Indicator if the condition matches a single value.
+     * @param lowerBound The inclusive lower bound of the condition. (<code>NULL</code> if unbounded)
+     * @param upperBound The inclusive upper bound of the condition. (<code>NULL</code> if unbounded)
+     * @param hashIndexed Indicator if the column has a {@link IndexType#HASH hash} index.
+     * @param sortedIndexed Indicator if the column has a {@link IndexType#SORTED sorted} index.
+     * @return The non-null cheapest plan to select the matching rows.
+     */
+    public static QueryPlan planSelection(final String target, final ColumnStatistics statistics, final int blockCount,
+                                          final int candidateBlockCount, final String predicate, final boolean equality, final Object lowerBound,
+                                          final Object upperBound, final boolean hashIndexed, final boolean sortedIndexed)
+    {
+        final double rowCount = statistics.getRowCount();
+        final double selectivity = equality ? statistics.estimateEqualitySelectivity() : statistics.estimateRangeSelectivity(lowerBound, upperBound);
+        final double matches = rowCount * selectivity;
+        final double scannedFraction = blockCount == 0 ? 0.0 : (double) candidateBlockCount / blockCount;
+
+        QueryPlan plan = new QueryPlan(AccessPath.FULL_SCAN,
+                                       "on " + target + " filter (" + predicate + ") blocks=" + candidateBlockCount + "/" + blockCount,
+                                       matches,
+                                       rowCount * scannedFraction * SCAN_ROW_COST,
+                                       false);
+        if (equality && hashIndexed)
+        {
+            plan = cheapest(plan, new QueryPlan(AccessPath.HASH_INDEX_LOOKUP,
+                                                "on " + target + " key (" + predicate + ")",
+                                                matches,
+                                                HASH_PROBE_COST + matches * INDEX_ROW_COST,
+                                                false));
+        }
+        if (sortedIndexed)
+        {
+            final double seekCost = SORTED_SEEK_COST * log2(statistics.estimateDistinctCount() + 2);
+            plan = cheapest(plan, new QueryPlan(AccessPath.SORTED_INDEX_RANGE,
+                                                "on " + target + " range (" + predicate + ")",
+                                                matches,
+                                                seekCost + matches * INDEX_ROW_COST,
+                                                false));
+        }
+
+        return plan;
+    }
+
+    /**
+     * @param leftTarget The name of the left join column, used within the EXPLAIN output. [Non-Null]
+     * @param leftStatistics The statistics of the left join column. [Non-Null]
+     * @param leftHashIndexed Indicator if the left join column has a {@link IndexType#HASH hash} index.
+     * @param rightTarget The name of the right join column, used within the EXPLAIN output. [Non-Null]
+     * @param rightStatistics The statistics of the right join column. [Non-Null]
+     * @param rightHashIndexed Indicator if the right join column has a {@link IndexType#HASH hash} index.
+     * @return The non-null cheapest plan to join the rows with equal column values. The {@link QueryPlan#isLeftBuildSide() build side} is listed
+     *         as the first input, followed by the probe side.
+     */
+    public static QueryPlan planJoin(final String leftTarget, final ColumnStatistics leftStatistics, final boolean leftHashIndexed,
+                                     final String rightTarget, final ColumnStatistics rightStatistics, final boolean rightHashIndexed)
+    {
+        // Rows with NULL join values never match, so only the non-null values participate.
+        final double leftRows = leftStatistics.getValueCount();
+        final double rightRows = rightStatistics.getValueCount();
+        final double distinct = Math.max(1L, Math.max(leftStatistics.estimateDistinctCount(), rightStatistics.estimateDistinctCount()));
+        final double matches = leftRows * rightRows / distinct;
+        final String detail = "on " + leftTarget + " = " + rightTarget;
+
+        final QueryPlan leftScan = new QueryPlan(AccessPath.FULL_SCAN, "on " + leftTarget, leftRows, leftRows * SCAN_ROW_COST, false);
+        final QueryPlan rightScan = new QueryPlan(AccessPath.FULL_SCAN, "on " + rightTarget, rightRows, rightRows * SCAN_ROW_COST, false);
+        final double scanCost = leftScan.getEstimatedCost() + rightScan.getEstimatedCost();
+
+        QueryPlan plan = new QueryPlan(AccessPath.HASH_JOIN,
+                                       detail + " build=" + leftTarget,
+                                       matches,
+                                       scanCost + leftRows * HASH_BUILD_COST + rightRows * HASH_PROBE_COST,
+                                       true,
+                                       leftScan,
+                                       rightScan);
+        plan = cheapest(plan, new QueryPlan(AccessPath.HASH_JOIN,
+                                            detail + " build=" + rightTarget,
+                                            matches,
+                                            scanCost + rightRows * HASH_BUILD_COST + leftRows * HASH_PROBE_COST,
+                                            false,
+                                            rightScan,
+                                            leftScan));
+        if (leftHashIndexed)
+        {
+            plan = cheapest(plan, new QueryPlan(AccessPath.INDEX_NESTED_LOOP_JOIN,
+                                                detail + " index=" + leftTarget,
+                                                matches,
+                                                rightScan.getEstimatedCost() + rightRows * HASH_PROBE_COST + matches * INDEX_ROW_COST,
+                                                true,
+                                                new QueryPlan(AccessPath.HASH_INDEX_LOOKUP, "on " + leftTarget, matches, matches * INDEX_ROW_COST, false),
+                                                rightScan));
+        }
+        if (rightHashIndexed)
+        {
+            plan = cheapest(plan, new QueryPlan(AccessPath.INDEX_NESTED_LOOP_JOIN,
+                                                detail + " index=" + rightTarget,
+                                                matches,
+                                                leftScan.getEstimatedCost() + leftRows * HASH_PROBE_COST + matches * INDEX_ROW_COST,
+                                                false,
+                                                new QueryPlan(AccessPath.HASH_INDEX_LOOKUP, "on " + rightTarget, matches, matches * INDEX_ROW_COST, false),
+                                                leftScan));
+        }
+
+        return plan;
+    }
+
+    private static QueryPlan cheapest(final QueryPlan current, final QueryPlan candidate)
+    {
+        return candidate.getEstimatedCost() < current.getEstimatedCost() ? candidate : current;
+    }
+
+    private static double log2(final double value)
+    {
+        return Math.log(value) / Math.log(2);
+    }
+}
@@ -0,0 +1,51 @@
+package eli.ikea.mart.query;
+
+/**
+ * Hash function shared by the probabilistic structures that summarize column values. Integral and floating point values are hashed from their full
+ * 64-bit representation, since {@link Long#hashCode()} folds the sign into the lower bits and maps <code>-n-1</code> and <code>n</code> to the same
+ * hash code.
+ *
+ * @author The Architect
+ */
+public final class ValueHasher
+{
+    private ValueHasher()
+    {
+    }
+
+    /**
+     * @param value The value to hash. [Non-Null]
+     * @return The well distributed 64-bit hash of the value.
+     */
+    public static long hash(final Object value)
+    {
+        final long bits;
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)
+        {
+            bits = ((Number) value).longValue();
+        }
+        else if (value instanceof Double || value instanceof Float)
+        {
+            bits = Double.doubleToLongBits(((Number) value).doubleValue());
+        }
+        else
+        {
+            bits = value.hashCode();
+        }
+
+        return mix(bits);
+    }
+
+    /**
+     * @param bits The bits to mix.
+     * @return The SplitMix64 finalization of the bits, so that every input bit affects every output bit.
+     */
+    public static long mix(final long bits)
+    {
+        long mixed = bits + 0x9E3779B97F4A7C15L;
+        mixed = (mixed ^ mixed >>> 30) * 0xBF58476D1CE4E5B9L;
+        mixed = (mixed ^ mixed >>> 27) * 0x94D049BB133111EBL;
+
+        return mixed ^ mixed >>> 31;
+    }
+}
@@ -0,0 +1,153 @@
+package eli.ikea.mart.storage;
+
+import java.util.Arrays;
+
+import eli.ikea.mart.query.ValueHasher;
+import eli.veritas.Verifier;
+import eli.veritas.exception.AssertionException;
+
+/**
+ * Bloom filter over column values, answering whether a value is definitely absent or possibly present. The filter is probed by the 64-bit
+ * {@link ValueHasher#hash(Object) hash} of a value, so that a single hash may be computed once and tested against many filters, such as the filters of
+ * every {@link StorageBlock}. Values can never be removed, so replaced or deleted values only raise the false positive rate until the filter is
+ * rebuilt.
+ *
+ * @author The Architect
+ */
+public class BloomFilter
+{
+    private final long[] bits;
+    private final int    bitCount;
+    private final int    hashCount;
+    private final long   expectedInsertions;
+    private long         insertions;
+
+    BloomFilter(final long expectedInsertions, final double falsePositiveProbability)
+    {
+        final long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        this.bitCount = (int) Math.max(Long.SIZE, Math.min(Integer.MAX_VALUE - Long.SIZE, optimalBits));
+        this.bits = new long[(bitCount + Long.SIZE - 1) / Long.SIZE];
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        this.expectedInsertions = expectedInsertions;
+    }
+
+    private BloomFilter(final BloomFilter other)
+    {
+        this.bits = other.bits.clone();
+        this.bitCount = other.bitCount;
+        this.hashCount = other.hashCount;
+        this.expectedInsertions = other.expectedInsertions;
+        this.insertions = other.insertions;
+    }
+
+    /**
+     * @param expectedInsertions The number of values the filter is sized for. [Positive]
+     * @param falsePositiveProbability The desired false positive probability once the expected number of values have been inserted. [0 &lt;
+     *            probability &lt; 1]
+     * @return A new non-null empty filter.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public static BloomFilter create(final long expectedInsertions, final double falsePositiveProbability) throws AssertionException
+    {
+        Verifier.Inequality.assertGreaterThan("The expected number of insertions must be positive.", expectedInsertions, 0L);
+        Verifier.Equality.assertEqual("The false positive probability must be between 0 and 1 exclusive.",
+                                      falsePositiveProbability > 0.0 && falsePositiveProbability < 1.0,
+                                      true);
+
+        return new BloomFilter(expectedInsertions, falsePositiveProbability);
+    }
+
+    /**
+     * @return A new non-null filter holding the same values, which is maintained independently of this one.
+     */
+    BloomFilter copy()
+    {
+        return new BloomFilter(this);
+    }
+
+    /**
+     * @return The number of values the filter is sized for.
+     */
+    public long getExpectedInsertions()
+    {
+        return expectedInsertions;
+    }
+
+    /**
+     * @return The number of values inserted into the filter.
+     */
+    public long getInsertions()
+    {
+        return insertions;
+    }
+
+    /**
+     * @param value The value to insert. [Non-Null]
+     */
+    public void put(final Object value)
+    {
+        putHash(ValueHasher.hash(value));
+    }
+
+    /**
+     * @param hash The {@link ValueHasher#hash(Object) hash} of the value to insert.
+     */
+    public void putHash(final long hash)
+    {
+        // Kirsch-Mitzenmacher double hashing derives every probe from the two halves of a single 64-bit hash.
+        final int first = (int) hash;
+        final int second = (int) (hash >>> 32);
+        for (int probe = 1; probe <= hashCount; probe++)
+        {
+            final int bit = ((first + probe * second) & Integer.MAX_VALUE) % bitCount;
+            bits[bit >>> 6] |= 1L << bit;
+        }
+        insertions++;
+    }
+
+    /**
+     * @param value The value to test. [Non-Null]
+     * @return <code>False</code> if the value was definitely never inserted.
+     */
+    public boolean mightContain(final Object value)
+    {
+        return mightContainHash(ValueHasher.hash(value));
+    }
+
+    /**
+     * @param hash The {@link ValueHasher#hash(Object) hash} of the value to test.
+     * @return <code>False</code> if the value was definitely never inserted.
+     */
+    public boolean mightContainHash(final long hash)
+    {
+        final int first = (int) hash;
+        final int second = (int) (hash >>> 32);
+        for (int probe = 1; probe <= hashCount; probe++)
+        {
+            final int bit = ((first + probe * second) & Integer.MAX_VALUE) % bitCount;
+            if ((bits[bit >>> 6] & 1L << bit) == 0)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Removes every value from the filter.
+     */
+    public void clear()
+    {
+        Arrays.fill(bits, 0L);
+        insertions = 0;
+    }
+
+    /**
+     * @return The estimated number of bytes held by the filter.
+     */
+    public long estimateBytes()
+    {
+        return MemoryEstimator.array(Long.BYTES, bits.length);
+    }
+}
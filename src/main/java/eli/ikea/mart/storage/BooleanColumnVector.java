@@ -0,0 +1,89 @@
+package eli.ikea.mart.storage;
+
+/**
+ * A {@link ColumnVector} of {@link Boolean} values, packed into a bitset of the values and a bitset of the <code>NULL</code> slots, so that every
+ * slot occupies two bits and predicates may be evaluated 64 slots at a time.
+ *
+ * @author The Architect
+ */
+public class BooleanColumnVector extends ColumnVector
+{
+    private final int    capacity;
+    private final long[] values;
+    private final long[] nulls;
+
+    /**
+     * @param capacity The number of slots in the vector.
+     */
+    public BooleanColumnVector(final int capacity)
+    {
+        this.capacity = capacity;
+        this.values = new long[capacity + 63 >>> 6];
+        this.nulls = new long[capacity + 63 >>> 6];
+    }
+
+    @Override
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    @Override
+    public Object get(final int slot)
+    {
+        return isNull(slot) ? null : (values[slot >>> 6] & 1L << slot) != 0;
+    }
+
+    @Override
+    public void set(final int slot, final Object value)
+    {
+        final long mask = 1L << slot;
+        if (value == null)
+        {
+            nulls[slot >>> 6] |= mask;
+            values[slot >>> 6] &= ~mask;
+        }
+        else
+        {
+            nulls[slot >>> 6] &= ~mask;
+            if ((Boolean) value)
+            {
+                values[slot >>> 6] |= mask;
+            }
+            else
+            {
+                values[slot >>> 6] &= ~mask;
+            }
+        }
+    }
+
+    @Override
+    public boolean isNull(final int slot)
+    {
+        return (nulls[slot >>> 6] & 1L << slot) != 0;
+    }
+
+    @Override
+    public long getNullWord(final int word)
+    {
+        return nulls[word];
+    }
+
+    @Override
+    public long getTrueWord(final int word)
+    {
+        return values[word];
+    }
+
+    @Override
+    public long estimateValueBytes()
+    {
+        return MemoryEstimator.array(Long.BYTES, values.length);
+    }
+
+    @Override
+    public long estimateNullBytes()
+    {
+        return MemoryEstimator.array(Long.BYTES, nulls.length);
+    }
+}
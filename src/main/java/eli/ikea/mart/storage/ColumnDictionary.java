@@ -0,0 +1,105 @@
+package eli.ikea.mart.storage;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The distinct non-null values of a dictionary encoded column, each assigned a dense <code>int</code> code in the order it was first encoded. A
+ * single instance of every value is retained, so that rows sharing a value also share its instance. Codes may be decoded by readers of a
+ * {@link StorageSnapshot} while values are encoded, since existing codes never change.
+ *
+ * @author The Architect
+ */
+public class ColumnDictionary
+{
+    /**
+     * The code of a <code>NULL</code> value, or of a value that is not in the dictionary.
+     */
+    public static final int NULL_CODE = -1;
+
+    private final Map<Object, Integer> codes  = new HashMap<>();
+    private volatile Object[]          values = new Object[16];
+    private int                        size;
+    private long                       valueBytes;
+    private Object                     lastValue;
+    private int                        lastCode;
+
+    /**
+     * @return The number of distinct values in the dictionary.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @param value The value to encode, which is added to the dictionary if it is not already present. [Nullable]
+     * @return The code of the value, or {@link #NULL_CODE} if the value is <code>NULL</code>.
+     */
+    public int encode(final Object value)
+    {
+        final int code = codeOf(value);
+        if (code != NULL_CODE || value == null)
+        {
+            return code;
+        }
+
+        if (size == values.length)
+        {
+            // The grown array is published only once it holds every existing value.
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size] = value;
+        codes.put(value, size);
+        valueBytes += MemoryEstimator.object(value);
+        lastValue = value;
+        lastCode = size;
+
+        return size++;
+    }
+
+    /**
+     * @param value The value to look up. [Nullable]
+     * @return The code of the value, or {@link #NULL_CODE} if the value is <code>NULL</code> or not in the dictionary.
+     */
+    public int codeOf(final Object value)
+    {
+        if (value == null)
+        {
+            return NULL_CODE;
+        }
+        // Scans and bulk loads repeatedly look up the same instance, which is answered without hashing it again.
+        if (value == lastValue)
+        {
+            return lastCode;
+        }
+
+        final Integer code = codes.get(value);
+        if (code == null)
+        {
+            return NULL_CODE;
+        }
+        lastValue = value;
+        lastCode = code;
+
+        return code;
+    }
+
+    /**
+     * @param code The code of a value, or {@link #NULL_CODE}.
+     * @return The value of the code. [Nullable]
+     */
+    public Object decode(final int code)
+    {
+        return code == NULL_CODE ? null : values[code];
+    }
+
+    /**
+     * @return The estimated number of bytes held by the dictionary, including its values.
+     */
+    public long estimateBytes()
+    {
+        return MemoryEstimator.array(MemoryEstimator.REFERENCE_BYTES, values.length) + MemoryEstimator.hashMap(size) + size * 16L + valueBytes;
+    }
+}
@@ -0,0 +1,28 @@
+package eli.ikea.mart.storage;
+
+/**
+ * The physical representation of the values of a column within the {@link StorageBlock blocks} of a {@link TableStorage}.
+ *
+ * @author The Architect
+ */
+public enum ColumnEncoding
+{
+    /**
+     * Every slot holds a reference to its value.
+     */
+    PLAIN,
+    /**
+     * Every slot holds an <code>int</code> code into a {@link ColumnDictionary} shared by every block of the column.
+     */
+    DICTIONARY,
+    /**
+     * New blocks are dictionary encoded for as long as the dictionary of the column holds at most
+     * {@value TableStorage#AUTO_DICTIONARY_LIMIT} distinct values, after which they fall back to {@link #PLAIN}.
+     */
+    AUTO,
+    /**
+     * {@link Long} and {@link Integer} values are bit-packed by a {@link PackedLongColumnVector} once their block is full, and held as a
+     * {@link PrimitiveColumnVector} until then.
+     */
+    PACKED;
+}
@@ -0,0 +1,115 @@
+package eli.ikea.mart.storage;
+
+/**
+ * The values of a single column within a {@link StorageBlock}, addressed by the slot of the row within the block.
+ *
+ * @author The Architect
+ */
+public abstract class ColumnVector
+{
+    /**
+     * @return The number of slots in the vector.
+     */
+    public abstract int getCapacity();
+
+    /**
+     * @return The estimated number of bytes held by the values of the vector, including the values referenced by it.
+     */
+    public abstract long estimateValueBytes();
+
+    /**
+     * @return The estimated number of bytes held by a bitmap of the <code>NULL</code> slots, if the vector keeps one apart from its values.
+     */
+    public long estimateNullBytes()
+    {
+        return 0L;
+    }
+
+    /**
+     * @return Indicator if the vector is held outside the Java heap.
+     */
+    public boolean isOffHeap()
+    {
+        return false;
+    }
+
+    /**
+     * @return Indicator if the values of the vector cannot be {@link #set(int, Object) set}, such as the values of a file, so that the storage must
+     *         replace the vector with a copy in the encoding of its column before writing to it.
+     */
+    public boolean isReadOnly()
+    {
+        return false;
+    }
+
+    /**
+     * @param slot The slot of the row within the block.
+     * @return The value of the column for the row. [Nullable]
+     */
+    public abstract Object get(int slot);
+
+    /**
+     * @param slot The slot of the row within the block.
+     * @param value The value of the column for the row. [Nullable]
+     */
+    public abstract void set(int slot, Object value);
+
+    /**
+     * @param slot The slot of the row within the block.
+     * @return Indicator if the value of the column for the row is <code>NULL</code>.
+     */
+    public boolean isNull(final int slot)
+    {
+        return get(slot) == null;
+    }
+
+    /**
+     * @param slot The slot of the row within the block.
+     * @param value The value to compare with. [Non-Null]
+     * @return Indicator if the value of the column for the row equals the value.
+     */
+    public boolean isEqual(final int slot, final Object value)
+    {
+        return value.equals(get(slot));
+    }
+
+    /**
+     * @param word The index of a word of 64 consecutive slots, starting at slot <code>64 * word</code>.
+     * @return The bits of the slots of the word whose value is <code>NULL</code>, where the lowest bit is the first slot of the word.
+     */
+    public long getNullWord(final int word)
+    {
+        long bits = 0L;
+        final int first = word << 6;
+        final int last = Math.min(first + Long.SIZE, getCapacity());
+        for (int slot = first; slot < last; slot++)
+        {
+            if (isNull(slot))
+            {
+                bits |= 1L << slot;
+            }
+        }
+
+        return bits;
+    }
+
+    /**
+     * @param word The index of a word of 64 consecutive slots, starting at slot <code>64 * word</code>.
+     * @return The bits of the slots of the word whose value is {@link Boolean#TRUE}, where the lowest bit is the first slot of the word.
+     */
+    public long getTrueWord(final int word)
+    {
+        long bits = 0L;
+        final int first = word << 6;
+        final int last = Math.min(first + Long.SIZE, getCapacity());
+        for (int slot = first; slot < last; slot++)
+        {
+            if (Boolean.TRUE.equals(get(slot)))
+            {
+                bits |= 1L << slot;
+            }
+        }
+
+        return bits;
+    }
+}
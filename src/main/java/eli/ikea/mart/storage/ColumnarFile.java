@@ -0,0 +1,653 @@
+package eli.ikea.mart.storage;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.io.CountingOutputStream;
+
+import eli.veritas.Verifier;
+import eli.veritas.exception.AssertionException;
+
+/**
+ * Binary columnar file of the rows of a {@link TableStorage}. The file holds every block as a region of column segments, followed by a footer with
+ * the schema, the dictionaries, the directory of the blocks and an opaque section of metadata, and ends with the offset of the footer. Only the rows
+ * that were not deleted are written, and every block keeps exactly those rows. Each column segment is one of:
+ * <ul>
+ * <li>Fixed-width values, in the layout of an {@link OffHeapColumnVector}: a bitmap of the <code>NULL</code> slots followed by the values.</li>
+ * <li>The <code>int</code> codes of a dictionary encoded column, against the dictionary of the column in the footer.</li>
+ * <li>The offsets of the values followed by the values themselves, encoded by the {@link ValueCodec}.</li>
+ * </ul>
+ * The segments of a column with a {@link TableStorage#setColumnCompression(int, CompressionCodec) compression codec} are compressed as a whole, and
+ * the directory records the codec and the decompressed length of every such segment. Compressed segments are read through
+ * {@link CompressedColumnVector compressed vectors}, which decompress them on first use into the {@link SegmentCache} of the storage.
+ * <p>
+ * Opening a file reads only its footer, and maps every block privately into memory. The column vectors are views of the mapped segments, so no
+ * value is decoded until it is read, and the only work per row is locating it by its reference identifier. Writes to a mapped vector are private
+ * to the process and never reach the file.
+ * <p>
+ * The directory of a {@link #writeCheckpoint(TableStorage, byte[], Path) checkpoint} may also point at blocks held by earlier checkpoints of the
+ * same directory, so that a checkpoint only writes the blocks that changed since they were last written. Dictionaries only ever grow, so the
+ * codes of earlier blocks remain valid against the dictionaries of the latest checkpoint.
+ *
+ * @author The Architect
+ */
+public final class ColumnarFile
+{
+    private static final long   MAGIC              = 0x494B45414D415254L;
+    private static final int    VERSION            = 3;
+    private static final int    PREFIX_BYTES       = Long.BYTES + Integer.BYTES;
+    private static final byte   FIXED_SEGMENT      = 0;
+    private static final byte   DICTIONARY_SEGMENT = 1;
+    private static final byte   ENCODED_SEGMENT    = 2;
+    private static final String CHECKPOINT_PREFIX  = "checkpoint-";
+    private static final String CHECKPOINT_SUFFIX  = ".mart";
+
+    private final TableStorage storage;
+    private final byte[]       metadata;
+
+    private ColumnarFile(final TableStorage storage, final byte[] metadata)
+    {
+        this.storage = storage;
+        this.metadata = metadata;
+    }
+
+    /**
+     * @return The non-null storage of the rows of the file, whose blocks are mapped from the file.
+     */
+    public TableStorage getStorage()
+    {
+        return storage;
+    }
+
+    /**
+     * @return The non-null metadata written with the rows.
+     */
+    public byte[] getMetadata()
+    {
+        return metadata;
+    }
+
+    /**
+     * Writes every row of a storage to a file, replacing any existing file only once the new one is complete, so that tables still mapping the
+     * previous file keep reading it. The blocks of the storage are not marked as written.
+     *
+     * @param storage The storage to write. [Non-Null]
+     * @param metadata The metadata to keep with the rows, such as the schema and statistics of the table. [Non-Null]
+     * @param path The file to write. [Non-Null]
+     * @throws IOException If the file cannot be written, or a value cannot be encoded.
+     */
+    public static void write(final TableStorage storage, final byte[] metadata, final Path path) throws IOException
+    {
+        write(storage, metadata, path.toAbsolutePath(), null);
+    }
+
+    /**
+     * Writes a checkpoint of a storage into a directory, as the successor of the latest checkpoint of the directory. Only the blocks that changed
+     * since they were last written to a checkpoint of the directory are written; the directory of the checkpoint points at the earlier files for
+     * the others. Afterwards, every block is marked as written, and the checkpoints of the directory that no block refers to any longer are
+     * deleted.
+     *
+     * @param storage The storage to write. [Non-Null]
+     * @param metadata The metadata to keep with the rows, such as the schema and statistics of the table. [Non-Null]
+     * @param directory The directory of the checkpoints, which is created if it does not exist. [Non-Null]
+     * @return The number of blocks written, excluding the unchanged blocks kept by earlier checkpoints.
+     * @throws IOException If the checkpoint cannot be written, or a value cannot be encoded.
+     */
+    public static int writeCheckpoint(final TableStorage storage, final byte[] metadata, final Path directory) throws IOException
+    {
+        final Path absoluteDirectory = directory.toAbsolutePath();
+        Files.createDirectories(absoluteDirectory);
+        final Path latest = latestCheckpoint(absoluteDirectory);
+        final long number = latest == null ? 1L : checkpointNumber(latest) + 1;
+        final Path path = absoluteDirectory.resolve(String.format("%s%010d%s", CHECKPOINT_PREFIX, number, CHECKPOINT_SUFFIX));
+        final int writtenCount = write(storage, metadata, path, absoluteDirectory);
+
+        final Set<Path> referenced = new HashSet<>();
+        referenced.add(path);
+        for (int blockIndex = 0; blockIndex < storage.getBlockCount(); blockIndex++)
+        {
+            final BlockOrigin origin = storage.getBlock(blockIndex).getOrigin();
+            if (origin != null)
+            {
+                referenced.add(origin.file);
+            }
+        }
+        try (final DirectoryStream<Path> checkpoints = Files.newDirectoryStream(absoluteDirectory, CHECKPOINT_PREFIX + "*" + CHECKPOINT_SUFFIX))
+        {
+            for (final Path checkpoint : checkpoints)
+            {
+                if (!referenced.contains(checkpoint))
+                {
+                    Files.deleteIfExists(checkpoint);
+                }
+            }
+        }
+
+        return writtenCount;
+    }
+
+    /**
+     * @param directory The directory of the checkpoints. [Non-Null]
+     * @return The latest checkpoint of the directory, or <code>NULL</code> if it holds none. [Nullable]
+     * @throws IOException If the directory cannot be listed.
+     */
+    public static Path latestCheckpoint(final Path directory) throws IOException
+    {
+        if (!Files.isDirectory(directory))
+        {
+            return null;
+        }
+
+        Path latest = null;
+        try (final DirectoryStream<Path> checkpoints = Files.newDirectoryStream(directory, CHECKPOINT_PREFIX + "*" + CHECKPOINT_SUFFIX))
+        {
+            for (final Path checkpoint : checkpoints)
+            {
+                if (latest == null || checkpointNumber(checkpoint) > checkpointNumber(latest))
+                {
+                    latest = checkpoint;
+                }
+            }
+        }
+
+        return latest == null ? null : latest.toAbsolutePath();
+    }
+
+    private static boolean isCheckpointOf(final Path directory, final Path file)
+    {
+        final String name = file.getFileName().toString();
+
+        return directory.equals(file.getParent()) && name.startsWith(CHECKPOINT_PREFIX) && name.endsWith(CHECKPOINT_SUFFIX);
+    }
+
+    private static long checkpointNumber(final Path checkpoint)
+    {
+        final String name = checkpoint.getFileName().toString();
+
+        return Long.parseLong(name.substring(CHECKPOINT_PREFIX.length(), name.length() - CHECKPOINT_SUFFIX.length()));
+    }
+
+    /**
+     * @param reuseDirectory The directory whose files may hold unchanged blocks, or <code>NULL</code> to write every block without marking it as
+     *            written. [Nullable]
+     */
+    private static int write(final TableStorage storage, final byte[] metadata, final Path path, final Path reuseDirectory) throws IOException
+    {
+        final Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        final int columnCount = storage.getColumnCount();
+        final Map<Path, Integer> fileIndexes = new LinkedHashMap<>();
+        fileIndexes.put(path, 0);
+        final ByteArrayOutputStream directoryBytes = new ByteArrayOutputStream();
+        final DataOutputStream directory = new DataOutputStream(directoryBytes);
+        final List<StorageBlock> writtenBlocks = new ArrayList<>();
+        final List<byte[]> writtenEntries = new ArrayList<>();
+        int blockCount = 0;
+        try (final CountingOutputStream counter = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)));
+             final DataOutputStream output = new DataOutputStream(counter))
+        {
+            output.writeLong(MAGIC);
+            output.writeInt(VERSION);
+            for (int blockIndex = 0; blockIndex < storage.getBlockCount(); blockIndex++)
+            {
+                final StorageBlock block = storage.getBlock(blockIndex);
+                if (block.getLiveCount() == 0)
+                {
+                    continue;
+                }
+                blockCount++;
+
+                final BlockOrigin origin = block.getOrigin();
+                if (reuseDirectory != null && !block.isDirty() && origin != null && isCheckpointOf(reuseDirectory, origin.file))
+                {
+                    if (!fileIndexes.containsKey(origin.file))
+                    {
+                        fileIndexes.put(origin.file, fileIndexes.size());
+                    }
+                    directory.writeInt(fileIndexes.get(origin.file));
+                    directory.write(origin.entry);
+                    continue;
+                }
+
+                final byte[] entry = writeBlock(output, counter, storage, block, columnCount);
+                directory.writeInt(0);
+                directory.write(entry);
+                writtenBlocks.add(block);
+                writtenEntries.add(entry);
+            }
+
+            final long footerOffset = counter.getCount();
+            output.writeInt(columnCount);
+            output.writeInt(storage.getBlockCapacity());
+            for (int column = 0; column < columnCount; column++)
+            {
+                final Class<?> dataType = storage.getDataType(column);
+                output.writeUTF(dataType == null ? "" : dataType.getName());
+                output.writeByte(storage.getColumnEncoding(column).ordinal());
+                final CompressionCodec codec = storage.getColumnCompression(column);
+                output.writeUTF(codec == null ? "" : codec.getName());
+                final ColumnDictionary dictionary = storage.dictionaryOf(column);
+                output.writeInt(dictionary == null ? -1 : dictionary.size());
+                for (int code = 0; dictionary != null && code < dictionary.size(); code++)
+                {
+                    ValueCodec.write(output, dictionary.decode(code));
+                }
+            }
+            output.writeInt(fileIndexes.size());
+            for (final Path file : fileIndexes.keySet())
+            {
+                output.writeUTF(path.getParent().relativize(file).toString());
+            }
+            output.writeInt(blockCount);
+            directoryBytes.writeTo(output);
+            output.writeInt(metadata.length);
+            output.write(metadata);
+            output.writeLong(footerOffset);
+        }
+        catch (final IOException e)
+        {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        try (final FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE))
+        {
+            // The file must be durable before it replaces its predecessor, or before a journal is truncated up to it.
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        if (reuseDirectory != null)
+        {
+            for (int index = 0; index < writtenBlocks.size(); index++)
+            {
+                writtenBlocks.get(index).markWritten(new BlockOrigin(path, writtenEntries.get(index)));
+            }
+        }
+
+        return writtenBlocks.size();
+    }
+
+    /**
+     * @return The entry of the block in the directory of the file, without the index of its file.
+     */
+    private static byte[] writeBlock(final DataOutputStream output, final CountingOutputStream counter, final TableStorage storage,
+                                     final StorageBlock block, final int columnCount)
+        throws IOException
+    {
+        final int size = block.getLiveCount();
+        final int[] slots = new int[size];
+        for (int slot = block.nextLiveSlot(0), index = 0; slot < block.getSize(); slot = block.nextLiveSlot(slot + 1))
+        {
+            slots[index++] = slot;
+        }
+
+        final ByteArrayOutputStream entryBytes = new ByteArrayOutputStream();
+        final DataOutputStream entry = new DataOutputStream(entryBytes);
+        align(output, counter.getCount());
+        final long blockOffset = counter.getCount();
+        entry.writeLong(blockOffset);
+        entry.writeInt(size);
+        for (final int slot : slots)
+        {
+            output.writeLong(block.getReferenceIdentifier(slot));
+        }
+        for (int column = 0; column < columnCount; column++)
+        {
+            align(output, counter.getCount());
+            final long segmentOffset = counter.getCount();
+            final ZoneMap zoneMap = new ZoneMap();
+            final CompressionCodec codec = storage.getColumnCompression(column);
+            final byte kind;
+            int uncompressedLength = 0;
+            if (codec == null)
+            {
+                kind = writeSegment(output, storage, block, column, slots, zoneMap);
+            }
+            else
+            {
+                final ByteArrayOutputStream segmentBytes = new ByteArrayOutputStream();
+                kind = writeSegment(new DataOutputStream(segmentBytes), storage, block, column, slots, zoneMap);
+                uncompressedLength = segmentBytes.size();
+                output.write(codec.compress(segmentBytes.toByteArray(), 0, uncompressedLength));
+            }
+            entry.writeByte(kind);
+            entry.writeInt((int) (segmentOffset - blockOffset));
+            entry.writeInt((int) (counter.getCount() - segmentOffset));
+            entry.writeUTF(codec == null ? "" : codec.getName());
+            if (codec != null)
+            {
+                entry.writeInt(uncompressedLength);
+            }
+            entry.writeInt(zoneMap.getValueCount());
+            entry.writeInt(zoneMap.getNullCount());
+            ValueCodec.write(entry, zoneMap.getMinimum());
+            ValueCodec.write(entry, zoneMap.getMaximum());
+        }
+        entry.writeLong(counter.getCount() - blockOffset);
+
+        return entryBytes.toByteArray();
+    }
+
+    /**
+     * Opens a file written by {@link #write(TableStorage, byte[], Path)} or {@link #writeCheckpoint(TableStorage, byte[], Path)}, together with
+     * the earlier checkpoints it points at. The files are opened for writing only so that they can be mapped privately; they are never modified.
+     *
+     * @param path The file to open. [Non-Null]
+     * @param dataTypes The data types of every column, which must match the data types of the file. [Non-Null]
+     * @return The non-null rows and metadata of the file.
+     * @throws IOException If the file cannot be read, or is not a columnar file.
+     * @throws AssertionException If the columns of the file do not match the data types.
+     */
+    public static ColumnarFile open(final Path path, final Class<?>[] dataTypes) throws IOException, AssertionException
+    {
+        final Path absolutePath = path.toAbsolutePath();
+        final FileChannel[] channels;
+        final byte[] footerBytes;
+        try (final FileChannel channel = FileChannel.open(absolutePath, StandardOpenOption.READ))
+        {
+            final long fileSize = channel.size();
+            if (fileSize < PREFIX_BYTES + Long.BYTES)
+            {
+                throw new EOFException("The file " + path + " is too short to be a columnar file.");
+            }
+            final ByteBuffer prefix = read(channel, 0L, PREFIX_BYTES);
+            if (prefix.getLong() != MAGIC || prefix.getInt() != VERSION)
+            {
+                throw new IOException("The file " + path + " is not a columnar file of version " + VERSION + ".");
+            }
+            final long footerOffset = read(channel, fileSize - Long.BYTES, Long.BYTES).getLong();
+            footerBytes = read(channel, footerOffset, (int) (fileSize - Long.BYTES - footerOffset)).array();
+        }
+
+        final ByteArrayInputStream footerInput = new ByteArrayInputStream(footerBytes);
+        final DataInputStream footer = new DataInputStream(footerInput);
+        final int columnCount = footer.readInt();
+        Verifier.Equality.assertEqual("The file must hold the same number of columns as the table.", columnCount, dataTypes.length);
+        final TableStorage storage = new TableStorage(dataTypes, footer.readInt(), null);
+        for (int column = 0; column < columnCount; column++)
+        {
+            Verifier.Equality.assertEqual("The columns of the file must have the data types of the table.",
+                                          footer.readUTF(),
+                                          dataTypes[column] == null ? "" : dataTypes[column].getName());
+            storage.setColumnEncoding(column, ColumnEncoding.values()[footer.readByte()]);
+            final String codecName = footer.readUTF();
+            if (!codecName.isEmpty())
+            {
+                storage.setColumnCompression(column, codecOf(codecName));
+            }
+            final int dictionarySize = footer.readInt();
+            if (dictionarySize >= 0)
+            {
+                // Codes are assigned in order, so encoding the values in order reproduces the codes of the file.
+                final ColumnDictionary dictionary = new ColumnDictionary();
+                for (int code = 0; code < dictionarySize; code++)
+                {
+                    dictionary.encode(ValueCodec.read(footer));
+                }
+                storage.restoreDictionary(column, dictionary);
+            }
+        }
+
+        final Path[] files = new Path[footer.readInt()];
+        for (int fileIndex = 0; fileIndex < files.length; fileIndex++)
+        {
+            files[fileIndex] = absolutePath.resolveSibling(footer.readUTF()).normalize();
+        }
+        channels = new FileChannel[files.length];
+        try
+        {
+            final int blockCount = footer.readInt();
+            for (int blockIndex = 0; blockIndex < blockCount; blockIndex++)
+            {
+                final int fileIndex = footer.readInt();
+                if (channels[fileIndex] == null)
+                {
+                    channels[fileIndex] = FileChannel.open(files[fileIndex], StandardOpenOption.READ, StandardOpenOption.WRITE);
+                }
+                final int entryStart = footerBytes.length - footerInput.available();
+                final StorageBlock block = readBlock(channels[fileIndex], footer, storage, columnCount);
+                final int entryEnd = footerBytes.length - footerInput.available();
+                block.markWritten(new BlockOrigin(files[fileIndex], Arrays.copyOfRange(footerBytes, entryStart, entryEnd)));
+                storage.restoreBlock(block);
+            }
+        }
+        finally
+        {
+            for (final FileChannel channel : channels)
+            {
+                if (channel != null)
+                {
+                    channel.close();
+                }
+            }
+        }
+        final byte[] metadata = new byte[footer.readInt()];
+        footer.readFully(metadata);
+
+        return new ColumnarFile(storage, metadata);
+    }
+
+    private static byte writeSegment(final DataOutputStream output, final TableStorage storage, final StorageBlock block, final int column,
+                                     final int[] slots, final ZoneMap zoneMap)
+        throws IOException
+    {
+        // The decompressed segment of a compressed vector keeps its dictionary codes, if any.
+        final ColumnVector vector = block.getColumn(column) instanceof CompressedColumnVector
+                                    ? ((CompressedColumnVector) block.getColumn(column)).getSegment()
+                                    : block.getColumn(column);
+        final Object[] values = new Object[slots.length];
+        for (int index = 0; index < slots.length; index++)
+        {
+            values[index] = vector.get(slots[index]);
+            zoneMap.record(values[index]);
+        }
+
+        if (vector instanceof DictionaryColumnVector && ((DictionaryColumnVector) vector).getDictionary() == storage.dictionaryOf(column))
+        {
+            for (final int slot : slots)
+            {
+                output.writeInt(((DictionaryColumnVector) vector).getCode(slot));
+            }
+
+            return DICTIONARY_SEGMENT;
+        }
+
+        final FixedWidthType type = storage.getDataType(column) == null ? null : FixedWidthType.of(storage.getDataType(column));
+        if (type != null)
+        {
+            for (int first = 0; first < values.length; first += Long.SIZE)
+            {
+                long nulls = 0L;
+                for (int index = first; index < Math.min(first + Long.SIZE, values.length); index++)
+                {
+                    nulls |= values[index] == null ? 1L << index : 0L;
+                }
+                output.writeLong(nulls);
+            }
+            for (final Object value : values)
+            {
+                writeFixedWidth(output, type, value);
+            }
+
+            return FIXED_SEGMENT;
+        }
+
+        final ByteArrayOutputStream encodedBytes = new ByteArrayOutputStream();
+        final DataOutputStream encoded = new DataOutputStream(encodedBytes);
+        for (final Object value : values)
+        {
+            output.writeInt(encodedBytes.size());
+            ValueCodec.write(encoded, value);
+        }
+        output.writeInt(encodedBytes.size());
+        encodedBytes.writeTo(output);
+
+        return ENCODED_SEGMENT;
+    }
+
+    private static void writeFixedWidth(final DataOutputStream output, final FixedWidthType type, final Object value) throws IOException
+    {
+        switch (type)
+        {
+            case LONG:
+                output.writeLong(value == null ? 0L : (Long) value);
+                break;
+            case INTEGER:
+                output.writeInt(value == null ? 0 : (Integer) value);
+                break;
+            case DOUBLE:
+                output.writeDouble(value == null ? 0.0 : (Double) value);
+                break;
+            default:
+                output.writeByte(value != null && (Boolean) value ? 1 : 0);
+                break;
+        }
+    }
+
+    private static StorageBlock readBlock(final FileChannel channel, final DataInputStream footer, final TableStorage storage, final int columnCount)
+        throws IOException
+    {
+        final long blockOffset = footer.readLong();
+        final int size = footer.readInt();
+        final byte[] kinds = new byte[columnCount];
+        final int[] segmentOffsets = new int[columnCount];
+        final int[] segmentLengths = new int[columnCount];
+        final CompressionCodec[] codecs = new CompressionCodec[columnCount];
+        final int[] uncompressedLengths = new int[columnCount];
+        final ZoneMap[] zoneMaps = new ZoneMap[columnCount];
+        for (int column = 0; column < columnCount; column++)
+        {
+            kinds[column] = footer.readByte();
+            segmentOffsets[column] = footer.readInt();
+            segmentLengths[column] = footer.readInt();
+            final String codecName = footer.readUTF();
+            if (!codecName.isEmpty())
+            {
+                codecs[column] = codecOf(codecName);
+                uncompressedLengths[column] = footer.readInt();
+            }
+            final int valueCount = footer.readInt();
+            final int nullCount = footer.readInt();
+            zoneMaps[column] = new ZoneMap();
+            zoneMaps[column].restore(ValueCodec.read(footer), ValueCodec.read(footer), valueCount, nullCount);
+        }
+        final MappedByteBuffer region = channel.map(MapMode.PRIVATE, blockOffset, footer.readLong());
+
+        final long[] referenceIdentifiers = new long[size];
+        region.asLongBuffer().get(referenceIdentifiers);
+        final ColumnVector[] columns = new ColumnVector[columnCount];
+        for (int column = 0; column < columnCount; column++)
+        {
+            final ByteBuffer segment = slice(region, segmentOffsets[column], segmentLengths[column]);
+            if (kinds[column] != FIXED_SEGMENT && kinds[column] != DICTIONARY_SEGMENT && kinds[column] != ENCODED_SEGMENT)
+            {
+                throw new IOException("Unknown column segment " + kinds[column] + ".");
+            }
+            columns[column] = codecs[column] == null
+                              ? wrapSegment(kinds[column], storage, column, size, segment)
+                              : new CompressedColumnVector(segment, uncompressedLengths[column], codecs[column], kinds[column], storage, column, size);
+        }
+
+        return new StorageBlock(referenceIdentifiers, columns, zoneMaps);
+    }
+
+    /**
+     * @param kind The kind of the segment, which is known to be valid.
+     * @param storage The storage of the column. [Non-Null]
+     * @param column The index of the column.
+     * @param size The number of rows of the block.
+     * @param segment The uncompressed segment. [Non-Null]
+     * @return The non-null column vector viewing the segment.
+     */
+    static ColumnVector wrapSegment(final byte kind, final TableStorage storage, final int column, final int size, final ByteBuffer segment)
+    {
+        switch (kind)
+        {
+            case FIXED_SEGMENT:
+                return new OffHeapColumnVector(FixedWidthType.of(storage.getDataType(column)), size, segment);
+            case DICTIONARY_SEGMENT:
+                return new DictionaryColumnVector(storage.dictionaryOf(column), segment.asIntBuffer(), false);
+            default:
+                return new EncodedColumnVector(segment, size);
+        }
+    }
+
+    private static CompressionCodec codecOf(final String name) throws IOException
+    {
+        final CompressionCodec codec = CompressionCodecs.forName(name);
+        if (codec == null)
+        {
+            throw new IOException("The compression codec " + name + " is not registered.");
+        }
+
+        return codec;
+    }
+
+    /**
+     * The file holding the last written copy of a block, and the entry of the block in the directory of that file.
+     */
+    static final class BlockOrigin
+    {
+        private final Path   file;
+        private final byte[] entry;
+
+        BlockOrigin(final Path file, final byte[] entry)
+        {
+            this.file = file;
+            this.entry = entry;
+        }
+    }
+
+    private static ByteBuffer slice(final ByteBuffer region, final int offset, final int length)
+    {
+        final ByteBuffer view = region.duplicate();
+        view.position(offset);
+        view.limit(offset + length);
+
+        return view.slice();
+    }
+
+    private static ByteBuffer read(final FileChannel channel, final long position, final int length) throws IOException
+    {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+            {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+
+        return buffer;
+    }
+
+    private static void align(final DataOutputStream output, final long offset) throws IOException
+    {
+        // Segments start at multiples of 8 bytes, so that the values of a mapped segment are aligned to their width.
+        for (long padding = -offset & Long.BYTES - 1; padding > 0; padding--)
+        {
+            output.writeByte(0);
+        }
+    }
+}
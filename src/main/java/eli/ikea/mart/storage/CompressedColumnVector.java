@@ -0,0 +1,173 @@
+package eli.ikea.mart.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+
+/**
+ * A read-only {@link ColumnVector} of a compressed column segment of a {@link ColumnarFile}, such as a slice of a memory-mapped file. The segment
+ * is only decompressed when a value is first read, into a {@link SegmentCache} shared by the storage, and every read is served by the decompressed
+ * segment. The vector keeps a weak reference to the segment it last read, so that consecutive reads skip the cache lookup without keeping the
+ * segment reachable once the cache evicts it. The storage replaces the vector with a copy in the encoding of its column before writing to it.
+ *
+ * @author The Architect
+ */
+public class CompressedColumnVector extends ColumnVector
+{
+    private final ByteBuffer                     compressed;
+    private final int                            uncompressedLength;
+    private final CompressionCodec               codec;
+    private final byte                           kind;
+    private final TableStorage                   storage;
+    private final int                            column;
+    private final int                            capacity;
+    private final SegmentCache                   cache;
+    private volatile WeakReference<ColumnVector> segment = new WeakReference<>(null);
+
+    /**
+     * @param compressed The compressed segment, which is not modified. [Non-Null]
+     * @param uncompressedLength The number of bytes of the decompressed segment.
+     * @param codec The codec the segment was compressed with. [Non-Null]
+     * @param kind The kind of the decompressed segment, as written by the {@link ColumnarFile}.
+     * @param storage The storage the vector belongs to. [Non-Null]
+     * @param column The index of the column of the vector.
+     * @param capacity The number of slots in the vector.
+     */
+    CompressedColumnVector(final ByteBuffer compressed, final int uncompressedLength, final CompressionCodec codec, final byte kind,
+                           final TableStorage storage, final int column, final int capacity)
+    {
+        this.compressed = compressed;
+        this.uncompressedLength = uncompressedLength;
+        this.codec = codec;
+        this.kind = kind;
+        this.storage = storage;
+        this.column = column;
+        this.capacity = capacity;
+        this.cache = storage.getSegmentCache();
+    }
+
+    /**
+     * @return The non-null codec the segment was compressed with.
+     */
+    public CompressionCodec getCodec()
+    {
+        return codec;
+    }
+
+    /**
+     * @return The number of bytes of the decompressed segment.
+     */
+    public int getUncompressedLength()
+    {
+        return uncompressedLength;
+    }
+
+    /**
+     * @return The number of bytes of the compressed segment.
+     */
+    public int getCompressedLength()
+    {
+        return compressed.remaining();
+    }
+
+    /**
+     * @return The non-null decompressed segment, from the cache of the storage.
+     */
+    ColumnVector getSegment()
+    {
+        ColumnVector decompressed = segment.get();
+        if (decompressed == null)
+        {
+            decompressed = cache.get(this);
+            segment = new WeakReference<>(decompressed);
+        }
+
+        return decompressed;
+    }
+
+    /**
+     * @return The non-null segment, decompressed without consulting the cache.
+     * @throws UncheckedIOException If the segment cannot be decompressed.
+     */
+    ColumnVector decompress()
+    {
+        final byte[] bytes = new byte[uncompressedLength];
+        try
+        {
+            codec.decompress(compressed.duplicate(), bytes);
+
+            return ColumnarFile.wrapSegment(kind, storage, column, capacity, ByteBuffer.wrap(bytes));
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    @Override
+    public Object get(final int slot)
+    {
+        return getSegment().get(slot);
+    }
+
+    /**
+     * Compressed vectors are read-only; the storage replaces them with a copy before writing to them.
+     */
+    @Override
+    public void set(final int slot, final Object value)
+    {
+        throw new UnsupportedOperationException("A compressed column vector is read-only.");
+    }
+
+    @Override
+    public boolean isNull(final int slot)
+    {
+        return getSegment().isNull(slot);
+    }
+
+    @Override
+    public boolean isEqual(final int slot, final Object value)
+    {
+        return getSegment().isEqual(slot, value);
+    }
+
+    @Override
+    public long getNullWord(final int word)
+    {
+        return getSegment().getNullWord(word);
+    }
+
+    @Override
+    public long getTrueWord(final int word)
+    {
+        return getSegment().getTrueWord(word);
+    }
+
+    /**
+     * @return The number of bytes of the compressed segment, since the decompressed segment is held by the cache rather than the vector.
+     */
+    @Override
+    public long estimateValueBytes()
+    {
+        return compressed.remaining();
+    }
+
+    @Override
+    public boolean isOffHeap()
+    {
+        return compressed.isDirect();
+    }
+
+    @Override
+    public boolean isReadOnly()
+    {
+        return true;
+    }
+}
@@ -0,0 +1,34 @@
+package eli.ikea.mart.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Compresses the column segments of a {@link ColumnarFile}. A codec is selected per column through
+ * {@link TableStorage#setColumnCompression(int, CompressionCodec)}, and is recorded by name with every segment it compressed, so that a file is
+ * read back with the codec registered under that name in {@link CompressionCodecs}. Implementations must be safe for use by several threads.
+ *
+ * @author The Architect
+ */
+public interface CompressionCodec
+{
+    /**
+     * @return The non-blank name of the codec, which is written to the files it compresses.
+     */
+    String getName();
+
+    /**
+     * @param bytes The bytes to compress. [Non-Null]
+     * @param offset The index of the first byte to compress.
+     * @param length The number of bytes to compress.
+     * @return The non-null compressed bytes.
+     */
+    byte[] compress(byte[] bytes, int offset, int length);
+
+    /**
+     * @param compressed The compressed bytes, from the position to the limit of the buffer, which the codec may advance. [Non-Null]
+     * @param destination The array to decompress into, whose length is exactly the number of bytes that were compressed. [Non-Null]
+     * @throws IOException If the compressed bytes are corrupt, or do not decompress to the length of the destination.
+     */
+    void decompress(ByteBuffer compressed, byte[] destination) throws IOException;
+}
@@ -0,0 +1,55 @@
+package eli.ikea.mart.storage;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import eli.veritas.Verifier;
+import eli.veritas.exception.AssertionException;
+
+/**
+ * Registry of the {@link CompressionCodec codecs} that the segments of a {@link ColumnarFile} are decompressed with, keyed by the name recorded
+ * with every segment. The {@link #DEFLATE} codec is always registered; other codecs must be registered before opening files written with them.
+ *
+ * @author The Architect
+ */
+public final class CompressionCodecs
+{
+    /**
+     * The codec of the DEFLATE format at the default compression level.
+     */
+    public static final CompressionCodec DEFLATE = new DeflateCodec();
+
+    private static final Map<String, CompressionCodec> CODECS = new ConcurrentHashMap<>();
+
+    static
+    {
+        CODECS.put(DEFLATE.getName(), DEFLATE);
+    }
+
+    private CompressionCodecs()
+    {
+    }
+
+    /**
+     * Registers a codec under its name, replacing any codec registered under the same name.
+     *
+     * @param codec The codec to register. [Non-Null]
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public static void register(final CompressionCodec codec) throws AssertionException
+    {
+        Verifier.assertNotNull("Must specify the codec to register.", codec);
+        Verifier.Strings.assertNotBlank("The codec must have a name.", codec.getName());
+
+        CODECS.put(codec.getName(), codec);
+    }
+
+    /**
+     * @param name The name of a codec. [Non-Null]
+     * @return The codec registered under the name, or <code>NULL</code> if there is none. [Nullable]
+     */
+    public static CompressionCodec forName(final String name)
+    {
+        return CODECS.get(name);
+    }
+}
@@ -0,0 +1,113 @@
+package eli.ikea.mart.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * {@link CompressionCodec} of the DEFLATE format in a zlib wrapper, by the {@link Deflater} and {@link Inflater} of the JDK. Both hold native memory
+ * until they are ended, so every call uses its own instance and ends it before returning.
+ *
+ * @author The Architect
+ */
+public final class DeflateCodec implements CompressionCodec
+{
+    /**
+     * The name of the codec.
+     */
+    public static final String NAME = "deflate";
+
+    private static final int CHUNK_BYTES = 8192;
+
+    private final int level;
+
+    /**
+     * Creates a codec of the default compression level.
+     */
+    public DeflateCodec()
+    {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param level The compression level, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}, or
+     *            {@link Deflater#DEFAULT_COMPRESSION}. Files written at any level are read by any codec of this format.
+     */
+    public DeflateCodec(final int level)
+    {
+        this.level = level;
+    }
+
+    @Override
+    public String getName()
+    {
+        return NAME;
+    }
+
+    @Override
+    public byte[] compress(final byte[] bytes, final int offset, final int length)
+    {
+        final Deflater deflater = new Deflater(level);
+        try
+        {
+            deflater.setInput(bytes, offset, length);
+            deflater.finish();
+            final ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 4 + 16);
+            final byte[] chunk = new byte[CHUNK_BYTES];
+            while (!deflater.finished())
+            {
+                compressed.write(chunk, 0, deflater.deflate(chunk));
+            }
+
+            return compressed.toByteArray();
+        }
+        finally
+        {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public void decompress(final ByteBuffer compressed, final byte[] destination) throws IOException
+    {
+        final Inflater inflater = new Inflater();
+        try
+        {
+            if (compressed.hasArray())
+            {
+                inflater.setInput(compressed.array(), compressed.arrayOffset() + compressed.position(), compressed.remaining());
+            }
+            else
+            {
+                final byte[] input = new byte[compressed.remaining()];
+                compressed.get(input);
+                inflater.setInput(input);
+            }
+            int length = 0;
+            while (!inflater.finished())
+            {
+                final int inflated = inflater.inflate(destination, length, destination.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary() || length == destination.length))
+                {
+                    throw new IOException("The compressed segment is truncated, or longer than " + destination.length + " bytes.");
+                }
+                length += inflated;
+            }
+            if (length != destination.length)
+            {
+                throw new IOException("The compressed segment holds " + length + " bytes instead of " + destination.length + ".");
+            }
+        }
+        catch (final DataFormatException e)
+        {
+            throw new IOException("The compressed segment is corrupt.", e);
+        }
+        finally
+        {
+            inflater.end();
+        }
+    }
+}
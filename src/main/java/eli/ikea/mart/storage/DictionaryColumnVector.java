@@ -0,0 +1,113 @@
+package eli.ikea.mart.storage;
+
+import java.nio.IntBuffer;
+
+/**
+ * A {@link ColumnVector} that holds the {@link ColumnDictionary} code of every value, so that equality tests, grouping and joins may compare
+ * <code>int</code> codes instead of the values themselves.
+ *
+ * @author The Architect
+ */
+public class DictionaryColumnVector extends ColumnVector
+{
+    private final ColumnDictionary dictionary;
+    private final IntBuffer        codes;
+
+    /**
+     * @param dictionary The dictionary shared by every block of the column. [Non-Null]
+     * @param capacity The number of slots in the vector.
+     */
+    public DictionaryColumnVector(final ColumnDictionary dictionary, final int capacity)
+    {
+        this(dictionary, IntBuffer.allocate(capacity));
+    }
+
+    /**
+     * @param dictionary The dictionary shared by every block of the column. [Non-Null]
+     * @param codes The storage of the codes, such as a view of an off-heap region, with one element per slot. [Non-Null]
+     */
+    public DictionaryColumnVector(final ColumnDictionary dictionary, final IntBuffer codes)
+    {
+        this(dictionary, codes, true);
+    }
+
+    /**
+     * @param dictionary The dictionary shared by every block of the column. [Non-Null]
+     * @param codes The storage of the codes, with one element per slot. [Non-Null]
+     * @param clear Indicator if every slot should be set to <code>NULL</code>, rather than keeping the codes already held by the storage, such as
+     *            the codes of a memory-mapped file.
+     */
+    DictionaryColumnVector(final ColumnDictionary dictionary, final IntBuffer codes, final boolean clear)
+    {
+        this.dictionary = dictionary;
+        this.codes = codes;
+        for (int slot = 0; clear && slot < codes.capacity(); slot++)
+        {
+            codes.put(slot, ColumnDictionary.NULL_CODE);
+        }
+    }
+
+    /**
+     * @return The non-null dictionary of the codes.
+     */
+    public ColumnDictionary getDictionary()
+    {
+        return dictionary;
+    }
+
+    /**
+     * @param slot The slot of the row within the block.
+     * @return The code of the value of the column for the row, or {@link ColumnDictionary#NULL_CODE} if it is <code>NULL</code>.
+     */
+    public int getCode(final int slot)
+    {
+        return codes.get(slot);
+    }
+
+    @Override
+    public int getCapacity()
+    {
+        return codes.capacity();
+    }
+
+    @Override
+    public Object get(final int slot)
+    {
+        return dictionary.decode(codes.get(slot));
+    }
+
+    @Override
+    public void set(final int slot, final Object value)
+    {
+        codes.put(slot, dictionary.encode(value));
+    }
+
+    @Override
+    public boolean isNull(final int slot)
+    {
+        return codes.get(slot) == ColumnDictionary.NULL_CODE;
+    }
+
+    @Override
+    public boolean isEqual(final int slot, final Object value)
+    {
+        final int code = codes.get(slot);
+
+        return code != ColumnDictionary.NULL_CODE && code == dictionary.codeOf(value);
+    }
+
+    /**
+     * The dictionary is shared by every block of the column, and is estimated apart from the vector.
+     */
+    @Override
+    public long estimateValueBytes()
+    {
+        return codes.isDirect() ? (long) codes.capacity() * Integer.BYTES : MemoryEstimator.array(Integer.BYTES, codes.capacity());
+    }
+
+    @Override
+    public boolean isOffHeap()
+    {
+        return codes.isDirect();
+    }
+}
@@ -0,0 +1,84 @@
+package eli.ikea.mart.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A read-only {@link ColumnVector} of values encoded by the {@link ValueCodec}, held in a region such as a slice of a memory-mapped file. The region
+ * starts with the offset of every slot and the end offset of the last slot, followed by the encoded values, so that any slot is decoded without
+ * reading the others. Values are decoded on every read, and the storage replaces the vector with a copy in the encoding of its column before
+ * writing to it.
+ *
+ * @author The Architect
+ */
+public class EncodedColumnVector extends ColumnVector
+{
+    private final ByteBuffer buffer;
+    private final int        capacity;
+    private final int        valuesOffset;
+
+    /**
+     * @param buffer The region of the vector, which is not modified. [Non-Null]
+     * @param capacity The number of slots in the vector.
+     */
+    EncodedColumnVector(final ByteBuffer buffer, final int capacity)
+    {
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.valuesOffset = (capacity + 1) * Integer.BYTES;
+    }
+
+    @Override
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    @Override
+    public Object get(final int slot)
+    {
+        final int start = buffer.getInt(slot * Integer.BYTES);
+        final byte[] bytes = new byte[buffer.getInt((slot + 1) * Integer.BYTES) - start];
+        final ByteBuffer view = buffer.duplicate();
+        view.position(valuesOffset + start);
+        view.get(bytes);
+        try
+        {
+            return ValueCodec.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Encoded vectors are read-only; the storage replaces them with a copy before writing to them.
+     */
+    @Override
+    public void set(final int slot, final Object value)
+    {
+        throw new UnsupportedOperationException("An encoded column vector is read-only.");
+    }
+
+    @Override
+    public long estimateValueBytes()
+    {
+        return buffer.capacity();
+    }
+
+    @Override
+    public boolean isOffHeap()
+    {
+        return buffer.isDirect();
+    }
+
+    @Override
+    public boolean isReadOnly()
+    {
+        return true;
+    }
+}
@@ -0,0 +1,55 @@
+package eli.ikea.mart.storage;
+
+/**
+ * The data types whose values are stored in primitive form, at a fixed width, rather than as references.
+ *
+ * @author The Architect
+ */
+public enum FixedWidthType
+{
+    LONG(Long.BYTES),
+    INTEGER(Integer.BYTES),
+    DOUBLE(Double.BYTES),
+    BOOLEAN(1);
+
+    private final int width;
+
+    private FixedWidthType(final int width)
+    {
+        this.width = width;
+    }
+
+    /**
+     * @return The number of bytes of every value, when stored one value per slot.
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * @param dataType The data type of a column. [Non-Null]
+     * @return The fixed-width type of the data type, or <code>NULL</code> if its values are not of a fixed width.
+     */
+    public static FixedWidthType of(final Class<?> dataType)
+    {
+        if (Long.class.equals(dataType))
+        {
+            return LONG;
+        }
+        if (Integer.class.equals(dataType))
+        {
+            return INTEGER;
+        }
+        if (Double.class.equals(dataType))
+        {
+            return DOUBLE;
+        }
+        if (Boolean.class.equals(dataType))
+        {
+            return BOOLEAN;
+        }
+
+        return null;
+    }
+}
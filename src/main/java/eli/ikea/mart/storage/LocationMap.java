@@ -0,0 +1,205 @@
+package eli.ikea.mart.storage;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from a reference identifier to the packed location of its row within the {@link TableStorage}. Keys and values are held
+ * in primitive arrays, so that no entry objects or boxed values are retained per row.
+ *
+ * @author The Architect
+ */
+public class LocationMap
+{
+    /**
+     * The value returned for identifiers that are not mapped.
+     */
+    public static final long  MISSING     = -1L;
+
+    private static final long EMPTY       = 0L;
+    private static final int  MIN_BUCKETS = 16;
+
+    private long[]            keys;
+    private long[]            values;
+    private int               size;
+    private boolean           hasEmptyKey;
+    private long              emptyKeyValue;
+
+    /**
+     * @param expectedSize The number of entries expected to be stored without resizing.
+     */
+    public LocationMap(final int expectedSize)
+    {
+        allocate(bucketsFor(expectedSize));
+    }
+
+    /**
+     * @return The number of mapped identifiers.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @param key The reference identifier.
+     * @return The location of the identifier, or {@value #MISSING} if it is not mapped.
+     */
+    public long get(final long key)
+    {
+        if (key == EMPTY)
+        {
+            return hasEmptyKey ? emptyKeyValue : MISSING;
+        }
+
+        final int mask = keys.length - 1;
+        for (int bucket = bucketOf(key, mask);; bucket = bucket + 1 & mask)
+        {
+            if (keys[bucket] == key)
+            {
+                return values[bucket];
+            }
+            if (keys[bucket] == EMPTY)
+            {
+                return MISSING;
+            }
+        }
+    }
+
+    /**
+     * @param key The reference identifier.
+     * @param value The location of the identifier. Must not be {@value #MISSING}.
+     */
+    public void put(final long key, final long value)
+    {
+        if (key == EMPTY)
+        {
+            if (!hasEmptyKey)
+            {
+                hasEmptyKey = true;
+                size++;
+            }
+            emptyKeyValue = value;
+            return;
+        }
+
+        final int mask = keys.length - 1;
+        int bucket = bucketOf(key, mask);
+        while (keys[bucket] != EMPTY && keys[bucket] != key)
+        {
+            bucket = bucket + 1 & mask;
+        }
+        if (keys[bucket] == EMPTY)
+        {
+            keys[bucket] = key;
+            size++;
+        }
+        values[bucket] = value;
+
+        if (size > keys.length * 3 / 4)
+        {
+            rehash(keys.length * 2);
+        }
+    }
+
+    /**
+     * @param key The reference identifier.
+     * @return Indicator if the identifier was mapped.
+     */
+    public boolean remove(final long key)
+    {
+        if (key == EMPTY)
+        {
+            final boolean removed = hasEmptyKey;
+            hasEmptyKey = false;
+            size -= removed ? 1 : 0;
+            return removed;
+        }
+
+        final int mask = keys.length - 1;
+        int bucket = bucketOf(key, mask);
+        while (keys[bucket] != key)
+        {
+            if (keys[bucket] == EMPTY)
+            {
+                return false;
+            }
+            bucket = bucket + 1 & mask;
+        }
+
+        // Shift the following entries of the probe sequence back, so that no tombstones are required.
+        int hole = bucket;
+        for (int next = hole + 1 & mask; keys[next] != EMPTY; next = next + 1 & mask)
+        {
+            final int home = bucketOf(keys[next], mask);
+            if ((next - home & mask) >= (next - hole & mask))
+            {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        keys[hole] = EMPTY;
+        size--;
+
+        return true;
+    }
+
+    /**
+     * Removes every mapping.
+     */
+    public void clear()
+    {
+        Arrays.fill(keys, EMPTY);
+        hasEmptyKey = false;
+        size = 0;
+    }
+
+    private void rehash(final int bucketCount)
+    {
+        final long[] previousKeys = keys;
+        final long[] previousValues = values;
+        allocate(bucketCount);
+        final int mask = keys.length - 1;
+        for (int index = 0; index < previousKeys.length; index++)
+        {
+            if (previousKeys[index] != EMPTY)
+            {
+                int bucket = bucketOf(previousKeys[index], mask);
+                while (keys[bucket] != EMPTY)
+                {
+                    bucket = bucket + 1 & mask;
+                }
+                keys[bucket] = previousKeys[index];
+                values[bucket] = previousValues[index];
+            }
+        }
+    }
+
+    private void allocate(final int bucketCount)
+    {
+        keys = new long[bucketCount];
+        values = new long[bucketCount];
+    }
+
+    private static int bucketsFor(final int expectedSize)
+    {
+        final int required = Math.max(MIN_BUCKETS, (int) Math.min(1L << 30, expectedSize * 4L / 3L + 1));
+
+        return Integer.highestOneBit(required - 1) << 1;
+    }
+
+    private static int bucketOf(final long key, final int mask)
+    {
+        final long mixed = key * 0x9E3779B97F4A7C15L;
+
+        return (int) (mixed ^ mixed >>> 32) & mask;
+    }
+
+    /**
+     * @return The estimated number of bytes held by the map.
+     */
+    public long estimateBytes()
+    {
+        return MemoryEstimator.array(Long.BYTES, keys.length) + MemoryEstimator.array(Long.BYTES, values.length);
+    }
+}
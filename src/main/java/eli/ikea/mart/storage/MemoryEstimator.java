@@ -0,0 +1,101 @@
+package eli.ikea.mart.storage;
+
+import java.util.Date;
+
+/**
+ * Constant-time estimates of the heap footprint of the structures held by a table, for a 64-bit JVM with compressed references. The estimates are
+ * meant for capacity planning rather than exact accounting.
+ *
+ * @author The Architect
+ */
+public final class MemoryEstimator
+{
+    /**
+     * The size of an object header.
+     */
+    public static final int OBJECT_HEADER_BYTES = 12;
+    /**
+     * The size of an array header, including its length.
+     */
+    public static final int ARRAY_HEADER_BYTES  = 16;
+    /**
+     * The size of a reference.
+     */
+    public static final int REFERENCE_BYTES     = 4;
+    /**
+     * The size of an entry of a {@link java.util.HashMap}, excluding its key and value.
+     */
+    public static final int HASH_ENTRY_BYTES    = 32;
+    /**
+     * The size of an entry of a {@link java.util.TreeMap}, excluding its key and value.
+     */
+    public static final int TREE_ENTRY_BYTES    = 40;
+    /**
+     * The size of a boxed {@link Long}.
+     */
+    public static final int BOXED_LONG_BYTES    = 24;
+
+    private MemoryEstimator()
+    {
+    }
+
+    /**
+     * @param bytes A number of bytes.
+     * @return The number of bytes rounded up to the 8 byte alignment of objects.
+     */
+    public static long align(final long bytes)
+    {
+        return bytes + 7L & ~7L;
+    }
+
+    /**
+     * @param elementBytes The size of every element.
+     * @param length The number of elements.
+     * @return The size of an array.
+     */
+    public static long array(final int elementBytes, final long length)
+    {
+        return align(ARRAY_HEADER_BYTES + elementBytes * length);
+    }
+
+    /**
+     * @param entryCount The number of entries.
+     * @return The size of a {@link java.util.HashMap} or {@link java.util.HashSet} and its entries, excluding the keys and values.
+     */
+    public static long hashMap(final long entryCount)
+    {
+        // The table holds a power of two number of buckets, at a load factor of at most 0.75.
+        final long buckets = Long.highestOneBit(Math.max(1L, entryCount * 4 / 3)) << 1;
+
+        return 48L + array(REFERENCE_BYTES, buckets) + entryCount * HASH_ENTRY_BYTES;
+    }
+
+    /**
+     * @param value A value of a column. [Nullable]
+     * @return The size of the value itself, excluding the reference to it. Values the JVM caches, such as booleans and small integers, are free.
+     */
+    public static long object(final Object value)
+    {
+        if (value == null || value instanceof Boolean)
+        {
+            return 0L;
+        }
+        if (value instanceof String)
+        {
+            // A Java 8 string, with its hash and a separate character array.
+            return align(OBJECT_HEADER_BYTES + REFERENCE_BYTES + Integer.BYTES) + array(Character.BYTES, ((String) value).length());
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)
+        {
+            final long number = ((Number) value).longValue();
+
+            return number >= -128 && number <= 127 ? 0L : value instanceof Long ? BOXED_LONG_BYTES : 16L;
+        }
+        if (value instanceof Double || value instanceof Date)
+        {
+            return BOXED_LONG_BYTES;
+        }
+
+        return 16L;
+    }
+}
@@ -0,0 +1,49 @@
+package eli.ikea.mart.storage;
+
+/**
+ * A {@link ColumnVector} that holds a reference to every value.
+ *
+ * @author The Architect
+ */
+public class ObjectColumnVector extends ColumnVector
+{
+    private final Object[] values;
+    private long           referencedBytes;
+
+    /**
+     * @param capacity The number of slots in the vector.
+     */
+    public ObjectColumnVector(final int capacity)
+    {
+        this.values = new Object[capacity];
+    }
+
+    @Override
+    public int getCapacity()
+    {
+        return values.length;
+    }
+
+    @Override
+    public Object get(final int slot)
+    {
+        return values[slot];
+    }
+
+    @Override
+    public void set(final int slot, final Object value)
+    {
+        // Maintained as values are written, so that estimating the vector does not visit every value.
+        referencedBytes += MemoryEstimator.object(value) - MemoryEstimator.object(values[slot]);
+        values[slot] = value;
+    }
+
+    /**
+     * Instances shared by several slots, such as deduplicated strings, are counted once per slot.
+     */
+    @Override
+    public long estimateValueBytes()
+    {
+        return MemoryEstimator.array(MemoryEstimator.REFERENCE_BYTES, values.length) + referencedBytes;
+    }
+}
@@ -0,0 +1,154 @@
+package eli.ikea.mart.storage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link ColumnVector} of fixed-width values held in a region of a {@link SlabAllocator}, outside the Java heap. The region starts with a bitmap
+ * of the <code>NULL</code> slots, followed by the values at the width of their type.
+ *
+ * @author The Architect
+ */
+public class OffHeapColumnVector extends ColumnVector
+{
+    private final FixedWidthType type;
+    private final ByteBuffer     buffer;
+    private final int            capacity;
+    private final int            valuesOffset;
+
+    /**
+     * @param type The type of the values. [Non-Null]
+     * @param capacity The number of slots in the vector.
+     * @param allocator The allocator of the region of the vector. [Non-Null]
+     */
+    public OffHeapColumnVector(final FixedWidthType type, final int capacity, final SlabAllocator allocator)
+    {
+        this(type, capacity, allocator.allocate(regionBytes(type, capacity)));
+    }
+
+    /**
+     * Wraps a region that already holds the null bitmap and the values of the vector, such as a slice of a memory-mapped file. The region is not
+     * cleared.
+     *
+     * @param type The type of the values. [Non-Null]
+     * @param capacity The number of slots in the vector.
+     * @param buffer The region of the vector, with at least {@link #regionBytes(FixedWidthType, int)} bytes. [Non-Null]
+     */
+    OffHeapColumnVector(final FixedWidthType type, final int capacity, final ByteBuffer buffer)
+    {
+        this.type = type;
+        this.capacity = capacity;
+        this.valuesOffset = nullBitmapBytes(capacity);
+        this.buffer = buffer;
+    }
+
+    /**
+     * @param type The type of the values. [Non-Null]
+     * @param capacity The number of slots in the vector.
+     * @return The number of bytes of the region of a vector, including its null bitmap.
+     */
+    static int regionBytes(final FixedWidthType type, final int capacity)
+    {
+        return nullBitmapBytes(capacity) + capacity * type.getWidth();
+    }
+
+    private static int nullBitmapBytes(final int capacity)
+    {
+        return (capacity + 63 >>> 6) * Long.BYTES;
+    }
+
+    /**
+     * @return The non-null type of the values.
+     */
+    public FixedWidthType getType()
+    {
+        return type;
+    }
+
+    @Override
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    @Override
+    public Object get(final int slot)
+    {
+        if (isNull(slot))
+        {
+            return null;
+        }
+
+        final int offset = valuesOffset + slot * type.getWidth();
+        switch (type)
+        {
+            case LONG:
+                return buffer.getLong(offset);
+            case INTEGER:
+                return buffer.getInt(offset);
+            case DOUBLE:
+                return buffer.getDouble(offset);
+            default:
+                return buffer.get(offset) != 0;
+        }
+    }
+
+    @Override
+    public void set(final int slot, final Object value)
+    {
+        final int wordOffset = (slot >>> 6) * Long.BYTES;
+        final long mask = 1L << slot;
+        if (value == null)
+        {
+            buffer.putLong(wordOffset, buffer.getLong(wordOffset) | mask);
+            return;
+        }
+        buffer.putLong(wordOffset, buffer.getLong(wordOffset) & ~mask);
+
+        final int offset = valuesOffset + slot * type.getWidth();
+        switch (type)
+        {
+            case LONG:
+                buffer.putLong(offset, (Long) value);
+                break;
+            case INTEGER:
+                buffer.putInt(offset, (Integer) value);
+                break;
+            case DOUBLE:
+                buffer.putDouble(offset, (Double) value);
+                break;
+            default:
+                buffer.put(offset, (byte) ((Boolean) value ? 1 : 0));
+                break;
+        }
+    }
+
+    @Override
+    public boolean isNull(final int slot)
+    {
+        return (buffer.getLong((slot >>> 6) * Long.BYTES) & 1L << slot) != 0;
+    }
+
+    @Override
+    public long getNullWord(final int word)
+    {
+        return buffer.getLong(word * Long.BYTES);
+    }
+
+    @Override
+    public long estimateValueBytes()
+    {
+        return buffer.capacity() - valuesOffset;
+    }
+
+    @Override
+    public long estimateNullBytes()
+    {
+        return valuesOffset;
+    }
+
+    @Override
+    public boolean isOffHeap()
+    {
+        return true;
+    }
+}
@@ -0,0 +1,312 @@
+package eli.ikea.mart.storage;
+
+/**
+ * A read-only {@link ColumnVector} of {@link Long} or {@link Integer} values, bit-packed when a block is sealed. Every block picks the smaller of
+ * two encodings:
+ * <ul>
+ * <li>Frame of reference, where every value is stored as its offset from the minimum value of the block.</li>
+ * <li>Delta, where every value is stored as the offset of its difference from the previous value from the minimum difference, and the absolute
+ * value of every {@value #CHECKPOINT_INTERVAL}th slot is kept as a checkpoint.</li>
+ * </ul>
+ * Random access decodes at most {@value #CHECKPOINT_INTERVAL} values, and sequential scans decode a whole batch of that many values at once.
+ *
+ * @author The Architect
+ */
+public class PackedLongColumnVector extends ColumnVector
+{
+    /**
+     * The number of slots between two delta checkpoints, which is also the size of a decoded batch.
+     */
+    public static final int CHECKPOINT_INTERVAL = 64;
+
+    private final FixedWidthType type;
+    private final int            capacity;
+    private final int            size;
+    private final long[]         nulls;
+    private final boolean        delta;
+    private final long           reference;
+    private final int            bitWidth;
+    private final long[]         packed;
+    private final long[]         checkpoints;
+    private DecodedBatch         batch;
+
+    private PackedLongColumnVector(final FixedWidthType type, final int capacity, final int size, final long[] nulls, final boolean delta,
+                                   final long reference, final int bitWidth, final long[] packed, final long[] checkpoints)
+    {
+        this.type = type;
+        this.capacity = capacity;
+        this.size = size;
+        this.nulls = nulls;
+        this.delta = delta;
+        this.reference = reference;
+        this.bitWidth = bitWidth;
+        this.packed = packed;
+        this.checkpoints = checkpoints;
+    }
+
+    /**
+     * @param source The vector of a sealed block, of {@link FixedWidthType#LONG} or {@link FixedWidthType#INTEGER} values. [Non-Null]
+     * @param size The number of used slots of the vector.
+     * @return The packed copy of the vector, or <code>NULL</code> if packing would not reduce its size. [Nullable]
+     */
+    public static PackedLongColumnVector pack(final PrimitiveColumnVector source, final int size)
+    {
+        final int capacity = source.getCapacity();
+        final long[] nulls = new long[capacity + 63 >>> 6];
+        final long[] values = new long[size];
+        long previous = 0L;
+        for (int slot = 0; slot < size; slot++)
+        {
+            // NULL slots repeat the previous value, which costs nothing in either encoding.
+            values[slot] = source.isNull(slot) ? previous : source.getRawValue(slot);
+            previous = values[slot];
+        }
+        for (int word = 0; word < nulls.length; word++)
+        {
+            nulls[word] = source.getNullWord(word);
+        }
+        if (size == 0)
+        {
+            return null;
+        }
+
+        long minimum = values[0];
+        long maximum = values[0];
+        long minimumDelta = Long.MAX_VALUE;
+        long maximumDelta = Long.MIN_VALUE;
+        for (int slot = 1; slot < size; slot++)
+        {
+            minimum = Math.min(minimum, values[slot]);
+            maximum = Math.max(maximum, values[slot]);
+            if (slot % CHECKPOINT_INTERVAL != 0)
+            {
+                final long difference = values[slot] - values[slot - 1];
+                minimumDelta = Math.min(minimumDelta, difference);
+                maximumDelta = Math.max(maximumDelta, difference);
+            }
+        }
+        if (minimumDelta > maximumDelta)
+        {
+            minimumDelta = maximumDelta = 0L;
+        }
+
+        final int referenceWidth = Long.SIZE - Long.numberOfLeadingZeros(maximum - minimum);
+        final int deltaWidth = Long.SIZE - Long.numberOfLeadingZeros(maximumDelta - minimumDelta);
+        final int checkpointCount = (size + CHECKPOINT_INTERVAL - 1) / CHECKPOINT_INTERVAL;
+        final long referenceBits = (long) referenceWidth * size;
+        final long deltaBits = (long) deltaWidth * size + (long) Long.SIZE * checkpointCount;
+        if (Math.min(referenceBits, deltaBits) >= (long) Long.SIZE * size)
+        {
+            return null;
+        }
+
+        final boolean delta = deltaBits < referenceBits;
+        final int bitWidth = delta ? deltaWidth : referenceWidth;
+        final long[] packed = new long[(int) ((long) bitWidth * size + 63 >>> 6)];
+        final long[] checkpoints = delta ? new long[checkpointCount] : null;
+        for (int slot = 0; slot < size; slot++)
+        {
+            if (delta && slot % CHECKPOINT_INTERVAL == 0)
+            {
+                checkpoints[slot / CHECKPOINT_INTERVAL] = values[slot];
+            }
+            else
+            {
+                write(packed, bitWidth, slot, delta ? values[slot] - values[slot - 1] - minimumDelta : values[slot] - minimum);
+            }
+        }
+
+        return new PackedLongColumnVector(source.getType(), capacity, size, nulls, delta, delta ? minimumDelta : minimum, bitWidth, packed, checkpoints);
+    }
+
+    /**
+     * @return A new non-null writable copy of the vector.
+     */
+    public PrimitiveColumnVector unpack()
+    {
+        final PrimitiveColumnVector vector = new PrimitiveColumnVector(type, capacity);
+        for (int slot = 0; slot < size; slot++)
+        {
+            vector.set(slot, get(slot));
+        }
+
+        return vector;
+    }
+
+    /**
+     * @return The non-null type of the values.
+     */
+    public FixedWidthType getType()
+    {
+        return type;
+    }
+
+    /**
+     * @return Indicator if the values are delta encoded, rather than encoded against a frame of reference.
+     */
+    public boolean isDeltaEncoded()
+    {
+        return delta;
+    }
+
+    /**
+     * @return The number of bits of every packed value.
+     */
+    public int getBitWidth()
+    {
+        return bitWidth;
+    }
+
+    /**
+     * @param slot The used slot of a non-null value.
+     * @return The decoded value of the slot.
+     */
+    public long getRawValue(final int slot)
+    {
+        if (!delta)
+        {
+            return reference + read(packed, bitWidth, slot);
+        }
+        // The vector is shared by the snapshots of a table, so every reader works on the batch it read, which is never changed once decoded.
+        DecodedBatch decoded = batch;
+        if (decoded == null || decoded.index != slot / CHECKPOINT_INTERVAL)
+        {
+            decoded = decodeBatch(slot / CHECKPOINT_INTERVAL);
+            batch = decoded;
+        }
+
+        return decoded.values[slot % CHECKPOINT_INTERVAL];
+    }
+
+    @Override
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    @Override
+    public Object get(final int slot)
+    {
+        if (isNull(slot))
+        {
+            return null;
+        }
+
+        final long value = getRawValue(slot);
+
+        return type == FixedWidthType.INTEGER ? (Object) (int) value : (Object) value;
+    }
+
+    /**
+     * Packed vectors are read-only; a block replaces them with their {@link #unpack() unpacked} copy before writing to them.
+     */
+    @Override
+    public void set(final int slot, final Object value)
+    {
+        throw new UnsupportedOperationException("A packed column vector is read-only.");
+    }
+
+    @Override
+    public boolean isNull(final int slot)
+    {
+        return (nulls[slot >>> 6] & 1L << slot) != 0;
+    }
+
+    @Override
+    public boolean isEqual(final int slot, final Object value)
+    {
+        if (isNull(slot))
+        {
+            return false;
+        }
+
+        return type == FixedWidthType.INTEGER ? value instanceof Integer && getRawValue(slot) == (Integer) value
+                                              : value instanceof Long && getRawValue(slot) == (Long) value;
+    }
+
+    @Override
+    public long getNullWord(final int word)
+    {
+        return nulls[word];
+    }
+
+    private DecodedBatch decodeBatch(final int index)
+    {
+        final int first = index * CHECKPOINT_INTERVAL;
+        final int last = Math.min(first + CHECKPOINT_INTERVAL, size);
+        final long[] values = new long[CHECKPOINT_INTERVAL];
+        long value = checkpoints[index];
+        values[0] = value;
+        for (int slot = first + 1; slot < last; slot++)
+        {
+            value += reference + read(packed, bitWidth, slot);
+            values[slot - first] = value;
+        }
+
+        return new DecodedBatch(index, values);
+    }
+
+    private static void write(final long[] packed, final int bitWidth, final int slot, final long value)
+    {
+        if (bitWidth == 0)
+        {
+            return;
+        }
+
+        final long bit = (long) bitWidth * slot;
+        final int word = (int) (bit >>> 6);
+        final int offset = (int) (bit & 63);
+        packed[word] |= value << offset;
+        if (offset + bitWidth > Long.SIZE)
+        {
+            packed[word + 1] |= value >>> Long.SIZE - offset;
+        }
+    }
+
+    private static long read(final long[] packed, final int bitWidth, final int slot)
+    {
+        if (bitWidth == 0)
+        {
+            return 0L;
+        }
+
+        final long bit = (long) bitWidth * slot;
+        final int word = (int) (bit >>> 6);
+        final int offset = (int) (bit & 63);
+        long value = packed[word] >>> offset;
+        if (offset + bitWidth > Long.SIZE)
+        {
+            value |= packed[word + 1] << Long.SIZE - offset;
+        }
+
+        return bitWidth == Long.SIZE ? value : value & (1L << bitWidth) - 1;
+    }
+
+    @Override
+    public long estimateValueBytes()
+    {
+        return MemoryEstimator.array(Long.BYTES, packed.length) + (checkpoints == null ? 0L : MemoryEstimator.array(Long.BYTES, checkpoints.length))
+               + MemoryEstimator.array(Long.BYTES, CHECKPOINT_INTERVAL);
+    }
+
+    @Override
+    public long estimateNullBytes()
+    {
+        return MemoryEstimator.array(Long.BYTES, nulls.length);
+    }
+
+    /**
+     * The decoded values of a batch of slots, safely published to other threads through its final fields.
+     */
+    private static final class DecodedBatch
+    {
+        private final int    index;
+        private final long[] values;
+
+        private DecodedBatch(final int index, final long[] values)
+        {
+            this.index = index;
+            this.values = values;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package eli.ikea.mart.storage;
+
+/**
+ * A {@link ColumnVector} of {@link Long}, {@link Integer} or {@link Double} values, held unboxed in a <code>long</code> array alongside a bitset of
+ * the <code>NULL</code> slots.
+ *
+ * @author The Architect
+ */
+public class PrimitiveColumnVector extends ColumnVector
+{
+    private final FixedWidthType type;
+    private final long[]         values;
+    private final long[]         nulls;
+
+    /**
+     * @param type The type of the values. Must not be {@link FixedWidthType#BOOLEAN}, which is held by a {@link BooleanColumnVector}. [Non-Null]
+     * @param capacity The number of slots in the vector.
+     */
+    public PrimitiveColumnVector(final FixedWidthType type, final int capacity)
+    {
+        this.type = type;
+        this.values = new long[capacity];
+        this.nulls = new long[capacity + 63 >>> 6];
+    }
+
+    /**
+     * @return The non-null type of the values.
+     */
+    public FixedWidthType getType()
+    {
+        return type;
+    }
+
+    /**
+     * @param slot The slot of a non-null value.
+     * @return The value of the slot, or the raw bits of a {@link Double} value.
+     */
+    public long getRawValue(final int slot)
+    {
+        return values[slot];
+    }
+
+    @Override
+    public int getCapacity()
+    {
+        return values.length;
+    }
+
+    @Override
+    public Object get(final int slot)
+    {
+        if (isNull(slot))
+        {
+            return null;
+        }
+
+        switch (type)
+        {
+            case LONG:
+                return values[slot];
+            case INTEGER:
+                return (int) values[slot];
+            default:
+                return Double.longBitsToDouble(values[slot]);
+        }
+    }
+
+    @Override
+    public void set(final int slot, final Object value)
+    {
+        final long mask = 1L << slot;
+        if (value == null)
+        {
+            nulls[slot >>> 6] |= mask;
+            values[slot] = 0L;
+            return;
+        }
+
+        nulls[slot >>> 6] &= ~mask;
+        values[slot] = type == FixedWidthType.DOUBLE ? Double.doubleToRawLongBits((Double) value) : ((Number) value).longValue();
+    }
+
+    @Override
+    public boolean isNull(final int slot)
+    {
+        return (nulls[slot >>> 6] & 1L << slot) != 0;
+    }
+
+    @Override
+    public boolean isEqual(final int slot, final Object value)
+    {
+        if (isNull(slot))
+        {
+            return false;
+        }
+
+        // Compared as the equals method of the boxed value does, without boxing the stored value.
+        switch (type)
+        {
+            case LONG:
+                return value instanceof Long && values[slot] == (Long) value;
+            case INTEGER:
+                return value instanceof Integer && values[slot] == (Integer) value;
+            default:
+                return value instanceof Double
+                       && Double.doubleToLongBits(Double.longBitsToDouble(values[slot])) == Double.doubleToLongBits((Double) value);
+        }
+    }
+
+    @Override
+    public long getNullWord(final int word)
+    {
+        return nulls[word];
+    }
+
+    @Override
+    public long estimateValueBytes()
+    {
+        return MemoryEstimator.array(Long.BYTES, values.length);
+    }
+
+    @Override
+    public long estimateNullBytes()
+    {
+        return MemoryEstimator.array(Long.BYTES, nulls.length);
+    }
+}
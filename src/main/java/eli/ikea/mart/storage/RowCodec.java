@@ -0,0 +1,655 @@
+package eli.ikea.mart.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Compact binary encoding of the rows of a table, driven by the data types of its columns rather than by tags or reflection. Every row starts with
+ * a bitmap of its <code>NULL</code> columns, followed by the values of the other columns in order:
+ * <ul>
+ * <li>{@link Long}, {@link Integer}, {@link Short}, {@link Byte} and {@link Date} values as zig-zag varints, so that small magnitudes of either
+ * sign take few bytes, and {@link Character} values as varints.</li>
+ * <li>{@link Double}, {@link Float} and {@link Boolean} values at their fixed width.</li>
+ * <li>{@link String} values as a reference to an earlier occurrence of the value in the same stream, or as UTF-8 bytes preceded by their
+ * length.</li>
+ * <li>Values of any other data type as their {@link ValueCodec} encoding, preceded by its length.</li>
+ * </ul>
+ * The references are codes of a dictionary that the encoder and the decoder of a stream each build from the rows they see, so rows must be decoded
+ * in the order they were encoded, by a codec of the same schema and maximum dictionary size. Once the buffers of a codec have grown to the largest
+ * row, encoding a row and decoding it into a {@link RowWriter} allocate nothing, apart from the first occurrence of every string and values of
+ * other data types.
+ * <p>
+ * A codec holds the state of one direction of one stream, and is not safe for concurrent use.
+ *
+ * @author The Architect
+ */
+public final class RowCodec
+{
+    private static final byte LONG      = 0;
+    private static final byte INTEGER   = 1;
+    private static final byte SHORT     = 2;
+    private static final byte BYTE      = 3;
+    private static final byte DATE      = 4;
+    private static final byte CHARACTER = 5;
+    private static final byte DOUBLE    = 6;
+    private static final byte FLOAT     = 7;
+    private static final byte BOOLEAN   = 8;
+    private static final byte STRING    = 9;
+    private static final byte OTHER     = 10;
+
+    // The tags of a string value, after which a reference is the tag minus REFERENCE.
+    private static final int LITERAL   = 0;
+    private static final int LEARNED   = 1;
+    private static final int REFERENCE = 2;
+
+    private final byte[]              kinds;
+    private final int                 maximumDictionarySize;
+    private final ColumnDictionary[]  dictionaries;
+    private final Object[]            learnedValues;
+    private final Object[]            scratchRow;
+    private final ArrayRowWriter      arrayWriter  = new ArrayRowWriter();
+    private final ScratchOutputStream scratchBytes = new ScratchOutputStream();
+    private final DataOutputStream    scratch      = new DataOutputStream(scratchBytes);
+    private byte[]                    characters   = new byte[64];
+
+    /**
+     * @param dataTypes The data types of every column. [Non-Null]
+     * @param maximumDictionarySize The maximum number of distinct strings per column that later rows may refer to, or 0 to write every string.
+     */
+    public RowCodec(final Class<?>[] dataTypes, final int maximumDictionarySize)
+    {
+        this.kinds = new byte[dataTypes.length];
+        this.maximumDictionarySize = maximumDictionarySize;
+        this.dictionaries = new ColumnDictionary[dataTypes.length];
+        this.learnedValues = new Object[dataTypes.length];
+        this.scratchRow = new Object[dataTypes.length];
+        for (int column = 0; column < dataTypes.length; column++)
+        {
+            kinds[column] = kindOf(dataTypes[column]);
+        }
+        reset();
+    }
+
+    private static byte kindOf(final Class<?> dataType)
+    {
+        if (Long.class.equals(dataType))
+        {
+            return LONG;
+        }
+        if (Integer.class.equals(dataType))
+        {
+            return INTEGER;
+        }
+        if (Short.class.equals(dataType))
+        {
+            return SHORT;
+        }
+        if (Byte.class.equals(dataType))
+        {
+            return BYTE;
+        }
+        if (Date.class.equals(dataType))
+        {
+            return DATE;
+        }
+        if (Character.class.equals(dataType))
+        {
+            return CHARACTER;
+        }
+        if (Double.class.equals(dataType))
+        {
+            return DOUBLE;
+        }
+        if (Float.class.equals(dataType))
+        {
+            return FLOAT;
+        }
+        if (Boolean.class.equals(dataType))
+        {
+            return BOOLEAN;
+        }
+        if (String.class.equals(dataType))
+        {
+            return STRING;
+        }
+
+        return OTHER;
+    }
+
+    /**
+     * @return The number of columns of every row.
+     */
+    public int getColumnCount()
+    {
+        return kinds.length;
+    }
+
+    /**
+     * Forgets the strings seen so far, such as when the stream is reconnected. The codec at the other end of the stream must be reset at the same
+     * row.
+     */
+    public void reset()
+    {
+        for (int column = 0; column < kinds.length; column++)
+        {
+            dictionaries[column] = kinds[column] == STRING && maximumDictionarySize > 0 ? new ColumnDictionary() : null;
+        }
+    }
+
+    /**
+     * Encodes a row at the position of a buffer. If the row cannot be encoded, such as when it does not fit, the position of the buffer is restored
+     * and the codec is left as it was, so that the row can be encoded again into a larger buffer.
+     *
+     * @param values The values of every column. [Non-Null]
+     * @param buffer The buffer to encode the row into, whose position advances past the row. [Non-Null]
+     * @throws BufferOverflowException If the row does not fit into the remaining bytes of the buffer.
+     * @throws ClassCastException If a value is not of the data type of its column.
+     * @throws UncheckedIOException If a value of another data type cannot be encoded.
+     */
+    public void encode(final Object[] values, final ByteBuffer buffer)
+    {
+        final int start = beginRow(buffer);
+        try
+        {
+            for (int column = 0; column < kinds.length; column++)
+            {
+                encodeValue(column, values[column], buffer, start);
+            }
+        }
+        catch (final RuntimeException e)
+        {
+            throw abortRow(buffer, start, e);
+        }
+        learnValues();
+    }
+
+    /**
+     * Encodes a row of a storage at the position of a buffer, as {@link #encode(Object[], ByteBuffer)} encodes the values of a row.
+     *
+     * @param storage The storage of the row, whose columns have the data types of the codec. [Non-Null]
+     * @param location The location of the row in the storage.
+     * @param buffer The buffer to encode the row into, whose position advances past the row. [Non-Null]
+     * @throws BufferOverflowException If the row does not fit into the remaining bytes of the buffer.
+     * @throws UncheckedIOException If a value of another data type cannot be encoded.
+     */
+    public void encode(final TableStorage storage, final long location, final ByteBuffer buffer)
+    {
+        final int start = beginRow(buffer);
+        try
+        {
+            for (int column = 0; column < kinds.length; column++)
+            {
+                encodeValue(column, storage.read(location, column), buffer, start);
+            }
+        }
+        catch (final RuntimeException e)
+        {
+            throw abortRow(buffer, start, e);
+        }
+        learnValues();
+    }
+
+    /**
+     * Decodes the next row of a buffer into an array. Primitive values are boxed, so decoding into an array allocates.
+     *
+     * @param buffer The buffer to decode the row from, whose position advances past the row. [Non-Null]
+     * @param values The array to receive the values of every column. [Non-Null]
+     * @throws BufferUnderflowException If the buffer ends within the row, in which case its position is restored and the codec is left as it
+     *             was.
+     * @throws UncheckedIOException If a value of another data type cannot be decoded.
+     */
+    public void decode(final ByteBuffer buffer, final Object[] values)
+    {
+        arrayWriter.values = values;
+        try
+        {
+            decode(buffer, arrayWriter);
+        }
+        finally
+        {
+            arrayWriter.values = null;
+        }
+    }
+
+    /**
+     * Decodes the next row of a buffer into an array owned by the codec, which is overwritten by the next row decoded this way. No array is
+     * allocated per row, and {@link Long} and {@link Double} values equal to the value of the same column of the previous row keep its instance.
+     *
+     * @param buffer The buffer to decode the row from, whose position advances past the row. [Non-Null]
+     * @return The non-null values of every column, which must not be retained once the next row is decoded.
+     * @throws BufferUnderflowException If the buffer ends within the row, in which case its position is restored and the codec is left as it
+     *             was, but the array may hold part of the row.
+     * @throws UncheckedIOException If a value of another data type cannot be decoded.
+     */
+    public Object[] decode(final ByteBuffer buffer)
+    {
+        decode(buffer, scratchRow);
+
+        return scratchRow;
+    }
+
+    /**
+     * Decodes the next row of a buffer into a writer, column by column.
+     *
+     * @param buffer The buffer to decode the row from, whose position advances past the row. [Non-Null]
+     * @param writer The writer to receive the values of every column. [Non-Null]
+     * @throws BufferUnderflowException If the buffer ends within the row, in which case its position is restored and the codec is left as it
+     *             was, but the writer may have received part of the row.
+     * @throws UncheckedIOException If a value of another data type cannot be decoded.
+     */
+    public void decode(final ByteBuffer buffer, final RowWriter writer)
+    {
+        final int start = buffer.position();
+        if (buffer.remaining() < bitmapBytes())
+        {
+            throw new BufferUnderflowException();
+        }
+        try
+        {
+            buffer.position(start + bitmapBytes());
+            for (int column = 0; column < kinds.length; column++)
+            {
+                if ((buffer.get(start + (column >>> 3)) & 1 << (column & 7)) != 0)
+                {
+                    writer.writeNull(column);
+                }
+                else
+                {
+                    decodeValue(column, buffer, writer);
+                }
+            }
+        }
+        catch (final RuntimeException e)
+        {
+            throw abortRow(buffer, start, e);
+        }
+        learnValues();
+    }
+
+    private int bitmapBytes()
+    {
+        return (kinds.length + 7) >>> 3;
+    }
+
+    private int beginRow(final ByteBuffer buffer)
+    {
+        final int start = buffer.position();
+        if (buffer.remaining() < bitmapBytes())
+        {
+            throw new BufferOverflowException();
+        }
+        for (int index = bitmapBytes(); index > 0; index--)
+        {
+            buffer.put((byte) 0);
+        }
+
+        return start;
+    }
+
+    private RuntimeException abortRow(final ByteBuffer buffer, final int start, final RuntimeException e)
+    {
+        Arrays.fill(learnedValues, null);
+        buffer.position(start);
+
+        return e;
+    }
+
+    private void learnValues()
+    {
+        // Values are only added once the whole row is written or read, so that a row that did not fit leaves the dictionaries unchanged.
+        for (int column = 0; column < learnedValues.length; column++)
+        {
+            if (learnedValues[column] != null)
+            {
+                dictionaries[column].encode(learnedValues[column]);
+                learnedValues[column] = null;
+            }
+        }
+    }
+
+    private void encodeValue(final int column, final Object value, final ByteBuffer buffer, final int start)
+    {
+        if (value == null)
+        {
+            final int index = start + (column >>> 3);
+            buffer.put(index, (byte) (buffer.get(index) | 1 << (column & 7)));
+            return;
+        }
+
+        switch (kinds[column])
+        {
+            case LONG:
+                putVarLong(buffer, zigZag((Long) value));
+                break;
+            case INTEGER:
+                putVarLong(buffer, zigZag((Integer) value));
+                break;
+            case SHORT:
+                putVarLong(buffer, zigZag((Short) value));
+                break;
+            case BYTE:
+                putVarLong(buffer, zigZag((Byte) value));
+                break;
+            case DATE:
+                putVarLong(buffer, zigZag(((Date) value).getTime()));
+                break;
+            case CHARACTER:
+                putVarLong(buffer, (Character) value);
+                break;
+            case DOUBLE:
+                buffer.putDouble((Double) value);
+                break;
+            case FLOAT:
+                buffer.putFloat((Float) value);
+                break;
+            case BOOLEAN:
+                buffer.put((byte) ((Boolean) value ? 1 : 0));
+                break;
+            case STRING:
+                encodeString(column, (String) value, buffer);
+                break;
+            default:
+                scratchBytes.reset();
+                try
+                {
+                    ValueCodec.write(scratch, value);
+                }
+                catch (final IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+                putVarLong(buffer, scratchBytes.size());
+                buffer.put(scratchBytes.bytes(), 0, scratchBytes.size());
+                break;
+        }
+    }
+
+    private void encodeString(final int column, final String value, final ByteBuffer buffer)
+    {
+        final ColumnDictionary dictionary = dictionaries[column];
+        if (dictionary != null)
+        {
+            final int code = dictionary.codeOf(value);
+            if (code != ColumnDictionary.NULL_CODE)
+            {
+                putVarLong(buffer, REFERENCE + code);
+                return;
+            }
+        }
+        if (dictionary != null && dictionary.size() < maximumDictionarySize)
+        {
+            putVarLong(buffer, LEARNED);
+            learnedValues[column] = value;
+        }
+        else
+        {
+            putVarLong(buffer, LITERAL);
+        }
+
+        putVarLong(buffer, utf8Length(value));
+        for (int index = 0; index < value.length(); index++)
+        {
+            final char character = value.charAt(index);
+            if (character < 0x80)
+            {
+                buffer.put((byte) character);
+            }
+            else if (character < 0x800)
+            {
+                buffer.put((byte) (0xC0 | character >>> 6));
+                buffer.put((byte) (0x80 | character & 0x3F));
+            }
+            else if (Character.isHighSurrogate(character) && index + 1 < value.length() && Character.isLowSurrogate(value.charAt(index + 1)))
+            {
+                final int codePoint = Character.toCodePoint(character, value.charAt(++index));
+                buffer.put((byte) (0xF0 | codePoint >>> 18));
+                buffer.put((byte) (0x80 | codePoint >>> 12 & 0x3F));
+                buffer.put((byte) (0x80 | codePoint >>> 6 & 0x3F));
+                buffer.put((byte) (0x80 | codePoint & 0x3F));
+            }
+            else if (Character.isSurrogate(character))
+            {
+                // Unpaired surrogates are replaced, as String.getBytes(UTF_8) replaces them.
+                buffer.put((byte) '?');
+            }
+            else
+            {
+                buffer.put((byte) (0xE0 | character >>> 12));
+                buffer.put((byte) (0x80 | character >>> 6 & 0x3F));
+                buffer.put((byte) (0x80 | character & 0x3F));
+            }
+        }
+    }
+
+    private static int utf8Length(final String value)
+    {
+        int length = 0;
+        for (int index = 0; index < value.length(); index++)
+        {
+            final char character = value.charAt(index);
+            if (character < 0x80)
+            {
+                length++;
+            }
+            else if (character < 0x800)
+            {
+                length += 2;
+            }
+            else if (Character.isHighSurrogate(character) && index + 1 < value.length() && Character.isLowSurrogate(value.charAt(index + 1)))
+            {
+                length += 4;
+                index++;
+            }
+            else
+            {
+                length += Character.isSurrogate(character) ? 1 : 3;
+            }
+        }
+
+        return length;
+    }
+
+    private void decodeValue(final int column, final ByteBuffer buffer, final RowWriter writer)
+    {
+        switch (kinds[column])
+        {
+            case LONG:
+            case INTEGER:
+            case SHORT:
+            case BYTE:
+            case DATE:
+                writer.writeLong(column, unZigZag(getVarLong(buffer)));
+                break;
+            case CHARACTER:
+                writer.writeLong(column, getVarLong(buffer));
+                break;
+            case DOUBLE:
+                writer.writeDouble(column, buffer.getDouble());
+                break;
+            case FLOAT:
+                writer.writeDouble(column, buffer.getFloat());
+                break;
+            case BOOLEAN:
+                writer.writeBoolean(column, buffer.get() != 0);
+                break;
+            case STRING:
+                writer.writeObject(column, decodeString(column, buffer));
+                break;
+            default:
+                final int length = readBytes(buffer);
+                try
+                {
+                    writer.writeObject(column, ValueCodec.read(new DataInputStream(new ByteArrayInputStream(characters, 0, length))));
+                }
+                catch (final IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+                break;
+        }
+    }
+
+    private String decodeString(final int column, final ByteBuffer buffer)
+    {
+        final int tag = (int) getVarLong(buffer);
+        if (tag >= REFERENCE)
+        {
+            return (String) dictionaries[column].decode(tag - REFERENCE);
+        }
+
+        final String value = new String(characters, 0, readBytes(buffer), StandardCharsets.UTF_8);
+        if (tag == LEARNED)
+        {
+            learnedValues[column] = value;
+        }
+
+        return value;
+    }
+
+    /**
+     * Reads bytes preceded by their length into the scratch array.
+     *
+     * @return The number of bytes read.
+     */
+    private int readBytes(final ByteBuffer buffer)
+    {
+        final int length = (int) getVarLong(buffer);
+        if (length > buffer.remaining())
+        {
+            throw new BufferUnderflowException();
+        }
+        if (length > characters.length)
+        {
+            characters = new byte[Math.max(length, characters.length * 2)];
+        }
+        buffer.get(characters, 0, length);
+
+        return length;
+    }
+
+    private static long zigZag(final long value)
+    {
+        return value << 1 ^ value >> 63;
+    }
+
+    private static long unZigZag(final long value)
+    {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    private static void putVarLong(final ByteBuffer buffer, final long value)
+    {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0)
+        {
+            buffer.put((byte) (remaining & 0x7F | 0x80));
+            remaining >>>= 7;
+        }
+        buffer.put((byte) remaining);
+    }
+
+    private static long getVarLong(final ByteBuffer buffer)
+    {
+        long value = 0L;
+        for (int shift = 0; shift < Long.SIZE; shift += 7)
+        {
+            final byte next = buffer.get();
+            value |= (long) (next & 0x7F) << shift;
+            if (next >= 0)
+            {
+                return value;
+            }
+        }
+
+        throw new IllegalArgumentException("Malformed varint.");
+    }
+
+    /**
+     * Boxes the decoded values into the data types of their columns.
+     */
+    private final class ArrayRowWriter implements RowWriter
+    {
+        private Object[] values;
+
+        @Override
+        public void writeNull(final int column)
+        {
+            values[column] = null;
+        }
+
+        @Override
+        public void writeLong(final int column, final long value)
+        {
+            switch (kinds[column])
+            {
+                case INTEGER:
+                    values[column] = (int) value;
+                    break;
+                case SHORT:
+                    values[column] = (short) value;
+                    break;
+                case BYTE:
+                    values[column] = (byte) value;
+                    break;
+                case DATE:
+                    values[column] = new Date(value);
+                    break;
+                case CHARACTER:
+                    values[column] = (char) value;
+                    break;
+                default:
+                    if (!(values[column] instanceof Long) || (Long) values[column] != value)
+                    {
+                        values[column] = value;
+                    }
+                    break;
+            }
+        }
+
+        @Override
+        public void writeDouble(final int column, final double value)
+        {
+            if (kinds[column] == FLOAT)
+            {
+                values[column] = (float) value;
+            }
+            else if (!(values[column] instanceof Double) || Double.doubleToRawLongBits((Double) values[column]) != Double.doubleToRawLongBits(value))
+            {
+                values[column] = value;
+            }
+        }
+
+        @Override
+        public void writeBoolean(final int column, final boolean value)
+        {
+            values[column] = value;
+        }
+
+        @Override
+        public void writeObject(final int column, final Object value)
+        {
+            values[column] = value;
+        }
+    }
+
+    /**
+     * Reusable output for the values of other data types, whose bytes are copied without trimming them first.
+     */
+    private static final class ScratchOutputStream extends ByteArrayOutputStream
+    {
+        private byte[] bytes()
+        {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package eli.ikea.mart.storage;
+
+/**
+ * Receives the values of a row decoded by a {@link RowCodec}, column by column, without boxing the primitive values.
+ *
+ * @author The Architect
+ */
+public interface RowWriter
+{
+    /**
+     * @param column The index of the column.
+     */
+    void writeNull(int column);
+
+    /**
+     * @param column The index of a column of {@link Long}, {@link Integer}, {@link Short}, {@link Byte}, {@link Character} or
+     *            {@link java.util.Date} values, the latter two written as their code point and time in milliseconds.
+     * @param value The value of the column.
+     */
+    void writeLong(int column, long value);
+
+    /**
+     * @param column The index of a column of {@link Double} or {@link Float} values.
+     * @param value The value of the column.
+     */
+    void writeDouble(int column, double value);
+
+    /**
+     * @param column The index of a column of {@link Boolean} values.
+     * @param value The value of the column.
+     */
+    void writeBoolean(int column, boolean value);
+
+    /**
+     * @param column The index of a column of {@link String} values, or of any other data type.
+     * @param value The non-null value of the column.
+     */
+    void writeObject(int column, Object value);
+}
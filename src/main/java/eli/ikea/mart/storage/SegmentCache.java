@@ -0,0 +1,81 @@
+package eli.ikea.mart.storage;
+
+import java.util.concurrent.ExecutionException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Bounded cache of the decompressed segments of {@link CompressedColumnVector compressed vectors}, so that repeated scans of a compressed column
+ * decompress every segment once rather than on every pass. Segments are weighed by their decompressed size, and the least recently used segments
+ * are evicted once the cache exceeds its maximum size; an evicted segment is decompressed again when it is next read.
+ *
+ * @author The Architect
+ */
+public final class SegmentCache
+{
+    /**
+     * The number of decompressed bytes held by a cache, unless otherwise specified.
+     */
+    public static final long DEFAULT_MAXIMUM_BYTES = 64L << 20;
+
+    private final Cache<CompressedColumnVector, ColumnVector> segments;
+
+    /**
+     * @param maximumBytes The number of decompressed bytes past which segments are evicted.
+     */
+    public SegmentCache(final long maximumBytes)
+    {
+        this.segments = CacheBuilder.newBuilder()
+                                    .maximumWeight(maximumBytes)
+                                    .<CompressedColumnVector, ColumnVector> weigher((vector, segment) -> vector.getUncompressedLength())
+                                    .recordStats()
+                                    .build();
+    }
+
+    /**
+     * @param vector The compressed vector. [Non-Null]
+     * @return The non-null decompressed segment of the vector, decompressed only if it is not cached.
+     */
+    ColumnVector get(final CompressedColumnVector vector)
+    {
+        try
+        {
+            return segments.get(vector, vector::decompress);
+        }
+        catch (final ExecutionException | UncheckedExecutionException e)
+        {
+            if (e.getCause() instanceof RuntimeException)
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * @return The non-null statistics of the cache, where every miss is a decompression.
+     */
+    public CacheStats stats()
+    {
+        return segments.stats();
+    }
+
+    /**
+     * @return The number of segments cached.
+     */
+    public long size()
+    {
+        return segments.size();
+    }
+
+    /**
+     * Discards every cached segment, so that every segment is decompressed again when it is next read.
+     */
+    public void invalidateAll()
+    {
+        segments.invalidateAll();
+    }
+}
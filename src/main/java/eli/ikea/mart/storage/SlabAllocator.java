@@ -0,0 +1,131 @@
+package eli.ikea.mart.storage;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import eli.veritas.Verifier;
+import eli.veritas.exception.AssertionException;
+
+/**
+ * Carves the column vectors of off-heap storage out of large direct {@link ByteBuffer} slabs, so that few direct buffers are allocated and the
+ * total memory held outside the Java heap never exceeds a fixed budget. Regions are never freed individually; every slab is released at once by
+ * {@link #close()}.
+ *
+ * @author The Architect
+ */
+public class SlabAllocator implements AutoCloseable
+{
+    /**
+     * The size of every slab, unless the budget or a single region calls for another size.
+     */
+    public static final int DEFAULT_SLAB_SIZE = 1 << 20;
+
+    private final long             budget;
+    private final int              slabSize;
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    private ByteBuffer             slab;
+    private long                   allocatedBytes;
+    private long                   usedBytes;
+    private boolean                closed;
+
+    private SlabAllocator(final long budget, final int slabSize)
+    {
+        this.budget = budget;
+        this.slabSize = slabSize;
+    }
+
+    /**
+     * @param budget The maximum number of bytes held outside the Java heap. [Positive]
+     * @return A new non-null allocator, without any allocated slab.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public static SlabAllocator create(final long budget) throws AssertionException
+    {
+        Verifier.Inequality.assertGreaterThan("The off-heap memory budget must be positive.", budget, 0L);
+
+        return new SlabAllocator(budget, (int) Math.min(budget, DEFAULT_SLAB_SIZE));
+    }
+
+    /**
+     * @param bytes The size of the region. [Positive]
+     * @return A new non-null zero-filled region of the size, in native byte order.
+     * @throws IllegalStateException If the allocator is closed, or the region would exceed the budget.
+     */
+    public ByteBuffer allocate(final int bytes)
+    {
+        if (closed)
+        {
+            throw new IllegalStateException("The off-heap allocator is closed.");
+        }
+
+        // Regions are aligned to 8 bytes, so that every value of a region is aligned to its own width.
+        final int alignedBytes = bytes + 7 & ~7;
+        if (slab == null || slab.remaining() < alignedBytes)
+        {
+            final int size = Math.max(slabSize, alignedBytes);
+            if (allocatedBytes + size > budget)
+            {
+                throw new IllegalStateException("The off-heap memory budget of " + budget + " bytes is exhausted, with " + allocatedBytes
+                                                + " bytes allocated.");
+            }
+            slab = ByteBuffer.allocateDirect(size);
+            slabs.add(slab);
+            allocatedBytes += size;
+        }
+
+        final ByteBuffer region = slab.duplicate();
+        region.limit(slab.position() + bytes);
+        slab.position(slab.position() + alignedBytes);
+        usedBytes += alignedBytes;
+
+        return region.slice().order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * @return The maximum number of bytes held outside the Java heap.
+     */
+    public long getBudget()
+    {
+        return budget;
+    }
+
+    /**
+     * @return The number of bytes of every slab allocated.
+     */
+    public long getAllocatedBytes()
+    {
+        return allocatedBytes;
+    }
+
+    /**
+     * @return The number of bytes handed out as regions.
+     */
+    public long getUsedBytes()
+    {
+        return usedBytes;
+    }
+
+    /**
+     * @return Indicator if the allocator was closed.
+     */
+    public boolean isClosed()
+    {
+        return closed;
+    }
+
+    /**
+     * Releases every slab. The memory of the slabs is returned to the operating system once their buffers are collected, and must not be reached
+     * through any region afterwards.
+     */
+    @Override
+    public void close()
+    {
+        closed = true;
+        slabs.clear();
+        slab = null;
+        allocatedBytes = 0;
+        usedBytes = 0;
+    }
+}
@@ -0,0 +1,239 @@
+package eli.ikea.mart.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves the column vectors of cold storage blocks into files of a local directory, and pages them back onto the heap when they are accessed. At
+ * most a fixed number of spilled vectors are resident at once; beyond that, the resident vector that was not accessed for the longest sweep of a
+ * clock is released, and written back first if it was modified. The manager is thread-safe, so that readers of a {@link StorageSnapshot} may page
+ * in vectors of the blocks they share with the storage.
+ *
+ * @author The Architect
+ */
+public class SpillManager implements AutoCloseable
+{
+    /**
+     * The number of spilled vectors that may be resident at once, unless otherwise specified.
+     */
+    public static final int DEFAULT_RESIDENT_LIMIT = 64;
+
+    private final Path                            directory;
+    private final int                             residentLimit;
+    private final boolean                         temporary;
+    private final ArrayDeque<SpilledColumnVector> resident = new ArrayDeque<>();
+    private final List<Path>                      files    = new ArrayList<>();
+    private long                                  spillCount;
+    private long                                  pageInCount;
+    private long                                  spilledBytes;
+
+    /**
+     * @param directory The existing directory of the spill files. [Non-Null]
+     * @param residentLimit The number of spilled vectors that may be resident at once. [Positive]
+     */
+    public SpillManager(final Path directory, final int residentLimit)
+    {
+        this(directory, residentLimit, false);
+    }
+
+    /**
+     * @param directory The existing directory of the spill files. [Non-Null]
+     * @param residentLimit The number of spilled vectors that may be resident at once. [Positive]
+     * @param temporary Indicator if the directory was created for the manager, and is deleted along with the spill files once it is closed.
+     */
+    public SpillManager(final Path directory, final int residentLimit, final boolean temporary)
+    {
+        this.directory = directory;
+        this.residentLimit = residentLimit;
+        this.temporary = temporary;
+    }
+
+    /**
+     * @return The non-null directory of the spill files.
+     */
+    public Path getDirectory()
+    {
+        return directory;
+    }
+
+    /**
+     * @param vector The vector of a cold block, which must not be modified afterwards. [Non-Null]
+     * @param size The number of used slots of the vector.
+     * @return The spilled replacement of the vector, or <code>NULL</code> if any of its values cannot be encoded. [Nullable]
+     * @throws IOException If the spill file cannot be written.
+     */
+    public synchronized SpilledColumnVector spill(final ColumnVector vector, final int size) throws IOException
+    {
+        final Path file = Files.createTempFile(directory, "block", ".spill");
+        files.add(file);
+        try
+        {
+            write(file, vector, size);
+        }
+        catch (final NotSerializableException e)
+        {
+            Files.deleteIfExists(file);
+            files.remove(file);
+            return null;
+        }
+        spillCount++;
+
+        return new SpilledColumnVector(this, file, vector, size);
+    }
+
+    /**
+     * @return The number of vectors spilled.
+     */
+    public long getSpillCount()
+    {
+        return spillCount;
+    }
+
+    /**
+     * @return The number of times a spilled vector was paged back in.
+     */
+    public long getPageInCount()
+    {
+        return pageInCount;
+    }
+
+    /**
+     * @return The number of bytes written to spill files.
+     */
+    public long getSpilledBytes()
+    {
+        return spilledBytes;
+    }
+
+    /**
+     * @return The number of spilled vectors currently resident.
+     */
+    public synchronized int getResidentCount()
+    {
+        return resident.size();
+    }
+
+    /**
+     * Deletes every spill file, as well as the directory if it is temporary. Spilled vectors must not be accessed afterwards.
+     */
+    @Override
+    public synchronized void close()
+    {
+        resident.clear();
+        for (final Path file : files)
+        {
+            try
+            {
+                Files.deleteIfExists(file);
+            }
+            catch (final IOException e)
+            {
+                file.toFile().deleteOnExit();
+            }
+        }
+        files.clear();
+        spilledBytes = 0L;
+        if (temporary)
+        {
+            try
+            {
+                Files.deleteIfExists(directory);
+            }
+            catch (final IOException e)
+            {
+                directory.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    synchronized ColumnVector pageIn(final SpilledColumnVector vector)
+    {
+        while (resident.size() >= residentLimit)
+        {
+            final SpilledColumnVector candidate = resident.poll();
+            if (candidate.clearReferenced())
+            {
+                resident.add(candidate);
+            }
+            else
+            {
+                candidate.release();
+            }
+        }
+
+        final ColumnVector values = vector.newVector();
+        try (final DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(vector.getFile()))))
+        {
+            for (int slot = 0; slot < vector.getSize(); slot++)
+            {
+                values.set(slot, ValueCodec.read(input));
+            }
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        resident.add(vector);
+        pageInCount++;
+        if (vector.isPacked())
+        {
+            final PackedLongColumnVector packed = PackedLongColumnVector.pack((PrimitiveColumnVector) values, vector.getSize());
+            if (packed != null)
+            {
+                return packed;
+            }
+        }
+
+        return values;
+    }
+
+    synchronized void writeBack(final SpilledColumnVector vector, final ColumnVector values)
+    {
+        try
+        {
+            spilledBytes -= Files.size(vector.getFile());
+            write(vector.getFile(), values, vector.getSize());
+        }
+        catch (final IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    synchronized void discard(final SpilledColumnVector vector)
+    {
+        resident.remove(vector);
+        files.remove(vector.getFile());
+        try
+        {
+            spilledBytes -= Files.size(vector.getFile());
+            Files.deleteIfExists(vector.getFile());
+        }
+        catch (final IOException e)
+        {
+            vector.getFile().toFile().deleteOnExit();
+        }
+    }
+
+    private void write(final Path file, final ColumnVector vector, final int size) throws IOException
+    {
+        try (final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file))))
+        {
+            for (int slot = 0; slot < size; slot++)
+            {
+                ValueCodec.write(output, vector.get(slot));
+            }
+            spilledBytes += output.size();
+        }
+    }
+}
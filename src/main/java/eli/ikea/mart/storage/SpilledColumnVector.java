@@ -0,0 +1,166 @@
+package eli.ikea.mart.storage;
+
+import java.nio.file.Path;
+
+/**
+ * A {@link ColumnVector} whose values were moved to a spill file by a {@link SpillManager}. The values are paged back onto the heap on the first
+ * access, and released again once the manager needs room for other vectors. Paged in values are held in a vector of the same kind as the one
+ * that was spilled, so that primitive, packed and dictionary encoded columns keep their representation. Accesses hold the monitor of the manager,
+ * since readers of a {@link StorageSnapshot} may page vectors in while the storage is changed.
+ *
+ * @author The Architect
+ */
+public class SpilledColumnVector extends ColumnVector
+{
+    private final SpillManager     manager;
+    private final Path             file;
+    private final int              capacity;
+    private final int              size;
+    private final FixedWidthType   type;
+    private final ColumnDictionary dictionary;
+    private final boolean          packed;
+    private ColumnVector           values;
+    private boolean                referenced;
+    private boolean                modified;
+
+    SpilledColumnVector(final SpillManager manager, final Path file, final ColumnVector source, final int size)
+    {
+        this.manager = manager;
+        this.file = file;
+        this.capacity = source.getCapacity();
+        this.size = size;
+        this.packed = source instanceof PackedLongColumnVector;
+        this.dictionary = source instanceof DictionaryColumnVector ? ((DictionaryColumnVector) source).getDictionary() : null;
+        if (source instanceof PrimitiveColumnVector)
+        {
+            this.type = ((PrimitiveColumnVector) source).getType();
+        }
+        else if (packed)
+        {
+            this.type = ((PackedLongColumnVector) source).getType();
+        }
+        else
+        {
+            this.type = source instanceof BooleanColumnVector ? FixedWidthType.BOOLEAN : null;
+        }
+    }
+
+    /**
+     * @return Indicator if the values are currently paged in.
+     */
+    public boolean isResident()
+    {
+        return values != null;
+    }
+
+    @Override
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    @Override
+    public Object get(final int slot)
+    {
+        synchronized (manager)
+        {
+            return resident().get(slot);
+        }
+    }
+
+    @Override
+    public void set(final int slot, final Object value)
+    {
+        synchronized (manager)
+        {
+            if (resident() instanceof PackedLongColumnVector)
+            {
+                values = ((PackedLongColumnVector) values).unpack();
+            }
+            values.set(slot, value);
+            modified = true;
+        }
+    }
+
+    @Override
+    public boolean isNull(final int slot)
+    {
+        synchronized (manager)
+        {
+            return resident().isNull(slot);
+        }
+    }
+
+    /**
+     * Only the values currently paged in are held on the heap.
+     */
+    @Override
+    public long estimateValueBytes()
+    {
+        return values == null ? 0L : values.estimateValueBytes();
+    }
+
+    Path getFile()
+    {
+        return file;
+    }
+
+    int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * @return A new non-null vector of the same kind as the one that was spilled, to page the values into.
+     */
+    ColumnVector newVector()
+    {
+        if (dictionary != null)
+        {
+            return new DictionaryColumnVector(dictionary, capacity);
+        }
+        if (type == FixedWidthType.BOOLEAN)
+        {
+            return new BooleanColumnVector(capacity);
+        }
+
+        return type == null ? new ObjectColumnVector(capacity) : new PrimitiveColumnVector(type, capacity);
+    }
+
+    /**
+     * @return Indicator if the spilled vector was packed, in which case the paged in values are packed again.
+     */
+    boolean isPacked()
+    {
+        return packed;
+    }
+
+    boolean clearReferenced()
+    {
+        final boolean wasReferenced = referenced;
+        referenced = false;
+
+        return wasReferenced;
+    }
+
+    void release()
+    {
+        if (modified)
+        {
+            manager.writeBack(this, values);
+            modified = false;
+        }
+        values = null;
+    }
+
+    private ColumnVector resident()
+    {
+        if (values == null)
+        {
+            values = manager.pageIn(this);
+        }
+        referenced = true;
+
+        return values;
+    }
+}
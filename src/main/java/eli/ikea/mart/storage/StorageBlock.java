@@ -0,0 +1,455 @@
+package eli.ikea.mart.storage;
+
+import eli.ikea.mart.storage.ColumnarFile.BlockOrigin;
+
+/**
+ * A fixed-capacity block of rows, stored column by column. Rows are appended to the next free slot, and every column keeps a {@link ZoneMap} of the
+ * values written to it, as well as an optional {@link BloomFilter}. Deleted rows keep their slot, and are marked in a bitset of tombstones that is
+ * only allocated once the first row of the block is deleted. Every change to the rows of a block marks it as dirty, until it is written to a
+ * checkpoint. Blocks are stamped with the version of their storage in which they were allocated, and are {@link #copy(ColumnVector[]) copied}
+ * rather than changed while a {@link StorageSnapshot} of that version is open.
+ *
+ * @author The Architect
+ */
+public class StorageBlock
+{
+    private final long[]         referenceIdentifiers;
+    private final ColumnVector[] columns;
+    private final ZoneMap[]      zoneMaps;
+    private final BloomFilter[]  bloomFilters;
+    private long[]               tombstones;
+    private int                  size;
+    private int                  deletedCount;
+    private long                 lastAccess;
+    private boolean              spilled;
+    private boolean              dirty = true;
+    private BlockOrigin          origin;
+    private long                 version;
+
+    /**
+     * @param columnCount The number of columns in every row.
+     * @param capacity The number of rows the block can hold.
+     */
+    public StorageBlock(final int columnCount, final int capacity)
+    {
+        this(plainColumns(columnCount, capacity), capacity);
+    }
+
+    /**
+     * @param columns The empty vectors of every column, each with at least the capacity of the block. [Non-Null]
+     * @param capacity The number of rows the block can hold.
+     */
+    public StorageBlock(final ColumnVector[] columns, final int capacity)
+    {
+        referenceIdentifiers = new long[capacity];
+        this.columns = columns;
+        zoneMaps = new ZoneMap[columns.length];
+        bloomFilters = new BloomFilter[columns.length];
+        for (int column = 0; column < columns.length; column++)
+        {
+            zoneMaps[column] = new ZoneMap();
+        }
+    }
+
+    /**
+     * Restores a full block whose columns already hold the values of every slot, such as the vectors of a memory-mapped file.
+     *
+     * @param referenceIdentifiers The reference identifiers of every slot, which also decide the capacity of the block. [Non-Null]
+     * @param columns The vectors of every column, each with at least the capacity of the block. [Non-Null]
+     * @param zoneMaps The zone maps of the values of every column. [Non-Null]
+     */
+    StorageBlock(final long[] referenceIdentifiers, final ColumnVector[] columns, final ZoneMap[] zoneMaps)
+    {
+        this.referenceIdentifiers = referenceIdentifiers;
+        this.columns = columns;
+        this.zoneMaps = zoneMaps;
+        this.bloomFilters = new BloomFilter[columns.length];
+        this.size = referenceIdentifiers.length;
+        this.dirty = false;
+    }
+
+    /**
+     * Copies the block, such as before changing a block that is shared with a snapshot. Everything but the column vectors is copied, so the
+     * summaries and tombstones of the copy are maintained independently of this block.
+     *
+     * @param columns The vectors of every column of the copy, holding the values of the used slots. [Non-Null]
+     * @return The new non-null copy, which is neither spilled nor stamped with a version yet.
+     */
+    StorageBlock copy(final ColumnVector[] columns)
+    {
+        final StorageBlock copy = new StorageBlock(columns, referenceIdentifiers.length);
+        System.arraycopy(referenceIdentifiers, 0, copy.referenceIdentifiers, 0, size);
+        for (int column = 0; column < columns.length; column++)
+        {
+            copy.zoneMaps[column] = zoneMaps[column].copy();
+            copy.bloomFilters[column] = bloomFilters[column] == null ? null : bloomFilters[column].copy();
+        }
+        copy.tombstones = tombstones == null ? null : tombstones.clone();
+        copy.size = size;
+        copy.deletedCount = deletedCount;
+        copy.lastAccess = lastAccess;
+        copy.dirty = dirty;
+        copy.origin = origin;
+
+        return copy;
+    }
+
+    private static ColumnVector[] plainColumns(final int columnCount, final int capacity)
+    {
+        final ColumnVector[] columns = new ColumnVector[columnCount];
+        for (int column = 0; column < columnCount; column++)
+        {
+            columns[column] = new ObjectColumnVector(capacity);
+        }
+
+        return columns;
+    }
+
+    /**
+     * @return The number of rows the block can hold.
+     */
+    public int getCapacity()
+    {
+        return referenceIdentifiers.length;
+    }
+
+    /**
+     * @return The number of slots used by the block.
+     */
+    public int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * @return Indicator if every slot of the block is used.
+     */
+    public boolean isFull()
+    {
+        return size == referenceIdentifiers.length;
+    }
+
+    /**
+     * @return The number of used slots whose rows were not deleted.
+     */
+    public int getLiveCount()
+    {
+        return size - deletedCount;
+    }
+
+    /**
+     * @return The number of used slots whose rows were deleted.
+     */
+    public int getDeletedCount()
+    {
+        return deletedCount;
+    }
+
+    /**
+     * Marks the row of a slot as deleted. Its values remain in the column vectors, and its slot is not reused.
+     *
+     * @param slot The used slot of the row.
+     * @return Indicator if the row was not already deleted.
+     */
+    public boolean delete(final int slot)
+    {
+        if (tombstones == null)
+        {
+            tombstones = new long[(referenceIdentifiers.length + Long.SIZE - 1) / Long.SIZE];
+        }
+        final long bit = 1L << slot;
+        if ((tombstones[slot >>> 6] & bit) != 0)
+        {
+            return false;
+        }
+        tombstones[slot >>> 6] |= bit;
+        deletedCount++;
+        dirty = true;
+
+        return true;
+    }
+
+    /**
+     * @param slot The used slot of the row.
+     * @return Indicator if the row of the slot was deleted.
+     */
+    public boolean isDeleted(final int slot)
+    {
+        return tombstones != null && (tombstones[slot >>> 6] & 1L << slot) != 0;
+    }
+
+    /**
+     * @param word The index of a group of 64 consecutive slots.
+     * @return The bits of the slots whose rows were deleted, where the lowest bit is the first slot of the group.
+     */
+    public long getDeletedWord(final int word)
+    {
+        return tombstones == null ? 0L : tombstones[word];
+    }
+
+    /**
+     * @param slot The first slot to consider, which may be the size of the block.
+     * @return The first slot at or after the given slot whose row was not deleted, or the size of the block if there is none.
+     */
+    public int nextLiveSlot(final int slot)
+    {
+        if (tombstones == null || slot >= size)
+        {
+            return Math.min(slot, size);
+        }
+
+        // Runs of deleted rows are skipped 64 slots at a time.
+        int word = slot >>> 6;
+        long live = ~tombstones[word] & -1L << slot;
+        while (live == 0)
+        {
+            if (++word == tombstones.length)
+            {
+                return size;
+            }
+            live = ~tombstones[word];
+        }
+
+        return Math.min(word << 6 | Long.numberOfTrailingZeros(live), size);
+    }
+
+    /**
+     * @param referenceIdentifier The reference identifier of the row.
+     * @param values The values of every column of the row. [Non-Null]
+     * @return The slot of the appended row.
+     */
+    public int append(final long referenceIdentifier, final Object[] values)
+    {
+        final int slot = size++;
+        referenceIdentifiers[slot] = referenceIdentifier;
+        dirty = true;
+        for (int column = 0; column < columns.length; column++)
+        {
+            columns[column].set(slot, values[column]);
+            zoneMaps[column].record(values[column]);
+            if (bloomFilters[column] != null && values[column] != null)
+            {
+                bloomFilters[column].put(values[column]);
+            }
+        }
+
+        return slot;
+    }
+
+    /**
+     * @param slot The slot of the row.
+     * @return The reference identifier of the row.
+     */
+    public long getReferenceIdentifier(final int slot)
+    {
+        return referenceIdentifiers[slot];
+    }
+
+    /**
+     * @param slot The slot of the row.
+     * @param column The index of the column.
+     * @return The value of the column for the row. [Nullable]
+     */
+    public Object getValue(final int slot, final int column)
+    {
+        return columns[column].get(slot);
+    }
+
+    /**
+     * @param slot The slot of the row.
+     * @param column The index of the column.
+     * @param value The new value of the column for the row. [Nullable]
+     * @throws UnsupportedOperationException If the vector of the column is {@link ColumnVector#isReadOnly() read-only}.
+     */
+    public void setValue(final int slot, final int column, final Object value)
+    {
+        if (columns[column] instanceof PackedLongColumnVector)
+        {
+            columns[column] = ((PackedLongColumnVector) columns[column]).unpack();
+        }
+        columns[column].set(slot, value);
+        zoneMaps[column].record(value);
+        dirty = true;
+        if (bloomFilters[column] != null && value != null)
+        {
+            bloomFilters[column].put(value);
+        }
+    }
+
+    /**
+     * @param column The index of the column.
+     * @return The non-null values of the column.
+     */
+    public ColumnVector getColumn(final int column)
+    {
+        return columns[column];
+    }
+
+    /**
+     * Replaces the vector of a column, copying the values of the used slots into it.
+     *
+     * @param column The index of the column.
+     * @param vector The empty vector to hold the values of the column, with at least the capacity of the block. [Non-Null]
+     */
+    public void setColumn(final int column, final ColumnVector vector)
+    {
+        for (int slot = 0; slot < size; slot++)
+        {
+            vector.set(slot, columns[column].get(slot));
+        }
+        columns[column] = vector;
+        spilled = false;
+        dirty = true;
+    }
+
+    /**
+     * @return The tick of the storage clock at which the block was last accessed.
+     */
+    public long getLastAccess()
+    {
+        return lastAccess;
+    }
+
+    /**
+     * @param tick The current tick of the storage clock.
+     */
+    void touch(final long tick)
+    {
+        lastAccess = tick;
+    }
+
+    /**
+     * @return The version of the storage in which the block was allocated.
+     */
+    long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * @param version The current version of the storage the block is added to.
+     */
+    void setVersion(final long version)
+    {
+        this.version = version;
+    }
+
+    /**
+     * @return Indicator if the columns of the block were spilled, as far as their values could be encoded.
+     */
+    public boolean isSpilled()
+    {
+        return spilled;
+    }
+
+    void markSpilled()
+    {
+        spilled = true;
+    }
+
+    /**
+     * @return Indicator if the rows of the block changed since it was last written to a checkpoint, or if it was never written.
+     */
+    public boolean isDirty()
+    {
+        return dirty;
+    }
+
+    /**
+     * @return The file holding the last written copy of the block, or <code>NULL</code> if it was never written. [Nullable]
+     */
+    BlockOrigin getOrigin()
+    {
+        return origin;
+    }
+
+    /**
+     * @param origin The file now holding a copy of the rows of the block. [Non-Null]
+     */
+    void markWritten(final BlockOrigin origin)
+    {
+        this.origin = origin;
+        dirty = false;
+    }
+
+    /**
+     * Marks the block as changed, so that the next checkpoint writes it again even though its rows did not change, such as after the compression
+     * of a column changed.
+     */
+    void markDirty()
+    {
+        dirty = true;
+    }
+
+    /**
+     * Replaces the vector of a column with an equivalent vector that already holds the values of the used slots, such as a packed copy.
+     *
+     * @param column The index of the column.
+     * @param vector The vector holding the values of the column. [Non-Null]
+     */
+    void replaceColumn(final int column, final ColumnVector vector)
+    {
+        columns[column] = vector;
+    }
+
+    /**
+     * @param column The index of the column.
+     * @return The non-null summary of the values of the column.
+     */
+    public ZoneMap getZoneMap(final int column)
+    {
+        return zoneMaps[column];
+    }
+
+    /**
+     * @param column The index of the column.
+     * @return The filter of the values of the column. [Nullable]
+     */
+    public BloomFilter getBloomFilter(final int column)
+    {
+        return bloomFilters[column];
+    }
+
+    /**
+     * @param column The index of the column.
+     * @param bloomFilter The empty filter to populate from the values already in the block and maintain as values are written. [Nullable]
+     */
+    public void setBloomFilter(final int column, final BloomFilter bloomFilter)
+    {
+        bloomFilters[column] = bloomFilter;
+        if (bloomFilter != null)
+        {
+            for (int slot = 0; slot < size; slot++)
+            {
+                final Object value = columns[column].get(slot);
+                if (value != null)
+                {
+                    bloomFilter.put(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The estimated number of bytes held by the block apart from its column vectors, namely its reference identifiers, tombstones, zone maps
+     *         and bloom filters.
+     */
+    public long estimateOverheadBytes()
+    {
+        long bytes = MemoryEstimator.array(Long.BYTES, referenceIdentifiers.length);
+        if (tombstones != null)
+        {
+            bytes += MemoryEstimator.array(Long.BYTES, tombstones.length);
+        }
+        for (int column = 0; column < columns.length; column++)
+        {
+            bytes += 40L + MemoryEstimator.object(zoneMaps[column].getMinimum()) + MemoryEstimator.object(zoneMaps[column].getMaximum());
+            if (bloomFilters[column] != null)
+            {
+                bytes += bloomFilters[column].estimateBytes();
+            }
+        }
+
+        return bytes;
+    }
+}
@@ -0,0 +1,131 @@
+package eli.ikea.mart.storage;
+
+import java.util.List;
+
+/**
+ * A read-only version of a {@link TableStorage}, as of the moment it was {@link TableStorage#snapshot() taken}. Taking a snapshot only records the
+ * current list of blocks, which the snapshot shares with the storage: while it is open, the storage copies a block before changing it, and copies
+ * its list of blocks before adding or replacing one, so that the blocks of the snapshot never change. The blocks allocated after the snapshot are
+ * not shared, and a block is copied at most once per snapshot.
+ * <p>
+ * A snapshot may be read by any thread, without holding the monitor that serializes the changes of the storage. Rows are located through a map
+ * built from the blocks of the snapshot on the first lookup, so that writers never copy the map of the storage. A snapshot must be
+ * {@link TableStorage#release(StorageSnapshot) released} once its readers are done, after which its blocks are no longer copied on change, and
+ * become garbage once they are replaced.
+ *
+ * @author The Architect
+ */
+public final class StorageSnapshot
+{
+    private final TableStorage       storage;
+    private final List<StorageBlock> blocks;
+    private final int                size;
+    private final long               version;
+    private LocationMap              locations;
+    private volatile boolean         released;
+
+    StorageSnapshot(final TableStorage storage, final List<StorageBlock> blocks, final int size, final long version)
+    {
+        this.storage = storage;
+        this.blocks = blocks;
+        this.size = size;
+        this.version = version;
+    }
+
+    /**
+     * @return The version of the storage the snapshot was taken of, where every snapshot of a storage has a different version.
+     */
+    public long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * @return The number of rows stored as of the snapshot.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return The number of blocks as of the snapshot.
+     */
+    public int getBlockCount()
+    {
+        return blocks.size();
+    }
+
+    /**
+     * @param blockIndex The index of the block.
+     * @return The non-null block, which must not be changed.
+     */
+    public StorageBlock getBlock(final int blockIndex)
+    {
+        return blocks.get(blockIndex);
+    }
+
+    /**
+     * @param referenceIdentifier The reference identifier of the row.
+     * @return The location of the row within the snapshot, or {@link LocationMap#MISSING} if it was not stored as of the snapshot.
+     */
+    public long locate(final long referenceIdentifier)
+    {
+        return locations().get(referenceIdentifier);
+    }
+
+    /**
+     * @param location The location of the row within the snapshot, as returned by {@link #locate(long)}.
+     * @param column The index of the column.
+     * @return The value of the column for the row. [Nullable]
+     */
+    public Object read(final long location, final int column)
+    {
+        return blocks.get(TableStorage.blockOf(location)).getValue(TableStorage.slotOf(location), column);
+    }
+
+    /**
+     * @return A new non-null cursor positioned before the first row of the snapshot.
+     */
+    public TableStorage.Cursor cursor()
+    {
+        return storage.cursor(blocks);
+    }
+
+    /**
+     * @return Indicator if the snapshot was released, after which it must not be read.
+     */
+    public boolean isReleased()
+    {
+        return released;
+    }
+
+    TableStorage getStorage()
+    {
+        return storage;
+    }
+
+    void markReleased()
+    {
+        released = true;
+    }
+
+    private synchronized LocationMap locations()
+    {
+        if (locations == null)
+        {
+            final LocationMap map = new LocationMap(size);
+            for (int blockIndex = 0; blockIndex < blocks.size(); blockIndex++)
+            {
+                final StorageBlock block = blocks.get(blockIndex);
+                for (int slot = block.nextLiveSlot(0); slot < block.getSize(); slot = block.nextLiveSlot(slot + 1))
+                {
+                    map.put(block.getReferenceIdentifier(slot), TableStorage.toLocation(blockIndex, slot));
+                }
+            }
+            locations = map;
+        }
+
+        return locations;
+    }
+}
@@ -0,0 +1,98 @@
+package eli.ikea.mart.storage;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import eli.veritas.Verifier;
+import eli.veritas.exception.AssertionException;
+
+/**
+ * A bounded, concurrent pool of canonical {@link String} instances, used to collapse the identical copies returned by data sources into a single
+ * instance as rows are ingested. The least recently used strings are evicted once the pool is full, after which a repeated value is simply
+ * retained as a new copy.
+ *
+ * @author The Architect
+ */
+public class StringPool
+{
+    private final Cache<String, String> strings;
+    private final LongAdder             bytesSaved = new LongAdder();
+
+    private StringPool(final long maximumSize)
+    {
+        strings = CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats().build();
+    }
+
+    /**
+     * @param maximumSize The maximum number of distinct strings retained by the pool. [Positive]
+     * @return A new non-null empty pool.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public static StringPool create(final long maximumSize) throws AssertionException
+    {
+        Verifier.Inequality.assertGreaterThan("The maximum size of the pool must be positive.", maximumSize, 0L);
+
+        return new StringPool(maximumSize);
+    }
+
+    /**
+     * @param value The string to canonicalize. [Nullable]
+     * @return The pooled instance equal to the string, or the string itself if no equal instance is pooled yet. [Nullable]
+     */
+    public String intern(final String value)
+    {
+        if (value == null)
+        {
+            return null;
+        }
+
+        final String pooled = strings.getIfPresent(value);
+        if (pooled != null)
+        {
+            if (pooled != value)
+            {
+                bytesSaved.add(MemoryEstimator.object(value));
+            }
+
+            return pooled;
+        }
+
+        final String raced = strings.asMap().putIfAbsent(value, value);
+
+        return raced == null ? value : raced;
+    }
+
+    /**
+     * @return The fraction of the strings interned that were already pooled, or <code>1.0</code> if no string was interned yet.
+     */
+    public double getHitRatio()
+    {
+        return strings.stats().hitRate();
+    }
+
+    /**
+     * @return The number of strings interned.
+     */
+    public long getRequestCount()
+    {
+        return strings.stats().requestCount();
+    }
+
+    /**
+     * @return The estimated number of heap bytes held by the duplicate copies that were replaced by a pooled instance.
+     */
+    public long getBytesSaved()
+    {
+        return bytesSaved.sum();
+    }
+
+    /**
+     * @return The number of distinct strings currently pooled.
+     */
+    public long size()
+    {
+        return strings.size();
+    }
+}
@@ -0,0 +1,454 @@
+package eli.ikea.mart.storage;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.common.io.CountingOutputStream;
+
+import eli.ikea.mart.query.ValueHasher;
+import eli.veritas.Verifier;
+import eli.veritas.exception.AssertionException;
+
+/**
+ * The rows inserted, updated and deleted between two versions of the rows of a {@link TableStorage}, identified by their reference identifiers.
+ * The difference is computed in two passes. First, every block of both versions is hashed from the reference identifiers and the encoded values of
+ * its rows, and the blocks of the later version whose hash matches a block of the earlier version are skipped as unchanged. Then only the rows of
+ * the remaining blocks are hashed and compared by reference identifier. A row of an unchanged block cannot appear in any other block of either
+ * version, since reference identifiers are unique, so rows that merely moved between changed blocks, such as by compaction, are recognized as
+ * unchanged.
+ * <p>
+ * A difference is {@link #write(TableStorage, OutputStream) written} as a compact delta stream: the sorted reference identifiers of every kind of
+ * change as gaps between consecutive identifiers, followed by the values of the inserted and updated rows encoded by a {@link RowCodec}. The
+ * stream holds only the changes, so its size follows the number of changed rows rather than the size of the table. A difference
+ * {@link #read(InputStream, Class[]) read} from a stream also holds the values of those rows, so that they can be applied to a copy of the
+ * earlier version.
+ *
+ * @author The Architect
+ */
+public final class TableDiff
+{
+    private static final long MAGIC           = 0x494B454144454C54L;
+    private static final int  VERSION         = 1;
+    private static final int  DICTIONARY_SIZE = 4096;
+
+    private final long[]     inserted;
+    private final long[]     updated;
+    private final long[]     deleted;
+    private final Object[][] insertedRows;
+    private final Object[][] updatedRows;
+    private final int        blockCount;
+    private final int        unchangedBlockCount;
+
+    private TableDiff(final long[] inserted, final long[] updated, final long[] deleted, final Object[][] insertedRows,
+                      final Object[][] updatedRows, final int blockCount, final int unchangedBlockCount)
+    {
+        this.inserted = inserted;
+        this.updated = updated;
+        this.deleted = deleted;
+        this.insertedRows = insertedRows;
+        this.updatedRows = updatedRows;
+        this.blockCount = blockCount;
+        this.unchangedBlockCount = unchangedBlockCount;
+    }
+
+    /**
+     * Computes the difference between two versions of the rows of a storage. Neither storage may be modified while the difference is computed.
+     *
+     * @param before The earlier version. [Non-Null]
+     * @param after The later version, whose columns have the data types of the earlier version. [Non-Null]
+     * @return The non-null difference, which leads from the earlier version to the later version.
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public static TableDiff compute(final TableStorage before, final TableStorage after) throws AssertionException
+    {
+        Verifier.assertNotNull("Must specify the earlier version.", before);
+        Verifier.assertNotNull("Must specify the later version.", after);
+        Verifier.Equality.assertEqual("Both versions must have the same number of columns.", after.getColumnCount(), before.getColumnCount());
+
+        final RowHasher hasher = new RowHasher(after);
+        final Map<Long, Integer> beforeBlocks = new HashMap<>();
+        final long[] beforeHashes = new long[before.getBlockCount()];
+        for (int blockIndex = 0; blockIndex < beforeHashes.length; blockIndex++)
+        {
+            beforeHashes[blockIndex] = hasher.hashBlock(before, blockIndex);
+            beforeBlocks.merge(beforeHashes[blockIndex], 1, Integer::sum);
+        }
+
+        // Blocks of the later version are paired with an identical block of the earlier version, which is then used up.
+        final boolean[] changedAfter = new boolean[after.getBlockCount()];
+        int unchangedBlockCount = 0;
+        for (int blockIndex = 0; blockIndex < changedAfter.length; blockIndex++)
+        {
+            final long hash = hasher.hashBlock(after, blockIndex);
+            final Integer count = beforeBlocks.get(hash);
+            changedAfter[blockIndex] = count == null || count == 0;
+            if (!changedAfter[blockIndex])
+            {
+                unchangedBlockCount++;
+                beforeBlocks.put(hash, count - 1);
+            }
+        }
+
+        final Map<Long, Long> beforeRows = new HashMap<>();
+        for (int blockIndex = 0; blockIndex < beforeHashes.length; blockIndex++)
+        {
+            // The copies of a hash left over by the pairing are the changed blocks of the earlier version.
+            final int count = beforeBlocks.get(beforeHashes[blockIndex]);
+            if (count == 0)
+            {
+                continue;
+            }
+            beforeBlocks.put(beforeHashes[blockIndex], count - 1);
+            final StorageBlock block = before.getBlock(blockIndex);
+            for (int slot = block.nextLiveSlot(0); slot < block.getSize(); slot = block.nextLiveSlot(slot + 1))
+            {
+                beforeRows.put(block.getReferenceIdentifier(slot), hasher.hashRow(before, TableStorage.toLocation(blockIndex, slot)));
+            }
+        }
+
+        final LongList inserted = new LongList();
+        final LongList updated = new LongList();
+        for (int blockIndex = 0; blockIndex < changedAfter.length; blockIndex++)
+        {
+            if (!changedAfter[blockIndex])
+            {
+                continue;
+            }
+            final StorageBlock block = after.getBlock(blockIndex);
+            for (int slot = block.nextLiveSlot(0); slot < block.getSize(); slot = block.nextLiveSlot(slot + 1))
+            {
+                final long referenceIdentifier = block.getReferenceIdentifier(slot);
+                final Long beforeHash = beforeRows.remove(referenceIdentifier);
+                if (beforeHash == null)
+                {
+                    inserted.add(referenceIdentifier);
+                }
+                else if (beforeHash != hasher.hashRow(after, TableStorage.toLocation(blockIndex, slot)))
+                {
+                    updated.add(referenceIdentifier);
+                }
+            }
+        }
+        final LongList deleted = new LongList();
+        for (final long referenceIdentifier : beforeRows.keySet())
+        {
+            deleted.add(referenceIdentifier);
+        }
+
+        return new TableDiff(inserted.sorted(), updated.sorted(), deleted.sorted(), null, null, changedAfter.length, unchangedBlockCount);
+    }
+
+    /**
+     * @return The non-null reference identifiers of the rows only held by the later version, in ascending order.
+     */
+    public long[] getInserted()
+    {
+        return inserted.clone();
+    }
+
+    /**
+     * @return The non-null reference identifiers of the rows whose values differ between the versions, in ascending order.
+     */
+    public long[] getUpdated()
+    {
+        return updated.clone();
+    }
+
+    /**
+     * @return The non-null reference identifiers of the rows only held by the earlier version, in ascending order.
+     */
+    public long[] getDeleted()
+    {
+        return deleted.clone();
+    }
+
+    /**
+     * @return The values of the inserted rows in the order of {@link #getInserted()}, or <code>NULL</code> unless the difference was read from a
+     *         stream. [Nullable]
+     */
+    public Object[][] getInsertedRows()
+    {
+        return insertedRows;
+    }
+
+    /**
+     * @return The values of the updated rows in the order of {@link #getUpdated()}, or <code>NULL</code> unless the difference was read from a
+     *         stream. [Nullable]
+     */
+    public Object[][] getUpdatedRows()
+    {
+        return updatedRows;
+    }
+
+    /**
+     * @return The number of blocks of the later version that were compared, or 0 if the difference was read from a stream.
+     */
+    public int getBlockCount()
+    {
+        return blockCount;
+    }
+
+    /**
+     * @return The number of blocks of the later version that matched a block of the earlier version, whose rows were not compared.
+     */
+    public int getUnchangedBlockCount()
+    {
+        return unchangedBlockCount;
+    }
+
+    /**
+     * @return Indicator if both versions hold the same rows.
+     */
+    public boolean isEmpty()
+    {
+        return inserted.length == 0 && updated.length == 0 && deleted.length == 0;
+    }
+
+    /**
+     * Writes the difference as a delta stream, with the values of the inserted and updated rows read from the later version.
+     *
+     * @param after The later version the difference was computed for, which must not have been modified since. [Non-Null]
+     * @param output The output of the stream, which is flushed but not closed. [Non-Null]
+     * @return The number of bytes written.
+     * @throws IOException If the stream cannot be written, or a value of another data type cannot be encoded.
+     */
+    public long write(final TableStorage after, final OutputStream output) throws IOException
+    {
+        final CountingOutputStream counter = new CountingOutputStream(output);
+        final DataOutputStream stream = new DataOutputStream(counter);
+        stream.writeLong(MAGIC);
+        stream.writeInt(VERSION);
+        stream.writeInt(after.getColumnCount());
+        writeIdentifiers(stream, deleted);
+        writeIdentifiers(stream, inserted);
+        writeIdentifiers(stream, updated);
+
+        final RowCodec codec = new RowCodec(dataTypesOf(after), DICTIONARY_SIZE);
+        ByteBuffer body = ByteBuffer.allocate(1 << 12);
+        for (final long[] referenceIdentifiers : new long[][] {inserted, updated})
+        {
+            for (final long referenceIdentifier : referenceIdentifiers)
+            {
+                while (true)
+                {
+                    try
+                    {
+                        codec.encode(after, after.locate(referenceIdentifier), body);
+                        break;
+                    }
+                    catch (final BufferOverflowException e)
+                    {
+                        final ByteBuffer grown = ByteBuffer.allocate(2 * body.capacity());
+                        body.flip();
+                        body = grown.put(body);
+                    }
+                }
+            }
+        }
+        stream.writeInt(body.position());
+        stream.write(body.array(), 0, body.position());
+        stream.flush();
+
+        return counter.getCount();
+    }
+
+    /**
+     * Reads a delta stream written by {@link #write(TableStorage, OutputStream)}.
+     *
+     * @param input The input of the stream, which is not closed. [Non-Null]
+     * @param dataTypes The data types of every column of the storage the difference was computed for. [Non-Null]
+     * @return The non-null difference, including the values of the inserted and updated rows.
+     * @throws IOException If the stream cannot be read, is not a delta stream, or does not have the number of columns of the data types.
+     */
+    public static TableDiff read(final InputStream input, final Class<?>[] dataTypes) throws IOException
+    {
+        final DataInputStream stream = new DataInputStream(input);
+        if (stream.readLong() != MAGIC || stream.readInt() != VERSION)
+        {
+            throw new IOException("The stream is not a delta stream of version " + VERSION + ".");
+        }
+        final int columnCount = stream.readInt();
+        if (columnCount != dataTypes.length)
+        {
+            throw new IOException("The stream has " + columnCount + " columns instead of " + dataTypes.length + ".");
+        }
+        final long[] deleted = readIdentifiers(stream);
+        final long[] inserted = readIdentifiers(stream);
+        final long[] updated = readIdentifiers(stream);
+
+        final byte[] bodyBytes = new byte[stream.readInt()];
+        stream.readFully(bodyBytes);
+        final ByteBuffer body = ByteBuffer.wrap(bodyBytes);
+        final RowCodec codec = new RowCodec(dataTypes, DICTIONARY_SIZE);
+        final Object[][] insertedRows = new Object[inserted.length][dataTypes.length];
+        final Object[][] updatedRows = new Object[updated.length][dataTypes.length];
+        for (final Object[][] rows : new Object[][][] {insertedRows, updatedRows})
+        {
+            for (final Object[] row : rows)
+            {
+                codec.decode(body, row);
+            }
+        }
+        if (body.hasRemaining())
+        {
+            throw new IOException("The stream holds " + body.remaining() + " bytes past its rows.");
+        }
+
+        return new TableDiff(inserted, updated, deleted, insertedRows, updatedRows, 0, 0);
+    }
+
+    private static Class<?>[] dataTypesOf(final TableStorage storage)
+    {
+        final Class<?>[] dataTypes = new Class<?>[storage.getColumnCount()];
+        for (int column = 0; column < dataTypes.length; column++)
+        {
+            dataTypes[column] = storage.getDataType(column);
+        }
+
+        return dataTypes;
+    }
+
+    /**
+     * Writes sorted identifiers as their count followed by the varint gaps between consecutive identifiers.
+     */
+    private static void writeIdentifiers(final DataOutputStream stream, final long[] referenceIdentifiers) throws IOException
+    {
+        stream.writeInt(referenceIdentifiers.length);
+        long previous = 0L;
+        for (final long referenceIdentifier : referenceIdentifiers)
+        {
+            long gap = referenceIdentifier - previous;
+            while ((gap & ~0x7FL) != 0L)
+            {
+                stream.writeByte((int) (gap & 0x7F | 0x80));
+                gap >>>= 7;
+            }
+            stream.writeByte((int) gap);
+            previous = referenceIdentifier;
+        }
+    }
+
+    private static long[] readIdentifiers(final DataInputStream stream) throws IOException
+    {
+        final int count = stream.readInt();
+        if (count < 0)
+        {
+            throw new IOException("The stream holds a negative number of identifiers.");
+        }
+        final long[] referenceIdentifiers = new long[count];
+        long previous = 0L;
+        for (int index = 0; index < count; index++)
+        {
+            long gap = 0L;
+            int shift = 0;
+            byte next;
+            do
+            {
+                if (shift >= Long.SIZE)
+                {
+                    throw new IOException("The stream holds a malformed identifier.");
+                }
+                next = stream.readByte();
+                gap |= (long) (next & 0x7F) << shift;
+                shift += 7;
+            }
+            while (next < 0);
+            previous += gap;
+            referenceIdentifiers[index] = previous;
+        }
+
+        return referenceIdentifiers;
+    }
+
+    /**
+     * Hashes rows from their {@link RowCodec} encoding, which covers the values of every data type exactly, rather than from the 32-bit
+     * {@link Object#hashCode()} of their values.
+     */
+    private static final class RowHasher
+    {
+        private final RowCodec codec;
+        private ByteBuffer     buffer = ByteBuffer.allocate(256);
+
+        private RowHasher(final TableStorage storage)
+        {
+            // Without a dictionary, the encoding of a row does not depend on the rows encoded before it.
+            this.codec = new RowCodec(dataTypesOf(storage), 0);
+        }
+
+        private long hashBlock(final TableStorage storage, final int blockIndex)
+        {
+            final StorageBlock block = storage.getBlock(blockIndex);
+            long hash = block.getLiveCount();
+            for (int slot = block.nextLiveSlot(0); slot < block.getSize(); slot = block.nextLiveSlot(slot + 1))
+            {
+                final long rowHash = hashRow(storage, TableStorage.toLocation(blockIndex, slot));
+                hash = ValueHasher.mix(hash ^ ValueHasher.mix(block.getReferenceIdentifier(slot)) ^ rowHash);
+            }
+
+            return hash;
+        }
+
+        private long hashRow(final TableStorage storage, final long location)
+        {
+            buffer.clear();
+            while (true)
+            {
+                try
+                {
+                    codec.encode(storage, location, buffer);
+                    break;
+                }
+                catch (final BufferOverflowException e)
+                {
+                    buffer = ByteBuffer.allocate(2 * buffer.capacity());
+                }
+            }
+
+            final int length = buffer.position();
+            long hash = length;
+            int index = 0;
+            for (; index + Long.BYTES <= length; index += Long.BYTES)
+            {
+                hash = ValueHasher.mix(hash ^ buffer.getLong(index));
+            }
+            long tail = 0L;
+            for (; index < length; index++)
+            {
+                tail = tail << Byte.SIZE | buffer.get(index) & 0xFF;
+            }
+
+            return ValueHasher.mix(hash ^ tail);
+        }
+    }
+
+    private static final class LongList
+    {
+        private long[] values = new long[16];
+        private int    size;
+
+        private void add(final long value)
+        {
+            if (size == values.length)
+            {
+                values = Arrays.copyOf(values, 2 * size);
+            }
+            values[size++] = value;
+        }
+
+        private long[] sorted()
+        {
+            final long[] result = Arrays.copyOf(values, size);
+            Arrays.sort(result);
+
+            return result;
+        }
+    }
+}
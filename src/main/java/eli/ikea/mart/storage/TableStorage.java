@@ -0,0 +1,1172 @@
+package eli.ikea.mart.storage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import eli.ikea.mart.query.ValueHasher;
+import eli.veritas.Verifier;
+import eli.veritas.exception.AssertionException;
+
+/**
+ * Columnar storage of the rows of a table, split into fixed-capacity {@link StorageBlock blocks}. Rows are appended to the last block, and located
+ * by their reference identifier through a {@link LocationMap}. A location packs the index of the block into the upper 32 bits and the slot within
+ * the block into the lower 32 bits. Deleted rows are marked as tombstones of their block, which cursors and bitset scans skip. Cursors skip the blocks whose {@link ZoneMap} or, for equality ranges, {@link BloomFilter} rules out the
+ * requested values. Every column is stored with a {@link ColumnEncoding}, where dictionary encoded columns share a single {@link ColumnDictionary}
+ * across their blocks.
+ * <p>
+ * A {@link #snapshot() snapshot} shares the blocks of the storage as of the moment it was taken. The storage is versioned for that purpose: every
+ * snapshot takes the current version and starts the next one, and every block and list of blocks is stamped with the version it was allocated in.
+ * While a snapshot is open, the blocks and the list stamped with its version or an earlier one are copied before they are changed.
+ *
+ * @author The Architect
+ */
+public class TableStorage implements AutoCloseable
+{
+    /**
+     * The number of rows held by each block, unless otherwise specified.
+     */
+    public static final int DEFAULT_BLOCK_CAPACITY = 1024;
+    /**
+     * The number of distinct values past which {@link ColumnEncoding#AUTO} columns stop dictionary encoding new blocks.
+     */
+    public static final int AUTO_DICTIONARY_LIMIT  = 4096;
+
+    private final int                               columnCount;
+    private final int                               blockCapacity;
+    private List<StorageBlock>                      blocks        = new ArrayList<>();
+    private LocationMap                             locations     = new LocationMap(DEFAULT_BLOCK_CAPACITY);
+    private final double[]                          bloomFilterProbabilities;
+    private final ColumnEncoding[]                  encodings;
+    private final ColumnDictionary[]                dictionaries;
+    private final CompressionCodec[]                compressions;
+    private final Class<?>[]                        dataTypes;
+    private final SlabAllocator                     allocator;
+    private final TreeMap<Long, Integer>            openSnapshots = new TreeMap<>();
+    private final TreeMap<Long, List<StorageBlock>> retiredBlocks = new TreeMap<>();
+    private SpillManager                            spillManager;
+    private SegmentCache                            segmentCache;
+    private long                                    accessClock;
+    private long                                    version;
+    private long                                    blocksVersion;
+
+    /**
+     * @param columnCount The number of columns in every row.
+     * @param blockCapacity The number of rows held by each block.
+     */
+    public TableStorage(final int columnCount, final int blockCapacity)
+    {
+        this(new Class<?>[columnCount], blockCapacity, null);
+    }
+
+    /**
+     * @param dataTypes The data types of every column, which decide the columns held outside the Java heap. [Non-Null]
+     * @param blockCapacity The number of rows held by each block.
+     * @param allocator The allocator of the fixed-width and dictionary encoded columns, or <code>NULL</code> to keep every column on the Java heap.
+     *            [Nullable]
+     */
+    public TableStorage(final Class<?>[] dataTypes, final int blockCapacity, final SlabAllocator allocator)
+    {
+        this.columnCount = dataTypes.length;
+        this.dataTypes = dataTypes;
+        this.allocator = allocator;
+        this.blockCapacity = blockCapacity;
+        this.bloomFilterProbabilities = new double[columnCount];
+        this.encodings = new ColumnEncoding[columnCount];
+        this.dictionaries = new ColumnDictionary[columnCount];
+        this.compressions = new CompressionCodec[columnCount];
+        Arrays.fill(encodings, ColumnEncoding.PLAIN);
+    }
+
+    /**
+     * @return The number of rows held by each block.
+     */
+    public int getBlockCapacity()
+    {
+        return blockCapacity;
+    }
+
+    /**
+     * @return The number of allocated blocks.
+     */
+    public int getBlockCount()
+    {
+        return blocks.size();
+    }
+
+    /**
+     * @param blockIndex The index of the block.
+     * @return The non-null block.
+     */
+    public StorageBlock getBlock(final int blockIndex)
+    {
+        return blocks.get(blockIndex);
+    }
+
+    /**
+     * @return The number of rows stored.
+     */
+    public int size()
+    {
+        return locations.size();
+    }
+
+    /**
+     * @return The number of slots whose rows were deleted, and which are not reclaimed until their block is {@link #compactBlock(int) compacted}.
+     */
+    public long getDeletedCount()
+    {
+        long deletedCount = 0L;
+        for (final StorageBlock block : blocks)
+        {
+            deletedCount += block.getDeletedCount();
+        }
+
+        return deletedCount;
+    }
+
+    /**
+     * @param referenceIdentifier The reference identifier of the row.
+     * @return The location of the row, or {@link LocationMap#MISSING} if it is not stored.
+     */
+    public long locate(final long referenceIdentifier)
+    {
+        return locations.get(referenceIdentifier);
+    }
+
+    /**
+     * @param referenceIdentifier The reference identifier of the row.
+     * @return Indicator if the row is stored.
+     */
+    public boolean contains(final long referenceIdentifier)
+    {
+        return locations.get(referenceIdentifier) != LocationMap.MISSING;
+    }
+
+    /**
+     * @param referenceIdentifier The reference identifier of the new row. Must not already be stored.
+     * @param values The values of every column of the row, which are copied into the storage. [Non-Null]
+     * @return The location of the row.
+     */
+    public long insert(final long referenceIdentifier, final Object[] values)
+    {
+        if (blocks.isEmpty() || blocks.get(blocks.size() - 1).isFull())
+        {
+            writableBlocks().add(newBlock());
+        }
+
+        final int blockIndex = blocks.size() - 1;
+        final StorageBlock block = writableBlock(blockIndex);
+        final int slot = block.append(referenceIdentifier, values);
+        block.touch(++accessClock);
+        if (block.isFull())
+        {
+            seal(block);
+        }
+        final long location = toLocation(blockIndex, slot);
+        locations.put(referenceIdentifier, location);
+
+        return location;
+    }
+
+    /**
+     * @param referenceIdentifier The reference identifier of the row.
+     * @return Indicator if the row was stored, and is now deleted.
+     */
+    public boolean delete(final long referenceIdentifier)
+    {
+        final long location = locations.get(referenceIdentifier);
+        if (location == LocationMap.MISSING)
+        {
+            return false;
+        }
+        locations.remove(referenceIdentifier);
+
+        return writableBlock(blockOf(location)).delete(slotOf(location));
+    }
+
+    /**
+     * Deletes a batch of rows. Once the batch outnumbers the rows that remain, the location map is rebuilt from the remaining rows instead of
+     * removing every deleted identifier from it.
+     *
+     * @param rowLocations The locations of the rows, as returned by {@link #locate(long)}. [Non-Null]
+     * @return The number of rows deleted, which excludes the rows already deleted.
+     */
+    public int deleteAll(final long[] rowLocations)
+    {
+        final boolean rebuild = rowLocations.length > locations.size() - rowLocations.length;
+        int deletedCount = 0;
+        for (final long location : rowLocations)
+        {
+            if (blocks.get(blockOf(location)).isDeleted(slotOf(location)))
+            {
+                continue;
+            }
+            final StorageBlock block = writableBlock(blockOf(location));
+            if (block.delete(slotOf(location)))
+            {
+                deletedCount++;
+                if (!rebuild)
+                {
+                    locations.remove(block.getReferenceIdentifier(slotOf(location)));
+                }
+            }
+        }
+
+        if (rebuild)
+        {
+            final LocationMap remaining = new LocationMap(locations.size() - deletedCount);
+            final Cursor cursor = cursor();
+            while (cursor.next())
+            {
+                remaining.put(cursor.getReferenceIdentifier(), cursor.getLocation());
+            }
+            locations = remaining;
+        }
+
+        return deletedCount;
+    }
+
+    /**
+     * @param location The location of the row, as returned by {@link #locate(long)}.
+     * @param column The index of the column.
+     * @return The value of the column for the row. [Nullable]
+     */
+    public Object read(final long location, final int column)
+    {
+        final StorageBlock block = blocks.get(blockOf(location));
+        block.touch(++accessClock);
+
+        return block.getValue(slotOf(location), column);
+    }
+
+    /**
+     * @param location The location of the row, as returned by {@link #locate(long)}.
+     * @param column The index of the column.
+     * @param value The new value of the column for the row. [Nullable]
+     */
+    public void write(final long location, final int column, final Object value)
+    {
+        final StorageBlock block = writableBlock(blockOf(location));
+        block.touch(++accessClock);
+        if (block.getColumn(column).isReadOnly())
+        {
+            // The values of a file are copied into a vector of the encoding of the column, as new blocks allocate, rather than boxed.
+            block.setColumn(column, newColumnVector(column, block.getCapacity()));
+        }
+        block.setValue(slotOf(location), column, value);
+    }
+
+    /**
+     * @return Indicator if the next inserted row fits into an allocated block.
+     */
+    public boolean hasFreeSlot()
+    {
+        return !blocks.isEmpty() && !blocks.get(blocks.size() - 1).isFull();
+    }
+
+    /**
+     * Allows cold blocks to be {@link #spillColdestBlock() spilled} into files of a local directory.
+     *
+     * @param directory The directory of the spill files, which is created if it does not exist. [Non-Null]
+     * @throws IOException If the directory cannot be created.
+     */
+    public void enableSpilling(final Path directory) throws IOException
+    {
+        enableSpilling(directory, false);
+    }
+
+    /**
+     * Allows cold blocks to be {@link #spillColdestBlock() spilled} into files of a local directory.
+     *
+     * @param directory The directory of the spill files, which is created if it does not exist. [Non-Null]
+     * @param temporary Indicator if the directory was created for the storage, and is deleted once the storage is closed.
+     * @throws IOException If the directory cannot be created.
+     */
+    public void enableSpilling(final Path directory, final boolean temporary) throws IOException
+    {
+        Files.createDirectories(directory);
+        spillManager = new SpillManager(directory, SpillManager.DEFAULT_RESIDENT_LIMIT, temporary);
+    }
+
+    /**
+     * @return The manager of the spilled blocks, or <code>NULL</code> unless spilling is enabled. [Nullable]
+     */
+    public SpillManager getSpillManager()
+    {
+        return spillManager;
+    }
+
+    /**
+     * Spills the on-heap column vectors of the full block that was accessed least recently, and has not been spilled yet. Blocks shared with an open
+     * snapshot are skipped, since the snapshot keeps their vectors on the heap regardless.
+     *
+     * @return Indicator if a block was spilled.
+     * @throws IllegalStateException If spilling is not enabled.
+     * @throws IOException If the spill files cannot be written.
+     */
+    public boolean spillColdestBlock() throws IOException
+    {
+        if (spillManager == null)
+        {
+            throw new IllegalStateException("Spilling is not enabled.");
+        }
+
+        StorageBlock coldest = null;
+        for (final StorageBlock block : blocks)
+        {
+            if (block.isFull() && !block.isSpilled() && !isShared(block.getVersion())
+                && (coldest == null || block.getLastAccess() < coldest.getLastAccess()))
+            {
+                coldest = block;
+            }
+        }
+        if (coldest == null)
+        {
+            return false;
+        }
+
+        for (int column = 0; column < columnCount; column++)
+        {
+            final ColumnVector vector = coldest.getColumn(column);
+            if (!vector.isOffHeap() && !(vector instanceof SpilledColumnVector))
+            {
+                final SpilledColumnVector spilled = spillManager.spill(vector, coldest.getSize());
+                if (spilled != null)
+                {
+                    coldest.replaceColumn(column, spilled);
+                }
+            }
+        }
+        coldest.markSpilled();
+
+        return true;
+    }
+
+    /**
+     * Rewrites a full block into a dense block that holds only the rows that were not deleted, with a capacity of exactly those rows. The zone maps
+     * and bloom filters of the block are rebuilt from the remaining values, and the moved rows are located at their new slots. Vectors held outside
+     * the Java heap are compacted in place, since their memory is only reclaimed once the allocator is closed, except for the
+     * {@link ColumnVector#isReadOnly() read-only} vectors of a file, and spilled vectors are paged in once and their spill files discarded. Blocks
+     * shared with an open snapshot are compacted only once it is released, since the snapshot keeps their rows regardless.
+     *
+     * @param blockIndex The index of the block.
+     * @return The number of slots reclaimed, which is 0 if the block has no deleted rows, is still being appended to, or is shared with a snapshot.
+     */
+    public int compactBlock(final int blockIndex)
+    {
+        final StorageBlock block = blocks.get(blockIndex);
+        if (block.getDeletedCount() == 0 || !block.isFull() || isShared(block.getVersion()))
+        {
+            return 0;
+        }
+
+        final int liveCount = block.getLiveCount();
+        final ColumnVector[] vectors = new ColumnVector[columnCount];
+        for (int column = 0; column < columnCount; column++)
+        {
+            final ColumnVector vector = block.getColumn(column);
+            vectors[column] = vector.isOffHeap() && !vector.isReadOnly() ? vector : newColumnVector(column, liveCount);
+        }
+        final StorageBlock compacted = new StorageBlock(vectors, liveCount);
+        for (int column = 0; column < columnCount; column++)
+        {
+            if (bloomFilterProbabilities[column] > 0.0)
+            {
+                compacted.setBloomFilter(column, new BloomFilter(Math.max(1, liveCount), bloomFilterProbabilities[column]));
+            }
+        }
+
+        // Rows only ever move to a lower slot, so vectors shared by both blocks are never overwritten before they are read.
+        final Object[] values = new Object[columnCount];
+        for (int slot = block.nextLiveSlot(0); slot < block.getSize(); slot = block.nextLiveSlot(slot + 1))
+        {
+            for (int column = 0; column < columnCount; column++)
+            {
+                values[column] = block.getValue(slot, column);
+            }
+            final long referenceIdentifier = block.getReferenceIdentifier(slot);
+            locations.put(referenceIdentifier, toLocation(blockIndex, compacted.append(referenceIdentifier, values)));
+        }
+
+        for (int column = 0; column < columnCount; column++)
+        {
+            if (block.getColumn(column) instanceof SpilledColumnVector)
+            {
+                spillManager.discard((SpilledColumnVector) block.getColumn(column));
+            }
+        }
+        compacted.touch(block.getLastAccess());
+        compacted.setVersion(version);
+        if (liveCount > 0)
+        {
+            seal(compacted);
+        }
+        writableBlocks().set(blockIndex, compacted);
+
+        return block.getDeletedCount();
+    }
+
+    /**
+     * Maintains a {@link BloomFilter} of the values of a column in every block, including the blocks already allocated.
+     *
+     * @param column The index of the column.
+     * @param falsePositiveProbability The false positive probability of each block filter once the block is full. [0 &lt; probability &lt; 1]
+     * @throws AssertionException If any of the parameter conditions are not met.
+     */
+    public void enableBloomFilters(final int column, final double falsePositiveProbability) throws AssertionException
+    {
+        Verifier.Equality.assertEqual("The false positive probability must be between 0 and 1 exclusive.",
+                                      falsePositiveProbability > 0.0 && falsePositiveProbability < 1.0,
+                                      true);
+
+        for (int blockIndex = 0; blockIndex < blocks.size(); blockIndex++)
+        {
+            writableBlock(blockIndex).setBloomFilter(column, new BloomFilter(blockCapacity, falsePositiveProbability));
+        }
+        bloomFilterProbabilities[column] = falsePositiveProbability;
+    }
+
+    /**
+     * @param column The index of the column.
+     * @return Indicator if the blocks maintain a {@link BloomFilter} of the values of the column.
+     */
+    public boolean hasBloomFilters(final int column)
+    {
+        return bloomFilterProbabilities[column] > 0.0;
+    }
+
+    /**
+     * Changes the encoding of a column, and re-encodes the blocks already allocated to match it.
+     *
+     * @param column The index of the column.
+     * @param encoding The new encoding of the column. [Non-Null]
+     */
+    public void setColumnEncoding(final int column, final ColumnEncoding encoding)
+    {
+        encodings[column] = encoding;
+        for (int blockIndex = 0; blockIndex < blocks.size(); blockIndex++)
+        {
+            if (isDictionaryEncoded(column) != blocks.get(blockIndex).getColumn(column) instanceof DictionaryColumnVector)
+            {
+                final StorageBlock block = writableBlock(blockIndex);
+                block.setColumn(column, newColumnVector(column, block.getCapacity()));
+            }
+        }
+        if (encoding == ColumnEncoding.PLAIN)
+        {
+            dictionaries[column] = null;
+        }
+        for (int blockIndex = 0; blockIndex < blocks.size(); blockIndex++)
+        {
+            final StorageBlock block = blocks.get(blockIndex);
+            if (encoding == ColumnEncoding.PACKED && block.isFull())
+            {
+                packColumn(writableBlock(blockIndex), column);
+            }
+            else if (block.getColumn(column) instanceof PackedLongColumnVector)
+            {
+                writableBlock(blockIndex).replaceColumn(column, ((PackedLongColumnVector) block.getColumn(column)).unpack());
+            }
+        }
+    }
+
+    /**
+     * @param column The index of the column.
+     * @return The non-null encoding of the column.
+     */
+    public ColumnEncoding getColumnEncoding(final int column)
+    {
+        return encodings[column];
+    }
+
+    /**
+     * Changes the codec that the segments of a column are compressed with when the storage is written to a {@link ColumnarFile}. Every block is
+     * marked as changed, so that the next checkpoint rewrites it with the new codec; the rows held in memory are not affected.
+     *
+     * @param column The index of the column.
+     * @param codec The codec of the column, or <code>NULL</code> to write the column uncompressed. [Nullable]
+     */
+    public void setColumnCompression(final int column, final CompressionCodec codec)
+    {
+        compressions[column] = codec;
+        for (final StorageBlock block : blocks)
+        {
+            block.markDirty();
+        }
+    }
+
+    /**
+     * @param column The index of the column.
+     * @return The codec that the segments of the column are compressed with, or <code>NULL</code> if they are written uncompressed. [Nullable]
+     */
+    public CompressionCodec getColumnCompression(final int column)
+    {
+        return compressions[column];
+    }
+
+    /**
+     * @return The cache of the decompressed segments of the compressed column vectors of the storage, created on first use. [Non-Null]
+     */
+    public SegmentCache getSegmentCache()
+    {
+        if (segmentCache == null)
+        {
+            segmentCache = new SegmentCache(SegmentCache.DEFAULT_MAXIMUM_BYTES);
+        }
+
+        return segmentCache;
+    }
+
+    /**
+     * @param column The index of the column.
+     * @return The dictionary shared by the blocks of the column, or <code>NULL</code> unless every block of the column is dictionary encoded.
+     */
+    public ColumnDictionary getDictionary(final int column)
+    {
+        if (dictionaries[column] == null)
+        {
+            return null;
+        }
+        for (final StorageBlock block : blocks)
+        {
+            if (!(block.getColumn(column) instanceof DictionaryColumnVector))
+            {
+                return null;
+            }
+        }
+
+        return dictionaries[column];
+    }
+
+    /**
+     * @param column The index of the column.
+     * @param lowerBound The inclusive lower bound of the range. (<code>NULL</code> if unbounded)
+     * @param upperBound The inclusive upper bound of the range. (<code>NULL</code> if unbounded)
+     * @return The number of blocks whose {@link ZoneMap} and {@link BloomFilter} do not rule out a value of the column inside the range.
+     */
+    public int countCandidateBlocks(final int column, final Object lowerBound, final Object upperBound)
+    {
+        final long equalityHash = equalityHash(column, lowerBound, upperBound);
+        int candidates = 0;
+        for (final StorageBlock block : blocks)
+        {
+            if (isCandidate(block, column, lowerBound, upperBound, equalityHash))
+            {
+                candidates++;
+            }
+        }
+
+        return candidates;
+    }
+
+    /**
+     * Selects the rows whose value of a column is not <code>NULL</code>, 64 slots at a time from the <code>NULL</code> bitsets of the blocks.
+     *
+     * @param column The index of the column.
+     * @return The non-null reference identifiers of the matching rows, in storage order.
+     */
+    public long[] selectNonNull(final int column)
+    {
+        return selectWords(column, null);
+    }
+
+    /**
+     * Selects the rows whose value of a {@link Boolean} column equals a value, 64 slots at a time from the bitsets of the blocks.
+     *
+     * @param column The index of the column.
+     * @param value The value to match.
+     * @return The non-null reference identifiers of the matching rows, in storage order.
+     */
+    public long[] selectBoolean(final int column, final boolean value)
+    {
+        return selectWords(column, value);
+    }
+
+    private long[] selectWords(final int column, final Boolean value)
+    {
+        final long equalityHash = equalityHash(column, value, value);
+        long[] matches = new long[16];
+        int matchCount = 0;
+        for (final StorageBlock block : blocks)
+        {
+            if (!isCandidate(block, column, value, value, equalityHash))
+            {
+                continue;
+            }
+
+            final ColumnVector vector = block.getColumn(column);
+            final int size = block.getSize();
+            for (int word = 0; word << 6 < size; word++)
+            {
+                long bits = ~vector.getNullWord(word) & ~block.getDeletedWord(word);
+                if (value != null)
+                {
+                    bits &= value ? vector.getTrueWord(word) : ~vector.getTrueWord(word);
+                }
+                if (size - (word << 6) < Long.SIZE)
+                {
+                    bits &= (1L << size - (word << 6)) - 1;
+                }
+
+                if (matchCount + Long.bitCount(bits) > matches.length)
+                {
+                    matches = Arrays.copyOf(matches, Math.max(matches.length * 2, matchCount + Long.SIZE));
+                }
+                while (bits != 0)
+                {
+                    matches[matchCount++] = block.getReferenceIdentifier(word << 6 | Long.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                }
+            }
+        }
+
+        return Arrays.copyOf(matches, matchCount);
+    }
+
+    /**
+     * @return A new non-null cursor positioned before the first stored row.
+     */
+    public Cursor cursor()
+    {
+        return new Cursor(null, -1, null, null);
+    }
+
+    /**
+     * @param column The index of the column to prune on.
+     * @param lowerBound The inclusive lower bound of the range. (<code>NULL</code> if unbounded)
+     * @param upperBound The inclusive upper bound of the range. (<code>NULL</code> if unbounded)
+     * @return A new non-null cursor positioned before the first stored row, which skips every block whose {@link ZoneMap} rules out a value of the
+     *         column inside the range. The rows of the remaining blocks must still be tested against the range.
+     */
+    public Cursor cursor(final int column, final Object lowerBound, final Object upperBound)
+    {
+        return new Cursor(null, column, lowerBound, upperBound);
+    }
+
+    /**
+     * Takes a read-only snapshot of the rows stored, in constant time. Until the snapshot is {@link #release(StorageSnapshot) released}, the
+     * blocks it shares with the storage are copied before they are changed. Storages held outside the Java heap cannot be snapshot, since the
+     * memory of the copies would only be reclaimed once the allocator is closed.
+     *
+     * @return The new non-null snapshot.
+     * @throws IllegalStateException If the columns are held outside the Java heap.
+     */
+    public StorageSnapshot snapshot()
+    {
+        if (allocator != null)
+        {
+            throw new IllegalStateException("Off-heap storages cannot be snapshot.");
+        }
+
+        final StorageSnapshot snapshot = new StorageSnapshot(this, blocks, locations.size(), version);
+        openSnapshots.merge(version, 1, Integer::sum);
+        version++;
+
+        return snapshot;
+    }
+
+    /**
+     * Releases a snapshot of the storage, once its readers are done. The blocks shared only with released snapshots are changed in place again,
+     * and the spill files of the spilled blocks copied while the snapshot was open are discarded. Releasing a snapshot twice has no effect.
+     *
+     * @param snapshot A snapshot taken of the storage. [Non-Null]
+     */
+    public void release(final StorageSnapshot snapshot)
+    {
+        if (snapshot.getStorage() != this || snapshot.isReleased())
+        {
+            return;
+        }
+        snapshot.markReleased();
+        openSnapshots.computeIfPresent(snapshot.getVersion(), (key, count) -> count == 1 ? null : count - 1);
+        discardRetiredBlocks();
+    }
+
+    /**
+     * Discards the spill files of the blocks that were replaced by a copy, once no open snapshot shares them anymore. A retired block is shared by
+     * the snapshots taken from its allocation up to its replacement.
+     */
+    private void discardRetiredBlocks()
+    {
+        for (final Iterator<Map.Entry<Long, List<StorageBlock>>> entries = retiredBlocks.entrySet().iterator(); entries.hasNext();)
+        {
+            final Map.Entry<Long, List<StorageBlock>> entry = entries.next();
+            for (final Iterator<StorageBlock> retired = entry.getValue().iterator(); retired.hasNext();)
+            {
+                final StorageBlock block = retired.next();
+                if (openSnapshots.subMap(block.getVersion(), entry.getKey()).isEmpty())
+                {
+                    for (int column = 0; column < columnCount; column++)
+                    {
+                        if (block.getColumn(column) instanceof SpilledColumnVector)
+                        {
+                            spillManager.discard((SpilledColumnVector) block.getColumn(column));
+                        }
+                    }
+                    retired.remove();
+                }
+            }
+            if (entry.getValue().isEmpty())
+            {
+                entries.remove();
+            }
+        }
+    }
+
+    /**
+     * @return The number of snapshots of the storage that were not released yet.
+     */
+    public int getOpenSnapshotCount()
+    {
+        int count = 0;
+        for (final int snapshotCount : openSnapshots.values())
+        {
+            count += snapshotCount;
+        }
+
+        return count;
+    }
+
+    /**
+     * @param blocks The blocks of a snapshot of the storage. [Non-Null]
+     * @return A new non-null cursor over the blocks, which does not count as an access of the blocks.
+     */
+    Cursor cursor(final List<StorageBlock> blocks)
+    {
+        return new Cursor(blocks, -1, null, null);
+    }
+
+    /**
+     * @param stamp The version a block or list of blocks was allocated in.
+     * @return Indicator if an open snapshot shares the block or list.
+     */
+    private boolean isShared(final long stamp)
+    {
+        return !openSnapshots.isEmpty() && stamp <= openSnapshots.lastKey();
+    }
+
+    /**
+     * @return The non-null list of blocks, copied first if it is shared with an open snapshot.
+     */
+    private List<StorageBlock> writableBlocks()
+    {
+        if (isShared(blocksVersion))
+        {
+            blocks = new ArrayList<>(blocks);
+            blocksVersion = version;
+        }
+
+        return blocks;
+    }
+
+    /**
+     * @param blockIndex The index of the block.
+     * @return The non-null block, replaced by a copy first if it is shared with an open snapshot.
+     */
+    private StorageBlock writableBlock(final int blockIndex)
+    {
+        final StorageBlock block = blocks.get(blockIndex);
+        if (!isShared(block.getVersion()))
+        {
+            return block;
+        }
+
+        // Vectors that are replaced rather than changed are shared by the copy, every other vector is copied into a new vector of the same encoding.
+        final ColumnVector[] vectors = new ColumnVector[columnCount];
+        boolean spilled = false;
+        for (int column = 0; column < columnCount; column++)
+        {
+            final ColumnVector vector = block.getColumn(column);
+            spilled |= vector instanceof SpilledColumnVector;
+            if (vector.isReadOnly() || vector instanceof PackedLongColumnVector)
+            {
+                vectors[column] = vector;
+            }
+            else
+            {
+                vectors[column] = vector instanceof DictionaryColumnVector
+                                  ? newDictionaryVector(((DictionaryColumnVector) vector).getDictionary(), block.getCapacity())
+                                  : newColumnVector(column, block.getCapacity());
+                for (int slot = 0; slot < block.getSize(); slot++)
+                {
+                    vectors[column].set(slot, vector.get(slot));
+                }
+            }
+        }
+        final StorageBlock copy = block.copy(vectors);
+        copy.setVersion(version);
+        writableBlocks().set(blockIndex, copy);
+        if (spilled)
+        {
+            // The copy holds the values on the heap, while the snapshots sharing the block still page them in from its spill files.
+            retiredBlocks.computeIfAbsent(version, key -> new ArrayList<>()).add(block);
+        }
+
+        return copy;
+    }
+
+    private StorageBlock newBlock()
+    {
+        final ColumnVector[] vectors = new ColumnVector[columnCount];
+        for (int column = 0; column < columnCount; column++)
+        {
+            vectors[column] = newColumnVector(column, blockCapacity);
+        }
+        final StorageBlock block = new StorageBlock(vectors, blockCapacity);
+        block.setVersion(version);
+        for (int column = 0; column < columnCount; column++)
+        {
+            if (bloomFilterProbabilities[column] > 0.0)
+            {
+                block.setBloomFilter(column, new BloomFilter(blockCapacity, bloomFilterProbabilities[column]));
+            }
+        }
+
+        return block;
+    }
+
+    /**
+     * @param column The index of the column.
+     * @return The estimated number of bytes held by the dictionary of the column, even if only some of its blocks are dictionary encoded.
+     */
+    public long estimateDictionaryBytes(final int column)
+    {
+        return dictionaries[column] == null ? 0L : dictionaries[column].estimateBytes();
+    }
+
+    /**
+     * @return The estimated number of bytes held by the map from reference identifiers to locations.
+     */
+    public long estimateLocationBytes()
+    {
+        return locations.estimateBytes();
+    }
+
+    /**
+     * @return The number of columns in every row.
+     */
+    int getColumnCount()
+    {
+        return columnCount;
+    }
+
+    /**
+     * @param column The index of the column.
+     * @return The data type of the column. [Nullable]
+     */
+    Class<?> getDataType(final int column)
+    {
+        return dataTypes[column];
+    }
+
+    /**
+     * @param column The index of the column.
+     * @return The dictionary of the column, even if only some of its blocks are dictionary encoded. [Nullable]
+     */
+    ColumnDictionary dictionaryOf(final int column)
+    {
+        return dictionaries[column];
+    }
+
+    /**
+     * @param column The index of the column.
+     * @param dictionary The dictionary shared by the blocks of the column, in place of its current dictionary. [Nullable]
+     */
+    void restoreDictionary(final int column, final ColumnDictionary dictionary)
+    {
+        dictionaries[column] = dictionary;
+    }
+
+    /**
+     * Appends a full block whose rows are already populated, such as a block of a memory-mapped file, and locates every one of its rows.
+     *
+     * @param block The block to append. [Non-Null]
+     */
+    void restoreBlock(final StorageBlock block)
+    {
+        final int blockIndex = blocks.size();
+        block.setVersion(version);
+        writableBlocks().add(block);
+        block.touch(++accessClock);
+        for (int slot = 0; slot < block.getSize(); slot++)
+        {
+            locations.put(block.getReferenceIdentifier(slot), toLocation(blockIndex, slot));
+        }
+    }
+
+    /**
+     * @return The allocator of the columns held outside the Java heap. [Nullable]
+     */
+    public SlabAllocator getAllocator()
+    {
+        return allocator;
+    }
+
+    /**
+     * Releases every block, as well as the memory held outside the Java heap. The storage is empty afterwards, and cursors and snapshots created
+     * beforehand must not be used.
+     */
+    @Override
+    public void close()
+    {
+        writableBlocks().clear();
+        retiredBlocks.clear();
+        locations.clear();
+        if (allocator != null)
+        {
+            allocator.close();
+        }
+        if (spillManager != null)
+        {
+            spillManager.close();
+        }
+        if (segmentCache != null)
+        {
+            segmentCache.invalidateAll();
+        }
+    }
+
+    private void seal(final StorageBlock block)
+    {
+        for (int column = 0; column < columnCount; column++)
+        {
+            if (encodings[column] == ColumnEncoding.PACKED)
+            {
+                packColumn(block, column);
+            }
+        }
+    }
+
+    private static void packColumn(final StorageBlock block, final int column)
+    {
+        final ColumnVector vector = block.getColumn(column);
+        if (vector instanceof PrimitiveColumnVector && ((PrimitiveColumnVector) vector).getType() != FixedWidthType.DOUBLE)
+        {
+            final PackedLongColumnVector packed = PackedLongColumnVector.pack((PrimitiveColumnVector) vector, block.getSize());
+            if (packed != null)
+            {
+                block.replaceColumn(column, packed);
+            }
+        }
+    }
+
+    private boolean isDictionaryEncoded(final int column)
+    {
+        final ColumnEncoding encoding = encodings[column];
+
+        return encoding == ColumnEncoding.DICTIONARY
+               || encoding == ColumnEncoding.AUTO && (dictionaries[column] == null || dictionaries[column].size() <= AUTO_DICTIONARY_LIMIT);
+    }
+
+    private ColumnVector newColumnVector(final int column, final int capacity)
+    {
+        if (isDictionaryEncoded(column))
+        {
+            if (dictionaries[column] == null)
+            {
+                dictionaries[column] = new ColumnDictionary();
+            }
+
+            return newDictionaryVector(dictionaries[column], capacity);
+        }
+
+        final FixedWidthType type = dataTypes[column] == null ? null : FixedWidthType.of(dataTypes[column]);
+        if (allocator != null && type != null)
+        {
+            return new OffHeapColumnVector(type, capacity, allocator);
+        }
+        if (type == FixedWidthType.BOOLEAN)
+        {
+            return new BooleanColumnVector(capacity);
+        }
+        if (type != null)
+        {
+            return new PrimitiveColumnVector(type, capacity);
+        }
+
+        return new ObjectColumnVector(capacity);
+    }
+
+    private ColumnVector newDictionaryVector(final ColumnDictionary dictionary, final int capacity)
+    {
+        return allocator == null ? new DictionaryColumnVector(dictionary, capacity)
+                                 : new DictionaryColumnVector(dictionary, allocator.allocate(capacity * Integer.BYTES).asIntBuffer());
+    }
+
+    private long equalityHash(final int column, final Object lowerBound, final Object upperBound)
+    {
+        return hasBloomFilters(column) && lowerBound != null && lowerBound.equals(upperBound) ? ValueHasher.hash(lowerBound) : 0L;
+    }
+
+    private static boolean isCandidate(final StorageBlock block, final int column, final Object lowerBound, final Object upperBound,
+                                       final long equalityHash)
+    {
+        if (!block.getZoneMap(column).mayContain(lowerBound, upperBound))
+        {
+            return false;
+        }
+
+        final BloomFilter bloomFilter = block.getBloomFilter(column);
+
+        return equalityHash == 0L || bloomFilter == null || bloomFilter.mightContainHash(equalityHash);
+    }
+
+    /**
+     * @param blockIndex The index of the block.
+     * @param slot The slot of the row within the block.
+     * @return The packed location.
+     */
+    public static long toLocation(final int blockIndex, final int slot)
+    {
+        return (long) blockIndex << 32 | slot;
+    }
+
+    /**
+     * @param location The packed location.
+     * @return The index of the block.
+     */
+    public static int blockOf(final long location)
+    {
+        return (int) (location >>> 32);
+    }
+
+    /**
+     * @param location The packed location.
+     * @return The slot of the row within the block.
+     */
+    public static int slotOf(final long location)
+    {
+        return (int) location;
+    }
+
+    /**
+     * Forward-only iterator over the stored rows, in storage order, which skips the deleted rows. A cursor over a {@link StorageSnapshot} iterates
+     * over the blocks of the snapshot instead.
+     */
+    public class Cursor
+    {
+        private final List<StorageBlock> snapshotBlocks;
+        private final int                pruneColumn;
+        private final Object             lowerBound;
+        private final Object             upperBound;
+        private final long               equalityHash;
+        private int                      blockIndex = -1;
+        private StorageBlock             block;
+        private int                      slot;
+        private int                      blocksScanned;
+        private int                      blocksSkipped;
+
+        private Cursor(final List<StorageBlock> snapshotBlocks, final int pruneColumn, final Object lowerBound, final Object upperBound)
+        {
+            this.snapshotBlocks = snapshotBlocks;
+            this.pruneColumn = pruneColumn;
+            this.lowerBound = lowerBound;
+            this.upperBound = upperBound;
+            this.equalityHash = pruneColumn >= 0 ? equalityHash(pruneColumn, lowerBound, upperBound) : 0L;
+        }
+
+        /**
+         * @return Indicator if the cursor was advanced to another row.
+         */
+        public boolean next()
+        {
+            if (block != null && (slot = block.nextLiveSlot(slot + 1)) < block.getSize())
+            {
+                return true;
+            }
+
+            final List<StorageBlock> source = snapshotBlocks == null ? blocks : snapshotBlocks;
+            while (++blockIndex < source.size())
+            {
+                final StorageBlock candidate = source.get(blockIndex);
+                if (pruneColumn >= 0 && !isCandidate(candidate, pruneColumn, lowerBound, upperBound, equalityHash))
+                {
+                    blocksSkipped++;
+                    continue;
+                }
+
+                blocksScanned++;
+                if (snapshotBlocks == null)
+                {
+                    candidate.touch(++accessClock);
+                }
+                if (candidate.getLiveCount() > 0)
+                {
+                    block = candidate;
+                    slot = candidate.nextLiveSlot(0);
+                    return true;
+                }
+            }
+            block = null;
+
+            return false;
+        }
+
+        /**
+         * @return The reference identifier of the current row.
+         */
+        public long getReferenceIdentifier()
+        {
+            return block.getReferenceIdentifier(slot);
+        }
+
+        /**
+         * @return The location of the current row.
+         */
+        public long getLocation()
+        {
+            return toLocation(blockIndex, slot);
+        }
+
+        /**
+         * @param column The index of the column.
+         * @return The value of the column for the current row. [Nullable]
+         */
+        public Object getValue(final int column)
+        {
+            return block.getValue(slot, column);
+        }
+
+        /**
+         * @param column The index of the column.
+         * @param value The value to compare with. [Non-Null]
+         * @return Indicator if the value of the column for the current row equals the value, compared by code when the block is dictionary encoded.
+         */
+        public boolean isEqual(final int column, final Object value)
+        {
+            return block.getColumn(column).isEqual(slot, value);
+        }
+
+        /**
+         * @param column The index of a column for which {@link TableStorage#getDictionary(int)} is not <code>NULL</code>.
+         * @return The dictionary code of the value of the column for the current row.
+         */
+        public int getCode(final int column)
+        {
+            return ((DictionaryColumnVector) block.getColumn(column)).getCode(slot);
+        }
+
+        /**
+         * @return The number of blocks visited so far.
+         */
+        public int getBlocksScanned()
+        {
+            return blocksScanned;
+        }
+
+        /**
+         * @return The number of blocks skipped so far, because their zone map or bloom filter ruled out the range.
+         */
+        public int getBlocksSkipped()
+        {
+            return blocksSkipped;
+        }
+    }
+}
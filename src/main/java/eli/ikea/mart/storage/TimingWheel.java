@@ -0,0 +1,144 @@
+package eli.ikea.mart.storage;
+
+import java.util.Arrays;
+
+/**
+ * Hashed timing wheel of reference identifiers and their deadlines. Time is divided into ticks, and every entry is appended to the bucket of the
+ * tick of its deadline, modulo the number of buckets. Advancing the wheel visits only the buckets of the ticks that elapsed, so scheduling an entry
+ * costs O(1), and firing it costs O(1) for every rotation of the wheel it has to wait. Entries are held in primitive arrays, and are never removed
+ * before they fire; callers are expected to ignore the identifiers whose deadline has since changed.
+ *
+ * @author The Architect
+ */
+public class TimingWheel
+{
+    private static final int INITIAL_BUCKET_CAPACITY = 4;
+
+    private final long       tickNanos;
+    private final int        mask;
+    private final long[][]   identifiers;
+    private final long[][]   deadlines;
+    private final int[]      sizes;
+    private long             currentTick;
+    private int              size;
+
+    /**
+     * @param bucketCount The number of buckets, which is rounded up to a power of two. [Positive]
+     * @param tickNanos The duration of a tick, in nanoseconds. [Positive]
+     */
+    public TimingWheel(final int bucketCount, final long tickNanos)
+    {
+        final int buckets = Integer.highestOneBit(Math.max(1, bucketCount - 1)) << 1;
+        this.tickNanos = tickNanos;
+        this.mask = buckets - 1;
+        this.identifiers = new long[buckets][];
+        this.deadlines = new long[buckets][];
+        this.sizes = new int[buckets];
+    }
+
+    /**
+     * @return The number of entries that have not fired yet, including the entries the caller no longer cares about.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @param referenceIdentifier The reference identifier to fire.
+     * @param deadline The time at which to fire the identifier, in nanoseconds since the wheel started. Deadlines that already passed fire once the
+     *            wheel advances past its current tick.
+     */
+    public void schedule(final long referenceIdentifier, final long deadline)
+    {
+        final long tick = Math.max(currentTick + 1, Math.floorDiv(deadline - 1, tickNanos) + 1);
+        final int bucket = (int) tick & mask;
+        if (identifiers[bucket] == null)
+        {
+            identifiers[bucket] = new long[INITIAL_BUCKET_CAPACITY];
+            deadlines[bucket] = new long[INITIAL_BUCKET_CAPACITY];
+        }
+        else if (sizes[bucket] == identifiers[bucket].length)
+        {
+            identifiers[bucket] = Arrays.copyOf(identifiers[bucket], sizes[bucket] * 2);
+            deadlines[bucket] = Arrays.copyOf(deadlines[bucket], sizes[bucket] * 2);
+        }
+        identifiers[bucket][sizes[bucket]] = referenceIdentifier;
+        deadlines[bucket][sizes[bucket]] = deadline;
+        sizes[bucket]++;
+        size++;
+    }
+
+    /**
+     * Advances the wheel to a time, and removes every entry whose deadline passed.
+     *
+     * @param now The current time, in nanoseconds since the wheel started.
+     * @return The non-null reference identifiers whose deadline passed, in the order of their ticks.
+     */
+    public long[] advance(final long now)
+    {
+        final long nowTick = Math.floorDiv(now, tickNanos);
+        long[] fired = new long[0];
+        int firedCount = 0;
+        // Once a whole rotation elapsed, every bucket is visited exactly once.
+        for (long tick = currentTick + 1; tick <= nowTick && tick <= currentTick + mask + 1; tick++)
+        {
+            final int bucket = (int) tick & mask;
+            final long[] bucketIdentifiers = identifiers[bucket];
+            final long[] bucketDeadlines = deadlines[bucket];
+            int kept = 0;
+            for (int index = 0; index < sizes[bucket]; index++)
+            {
+                if (bucketDeadlines[index] <= now)
+                {
+                    if (firedCount == fired.length)
+                    {
+                        fired = Arrays.copyOf(fired, Math.max(16, firedCount * 2));
+                    }
+                    fired[firedCount++] = bucketIdentifiers[index];
+                }
+                else
+                {
+                    // Entries of later rotations stay in the bucket, in their original order.
+                    bucketIdentifiers[kept] = bucketIdentifiers[index];
+                    bucketDeadlines[kept] = bucketDeadlines[index];
+                    kept++;
+                }
+            }
+            size -= sizes[bucket] - kept;
+            sizes[bucket] = kept;
+        }
+        currentTick = Math.max(currentTick, nowTick);
+
+        return Arrays.copyOf(fired, firedCount);
+    }
+
+    /**
+     * Removes every entry.
+     */
+    public void clear()
+    {
+        Arrays.fill(identifiers, null);
+        Arrays.fill(deadlines, null);
+        Arrays.fill(sizes, 0);
+        size = 0;
+    }
+
+    /**
+     * @return The estimated number of bytes held by the wheel.
+     */
+    public long estimateBytes()
+    {
+        long bytes = 2 * MemoryEstimator.array(MemoryEstimator.REFERENCE_BYTES, identifiers.length)
+                     + MemoryEstimator.array(Integer.BYTES, sizes.length);
+        for (final long[] bucket : identifiers)
+        {
+            if (bucket != null)
+            {
+                bytes += 2 * MemoryEstimator.array(Long.BYTES, bucket.length);
+            }
+        }
+
+        return bytes;
+    }
+}
@@ -0,0 +1,178 @@
+package eli.ikea.mart.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+/**
+ * Binary encoding of the individual values of a column, where every value is preceded by a tag of its type. The common column types are encoded
+ * directly, while any other {@link Serializable} value falls back to Java serialization.
+ *
+ * @author The Architect
+ */
+public final class ValueCodec
+{
+    private static final byte NULL         = 0;
+    private static final byte LONG         = 1;
+    private static final byte INTEGER      = 2;
+    private static final byte DOUBLE       = 3;
+    private static final byte BOOLEAN      = 4;
+    private static final byte STRING       = 5;
+    private static final byte DATE         = 6;
+    private static final byte SHORT        = 7;
+    private static final byte BYTE         = 8;
+    private static final byte FLOAT        = 9;
+    private static final byte CHARACTER    = 10;
+    private static final byte SERIALIZABLE = 11;
+
+    private ValueCodec()
+    {
+    }
+
+    /**
+     * @param value The value of a column. [Nullable]
+     * @return Indicator if the value can be encoded.
+     */
+    public static boolean isEncodable(final Object value)
+    {
+        return value == null || value instanceof Serializable;
+    }
+
+    /**
+     * @param output The output to encode the value to. [Non-Null]
+     * @param value The value to encode. [Nullable]
+     * @throws IOException If the value cannot be written, or is not {@link #isEncodable(Object) encodable}.
+     */
+    public static void write(final DataOutput output, final Object value) throws IOException
+    {
+        if (value == null)
+        {
+            output.writeByte(NULL);
+        }
+        else if (value instanceof Long)
+        {
+            output.writeByte(LONG);
+            output.writeLong((Long) value);
+        }
+        else if (value instanceof Integer)
+        {
+            output.writeByte(INTEGER);
+            output.writeInt((Integer) value);
+        }
+        else if (value instanceof Double)
+        {
+            output.writeByte(DOUBLE);
+            output.writeDouble((Double) value);
+        }
+        else if (value instanceof Boolean)
+        {
+            output.writeByte(BOOLEAN);
+            output.writeBoolean((Boolean) value);
+        }
+        else if (value instanceof String)
+        {
+            final byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+            output.writeByte(STRING);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+        else if (value instanceof Date)
+        {
+            output.writeByte(DATE);
+            output.writeLong(((Date) value).getTime());
+        }
+        else if (value instanceof Short)
+        {
+            output.writeByte(SHORT);
+            output.writeShort((Short) value);
+        }
+        else if (value instanceof Byte)
+        {
+            output.writeByte(BYTE);
+            output.writeByte((Byte) value);
+        }
+        else if (value instanceof Float)
+        {
+            output.writeByte(FLOAT);
+            output.writeFloat((Float) value);
+        }
+        else if (value instanceof Character)
+        {
+            output.writeByte(CHARACTER);
+            output.writeChar((Character) value);
+        }
+        else if (value instanceof Serializable)
+        {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (final ObjectOutputStream objects = new ObjectOutputStream(bytes))
+            {
+                objects.writeObject(value);
+            }
+            output.writeByte(SERIALIZABLE);
+            output.writeInt(bytes.size());
+            output.write(bytes.toByteArray());
+        }
+        else
+        {
+            throw new NotSerializableException(value.getClass().getName());
+        }
+    }
+
+    /**
+     * @param input The input to decode a value from. [Non-Null]
+     * @return The decoded value. [Nullable]
+     * @throws IOException If the value cannot be read.
+     */
+    public static Object read(final DataInput input) throws IOException
+    {
+        final byte tag = input.readByte();
+        switch (tag)
+        {
+            case NULL:
+                return null;
+            case LONG:
+                return input.readLong();
+            case INTEGER:
+                return input.readInt();
+            case DOUBLE:
+                return input.readDouble();
+            case BOOLEAN:
+                return input.readBoolean();
+            case STRING:
+                final byte[] characters = new byte[input.readInt()];
+                input.readFully(characters);
+                return new String(characters, StandardCharsets.UTF_8);
+            case DATE:
+                return new Date(input.readLong());
+            case SHORT:
+                return input.readShort();
+            case BYTE:
+                return input.readByte();
+            case FLOAT:
+                return input.readFloat();
+            case CHARACTER:
+                return input.readChar();
+            case SERIALIZABLE:
+                final byte[] bytes = new byte[input.readInt()];
+                input.readFully(bytes);
+                try (final ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(bytes)))
+                {
+                    return objects.readObject();
+                }
+                catch (final ClassNotFoundException e)
+                {
+                    throw new IOException(e);
+                }
+            default:
+                throw new IOException("Unknown value tag " + tag + ".");
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package eli.ikea.mart.storage;
+
+/**
+ * Summary of the values of a single column within a {@link StorageBlock}, used to skip blocks that cannot contain a value matching a predicate. The
+ * minimum and maximum only ever widen as values are recorded, so they remain a conservative bound after values are replaced.
+ *
+ * @author The Architect
+ */
+public class ZoneMap
+{
+    private Comparable<Object> minimum;
+    private Comparable<Object> maximum;
+    private int                valueCount;
+    private int                nullCount;
+    private boolean            ordered = true;
+
+    /**
+     * @param value A value stored in the block. [Nullable]
+     */
+    @SuppressWarnings("unchecked")
+    public void record(final Object value)
+    {
+        if (value == null)
+        {
+            nullCount++;
+            return;
+        }
+
+        valueCount++;
+        if (!ordered)
+        {
+            return;
+        }
+        if (!(value instanceof Comparable))
+        {
+            // Values without a natural ordering can never be pruned.
+            ordered = false;
+            minimum = null;
+            maximum = null;
+            return;
+        }
+
+        final Comparable<Object> comparable = (Comparable<Object>) value;
+        if (minimum == null || comparable.compareTo(minimum) < 0)
+        {
+            minimum = comparable;
+        }
+        if (maximum == null || comparable.compareTo(maximum) > 0)
+        {
+            maximum = comparable;
+        }
+    }
+
+    /**
+     * Restores the state of a zone map, such as one read from a file.
+     *
+     * @param minimum The smallest value, or <code>NULL</code> if the values are not ordered. [Nullable]
+     * @param maximum The largest value, or <code>NULL</code> if the values are not ordered. [Nullable]
+     * @param valueCount The number of non-null values.
+     * @param nullCount The number of <code>NULL</code> values.
+     */
+    @SuppressWarnings("unchecked")
+    void restore(final Object minimum, final Object maximum, final int valueCount, final int nullCount)
+    {
+        this.minimum = (Comparable<Object>) minimum;
+        this.maximum = (Comparable<Object>) maximum;
+        this.valueCount = valueCount;
+        this.nullCount = nullCount;
+        this.ordered = valueCount == 0 || minimum != null;
+    }
+
+    /**
+     * @return A new non-null zone map with the same summary, which is maintained independently of this one.
+     */
+    ZoneMap copy()
+    {
+        final ZoneMap copy = new ZoneMap();
+        copy.minimum = minimum;
+        copy.maximum = maximum;
+        copy.valueCount = valueCount;
+        copy.nullCount = nullCount;
+        copy.ordered = ordered;
+
+        return copy;
+    }
+
+    /**
+     * Discards the summary, such as before it is recomputed from the values still stored in the block.
+     */
+    public void reset()
+    {
+        minimum = null;
+        maximum = null;
+        valueCount = 0;
+        nullCount = 0;
+        ordered = true;
+    }
+
+    /**
+     * @return The smallest value recorded in the block. [Nullable]
+     */
+    public Object getMinimum()
+    {
+        return minimum;
+    }
+
+    /**
+     * @return The largest value recorded in the block. [Nullable]
+     */
+    public Object getMaximum()
+    {
+        return maximum;
+    }
+
+    /**
+     * @return The number of non-null values recorded in the block.
+     */
+    public int getValueCount()
+    {
+        return valueCount;
+    }
+
+    /**
+     * @return The number of <code>NULL</code> values recorded in the block.
+     */
+    public int getNullCount()
+    {
+        return nullCount;
+    }
+
+    /**
+     * @param lowerBound The inclusive lower bound of the range. (<code>NULL</code> if unbounded)
+     * @param upperBound The inclusive upper bound of the range. (<code>NULL</code> if unbounded)
+     * @return <code>False</code> only if no non-null value in the block can fall inside the range.
+     */
+    public boolean mayContain(final Object lowerBound, final Object upperBound)
+    {
+        if (valueCount == 0)
+        {
+            return false;
+        }
+        if (!ordered)
+        {
+            return true;
+        }
+
+        return (lowerBound == null || maximum.compareTo(lowerBound) >= 0) && (upperBound == null || minimum.compareTo(upperBound) <= 0);
+    }
+}
@@ -0,0 +1,158 @@
+package eli.ikea.mart;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import eli.ikea.mart.storage.CompressionCodec;
+import eli.ikea.mart.storage.CompressionCodecs;
+import eli.ikea.mart.storage.DeflateCodec;
+import eli.ikea.mart.storage.TableStorage;
+import eli.veritas.exception.AssertionException;
+
+/**
+ * Measures the compression ratio of columnar files, and the throughput of writing them and of scanning them once opened, over a table of web
+ * access log rows. This is not a unit test; run it directly with a heap large enough for the requested row count (roughly 2 GB for the default 2
+ * million rows), for example:
+ *
+ * <pre>
+ * java -Xmx2g -cp ... eli.ikea.mart.CompressionBenchmark [rowCount] [scanCount]
+ * </pre>
+ *
+ * @author The Architect
+ */
+public class CompressionBenchmark
+{
+    public static enum Columns implements IHeaderColumn
+    {
+        TIMESTAMP("Timestamp", Long.class, false),
+        HOST("Host", String.class, false),
+        PATH("Path", String.class, false),
+        STATUS("Status", Long.class, false),
+        LATENCY("Latency", Double.class, true),
+        USER_AGENT("User Agent", String.class, true);
+
+        private final String   name;
+        private final Class<?> dataType;
+        private final boolean  nullable;
+
+        private Columns(final String name, final Class<?> dataType, final boolean nullable)
+        {
+            this.name = name;
+            this.dataType = dataType;
+            this.nullable = nullable;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public Class<?> getDataType()
+        {
+            return dataType;
+        }
+
+        public boolean isNullable()
+        {
+            return nullable;
+        }
+    }
+
+    private static final String[] RESOURCES   = {"/api/v1/orders/", "/api/v1/customers/", "/static/img/", "/search?q=", "/cart/items/"};
+    private static final long[]   STATUSES    = {200, 200, 200, 200, 200, 200, 304, 404, 500, 201};
+    private static final String[] USER_AGENTS = {"Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0",
+                                                 "Mozilla/5.0 (Macintosh; Intel Mac OS X 14_2) AppleWebKit/605.1.15 (KHTML, like Gecko) Safari/605.1",
+                                                 "curl/8.4.0", "python-requests/2.31.0", null};
+
+    public static void main(final String[] args) throws AssertionException, IOException
+    {
+        final int rowCount = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        final int scanCount = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        final Random random = new Random(2017);
+
+        final Table<Columns> table = Table.create(Columns.class);
+        long timestamp = 1_500_000_000_000L;
+        for (int row = 0; row < rowCount; row++)
+        {
+            timestamp += random.nextInt(20);
+            table.insertRow(new Object[] {timestamp,
+                                          "web-" + random.nextInt(40) + ".eu-west.example.com",
+                                          RESOURCES[random.nextInt(RESOURCES.length)] + random.nextInt(100_000),
+                                          STATUSES[random.nextInt(STATUSES.length)],
+                                          random.nextInt(50) == 0 ? null : Math.round(random.nextGaussian() * 20 + 120) / 10.0,
+                                          USER_AGENTS[random.nextInt(USER_AGENTS.length)]});
+        }
+        System.out.printf("Loaded %,d rows into %,d blocks%n", rowCount, table.storage.getBlockCount());
+
+        final Path directory = Files.createTempDirectory("compression");
+        try
+        {
+            final long plainBytes = measure(table, directory.resolve("plain.mart"), null, rowCount, scanCount, 0L);
+            measure(table, directory.resolve("fast.mart"), new DeflateCodec(1), rowCount, scanCount, plainBytes);
+            measure(table, directory.resolve("default.mart"), CompressionCodecs.DEFLATE, rowCount, scanCount, plainBytes);
+        }
+        finally
+        {
+            try (final Stream<Path> files = Files.list(directory))
+            {
+                for (final Path file : (Iterable<Path>) files::iterator)
+                {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * @return The number of bytes of the written file.
+     */
+    private static long measure(final Table<Columns> table, final Path path, final CompressionCodec codec, final int rowCount, final int scanCount,
+                                final long plainBytes)
+        throws AssertionException, IOException
+    {
+        for (final Columns column : Columns.values())
+        {
+            table.setColumnCompression(column, codec);
+        }
+        long writeNanos = System.nanoTime();
+        table.writeTo(path);
+        writeNanos = System.nanoTime() - writeNanos;
+        final long fileBytes = Files.size(path);
+
+        final Table<Columns> opened = Table.open(Columns.class, path);
+        final long[] scanNanos = new long[scanCount];
+        long checksum = 0L;
+        for (int scan = 0; scan < scanCount; scan++)
+        {
+            scanNanos[scan] = System.nanoTime();
+            final TableStorage.Cursor cursor = opened.storage.cursor();
+            while (cursor.next())
+            {
+                for (int column = 0; column < Columns.values().length; column++)
+                {
+                    final Object value = cursor.getValue(column);
+                    checksum += value == null ? 0 : 1;
+                }
+            }
+            scanNanos[scan] = System.nanoTime() - scanNanos[scan];
+        }
+
+        System.out.printf("%-16s file=%,14d bytes ratio=%5.2fx write=%8.1f ms (%,6.1f krows/s) first-scan=%8.1f ms warm-scan=%8.1f ms decompressions=%,d"
+                          + " checksum=%d%n",
+                          path.getFileName(),
+                          fileBytes,
+                          plainBytes == 0L ? 1.0 : (double) plainBytes / fileBytes,
+                          writeNanos / 1e6,
+                          rowCount / (writeNanos / 1e6),
+                          scanNanos[0] / 1e6,
+                          scanNanos[scanCount - 1] / 1e6,
+                          opened.segmentCacheStats().missCount(),
+                          checksum);
+
+        return fileBytes;
+    }
+}
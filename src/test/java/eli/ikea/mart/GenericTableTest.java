@@ -1,9 +1,66 @@
 package eli.ikea.mart;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
 import org.junit.Test;
 
+import com.google.common.base.Ticker;
+import com.google.common.io.ByteStreams;
+
 import eli.ikea.mart.IHeaderColumn;
+import eli.ikea.mart.MemoryBudgetExceededException;
+import eli.ikea.mart.MemoryStats;
+import eli.ikea.mart.OverflowPolicy;
+import eli.ikea.mart.ReferenceSequencer;
 import eli.ikea.mart.Table;
+import eli.ikea.mart.TableCompactor;
+import eli.ikea.mart.TableSnapshot;
+import eli.ikea.mart.cache.LruEvictionPolicy;
+import eli.ikea.mart.cache.TinyLfuEvictionPolicy;
+import eli.ikea.mart.formatter.TableFormatter;
+import eli.ikea.mart.journal.SyncPolicy;
+import eli.ikea.mart.query.IndexType;
+import eli.ikea.mart.query.QueryPlan;
+import eli.ikea.mart.query.QueryPlan.AccessPath;
+import eli.ikea.mart.storage.ColumnEncoding;
+import eli.ikea.mart.storage.RowCodec;
+import eli.ikea.mart.storage.StringPool;
+import eli.ikea.mart.storage.TableDiff;
+import eli.ikea.mart.storage.TableStorage;
 import eli.veritas.exception.AssertionException;
 
 /**
@@ -15,7 +72,9 @@ public class GenericTableTest
 {
     public static enum Columns implements IHeaderColumn
     {
-        TEST1("Test1", String.class, true);
+        TEST1("Test1", String.class, true),
+        TEST2("Test2", Long.class, true),
+        TEST3("Test3", Double.class, false);
 
         private final String name;
         private final Class<?> dataType;
@@ -49,4 +108,1303 @@ public class GenericTableTest
     {
         final Table<Columns> table = Table.<Columns>create(Columns.class);
     }
+
+    @Test
+    public void testOrderBy_NumericColumn() throws AssertionException
+    {
+        final Table<Columns> table = Table.<Columns>create(Columns.class);
+        final long first = table.insertRow(new Object[] {"a", 30L, 1.5});
+        final long second = table.insertRow(new Object[] {"b", null, -2.0});
+        final long third = table.insertRow(new Object[] {"c", -10L, 0.0});
+        final long fourth = table.insertRow(new Object[] {"d", 20L, 7.25});
+
+        assertArrayEquals(new long[] {second, third, fourth, first}, table.orderBy(Columns.TEST2, SortOrder.ASCENDING));
+        assertArrayEquals(new long[] {first, fourth, third, second}, table.orderBy(Columns.TEST2, SortOrder.DESCENDING));
+        assertArrayEquals(new long[] {fourth, first, third, second}, table.orderBy(Columns.TEST3, SortOrder.DESCENDING));
+    }
+
+    @Test
+    public void testOrderBy_ComparableColumn() throws AssertionException
+    {
+        final Table<Columns> table = Table.<Columns>create(Columns.class);
+        final long first = table.insertRow(new Object[] {"pear", 1L, 1.0});
+        final long second = table.insertRow(new Object[] {"apple", 2L, 2.0});
+        final long third = table.insertRow(new Object[] {null, 3L, 3.0});
+
+        assertArrayEquals(new long[] {third, second, first}, table.orderBy(Columns.TEST1, SortOrder.ASCENDING));
+        assertArrayEquals(new long[] {first, second, third}, table.orderBy(Columns.TEST1, SortOrder.DESCENDING));
+    }
+
+    @Test
+    public void testTopN_MatchesOrderBy() throws AssertionException
+    {
+        final Table<Columns> table = Table.<Columns>create(Columns.class);
+        for (int index = 0; index < 1000; index++)
+        {
+            table.insertRow(new Object[] {Integer.toString(index * 7919 % 1000), (long) (index * 104729 % 1000), index / 3.0});
+        }
+
+        final long[] ordered = table.orderBy(Columns.TEST2, SortOrder.DESCENDING);
+        final long[] top = table.topN(Columns.TEST2, SortOrder.DESCENDING, 10);
+        assertEquals(10, top.length);
+        for (int index = 0; index < top.length; index++)
+        {
+            assertEquals(table.getRow(ordered[index]).<Long>getColumnValue(Columns.TEST2), table.getRow(top[index]).<Long>getColumnValue(Columns.TEST2));
+        }
+
+        final long[] orderedNames = table.orderBy(Columns.TEST1, SortOrder.ASCENDING);
+        final long[] topNames = table.topN(Columns.TEST1, SortOrder.ASCENDING, 5);
+        for (int index = 0; index < topNames.length; index++)
+        {
+            assertEquals(table.getRow(orderedNames[index]).<String>getColumnValue(Columns.TEST1),
+                         table.getRow(topNames[index]).<String>getColumnValue(Columns.TEST1));
+        }
+    }
+
+    @Test
+    public void testToFormatter_SortedReport() throws AssertionException
+    {
+        final Table<Columns> table = Table.<Columns>create(Columns.class);
+        table.insertRow(new Object[] {"x", 2L, 0.5});
+        table.insertRow(new Object[] {"y", 1L, 1.5});
+        table.insertRow(new Object[] {"z", 3L, 2.5});
+
+        final TableFormatter report = table.toFormatter(table.orderBy(Columns.TEST2, SortOrder.ASCENDING)).finish();
+        report.printToStream(System.out);
+        assertEquals(Arrays.asList("|Test1|Test2|Test3|"), report.getHeader());
+        assertEquals(Arrays.asList("|y    |1    |1.5  |", "|x    |2    |0.5  |", "|z    |3    |2.5  |"), report.getBody());
+
+        final TableFormatter descending = table.toFormatter(table.orderBy(Columns.TEST3, SortOrder.DESCENDING)).finish();
+        assertEquals(Arrays.asList("|z    |3    |2.5  |", "|y    |1    |1.5  |", "|x    |2    |0.5  |"), descending.getBody());
+    }
+
+    @Test
+    public void testSelect_PlannerChoosesAccessPath() throws AssertionException
+    {
+        final Table<Columns> table = Table.<Columns>create(Columns.class);
+        for (int index = 0; index < 2000; index++)
+        {
+            table.insertRow(new Object[] {"name" + index % 50, (long) index, index % 2 == 0 ? 1.0 : 2.0});
+        }
+
+        final Condition<Columns> equality = Condition.equalTo(Columns.TEST1, "name7");
+        final Condition<Columns> narrowRange = Condition.between(Columns.TEST2, 100L, 109L);
+        final Condition<Columns> wideRange = Condition.atLeast(Columns.TEST2, 10L);
+        assertEquals(AccessPath.FULL_SCAN, table.explain(equality).getAccessPath());
+        assertEquals(40, table.select(equality).length);
+
+        table.createIndex(Columns.TEST1, IndexType.HASH);
+        table.createIndex(Columns.TEST2, IndexType.SORTED);
+        assertEquals(AccessPath.HASH_INDEX_LOOKUP, table.explain(equality).getAccessPath());
+        assertEquals(AccessPath.SORTED_INDEX_RANGE, table.explain(narrowRange).getAccessPath());
+        assertEquals(AccessPath.FULL_SCAN, table.explain(wideRange).getAccessPath());
+        assertEquals(40, table.select(equality).length);
+        assertEquals(10, table.select(narrowRange).length);
+        assertEquals(1990, table.select(wideRange).length);
+
+        final long[] updated = table.select(Condition.equalTo(Columns.TEST2, 5L));
+        table.getRow(updated[0]).setColumnValue(Columns.TEST1, "renamed");
+        assertArrayEquals(updated, table.select(Condition.equalTo(Columns.TEST1, "renamed")));
+        assertEquals(39, table.select(Condition.equalTo(Columns.TEST1, "name5")).length);
+
+        System.out.println(table.explain(narrowRange).explain());
+    }
+
+    @Test
+    public void testStatistics_IncrementalMaintenance() throws AssertionException
+    {
+        final Table<Columns> table = Table.<Columns>create(Columns.class);
+        for (int index = 0; index < 500; index++)
+        {
+            table.insertRow(new Object[] {index % 10 == 0 ? null : "v" + index % 100, (long) index - 100, 0.0});
+        }
+
+        assertEquals(500, table.getStatistics(Columns.TEST1).getRowCount());
+        assertEquals(50, table.getStatistics(Columns.TEST1).getNullCount());
+        assertEquals(-100L, table.getStatistics(Columns.TEST2).getMinimum());
+        assertEquals(399L, table.getStatistics(Columns.TEST2).getMaximum());
+        assertEquals(90, table.getStatistics(Columns.TEST1).estimateDistinctCount(), 2);
+        assertEquals(500, table.getStatistics(Columns.TEST2).estimateDistinctCount(), 10);
+    }
+
+    @Test
+    public void testJoin_BuildsSmallerSide() throws AssertionException
+    {
+        final Table<Columns> large = Table.<Columns>create(Columns.class);
+        final Table<Columns> small = Table.<Columns>create(Columns.class);
+        for (int index = 0; index < 1000; index++)
+        {
+            large.insertRow(new Object[] {"k" + index % 20, (long) index, 0.0});
+        }
+        for (int index = 0; index < 5; index++)
+        {
+            small.insertRow(new Object[] {"k" + index, (long) index, 0.0});
+        }
+        small.insertRow(new Object[] {null, -1L, 0.0});
+
+        final QueryPlan plan = large.explainJoin(Columns.TEST1, small, Columns.TEST1);
+        assertEquals(AccessPath.HASH_JOIN, plan.getAccessPath());
+        assertFalse(plan.isLeftBuildSide());
+        System.out.println(plan.explain());
+
+        final long[][] matches = large.join(Columns.TEST1, small, Columns.TEST1);
+        assertEquals(250, matches[0].length);
+        for (int index = 0; index < matches[0].length; index++)
+        {
+            assertEquals(large.getRow(matches[0][index]).<String>getColumnValue(Columns.TEST1),
+                         small.getRow(matches[1][index]).<String>getColumnValue(Columns.TEST1));
+        }
+
+        large.createIndex(Columns.TEST1, IndexType.HASH);
+        final QueryPlan indexPlan = large.explainJoin(Columns.TEST1, small, Columns.TEST1);
+        assertEquals(AccessPath.INDEX_NESTED_LOOP_JOIN, indexPlan.getAccessPath());
+        assertTrue(indexPlan.isLeftBuildSide());
+
+        final long[] expected = matches[0].clone();
+        final long[] actual = large.join(Columns.TEST1, small, Columns.TEST1)[0];
+        Arrays.sort(expected);
+        Arrays.sort(actual);
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void testSketches_MaintainedOnInsert() throws AssertionException
+    {
+        final Table<Columns> table = Table.<Columns>create(Columns.class);
+        table.insertRow(new Object[] {"seed", 1L, 1.0});
+        table.enableDistinctSketch(Columns.TEST1, 12);
+        table.enableQuantileSketch(Columns.TEST3, 0.01);
+        for (int index = 0; index < 10_000; index++)
+        {
+            table.insertRow(new Object[] {"customer" + index % 3000, (long) index, (double) index});
+        }
+
+        assertEquals(3001, table.getStatistics(Columns.TEST1).estimateDistinctCount(), 3001 * 0.05);
+        assertEquals(4999.5, table.getStatistics(Columns.TEST3).getQuantileSketch().estimateQuantile(0.5), 50.0);
+    }
+
+    @Test
+    public void testBloomFilter_RejectsAbsentValues() throws AssertionException
+    {
+        final Table<Columns> table = Table.<Columns>create(Columns.class, 100);
+        for (int index = 0; index < 1000; index++)
+        {
+            table.insertRow(new Object[] {"sku" + index, (long) index, (double) index});
+        }
+        table.enableBloomFilter(Columns.TEST1, 0.01);
+        for (int index = 1000; index < 5000; index++)
+        {
+            table.insertRow(new Object[] {"sku" + index, (long) index, (double) index});
+        }
+
+        for (int index = 0; index < 5000; index += 7)
+        {
+            assertTrue(table.contains(Columns.TEST1, "sku" + index));
+        }
+        assertFalse(table.contains(Columns.TEST1, "missing"));
+        assertEquals(0, table.select(Condition.equalTo(Columns.TEST1, "missing")).length);
+        assertEquals(1, table.select(Condition.equalTo(Columns.TEST1, "sku4321")).length);
+
+        final Table<Columns> other = Table.<Columns>create(Columns.class);
+        other.insertRow(new Object[] {"sku17", 1L, 1.0});
+        other.insertRow(new Object[] {"absent", 2L, 2.0});
+        assertEquals(1, table.join(Columns.TEST1, other, Columns.TEST1)[0].length);
+    }
+
+    @Test
+    public void testDictionaryEncoding_GroupFilterAndJoinOnCodes() throws AssertionException
+    {
+        final Table<Columns> table = Table.<Columns>create(Columns.class, 64);
+        assertEquals(ColumnEncoding.AUTO, table.getColumnEncoding(Columns.TEST1));
+        assertEquals(ColumnEncoding.PLAIN, table.getColumnEncoding(Columns.TEST2));
+        final String[] regions = {"north", "south", "east", "west", null};
+        for (int index = 0; index < 1000; index++)
+        {
+            table.insertRow(new Object[] {regions[index % regions.length], (long) index, (double) index});
+        }
+
+        final Map<Object, Long> counts = table.countBy(Columns.TEST1);
+        assertEquals(5, counts.size());
+        assertEquals(200L, counts.get("east").longValue());
+        assertEquals(200L, counts.get(null).longValue());
+        assertEquals(200, table.groupBy(Columns.TEST1).get("west").length);
+        assertEquals(200, table.select(Condition.equalTo(Columns.TEST1, new String("south"))).length);
+        assertEquals(0, table.select(Condition.equalTo(Columns.TEST1, "up")).length);
+        assertTrue(table.contains(Columns.TEST1, "north"));
+        assertFalse(table.contains(Columns.TEST1, "up"));
+
+        final Table<Columns> other = Table.<Columns>create(Columns.class);
+        other.insertRow(new Object[] {"west", 1L, 1.0});
+        other.insertRow(new Object[] {"up", 2L, 2.0});
+        other.insertRow(new Object[] {null, 3L, 3.0});
+        final long[][] joined = table.join(Columns.TEST1, other, Columns.TEST1);
+        assertEquals(200, joined[0].length);
+        for (final long referenceIdentifier : joined[0])
+        {
+            assertEquals("west", table.getRow(referenceIdentifier).getColumnValue(Columns.TEST1));
+        }
+
+        table.setColumnEncoding(Columns.TEST1, ColumnEncoding.PLAIN);
+        assertEquals(counts, table.countBy(Columns.TEST1));
+        assertEquals(200, table.join(Columns.TEST1, other, Columns.TEST1)[0].length);
+        assertEquals(200, table.groupBy(Columns.TEST1).get(null).length);
+    }
+
+    @Test
+    public void testDeduplication_CanonicalizesIngestedStrings() throws AssertionException
+    {
+        final Table<Columns> table = Table.<Columns>create(Columns.class);
+        table.setColumnEncoding(Columns.TEST1, ColumnEncoding.PLAIN);
+        final StringPool pool = table.enableDeduplication(Columns.TEST1, 100);
+        final List<Object[]> rows = new ArrayList<>();
+        for (int index = 0; index < 1000; index++)
+        {
+            rows.add(new Object[] {new String("status" + index % 10), (long) index, (double) index});
+        }
+        final long[] referenceIdentifiers = table.insertRows(rows);
+
+        assertEquals(1000, referenceIdentifiers.length);
+        assertTrue(table.getRow(referenceIdentifiers[0]).getColumnValue(Columns.TEST1) == table.getRow(referenceIdentifiers[10])
+                                                                                                .getColumnValue(Columns.TEST1));
+        assertEquals(10, pool.size());
+        assertEquals(0.99, pool.getHitRatio(), 1e-9);
+        assertTrue(pool.getBytesSaved() >= 990 * 40);
+
+        rows.clear();
+        rows.add(new Object[] {"valid", 1L, 1.0});
+        rows.add(new Object[] {"invalid", 1L, null});
+        try
+        {
+            table.insertRows(rows);
+        }
+        catch (final AssertionException e)
+        {
+            assertEquals(1000, table.getRowCount());
+            return;
+        }
+        fail("An invalid row must reject the whole batch.");
+    }
+
+    @Test
+    public void testOffHeap_ReadsMatchOnHeapTable() throws AssertionException
+    {
+        final Table<Columns> onHeap = Table.<Columns>create(Columns.class, 128);
+        try (final Table<Columns> offHeap = Table.<Columns>createOffHeap(Columns.class, 128, 1 << 20))
+        {
+            for (int index = 0; index < 1000; index++)
+            {
+                final Object[] values = {index % 3 == 0 ? null : "type" + index % 7, index % 5 == 0 ? null : (long) -index, index * 0.5};
+                assertEquals(onHeap.insertRow(values), offHeap.insertRow(values));
+            }
+
+            assertTrue(offHeap.getOffHeapAllocator().getUsedBytes() > 0);
+            for (long referenceIdentifier = 1; referenceIdentifier <= 1100; referenceIdentifier++)
+            {
+                if (onHeap.getRow(referenceIdentifier) != null)
+                {
+                    for (final Columns column : Columns.values())
+                    {
+                        assertEquals(onHeap.getRow(referenceIdentifier).getColumnValue(column), offHeap.getRow(referenceIdentifier).getColumnValue(column));
+                    }
+                }
+            }
+            assertEquals(onHeap.countBy(Columns.TEST1), offHeap.countBy(Columns.TEST1));
+            assertArrayEquals(onHeap.orderBy(Columns.TEST2, SortOrder.DESCENDING), offHeap.orderBy(Columns.TEST2, SortOrder.DESCENDING));
+
+            final long referenceIdentifier = offHeap.select(Condition.equalTo(Columns.TEST3, 10.0))[0];
+            offHeap.getRow(referenceIdentifier).setColumnValue(Columns.TEST2, 42L);
+            assertEquals(Long.valueOf(42L), offHeap.getRow(referenceIdentifier).getColumnValue(Columns.TEST2));
+            try
+            {
+                offHeap.snapshot();
+                fail("Off-heap tables must not be snapshot.");
+            }
+            catch (final AssertionException e)
+            {
+                assertEquals(0, offHeap.storage.getOpenSnapshotCount());
+            }
+
+            offHeap.close();
+            assertTrue(offHeap.getOffHeapAllocator().isClosed());
+            assertEquals(0, offHeap.getRowCount());
+        }
+    }
+
+    @Test
+    public void testNotNull_SelectsFromNullBitsets() throws AssertionException
+    {
+        final Table<Columns> table = Table.<Columns>create(Columns.class, 100);
+        for (int index = 0; index < 1000; index++)
+        {
+            table.insertRow(new Object[] {index % 2 == 0 ? null : "x", index % 10 == 0 ? null : (long) index, (double) index});
+        }
+
+        assertEquals(900, table.select(Condition.notNull(Columns.TEST2)).length);
+        assertEquals(500, table.select(Condition.notNull(Columns.TEST1)).length);
+        assertEquals("Test2 IS NOT NULL", Condition.notNull(Columns.TEST2).toString());
+    }
+
+    @Test
+    public void testMemoryStats_EstimatesColumnsAndOverheads() throws AssertionException
+    {
+        final Table<Columns> table = Table.<Columns>create(Columns.class);
+        for (int index = 0; index < 10_240; index++)
+        {
+            table.insertRow(new Object[] {"status" + index % 4, index % 2 == 0 ? null : (long) index, (double) index});
+        }
+        final MemoryStats<Columns> dictionaryStats = table.memoryStats();
+
+        assertEquals(10_240, dictionaryStats.getRowCount());
+        assertEquals(10_240 * 8.0, dictionaryStats.getColumn(Columns.TEST2).getValueBytes(), 10_240 * 0.1);
+        assertEquals(10_240 / 8.0, dictionaryStats.getColumn(Columns.TEST2).getNullBitmapBytes(), 10_240 * 0.1);
+        assertEquals(10_240 * 4.0, dictionaryStats.getColumn(Columns.TEST1).getValueBytes(), 10_240 * 0.1);
+        assertTrue(dictionaryStats.getColumn(Columns.TEST1).getDictionaryBytes() > 0);
+        assertTrue(dictionaryStats.getRowMapBytes() >= 10_240 * 16);
+        assertTrue(dictionaryStats.getSequencerBytes() > 0);
+        assertEquals(0, dictionaryStats.getIndexBytes());
+        assertEquals(0, dictionaryStats.getOffHeapBytes());
+
+        table.createIndex(Columns.TEST3, IndexType.HASH);
+        table.setColumnEncoding(Columns.TEST1, ColumnEncoding.PLAIN);
+        final MemoryStats<Columns> plainStats = table.memoryStats();
+        assertTrue(plainStats.getIndexBytes() > 10_240 * 56);
+        assertEquals(0, plainStats.getColumn(Columns.TEST1).getDictionaryBytes());
+        assertTrue(plainStats.getColumn(Columns.TEST1).getValueBytes() > 10 * dictionaryStats.getColumn(Columns.TEST1).getValueBytes());
+        assertTrue(plainStats.getBytesPerRow() > dictionaryStats.getBytesPerRow());
+    }
+
+    @Test
+    public void testMemoryBudget_RejectSpillAndBlock() throws Exception
+    {
+        final Table<Columns> rejecting = Table.<Columns>create(Columns.class, 100);
+        rejecting.setMemoryBudget(64 * 1024, OverflowPolicy.REJECT);
+        try
+        {
+            for (int index = 0; index < 100_000; index++)
+            {
+                rejecting.insertRow(new Object[] {"payload" + index, (long) index, (double) index});
+            }
+            fail("The budget must reject the inserts.");
+        }
+        catch (final MemoryBudgetExceededException e)
+        {
+            assertTrue(rejecting.memoryStats().getTotalBytes() <= e.getBudgetBytes());
+            assertTrue(e.getRequiredBytes() > e.getBudgetBytes());
+        }
+
+        final Table<Columns> spilling = Table.<Columns>create(Columns.class, 100);
+        spilling.setColumnEncoding(Columns.TEST1, ColumnEncoding.PLAIN);
+        spilling.setMemoryBudget(1024 * 1024, OverflowPolicy.SPILL);
+        final long[] spilledIdentifiers = new long[20_000];
+        for (int index = 0; index < 20_000; index++)
+        {
+            spilledIdentifiers[index] = spilling.insertRow(new Object[] {"payload" + index, (long) index, (double) index});
+        }
+        final MemoryStats<Columns> stats = spilling.memoryStats();
+        assertTrue(stats.getTotalBytes() <= 1024 * 1024 + 100 * stats.getBytesPerRow());
+        assertTrue(stats.getSpilledBytes() > 0);
+        assertEquals("payload123", spilling.getRow(spilledIdentifiers[123]).getColumnValue(Columns.TEST1));
+        assertEquals(20_000, spilling.countBy(Columns.TEST3).size());
+        spilling.getRow(spilledIdentifiers[124]).setColumnValue(Columns.TEST1, "updated");
+        assertEquals(1, spilling.select(Condition.equalTo(Columns.TEST1, "updated")).length);
+        final Path spillDirectory = spilling.storage.getSpillManager().getDirectory();
+        spilling.close();
+        assertFalse(Files.exists(spillDirectory));
+
+        final Table<Columns> blocking = Table.<Columns>create(Columns.class, 100);
+        blocking.setMemoryBudget(32 * 1024, OverflowPolicy.BLOCK, 50);
+        try
+        {
+            for (int index = 0; index < 100_000; index++)
+            {
+                blocking.insertRow(new Object[] {"payload" + index, (long) index, (double) index});
+            }
+            fail("The budget must time out the blocked insert.");
+        }
+        catch (final MemoryBudgetExceededException e)
+        {
+            final Thread raiser = new Thread(() -> {
+                try
+                {
+                    Thread.sleep(50);
+                    blocking.setMemoryBudget(Long.MAX_VALUE - 1, OverflowPolicy.BLOCK);
+                }
+                catch (final Exception ignored)
+                {
+                }
+            });
+            blocking.setMemoryBudget(32 * 1024, OverflowPolicy.BLOCK);
+            raiser.start();
+            final int rowCount = blocking.getRowCount();
+            for (int index = 0; index < 100; index++)
+            {
+                blocking.insertRow(new Object[] {"late" + index, (long) index, (double) index});
+            }
+            raiser.join();
+            assertEquals(rowCount + 100, blocking.getRowCount());
+        }
+    }
+
+    @Test
+    public void testDeleteAndUpdate_RecyclesIdentifiers() throws AssertionException
+    {
+        final Table<Columns> table = Table.<Columns>create(Columns.class, 16);
+        table.createIndex(Columns.TEST1, IndexType.HASH);
+        final long[] identifiers = new long[100];
+        for (int index = 0; index < identifiers.length; index++)
+        {
+            identifiers[index] = table.insertRow(new Object[] {"name" + index % 10, (long) index, (double) index});
+        }
+
+        assertTrue(table.deleteRow(identifiers[5]));
+        assertFalse(table.deleteRow(identifiers[5]));
+        assertEquals(null, table.getRow(identifiers[5]));
+        assertEquals(9, table.select(Condition.equalTo(Columns.TEST1, "name5")).length);
+        assertEquals(99, table.getStatistics(Columns.TEST2).getRowCount());
+
+        assertEquals(50, table.deleteWhere(Condition.atLeast(Columns.TEST2, 50L)));
+        assertEquals(49, table.getRowCount());
+        assertEquals(0, table.select(Condition.between(Columns.TEST3, 50.0, 100.0)).length);
+        assertFalse(table.contains(Columns.TEST2, 75L));
+        assertEquals(4, table.select(Condition.equalTo(Columns.TEST1, "name5")).length);
+
+        table.updateRow(identifiers[7], new Object[] {null, -7L, 7.5});
+        assertEquals(null, table.getRow(identifiers[7]).getColumnValue(Columns.TEST1));
+        assertEquals(Double.valueOf(7.5), table.getRow(identifiers[7]).getColumnValue(Columns.TEST3));
+        try
+        {
+            table.updateRow(identifiers[8], new Object[] {"valid", 8L, null});
+            fail("A null value must not be accepted by a non-nullable column.");
+        }
+        catch (final AssertionException e)
+        {
+            assertEquals("name8", table.getRow(identifiers[8]).getColumnValue(Columns.TEST1));
+        }
+
+        final long recycled = table.insertRow(new Object[] {"new", 0L, 0.0});
+        assertTrue(recycled == identifiers[5] || Arrays.stream(identifiers, 50, 100).anyMatch(identifier -> identifier == recycled));
+        assertEquals(50, table.getRowCount());
+    }
+
+    @Test
+    public void testCompactor_ReclaimsDeletedSlotsInSteps() throws AssertionException
+    {
+        final Table<Columns> table = Table.<Columns>create(Columns.class, 100);
+        for (int index = 0; index < 1000; index++)
+        {
+            table.insertRow(new Object[] {"name" + index % 10, (long) index, (double) index});
+        }
+        table.deleteWhere(Condition.atMost(Columns.TEST2, 299L));
+        table.deleteWhere(Condition.equalTo(Columns.TEST1, "name5"));
+
+        final TableCompactor compactor = table.createCompactor(0.5, 1, TimeUnit.NANOSECONDS);
+        assertEquals(0.37, compactor.getFragmentation(), 1e-9);
+        compactor.run();
+        assertEquals(1, compactor.getStepCount());
+        assertEquals(1, compactor.getBlocksCompacted());
+        assertEquals(0, compactor.getPassCount());
+        while (compactor.getPassCount() == 0)
+        {
+            compactor.run();
+        }
+        assertEquals(10, compactor.getStepCount());
+        assertEquals(3, compactor.getBlocksCompacted());
+        assertEquals(300, compactor.getSlotsReclaimed());
+        assertEquals(0, compactor.getRowsMoved());
+        assertTrue(compactor.getMaximumStepNanos() >= compactor.getLastStepNanos());
+
+        final TableCompactor thorough = table.createCompactor(0.1, 1, TimeUnit.SECONDS);
+        thorough.run();
+        assertEquals(7, thorough.getBlocksCompacted());
+        assertEquals(630, thorough.getRowsMoved());
+        assertEquals(0.0, thorough.getFragmentation(), 0.0);
+        assertEquals(630, table.getRowCount());
+        assertEquals(70, table.select(Condition.equalTo(Columns.TEST1, "name4")).length);
+        assertEquals(0, table.select(Condition.equalTo(Columns.TEST1, "name5")).length);
+        assertEquals(Long.valueOf(999L), table.getRow(table.select(Condition.equalTo(Columns.TEST3, 999.0))[0]).getColumnValue(Columns.TEST2));
+    }
+
+    @Test
+    public void testCompactor_ServesReadsDuringCompaction() throws Exception
+    {
+        final Table<Columns> table = Table.<Columns>create(Columns.class, 16);
+        final TableCompactor compactor = table.createCompactor(0.5, 1, TimeUnit.SECONDS);
+
+        // Every round fills a block with alternating kept and deleted rows, which the compactor then moves into a dense block.
+        final int roundCount = 500;
+        final long[] kept = new long[roundCount * 8];
+        final AtomicInteger keptCount = new AtomicInteger();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Thread ingest = new Thread(() -> {
+            try
+            {
+                for (int round = 0; round < roundCount; round++)
+                {
+                    final long[] referenceIdentifiers = new long[16];
+                    for (int index = 0; index < referenceIdentifiers.length; index++)
+                    {
+                        final long value = round * 8L + index / 2;
+                        referenceIdentifiers[index] = table.insertRow(new Object[] {index % 2 == 0 ? "kept" : "deleted", value, (double) value});
+                    }
+                    for (int index = 1; index < referenceIdentifiers.length; index += 2)
+                    {
+                        table.deleteRow(referenceIdentifiers[index]);
+                    }
+                    for (int index = 0; index < referenceIdentifiers.length; index += 2)
+                    {
+                        kept[round * 8 + index / 2] = referenceIdentifiers[index];
+                    }
+                    keptCount.addAndGet(8);
+                    compactor.run();
+                }
+            }
+            catch (final Throwable e)
+            {
+                failure.set(e);
+            }
+        });
+        ingest.start();
+        try
+        {
+            final Random random = new Random(13);
+            while (ingest.isAlive() && failure.get() == null)
+            {
+                final int count = keptCount.get();
+                if (count == 0)
+                {
+                    continue;
+                }
+                final int index = random.nextInt(count);
+                final Table<Columns>.Row row = table.getRow(kept[index]);
+                assertNotNull(row);
+                assertEquals(Long.valueOf(index), row.getColumnValue(Columns.TEST2));
+                assertEquals(Double.valueOf(index), row.getColumnValue(Columns.TEST3));
+                assertTrue(table.contains(Columns.TEST2, (long) index));
+            }
+        }
+        finally
+        {
+            ingest.join();
+        }
+        assertEquals(null, failure.get());
+        assertEquals(roundCount, compactor.getBlocksCompacted());
+        assertEquals(roundCount * 8, table.getRowCount());
+        assertEquals(roundCount * 8, table.select(Condition.equalTo(Columns.TEST1, "kept")).length);
+    }
+
+    @Test
+    public void testTimeToLive_ExpiresDueRowsOnly() throws AssertionException
+    {
+        final AtomicLong nanos = new AtomicLong();
+        final Table<Columns> table = Table.<Columns>create(Columns.class, 100);
+        table.setTicker(new Ticker()
+        {
+            @Override
+            public long read()
+            {
+                return nanos.get();
+            }
+        });
+        table.setDefaultTimeToLive(1, TimeUnit.SECONDS);
+        final long[] identifiers = new long[1000];
+        for (int index = 0; index < identifiers.length; index++)
+        {
+            identifiers[index] = index % 2 == 0 ? table.insertRow(new Object[] {"even", (long) index, 0.0})
+                                                : table.insertRow(new Object[] {"odd", (long) index, 0.0}, 5, TimeUnit.SECONDS);
+        }
+        table.setDefaultTimeToLive(0, TimeUnit.SECONDS);
+        final long permanent = table.insertRow(new Object[] {"permanent", -1L, 0.0});
+        table.setTimeToLive(identifiers[0], 10, TimeUnit.SECONDS);
+
+        nanos.set(TimeUnit.MILLISECONDS.toNanos(999));
+        assertEquals(0, table.expireRows());
+        nanos.set(TimeUnit.MILLISECONDS.toNanos(1010));
+        assertEquals(499, table.expireRows());
+        assertEquals(502, table.getRowCount());
+        assertEquals(1, table.select(Condition.equalTo(Columns.TEST1, "even")).length);
+
+        nanos.set(TimeUnit.SECONDS.toNanos(5) + 1);
+        final long reused = table.insertRow(new Object[] {"reused", 0L, 0.0});
+        assertEquals(3, table.getRowCount());
+        assertTrue(table.getRow(reused) != null && table.getRow(permanent) != null);
+
+        nanos.set(TimeUnit.SECONDS.toNanos(60));
+        assertEquals(1, table.expireRows());
+        assertEquals(null, table.getRow(identifiers[0]));
+        assertEquals(2, table.getRowCount());
+    }
+
+    @Test
+    public void testCacheMode_EvictsByPolicy() throws AssertionException
+    {
+        final Table<Columns> lru = Table.<Columns>create(Columns.class, 64);
+        lru.setMaximumSize(100, new LruEvictionPolicy());
+        final long[] identifiers = new long[100];
+        for (int index = 0; index < identifiers.length; index++)
+        {
+            identifiers[index] = lru.insertRow(new Object[] {"row", (long) index, 0.0});
+        }
+        for (int index = 0; index < 10; index++)
+        {
+            assertTrue(lru.getRow(identifiers[index]) != null);
+        }
+        for (int index = 100; index < 110; index++)
+        {
+            lru.insertRow(new Object[] {"row", (long) index, 0.0});
+        }
+        assertEquals(100, lru.getRowCount());
+        assertEquals(10, lru.select(Condition.atMost(Columns.TEST2, 9L)).length);
+        assertEquals(0, lru.select(Condition.between(Columns.TEST2, 10L, 19L)).length);
+        assertEquals(null, lru.getRow(-5L));
+        assertEquals(10, lru.cacheStats().hitCount());
+        assertEquals(1, lru.cacheStats().missCount());
+        assertEquals(10, lru.cacheStats().evictionCount());
+
+        final Table<Columns> tinyLfu = Table.<Columns>create(Columns.class, 64);
+        tinyLfu.setMaximumSize(100, new TinyLfuEvictionPolicy(100));
+        final long[] hot = new long[100];
+        for (int index = 0; index < hot.length; index++)
+        {
+            hot[index] = tinyLfu.insertRow(new Object[] {"hot", (long) index, 0.0});
+        }
+        for (int round = 0; round < 5; round++)
+        {
+            for (final long referenceIdentifier : hot)
+            {
+                tinyLfu.getRow(referenceIdentifier);
+            }
+        }
+        for (int index = 0; index < 1000; index++)
+        {
+            tinyLfu.insertRow(new Object[] {"scan", (long) index, 0.0});
+        }
+        assertEquals(100, tinyLfu.getRowCount());
+        assertTrue(tinyLfu.select(Condition.equalTo(Columns.TEST1, "hot")).length >= 90);
+        assertEquals(1000, tinyLfu.cacheStats().evictionCount());
+    }
+
+    @Test
+    public void testWriteAndOpen_MapsRowsFromFile() throws Exception
+    {
+        final Path path = Files.createTempFile("table", ".mart");
+        try
+        {
+            for (final ColumnEncoding encoding : new ColumnEncoding[] {ColumnEncoding.AUTO, ColumnEncoding.PLAIN})
+            {
+                final Table<Columns> written = Table.<Columns>create(Columns.class, 64);
+                written.setColumnEncoding(Columns.TEST1, encoding);
+                final long[] identifiers = new long[300];
+                for (int index = 0; index < identifiers.length; index++)
+                {
+                    identifiers[index] = written.insertRow(new Object[] {index % 11 == 0 ? null : "name" + index % 7,
+                                                                          index % 5 == 0 ? null : (long) index,
+                                                                          index * 0.5});
+                }
+                assertEquals(10, written.deleteWhere(Condition.between(Columns.TEST2, 100L, 112L)));
+                written.writeTo(path);
+
+                final Table<Columns> opened = Table.open(Columns.class, path);
+                assertEquals(written.getRowCount(), opened.getRowCount());
+                assertEquals(encoding, opened.getColumnEncoding(Columns.TEST1));
+                for (final long referenceIdentifier : identifiers)
+                {
+                    final Table<Columns>.Row expected = written.getRow(referenceIdentifier);
+                    final Table<Columns>.Row actual = opened.getRow(referenceIdentifier);
+                    assertEquals(expected == null, actual == null);
+                    for (final Columns column : Columns.values())
+                    {
+                        assertEquals(expected == null ? null : expected.getColumnValue(column), actual == null ? null : actual.getColumnValue(column));
+                    }
+                }
+                assertEquals(written.select(Condition.equalTo(Columns.TEST1, "name3")).length,
+                             opened.select(Condition.equalTo(Columns.TEST1, "name3")).length);
+                assertEquals(written.select(Condition.between(Columns.TEST2, 50L, 150L)).length,
+                             opened.select(Condition.between(Columns.TEST2, 50L, 150L)).length);
+                assertEquals(written.getStatistics(Columns.TEST2).getNullCount(), opened.getStatistics(Columns.TEST2).getNullCount());
+
+                // Changes to the opened table stay private to it.
+                opened.getRow(identifiers[1]).setColumnValue(Columns.TEST1, "changed");
+                opened.getRow(identifiers[1]).setColumnValue(Columns.TEST3, -1.0);
+                final long inserted = opened.insertRow(new Object[] {"new", 1000L, 1000.0});
+                assertTrue(written.getRow(inserted) == null);
+                assertEquals("changed", opened.getRow(identifiers[1]).getColumnValue(Columns.TEST1));
+                assertEquals(-1.0, (Double) opened.getRow(identifiers[1]).getColumnValue(Columns.TEST3), 0.0);
+                final Table<Columns> reopened = Table.open(Columns.class, path);
+                assertEquals("name1", reopened.getRow(identifiers[1]).getColumnValue(Columns.TEST1));
+                assertEquals(0.5, (Double) reopened.getRow(identifiers[1]).getColumnValue(Columns.TEST3), 0.0);
+                assertEquals(written.getRowCount(), reopened.getRowCount());
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testJournal_ReplaysMutationsAfterSnapshot() throws Exception
+    {
+        final Path directory = Files.createTempDirectory("journal");
+        final Path snapshot = directory.resolve("table.mart");
+        final Path journal = directory.resolve("table.journal");
+        try
+        {
+            final Table<Columns> written = Table.<Columns>create(Columns.class, 64);
+            written.enableJournal(journal, SyncPolicy.ALWAYS, 1, TimeUnit.SECONDS);
+            final long[] identifiers = new long[200];
+            for (int index = 0; index < identifiers.length; index++)
+            {
+                identifiers[index] = written.insertRow(new Object[] {"name" + index % 7, (long) index, index * 0.5});
+            }
+            written.getRow(identifiers[3]).setColumnValue(Columns.TEST1, "before");
+            written.deleteWhere(Condition.between(Columns.TEST2, 10L, 19L));
+            written.writeTo(snapshot);
+
+            written.updateRow(identifiers[4], new Object[] {null, null, -4.0});
+            written.getRow(identifiers[5]).setColumnValue(Columns.TEST1, "after");
+            written.deleteRow(identifiers[6]);
+            final long reused = written.insertRows(Arrays.<Object[]>asList(new Object[] {"reused", 1000L, 1000.0}))[0];
+            assertEquals(200 + 6, written.getJournal().getLastSequenceNumber());
+
+            // A torn record at the end of the journal is dropped when it is replayed.
+            Files.write(journal, new byte[] {0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+            final long journalBytes = Files.size(journal) - 7;
+            final Table<Columns> recovered = Table.open(Columns.class, snapshot);
+            recovered.enableJournal(journal, SyncPolicy.NEVER, 1, TimeUnit.SECONDS);
+            assertEquals(journalBytes, Files.size(journal));
+            final Table<Columns> periodic = Table.<Columns>create(Columns.class, 64);
+            periodic.enableJournal(directory.resolve("copy.journal"), SyncPolicy.PERIODIC, 10, TimeUnit.MILLISECONDS);
+            Files.copy(journal, directory.resolve("full.journal"));
+            final Table<Columns> rebuilt = Table.<Columns>create(Columns.class, 64);
+            rebuilt.enableJournal(directory.resolve("full.journal"), SyncPolicy.NEVER, 1, TimeUnit.SECONDS);
+
+            for (final Table<Columns> table : Arrays.asList(recovered, rebuilt))
+            {
+                assertEquals(written.getRowCount(), table.getRowCount());
+                for (final long referenceIdentifier : identifiers)
+                {
+                    final Table<Columns>.Row expected = written.getRow(referenceIdentifier);
+                    final Table<Columns>.Row actual = table.getRow(referenceIdentifier);
+                    assertEquals(expected == null, actual == null);
+                    for (final Columns column : Columns.values())
+                    {
+                        assertEquals(expected == null ? null : expected.getColumnValue(column), actual == null ? null : actual.getColumnValue(column));
+                    }
+                }
+                assertEquals("reused", table.getRow(reused).getColumnValue(Columns.TEST1));
+                assertEquals(written.getJournal().getLastSequenceNumber(), table.getJournal().getLastSequenceNumber());
+            }
+
+            // New records continue the sequence of the journal.
+            recovered.insertRow(new Object[] {"new", 2000L, 2000.0});
+            recovered.getJournal().flush();
+            assertEquals(written.getJournal().getLastSequenceNumber() + 1, recovered.getJournal().getDurableSequenceNumber());
+            periodic.insertRow(new Object[] {"periodic", 0L, 0.0});
+            periodic.getJournal().flush();
+            assertEquals(1, periodic.getJournal().getDurableSequenceNumber());
+
+            written.close();
+            recovered.close();
+            periodic.close();
+            rebuilt.close();
+        }
+        finally
+        {
+            for (final Path file : new Path[] {snapshot, journal, directory.resolve("copy.journal"), directory.resolve("full.journal"), directory})
+            {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Test
+    public void testReferenceSequencer_ClaimsFarAheadAsRanges() throws Exception
+    {
+        final ReferenceSequencer sequencer = ReferenceSequencer.create(10);
+        final long estimatedBytes = sequencer.estimateBytes();
+        sequencer.claimReferenceIdentifier(5_000_000_000L);
+        sequencer.claimReferenceIdentifier(100L);
+        assertEquals(Integer.MAX_VALUE, sequencer.getAvailableCount());
+        assertTrue(sequencer.estimateBytes() < estimatedBytes + 1024);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sequencer.writeTo(new DataOutputStream(bytes));
+        assertTrue(bytes.size() < 1024);
+        final ReferenceSequencer copy = ReferenceSequencer.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        for (final ReferenceSequencer restored : new ReferenceSequencer[] {sequencer, copy})
+        {
+            // The skipped identifiers are handed out before the sequence advances, except the ones claimed since.
+            final Set<Long> handedOut = new HashSet<>();
+            for (int index = 0; index < 200; index++)
+            {
+                final long referenceIdentifier = restored.getNextReferenceIdentifier();
+                assertTrue(referenceIdentifier < 5_000_000_000L);
+                assertTrue(referenceIdentifier != 100L);
+                assertTrue(handedOut.add(referenceIdentifier));
+            }
+        }
+    }
+
+    @Test
+    public void testCheckpoint_WritesOnlyChangedBlocks() throws Exception
+    {
+        final Path directory = Files.createTempDirectory("checkpoint");
+        final Path checkpoints = directory.resolve("checkpoints");
+        final Path journal = directory.resolve("table.journal");
+        try
+        {
+            final Table<Columns> written = Table.<Columns>create(Columns.class, 64);
+            written.enableJournal(journal, SyncPolicy.ALWAYS, 1, TimeUnit.SECONDS);
+            final long[] identifiers = new long[200];
+            for (int index = 0; index < identifiers.length; index++)
+            {
+                identifiers[index] = written.insertRow(new Object[] {"name" + index % 7, (long) index, index * 0.5});
+            }
+            assertEquals(4, written.checkpoint(checkpoints));
+            assertEquals(0L, Files.size(journal));
+
+            // Only the block holding the updated row is written again, and the first checkpoint still holds the others.
+            written.getRow(identifiers[3]).setColumnValue(Columns.TEST1, "changed");
+            assertEquals(1, written.checkpoint(checkpoints));
+            assertEquals(0, written.checkpoint(checkpoints));
+            assertEquals(3, checkpoints.toFile().list().length);
+
+            // Once every block of the first checkpoint is written again, it is deleted.
+            written.deleteRow(identifiers[130]);
+            written.updateRow(identifiers[70], new Object[] {null, null, -70.0});
+            written.getRow(identifiers[199]).setColumnValue(Columns.TEST2, null);
+            assertEquals(3, written.checkpoint(checkpoints));
+            assertFalse(Files.exists(checkpoints.resolve(String.format("checkpoint-%010d.mart", 1))));
+
+            written.deleteRow(identifiers[5]);
+            final long inserted = written.insertRow(new Object[] {"after", 1000L, 1000.0});
+            final Table<Columns> recovered = Table.openCheckpoint(Columns.class, checkpoints);
+            recovered.enableJournal(journal, SyncPolicy.NEVER, 1, TimeUnit.SECONDS);
+            assertEquals(written.getRowCount(), recovered.getRowCount());
+            for (final long referenceIdentifier : identifiers)
+            {
+                final Table<Columns>.Row expected = written.getRow(referenceIdentifier);
+                final Table<Columns>.Row actual = recovered.getRow(referenceIdentifier);
+                assertEquals(expected == null, actual == null);
+                for (final Columns column : Columns.values())
+                {
+                    assertEquals(expected == null ? null : expected.getColumnValue(column), actual == null ? null : actual.getColumnValue(column));
+                }
+            }
+            assertEquals("after", recovered.getRow(inserted).getColumnValue(Columns.TEST1));
+            assertEquals(written.getJournal().getLastSequenceNumber(), recovered.getJournal().getLastSequenceNumber());
+
+            written.close();
+            recovered.close();
+        }
+        finally
+        {
+            try (final Stream<Path> files = Files.walk(directory))
+            {
+                for (final Path file : files.sorted(Comparator.reverseOrder()).toArray(Path[]::new))
+                {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRowCodec_ShipsRowsBetweenTables() throws AssertionException
+    {
+        final Table<Columns> source = Table.<Columns>create(Columns.class, 64);
+        final long[] identifiers = new long[100];
+        for (int index = 0; index < identifiers.length; index++)
+        {
+            identifiers[index] = source.insertRow(new Object[] {index % 3 == 0 ? null : "name" + index % 5, index % 4 == 0 ? null : index - 50L, index * 0.25});
+        }
+        source.deleteRow(identifiers[10]);
+
+        final RowCodec encoder = source.newRowCodec(16);
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(4096);
+        for (final long referenceIdentifier : identifiers)
+        {
+            assertEquals(referenceIdentifier != identifiers[10], source.encodeRow(referenceIdentifier, encoder, buffer));
+        }
+        // Repeated strings are sent as references, so no row takes more than a few bytes.
+        assertTrue(buffer.position() < 99 * 16);
+
+        buffer.flip();
+        final Table<Columns> target = Table.<Columns>create(Columns.class, 64);
+        final RowCodec decoder = target.newRowCodec(16);
+        final List<Long> inserted = new ArrayList<>();
+        while (buffer.hasRemaining())
+        {
+            inserted.add(target.insertRow(decoder, buffer));
+        }
+        assertEquals(source.getRowCount(), target.getRowCount());
+        for (int index = 0, row = 0; index < identifiers.length; index++)
+        {
+            if (index == 10)
+            {
+                continue;
+            }
+            for (final Columns column : Columns.values())
+            {
+                assertEquals(source.getRow(identifiers[index]).getColumnValue(column), target.getRow(inserted.get(row)).getColumnValue(column));
+            }
+            row++;
+        }
+
+        try
+        {
+            Table.<Columns>create(Columns.class).insertRow(new RowCodec(new Class<?>[] {String.class}, 0), buffer);
+            fail("The codec must have the columns of the table.");
+        }
+        catch (final AssertionException e)
+        {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void testArrow_ExportsAndImportsRows() throws Exception
+    {
+        final Table<Columns> source = Table.<Columns>create(Columns.class, 64);
+        final long[] identifiers = new long[150];
+        for (int index = 0; index < identifiers.length; index++)
+        {
+            identifiers[index] = source.insertRow(new Object[] {index % 3 == 0 ? null : "n\u00E4me" + index % 5, index % 4 == 0 ? null : index - 75L,
+                                                                index * 0.25});
+        }
+        // The first block is written a word at a time, and the second one row by row around its deleted rows.
+        source.deleteRow(identifiers[70]);
+        source.deleteWhere(Condition.between(Columns.TEST2, 30L, 40L));
+
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        assertEquals(source.getRowCount(), source.exportArrow(stream));
+        final byte[] bytes = stream.toByteArray();
+        assertArrayEquals(new byte[] {-1, -1, -1, -1, 0, 0, 0, 0}, Arrays.copyOfRange(bytes, bytes.length - 8, bytes.length));
+
+        final Table<Columns> target = Table.<Columns>create(Columns.class, 64);
+        final long[] imported = target.importArrow(new ByteArrayInputStream(bytes));
+        assertEquals(source.getRowCount(), imported.length);
+        int row = 0;
+        for (final long referenceIdentifier : identifiers)
+        {
+            final Table<Columns>.Row expected = source.getRow(referenceIdentifier);
+            if (expected != null)
+            {
+                for (final Columns column : Columns.values())
+                {
+                    assertEquals(expected.getColumnValue(column), target.getRow(imported[row]).getColumnValue(column));
+                }
+                row++;
+            }
+        }
+    }
+
+    @Test
+    public void testDelta_TransfersOnlyChangedRows() throws Exception
+    {
+        final Table<Columns> source = Table.<Columns>create(Columns.class, 64);
+        final long[] identifiers = new long[5000];
+        for (int index = 0; index < identifiers.length; index++)
+        {
+            identifiers[index] = source.insertRow(new Object[] {"name" + index % 40, index % 9 == 0 ? null : (long) index, index * 0.5});
+        }
+        final Path base = Files.createTempFile("base", ".mart");
+        final Path replicated = Files.createTempFile("replica", ".mart");
+        try
+        {
+            source.writeTo(base);
+            final Table<Columns> before = Table.open(Columns.class, base);
+
+            final long inserted = source.insertRow(new Object[] {"new", 1L, 1.0});
+            source.deleteRow(identifiers[10]);
+            source.deleteRow(identifiers[4000]);
+            source.updateRow(identifiers[20], new Object[] {"changed", 2L, 2.0});
+            source.updateRow(identifiers[2500], new Object[] {"name0", null, 0.0});
+            final ByteArrayOutputStream small = new ByteArrayOutputStream();
+            final TableDiff diff = source.writeDelta(before, small);
+            assertArrayEquals(new long[] {inserted}, diff.getInserted());
+            final long[] updated = {identifiers[20], identifiers[2500]};
+            Arrays.sort(updated);
+            assertArrayEquals(updated, diff.getUpdated());
+            final long[] deleted = {identifiers[10], identifiers[4000]};
+            Arrays.sort(deleted);
+            assertArrayEquals(deleted, diff.getDeleted());
+            assertEquals(diff.getBlockCount() - 4, diff.getUnchangedBlockCount());
+
+            // Ten times the churn costs about ten times the bytes, and far less than the whole table.
+            for (int index = 100; index < 1000; index += 10)
+            {
+                source.updateRow(identifiers[index], new Object[] {"changed" + index, (long) -index, 0.0});
+            }
+            final ByteArrayOutputStream large = new ByteArrayOutputStream();
+            assertEquals(92, source.writeDelta(before, large).getUpdated().length);
+            assertTrue(large.size() > 10 * small.size());
+            assertTrue(large.size() * 20 < Files.size(base));
+
+            final Process replica = new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                                                       "-cp",
+                                                       System.getProperty("java.class.path"),
+                                                       Replica.class.getName(),
+                                                       base.toString(),
+                                                       replicated.toString()).redirectErrorStream(true).start();
+            try (final OutputStream input = replica.getOutputStream())
+            {
+                input.write(large.toByteArray());
+            }
+            final String output = new String(ByteStreams.toByteArray(replica.getInputStream()), StandardCharsets.UTF_8);
+            assertEquals(output, 0, replica.waitFor());
+
+            final Table<Columns> copy = Table.open(Columns.class, replicated);
+            assertEquals(source.getRowCount(), copy.getRowCount());
+            assertTrue(source.writeDelta(copy, new ByteArrayOutputStream()).isEmpty());
+            assertEquals("changed500", copy.getRow(identifiers[500]).getColumnValue(Columns.TEST1));
+            assertEquals(null, copy.getRow(identifiers[4000]));
+        }
+        finally
+        {
+            Files.deleteIfExists(base);
+            Files.deleteIfExists(replicated);
+        }
+    }
+
+    @Test
+    public void testDelta_RejectedDeltaChangesNothing() throws Exception
+    {
+        final Table<Columns> source = Table.<Columns>create(Columns.class, 64);
+        final Table<Columns> replica = Table.<Columns>create(Columns.class, 64);
+        final long[] identifiers = new long[1000];
+        for (int index = 0; index < identifiers.length; index++)
+        {
+            final Object[] row = {"name" + index % 40, (long) index, index * 0.5};
+            identifiers[index] = source.insertRow(row);
+            assertEquals(identifiers[index], replica.insertRow(row.clone()));
+        }
+        for (int index = 0; index < 500; index++)
+        {
+            source.insertRow(new Object[] {"new" + index, (long) -index, 0.0});
+        }
+        source.deleteRow(identifiers[10]);
+        final ByteArrayOutputStream delta = new ByteArrayOutputStream();
+        source.writeDelta(replica, delta);
+
+        replica.setMemoryBudget(replica.memoryStats().getTotalBytes() + 1024, OverflowPolicy.REJECT);
+        try
+        {
+            replica.applyDelta(new ByteArrayInputStream(delta.toByteArray()));
+            fail("The budget must reject the delta.");
+        }
+        catch (final MemoryBudgetExceededException e)
+        {
+            assertEquals(identifiers.length, replica.getRowCount());
+            assertNotNull(replica.getRow(identifiers[10]));
+        }
+
+        replica.setMemoryBudget(Long.MAX_VALUE, OverflowPolicy.REJECT);
+        replica.applyDelta(new ByteArrayInputStream(delta.toByteArray()));
+        assertEquals(source.getRowCount(), replica.getRowCount());
+        assertTrue(source.writeDelta(replica, new ByteArrayOutputStream()).isEmpty());
+    }
+
+    @Test
+    public void testSnapshot_ReadsConsistentlyDuringIngest() throws Exception
+    {
+        final Table<Columns> table = Table.<Columns>create(Columns.class, 64);
+        final long[] accounts = new long[1000];
+        for (int index = 0; index < accounts.length; index++)
+        {
+            accounts[index] = table.insertRow(new Object[] {"account" + index % 10, (long) index, 100.0});
+        }
+
+        // Transfers keep the total balance, and both sides of a transfer are updated under the monitor of the table.
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicLong transfers = new AtomicLong();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Thread ingest = new Thread(() -> {
+            final Random random = new Random(11);
+            try
+            {
+                while (!done.get())
+                {
+                    synchronized (table)
+                    {
+                        final Table<Columns>.Row from = table.getRow(accounts[random.nextInt(accounts.length)]);
+                        final Table<Columns>.Row to = table.getRow(accounts[random.nextInt(accounts.length)]);
+                        final double amount = random.nextInt(10);
+                        from.setColumnValue(Columns.TEST3, from.<Double>getColumnValue(Columns.TEST3) - amount);
+                        to.setColumnValue(Columns.TEST3, to.<Double>getColumnValue(Columns.TEST3) + amount);
+                        table.deleteRow(table.insertRow(new Object[] {"pending", null, 0.0}));
+                    }
+                    transfers.incrementAndGet();
+                }
+            }
+            catch (final Throwable e)
+            {
+                failure.set(e);
+            }
+        });
+        ingest.start();
+        try
+        {
+            for (int round = 0; round < 100 && failure.get() == null; round++)
+            {
+                try (final TableSnapshot<Columns> snapshot = table.snapshot())
+                {
+                    final Object[] first = snapshot.getRowValues(accounts[0]);
+                    for (int pass = 0; pass < 2; pass++)
+                    {
+                        double total = 0.0;
+                        int rowCount = 0;
+                        final TableStorage.Cursor cursor = snapshot.cursor();
+                        while (cursor.next())
+                        {
+                            total += (Double) cursor.getValue(Columns.TEST3.ordinal());
+                            rowCount++;
+                        }
+                        assertEquals(snapshot.getRowCount(), rowCount);
+                        assertEquals(accounts.length, snapshot.getReferenceIdentifiers().length);
+                        assertEquals(100.0 * accounts.length, total, 0.0);
+                        Thread.sleep(1);
+                    }
+                    assertArrayEquals(first, snapshot.getRowValues(accounts[0]));
+                    assertEquals(first[2], snapshot.getColumnValue(accounts[0], Columns.TEST3));
+                }
+            }
+        }
+        finally
+        {
+            done.set(true);
+            ingest.join();
+        }
+        assertEquals(null, failure.get());
+        assertTrue(transfers.get() > 0);
+        assertEquals(0, table.storage.getOpenSnapshotCount());
+    }
+
+    @Test
+    public void testReferenceLeasing_AllocatesDisjointIdentifiersAcrossProcesses() throws Exception
+    {
+        final Path leaseFile = Files.createTempFile("references", ".lease");
+        try
+        {
+            final List<Process> writers = new ArrayList<>();
+            for (int writer = 0; writer < 2; writer++)
+            {
+                writers.add(new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                                               "-cp",
+                                               System.getProperty("java.class.path"),
+                                               LeasingWriter.class.getName(),
+                                               leaseFile.toString(),
+                                               "500").redirectErrorStream(true).start());
+            }
+            final Table<Columns> table = Table.<Columns>create(Columns.class, 64);
+            table.enableReferenceLeasing(leaseFile, 64);
+            final Set<Long> identifiers = new HashSet<>();
+            for (int index = 0; index < 500; index++)
+            {
+                assertTrue(identifiers.add(table.insertRow(new Object[] {"parent", (long) index, 0.0})));
+            }
+            for (final Process writer : writers)
+            {
+                final String output = new String(ByteStreams.toByteArray(writer.getInputStream()), StandardCharsets.UTF_8);
+                assertEquals(output, 0, writer.waitFor());
+                for (final String line : output.trim().split("\\s+"))
+                {
+                    assertTrue("Identifier " + line + " was allocated twice.", identifiers.add(Long.parseLong(line)));
+                }
+            }
+            assertEquals(1500, identifiers.size());
+
+            // A deleted identifier of the current range is reused before another range is leased.
+            final long deleted = table.insertRow(new Object[] {"deleted", 0L, 0.0});
+            table.deleteRow(deleted);
+            boolean deletedReused = false;
+            for (int index = 0; index < 64; index++)
+            {
+                final long identifier = table.insertRow(new Object[] {"reused", 0L, 0.0});
+                deletedReused |= identifier == deleted;
+                assertTrue(identifier == deleted || identifiers.add(identifier));
+            }
+            assertTrue(deletedReused);
+            table.close();
+
+            // The unused part of a range is returned on close, and leased again before the identifiers never leased.
+            Files.delete(leaseFile);
+            final Table<Columns> first = Table.<Columns>create(Columns.class, 64);
+            first.enableReferenceLeasing(leaseFile, 64);
+            final long firstIdentifier = first.insertRow(new Object[] {"first", 0L, 0.0});
+            final Table<Columns> second = Table.<Columns>create(Columns.class, 64);
+            second.enableReferenceLeasing(leaseFile, 64);
+            assertTrue(second.insertRow(new Object[] {"second", 0L, 0.0}) >= firstIdentifier + 63);
+            first.close();
+            final Table<Columns> third = Table.<Columns>create(Columns.class, 64);
+            third.enableReferenceLeasing(leaseFile, 64);
+            final long reused = third.insertRow(new Object[] {"third", 0L, 0.0});
+            assertTrue(reused != firstIdentifier && Math.abs(reused - firstIdentifier) < 64);
+            second.close();
+            third.close();
+        }
+        finally
+        {
+            Files.deleteIfExists(leaseFile);
+        }
+    }
+
+    @Test
+    public void testClose_ReleasesStorageWhenLeaseCannotBeReturned() throws Exception
+    {
+        final Path leaseFile = Files.createTempFile("references", ".lease");
+        try
+        {
+            final Table<Columns> table = Table.<Columns>createOffHeap(Columns.class, 64, 1 << 20);
+            table.enableReferenceLeasing(leaseFile, 64);
+            table.insertRow(new Object[] {"leased", 0L, 0.0});
+            try (final FileChannel channel = FileChannel.open(leaseFile, StandardOpenOption.WRITE); final FileLock lock = channel.lock())
+            {
+                table.close();
+                fail("The lease file must be locked.");
+            }
+            catch (final OverlappingFileLockException e)
+            {
+                assertTrue(table.getOffHeapAllocator().isClosed());
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(leaseFile);
+        }
+    }
+
+    /**
+     * The replica of {@link #testDelta_TransfersOnlyChangedRows()}, run in its own process: it opens the earlier version, applies the delta read
+     * from its standard input, and writes the result.
+     */
+    public static final class Replica
+    {
+        public static void main(final String[] args) throws Exception
+        {
+            final Table<Columns> table = Table.open(Columns.class, Paths.get(args[0]));
+            table.applyDelta(System.in);
+            table.writeTo(Paths.get(args[1]));
+        }
+    }
+
+    /**
+     * A writer of {@link #testReferenceLeasing_AllocatesDisjointIdentifiersAcrossProcesses()}, run in its own process: it inserts rows under
+     * identifiers leased from the lease file, prints the identifiers, and returns the unused ones by closing the table.
+     */
+    public static final class LeasingWriter
+    {
+        public static void main(final String[] args) throws Exception
+        {
+            final Table<Columns> table = Table.<Columns>create(Columns.class, 64);
+            table.enableReferenceLeasing(Paths.get(args[0]), 64);
+            final StringBuilder identifiers = new StringBuilder();
+            for (int index = 0; index < Integer.parseInt(args[1]); index++)
+            {
+                identifiers.append(table.insertRow(new Object[] {"writer", (long) index, 0.0})).append('\n');
+            }
+            table.close();
+            System.out.print(identifiers);
+        }
+    }
 }
@@ -0,0 +1,120 @@
+package eli.ikea.mart;
+
+import java.util.Random;
+
+import eli.ikea.mart.storage.TableStorage;
+import eli.veritas.exception.AssertionException;
+
+/**
+ * Measures how many storage blocks the zone maps allow a range scan to skip, over a table loaded in timestamp order. This is not a unit test; run it
+ * directly with a heap large enough for the requested row count (roughly 8 GB for the default 50 million rows), for example:
+ *
+ * <pre>
+ * java -Xmx8g -cp ... eli.ikea.mart.ZoneMapBenchmark [rowCount] [queryCount]
+ * </pre>
+ *
+ * @author The Architect
+ */
+public class ZoneMapBenchmark
+{
+    public static enum Columns implements IHeaderColumn
+    {
+        TIMESTAMP("Timestamp", Long.class, false),
+        VALUE("Value", Double.class, true);
+
+        private final String   name;
+        private final Class<?> dataType;
+        private final boolean  nullable;
+
+        private Columns(final String name, final Class<?> dataType, final boolean nullable)
+        {
+            this.name = name;
+            this.dataType = dataType;
+            this.nullable = nullable;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public Class<?> getDataType()
+        {
+            return dataType;
+        }
+
+        public boolean isNullable()
+        {
+            return nullable;
+        }
+    }
+
+    public static void main(final String[] args) throws AssertionException
+    {
+        final int rowCount = args.length > 0 ? Integer.parseInt(args[0]) : 50_000_000;
+        final int queryCount = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        final Random random = new Random(2017);
+
+        final Table<Columns> table = Table.create(Columns.class);
+        long loadNanos = System.nanoTime();
+        long timestamp = 1_500_000_000_000L;
+        for (int row = 0; row < rowCount; row++)
+        {
+            timestamp += random.nextInt(20);
+            table.insertRow(new Object[] {timestamp, random.nextDouble()});
+        }
+        loadNanos = System.nanoTime() - loadNanos;
+        final long firstTimestamp = 1_500_000_000_000L;
+        final long span = timestamp - firstTimestamp;
+        System.out.printf("Loaded %,d rows into %,d blocks in %.1f s%n", rowCount, table.storage.getBlockCount(), loadNanos / 1e9);
+
+        for (final double selectivity : new double[] {0.0001, 0.001, 0.01, 0.1})
+        {
+            long prunedNanos = 0;
+            long fullNanos = 0;
+            long blocksScanned = 0;
+            long blocksSkipped = 0;
+            long matches = 0;
+            for (int query = 0; query < queryCount; query++)
+            {
+                final long low = firstTimestamp + (long) (random.nextDouble() * span * (1.0 - selectivity));
+                final long high = low + (long) (span * selectivity);
+
+                long start = System.nanoTime();
+                final TableStorage.Cursor pruned = table.storage.cursor(Columns.TIMESTAMP.ordinal(), low, high);
+                matches += count(pruned, low, high);
+                prunedNanos += System.nanoTime() - start;
+                blocksScanned += pruned.getBlocksScanned();
+                blocksSkipped += pruned.getBlocksSkipped();
+
+                start = System.nanoTime();
+                count(table.storage.cursor(), low, high);
+                fullNanos += System.nanoTime() - start;
+            }
+
+            System.out.printf("selectivity=%7.4f%% matches/query=%,12d pruned=%6.2f%% blocks/query=%,9d scan=%8.2f ms full-scan=%8.2f ms%n",
+                              selectivity * 100,
+                              matches / queryCount,
+                              100.0 * blocksSkipped / (blocksScanned + blocksSkipped),
+                              blocksScanned / queryCount,
+                              prunedNanos / 1e6 / queryCount,
+                              fullNanos / 1e6 / queryCount);
+        }
+    }
+
+    private static long count(final TableStorage.Cursor cursor, final long low, final long high)
+    {
+        final int column = Columns.TIMESTAMP.ordinal();
+        long matches = 0;
+        while (cursor.next())
+        {
+            final long value = (Long) cursor.getValue(column);
+            if (value >= low && value <= high)
+            {
+                matches++;
+            }
+        }
+
+        return matches;
+    }
+}
@@ -0,0 +1,87 @@
+package eli.ikea.mart.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import eli.veritas.exception.AssertionException;
+
+/**
+ * TODO Functional Description
+ *
+ * @author The Architect
+ */
+public class SketchTest
+{
+    @Test
+    public void testHyperLogLog_Estimate() throws AssertionException
+    {
+        final HyperLogLog sketch = HyperLogLog.create(14);
+        for (long value = 0; value < 1_000_000; value++)
+        {
+            sketch.offer(value % 250_000);
+        }
+
+        assertEquals(250_000, sketch.estimate(), 250_000 * 0.03);
+    }
+
+    @Test
+    public void testHyperLogLog_MergePartitions() throws AssertionException
+    {
+        final HyperLogLog first = HyperLogLog.create(12);
+        final HyperLogLog second = HyperLogLog.create(12);
+        for (int value = 0; value < 60_000; value++)
+        {
+            first.offer("customer" + value);
+            second.offer("customer" + (value + 30_000));
+        }
+
+        final HyperLogLog merged = first.copy();
+        merged.merge(second);
+        assertEquals(90_000, merged.estimate(), 90_000 * 0.05);
+        assertEquals(60_000, first.estimate(), 60_000 * 0.05);
+    }
+
+    @Test
+    public void testQuantileSketch_RelativeAccuracy() throws AssertionException
+    {
+        final QuantileSketch sketch = QuantileSketch.create(0.01);
+        final Random random = new Random(42);
+        final double[] latencies = new double[100_000];
+        for (int index = 0; index < latencies.length; index++)
+        {
+            latencies[index] = Math.exp(random.nextGaussian() * 2.0 + 3.0);
+            sketch.offer(latencies[index]);
+        }
+        java.util.Arrays.sort(latencies);
+
+        for (final double quantile : new double[] {0.5, 0.9, 0.99, 0.999})
+        {
+            final double expected = latencies[(int) (quantile * (latencies.length - 1))];
+            assertEquals(expected, sketch.estimateQuantile(quantile), expected * 0.01);
+        }
+    }
+
+    @Test
+    public void testQuantileSketch_MergeMixedSigns() throws AssertionException
+    {
+        final QuantileSketch negative = QuantileSketch.create(0.02);
+        final QuantileSketch positive = QuantileSketch.create(0.02);
+        for (int value = 1; value <= 1000; value++)
+        {
+            negative.offer(-value);
+            positive.offer(value);
+        }
+        positive.offer(0.0);
+
+        final QuantileSketch merged = negative.copy();
+        merged.merge(positive);
+        assertEquals(2001, merged.getCount());
+        assertEquals(0.0, merged.estimateQuantile(0.5), 0.0);
+        assertEquals(-1000.0, merged.estimateQuantile(0.0), 0.0);
+        assertTrue(Math.abs(merged.estimateQuantile(0.25) + 500.0) <= 500.0 * 0.02 + 1);
+    }
+}
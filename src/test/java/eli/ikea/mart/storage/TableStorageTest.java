@@ -0,0 +1,710 @@
+package eli.ikea.mart.storage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Deflater;
+
+import org.junit.Test;
+
+import eli.veritas.exception.AssertionException;
+
+/**
+ * TODO Functional Description
+ *
+ * @author The Architect
+ */
+public class TableStorageTest
+{
+    @Test
+    public void testLocationMap_MatchesHashMap()
+    {
+        final LocationMap locations = new LocationMap(4);
+        final Map<Long, Long> expected = new HashMap<>();
+        final Random random = new Random(7);
+        for (int operation = 0; operation < 200_000; operation++)
+        {
+            final long key = random.nextInt(5000);
+            if (random.nextInt(3) == 0)
+            {
+                assertEquals(expected.remove(key) != null, locations.remove(key));
+            }
+            else
+            {
+                locations.put(key, operation);
+                expected.put(key, (long) operation);
+            }
+        }
+
+        assertEquals(expected.size(), locations.size());
+        for (long key = 0; key < 5000; key++)
+        {
+            assertEquals(expected.getOrDefault(key, LocationMap.MISSING).longValue(), locations.get(key));
+        }
+    }
+
+    @Test
+    public void testCursor_SkipsBlocksOutsideRange()
+    {
+        final TableStorage storage = new TableStorage(2, 100);
+        for (long timestamp = 0; timestamp < 10_000; timestamp++)
+        {
+            storage.insert(timestamp + 1, new Object[] {timestamp, timestamp % 7 == 0 ? null : "v"});
+        }
+
+        assertEquals(100, storage.getBlockCount());
+        assertEquals(3, storage.countCandidateBlocks(0, 250L, 450L));
+
+        final TableStorage.Cursor cursor = storage.cursor(0, 250L, 450L);
+        int matches = 0;
+        while (cursor.next())
+        {
+            final long timestamp = (Long) cursor.getValue(0);
+            matches += timestamp >= 250L && timestamp <= 450L ? 1 : 0;
+        }
+        assertEquals(201, matches);
+        assertEquals(3, cursor.getBlocksScanned());
+        assertEquals(97, cursor.getBlocksSkipped());
+
+        final ZoneMap zoneMap = storage.getBlock(0).getZoneMap(1);
+        assertEquals(15, zoneMap.getNullCount());
+        assertEquals(85, zoneMap.getValueCount());
+        assertTrue(zoneMap.mayContain("v", "v"));
+        assertFalse(zoneMap.mayContain("w", null));
+    }
+
+    @Test
+    public void testBloomFilter_PrunesEqualityScans() throws AssertionException
+    {
+        final BloomFilter filter = BloomFilter.create(10_000, 0.01);
+        for (long value = 0; value < 10_000; value++)
+        {
+            filter.put(value);
+        }
+        int falsePositives = 0;
+        for (long value = 10_000; value < 110_000; value++)
+        {
+            falsePositives += filter.mightContain(value) ? 1 : 0;
+        }
+        for (long value = 0; value < 10_000; value++)
+        {
+            assertTrue(filter.mightContain(value));
+        }
+        assertTrue(falsePositives < 1500);
+
+        final TableStorage storage = new TableStorage(1, 100);
+        for (long index = 0; index < 10_000; index++)
+        {
+            storage.insert(index + 1, new Object[] {"k" + index % 5000});
+        }
+        storage.enableBloomFilters(0, 0.01);
+        assertTrue(storage.hasBloomFilters(0));
+        assertEquals(100, storage.countCandidateBlocks(0, "k", "l"));
+        assertTrue(storage.countCandidateBlocks(0, "k42", "k42") <= 5);
+    }
+
+    @Test
+    public void testAutoEncoding_FallsBackPastDictionaryLimit()
+    {
+        final TableStorage storage = new TableStorage(1, 1000);
+        storage.setColumnEncoding(0, ColumnEncoding.AUTO);
+        for (long index = 0; index < 10_000; index++)
+        {
+            storage.insert(index + 1, new Object[] {"v" + index});
+        }
+
+        assertTrue(storage.getBlock(0).getColumn(0) instanceof DictionaryColumnVector);
+        assertTrue(storage.getBlock(9).getColumn(0) instanceof ObjectColumnVector);
+        assertEquals(null, storage.getDictionary(0));
+        assertEquals("v9999", storage.read(storage.locate(10_000), 0));
+
+        storage.setColumnEncoding(0, ColumnEncoding.DICTIONARY);
+        assertEquals(10_000, storage.getDictionary(0).size());
+        assertEquals("v4321", storage.read(storage.locate(4322), 0));
+    }
+
+    @Test
+    public void testOffHeap_VectorsAndBudget() throws AssertionException
+    {
+        final SlabAllocator allocator = SlabAllocator.create(4096);
+        final OffHeapColumnVector longs = new OffHeapColumnVector(FixedWidthType.LONG, 100, allocator);
+        final OffHeapColumnVector booleans = new OffHeapColumnVector(FixedWidthType.BOOLEAN, 100, allocator);
+        for (int slot = 0; slot < 100; slot++)
+        {
+            longs.set(slot, slot % 9 == 0 ? null : Long.MIN_VALUE + slot);
+            booleans.set(slot, slot % 9 == 0 ? null : slot % 2 == 0);
+        }
+        for (int slot = 0; slot < 100; slot++)
+        {
+            assertEquals(slot % 9 == 0, longs.isNull(slot));
+            assertEquals(slot % 9 == 0 ? null : Long.MIN_VALUE + slot, longs.get(slot));
+            assertEquals(slot % 9 == 0 ? null : slot % 2 == 0, booleans.get(slot));
+        }
+        assertEquals(4096, allocator.getAllocatedBytes());
+
+        try
+        {
+            allocator.allocate(4096);
+            fail("The region must not exceed the budget.");
+        }
+        catch (final IllegalStateException e)
+        {
+            assertEquals(4096, allocator.getAllocatedBytes());
+        }
+    }
+
+    @Test
+    public void testBitsets_SelectBooleanAndNonNullWords()
+    {
+        final TableStorage storage = new TableStorage(new Class<?>[] {Boolean.class, Long.class}, 100, null);
+        int trueCount = 0;
+        int nonNullCount = 0;
+        for (int index = 0; index < 1000; index++)
+        {
+            final Boolean flag = index % 3 == 0 ? null : index % 4 == 0;
+            final Long value = index % 7 == 0 ? null : (long) index;
+            storage.insert(index + 1, new Object[] {flag, value});
+            trueCount += Boolean.TRUE.equals(flag) ? 1 : 0;
+            nonNullCount += value != null ? 1 : 0;
+        }
+
+        assertTrue(storage.getBlock(0).getColumn(0) instanceof BooleanColumnVector);
+        assertTrue(storage.getBlock(0).getColumn(1) instanceof PrimitiveColumnVector);
+        final long[] trueRows = storage.selectBoolean(0, true);
+        assertEquals(trueCount, trueRows.length);
+        for (final long referenceIdentifier : trueRows)
+        {
+            assertEquals(Boolean.TRUE, storage.read(storage.locate(referenceIdentifier), 0));
+        }
+        assertEquals(1000 - 334 - trueCount, storage.selectBoolean(0, false).length);
+        assertEquals(nonNullCount, storage.selectNonNull(1).length);
+        assertEquals(Long.valueOf(998L), storage.read(storage.locate(999), 1));
+        assertEquals(null, storage.read(storage.locate(995), 1));
+    }
+
+    @Test
+    public void testPacked_SealedBlocksRoundTrip()
+    {
+        final TableStorage storage = new TableStorage(new Class<?>[] {Long.class, Long.class, Integer.class}, 1000, null);
+        storage.setColumnEncoding(0, ColumnEncoding.PACKED);
+        storage.setColumnEncoding(1, ColumnEncoding.PACKED);
+        storage.setColumnEncoding(2, ColumnEncoding.PACKED);
+        final Random random = new Random(7);
+        final Object[][] rows = new Object[2500][];
+        long timestamp = 1_600_000_000_000L;
+        for (int index = 0; index < rows.length; index++)
+        {
+            timestamp += random.nextInt(1000);
+            rows[index] = new Object[] {timestamp, index % 11 == 0 ? null : random.nextLong() >> 40, -500 + random.nextInt(1000)};
+            storage.insert(index + 1, rows[index]);
+        }
+
+        final PackedLongColumnVector timestamps = (PackedLongColumnVector) storage.getBlock(0).getColumn(0);
+        assertTrue(timestamps.isDeltaEncoded());
+        assertEquals(10, timestamps.getBitWidth());
+        assertFalse(((PackedLongColumnVector) storage.getBlock(1).getColumn(1)).isDeltaEncoded());
+        assertTrue(storage.getBlock(1).getColumn(2) instanceof PackedLongColumnVector);
+        assertTrue(storage.getBlock(2).getColumn(0) instanceof PrimitiveColumnVector);
+
+        for (int index = rows.length - 1; index >= 0; index -= 3)
+        {
+            for (int column = 0; column < 3; column++)
+            {
+                assertEquals(rows[index][column], storage.read(storage.locate(index + 1), column));
+            }
+        }
+        final TableStorage.Cursor cursor = storage.cursor();
+        int index = 0;
+        while (cursor.next())
+        {
+            assertEquals(rows[index][0], cursor.getValue(0));
+            assertEquals(rows[index][1] != null, cursor.isEqual(1, rows[index][1] == null ? 0L : rows[index][1]));
+            index++;
+        }
+
+        storage.write(storage.locate(5), 0, 42L);
+        assertTrue(storage.getBlock(0).getColumn(0) instanceof PrimitiveColumnVector);
+        assertEquals(42L, storage.read(storage.locate(5), 0));
+        assertEquals(rows[5][0], storage.read(storage.locate(6), 0));
+
+        storage.setColumnEncoding(1, ColumnEncoding.PLAIN);
+        assertTrue(storage.getBlock(1).getColumn(1) instanceof PrimitiveColumnVector);
+        assertEquals(rows[1500][1], storage.read(storage.locate(1501), 1));
+    }
+
+    @Test
+    public void testTombstones_CursorsSkipDeletedRows()
+    {
+        final TableStorage storage = new TableStorage(new Class<?>[] {Boolean.class, Long.class}, 100, null);
+        for (int index = 0; index < 1000; index++)
+        {
+            storage.insert(index + 1, new Object[] {index % 2 == 0, (long) index});
+        }
+
+        assertTrue(storage.delete(1));
+        assertFalse(storage.delete(1));
+        assertFalse(storage.contains(1));
+        final long[] blockLocations = new long[100];
+        for (int slot = 0; slot < 100; slot++)
+        {
+            blockLocations[slot] = TableStorage.toLocation(3, slot);
+        }
+        assertEquals(100, storage.deleteAll(blockLocations));
+        assertEquals(899, storage.size());
+        assertEquals(0, storage.getBlock(3).getLiveCount());
+
+        final long[] evenLocations = new long[450];
+        int evenCount = 0;
+        final TableStorage.Cursor evenCursor = storage.cursor();
+        while (evenCursor.next())
+        {
+            if ((Long) evenCursor.getValue(1) % 2 == 0)
+            {
+                evenLocations[evenCount++] = evenCursor.getLocation();
+            }
+        }
+        assertEquals(449, evenCount);
+        assertEquals(449, storage.deleteAll(Arrays.copyOf(evenLocations, evenCount)));
+        assertEquals(450, storage.size());
+
+        int visited = 0;
+        final TableStorage.Cursor cursor = storage.cursor();
+        while (cursor.next())
+        {
+            final long value = (Long) cursor.getValue(1);
+            assertTrue(value % 2 == 1 && (value < 300 || value >= 400));
+            assertEquals(value + 1, cursor.getReferenceIdentifier());
+            assertEquals(cursor.getLocation(), storage.locate(cursor.getReferenceIdentifier()));
+            visited++;
+        }
+        assertEquals(450, visited);
+        assertEquals(0, storage.selectBoolean(0, true).length);
+        assertEquals(450, storage.selectNonNull(1).length);
+    }
+
+    @Test
+    public void testCompactBlock_RewritesDenseBlocks() throws AssertionException
+    {
+        try (final SlabAllocator allocator = SlabAllocator.create(1 << 20))
+        {
+            final TableStorage storage = new TableStorage(new Class<?>[] {Long.class, String.class}, 100, allocator);
+            storage.enableBloomFilters(1, 0.01);
+            for (int index = 0; index < 250; index++)
+            {
+                storage.insert(index + 1, new Object[] {(long) index, "v" + index});
+            }
+            for (int index = 0; index < 250; index += 3)
+            {
+                storage.delete(index + 1);
+            }
+            final long usedBytes = allocator.getUsedBytes();
+
+            assertEquals(0, storage.compactBlock(2));
+            assertEquals(34, storage.compactBlock(0));
+            assertEquals(0, storage.compactBlock(0));
+            assertEquals(33, storage.compactBlock(1));
+            assertEquals(66, storage.getBlock(0).getCapacity());
+            assertEquals(67, storage.getBlock(1).getLiveCount());
+            assertEquals(17, storage.getDeletedCount());
+            assertEquals(usedBytes, allocator.getUsedBytes());
+            assertEquals(1, storage.countCandidateBlocks(1, "v4", "v4"));
+
+            for (int index = 0; index < 250; index++)
+            {
+                final long location = storage.locate(index + 1);
+                assertEquals(index % 3 != 0, location != LocationMap.MISSING);
+                if (location != LocationMap.MISSING)
+                {
+                    assertEquals(Long.valueOf(index), storage.read(location, 0));
+                    assertEquals("v" + index, storage.read(location, 1));
+                }
+            }
+            storage.insert(1000, new Object[] {-1L, "new"});
+            assertEquals(Long.valueOf(-1L), storage.read(storage.locate(1000), 0));
+        }
+    }
+
+    @Test
+    public void testTimingWheel_FiresDueEntriesOnce()
+    {
+        final TimingWheel wheel = new TimingWheel(8, 10);
+        for (int identifier = 1; identifier <= 100; identifier++)
+        {
+            wheel.schedule(identifier, identifier * 7);
+        }
+        wheel.schedule(1000, 5000);
+        assertEquals(101, wheel.size());
+
+        assertEquals(0, wheel.advance(6).length);
+        final long[] early = wheel.advance(70);
+        assertEquals(10, early.length);
+        for (int index = 0; index < early.length; index++)
+        {
+            assertEquals(index + 1, early[index]);
+        }
+        wheel.schedule(2000, 0);
+        assertEquals(0, wheel.advance(79).length);
+        assertArrayEquals(new long[] {11, 2000}, wheel.advance(80));
+
+        final long[] late = wheel.advance(700);
+        assertEquals(89, late.length);
+        assertEquals(1, wheel.size());
+        assertEquals(0, wheel.advance(4999).length);
+        assertArrayEquals(new long[] {1000}, wheel.advance(100_000));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testRowCodec_RoundTripsEveryDataType()
+    {
+        final Class<?>[] dataTypes = {Long.class, Integer.class, Short.class, Byte.class, Date.class, Character.class, Double.class, Float.class,
+                                      Boolean.class, String.class, BigDecimal.class};
+        final RowCodec encoder = new RowCodec(dataTypes, 2);
+        final RowCodec decoder = new RowCodec(dataTypes, 2);
+        final Object[][] rows = {
+            {Long.MIN_VALUE, -1, (short) -300, (byte) 7, new Date(1_500_000_000_000L), 'x', -0.5, 1.5f, true, "alpha", new BigDecimal("1.25")},
+            {-1L, Integer.MAX_VALUE, null, null, null, '\u20AC', null, null, false, "b\u00E9ta \uD83D\uDE00", null},
+            {null, null, null, null, null, null, null, null, null, "alpha", null},
+            {0L, 0, (short) 0, (byte) 0, new Date(0L), 'y', 0.0, 0.0f, null, "gamma", null},
+            {1L, 1, (short) 1, (byte) 1, new Date(1L), 'z', 1.0, 1.0f, true, "gamma", null}};
+
+        final ByteBuffer buffer = ByteBuffer.allocate(1024);
+        for (final Object[] row : rows)
+        {
+            encoder.encode(row, buffer);
+        }
+        final int encodedBytes = buffer.position();
+
+        // A row that does not fit leaves the buffer and the dictionaries as they were.
+        final ByteBuffer small = ByteBuffer.allocate(4);
+        try
+        {
+            encoder.encode(new Object[] {1L, 1, null, null, null, null, null, null, null, "delta", null}, small);
+            fail("The row must not fit.");
+        }
+        catch (final BufferOverflowException e)
+        {
+            assertEquals(0, small.position());
+        }
+        encoder.encode(new Object[] {null, null, null, null, null, null, null, null, null, "delta", null}, buffer);
+        encoder.encode(new Object[] {null, null, null, null, null, null, null, null, null, "alpha", null}, buffer);
+
+        buffer.flip();
+        final Object[] decoded = new Object[dataTypes.length];
+        String first = null;
+        for (final Object[] row : rows)
+        {
+            decoder.decode(buffer, decoded);
+            assertArrayEquals(row, decoded);
+            first = first == null ? (String) decoded[9] : first;
+        }
+        assertEquals(encodedBytes, buffer.position());
+        decoder.decode(buffer, decoded);
+        assertEquals("delta", decoded[9]);
+        // Repeated strings refer to the instance decoded first.
+        decoder.decode(buffer, decoded);
+        assertSame(first, decoded[9]);
+        assertFalse(buffer.hasRemaining());
+
+        // A truncated row restores the position of the buffer.
+        final ByteBuffer truncated = ByteBuffer.allocate(1024);
+        new RowCodec(dataTypes, 0).encode(rows[0], truncated);
+        truncated.flip().limit(truncated.limit() - 1);
+        try
+        {
+            new RowCodec(dataTypes, 0).decode(truncated, decoded);
+            fail("The row must be incomplete.");
+        }
+        catch (final BufferUnderflowException e)
+        {
+            assertEquals(0, truncated.position());
+        }
+    }
+
+    @Test
+    public void testRowCodec_DecodesIntoReusedRow()
+    {
+        final Class<?>[] dataTypes = {Long.class, Double.class, String.class, Float.class};
+        final RowCodec encoder = new RowCodec(dataTypes, 4);
+        final RowCodec decoder = new RowCodec(dataTypes, 4);
+        final ByteBuffer buffer = ByteBuffer.allocate(256);
+        encoder.encode(new Object[] {1_000_000L, 0.1, "alpha", 1.5f}, buffer);
+        encoder.encode(new Object[] {1_000_000L, 0.1, "alpha", 1.5f}, buffer);
+        encoder.encode(new Object[] {2_000_000L, null, "beta", null}, buffer);
+        buffer.flip();
+
+        final Object[] first = decoder.decode(buffer);
+        final Object firstLong = first[0];
+        final Object firstDouble = first[1];
+        assertArrayEquals(new Object[] {1_000_000L, 0.1, "alpha", 1.5f}, first);
+
+        // The array of the codec is reused, and so are the boxed values that did not change.
+        final Object[] second = decoder.decode(buffer);
+        assertSame(first, second);
+        assertSame(firstLong, second[0]);
+        assertSame(firstDouble, second[1]);
+        assertArrayEquals(new Object[] {1_000_000L, 0.1, "alpha", 1.5f}, second);
+
+        assertArrayEquals(new Object[] {2_000_000L, null, "beta", null}, decoder.decode(buffer));
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void testColumnarFile_CompressesSelectedColumns() throws IOException, AssertionException
+    {
+        final Class<?>[] dataTypes = {Long.class, String.class, String.class, Double.class};
+        final TableStorage storage = new TableStorage(dataTypes, 256, null);
+        storage.setColumnEncoding(1, ColumnEncoding.DICTIONARY);
+        for (int index = 0; index < 1000; index++)
+        {
+            storage.insert(index + 1, new Object[] {index % 7 == 0 ? null : (long) index % 50, "level-" + index % 4,
+                                                    "request " + index % 10 + " served in " + index % 3 + " ms", index * 0.5});
+        }
+        final Path plainPath = Files.createTempFile("plain", ".mart");
+        final Path compressedPath = Files.createTempFile("compressed", ".mart");
+        try
+        {
+            ColumnarFile.write(storage, new byte[0], plainPath);
+            storage.setColumnCompression(0, CompressionCodecs.DEFLATE);
+            storage.setColumnCompression(1, CompressionCodecs.DEFLATE);
+            storage.setColumnCompression(2, new DeflateCodec(Deflater.BEST_SPEED));
+            ColumnarFile.write(storage, new byte[0], compressedPath);
+            assertTrue(Files.size(compressedPath) < Files.size(plainPath) / 2);
+
+            final TableStorage opened = ColumnarFile.open(compressedPath, dataTypes).getStorage();
+            assertSame(CompressionCodecs.DEFLATE, opened.getColumnCompression(1));
+            assertEquals(null, opened.getColumnCompression(3));
+            assertTrue(opened.getBlock(0).getColumn(2) instanceof CompressedColumnVector);
+            assertTrue(opened.getBlock(0).getColumn(3) instanceof OffHeapColumnVector);
+            for (int pass = 0; pass < 2; pass++)
+            {
+                for (int index = 0; index < 1000; index++)
+                {
+                    final long location = opened.locate(index + 1);
+                    for (int column = 0; column < dataTypes.length; column++)
+                    {
+                        assertEquals(storage.read(storage.locate(index + 1), column), opened.read(location, column));
+                    }
+                }
+            }
+            // Every compressed segment is decompressed once, however often it is read.
+            final int compressedSegments = 3 * opened.getBlockCount();
+            assertEquals(compressedSegments, opened.getSegmentCache().stats().missCount());
+            assertEquals(compressedSegments, opened.getSegmentCache().size());
+
+            opened.write(opened.locate(5), 2, "changed");
+            assertEquals("changed", opened.read(opened.locate(5), 2));
+            assertEquals("request 5 served in 2 ms", opened.read(opened.locate(6), 2));
+            assertTrue(opened.getBlock(0).getColumn(2) instanceof ObjectColumnVector);
+            // Decompressed segments are copied into a vector of the encoding of their column, rather than boxed.
+            opened.write(opened.locate(5), 0, 42L);
+            opened.write(opened.locate(5), 1, "level-9");
+            assertTrue(opened.getBlock(0).getColumn(0) instanceof PrimitiveColumnVector);
+            assertTrue(opened.getBlock(0).getColumn(1) instanceof DictionaryColumnVector);
+            assertEquals(42L, opened.read(opened.locate(5), 0));
+            assertEquals(null, opened.read(opened.locate(8), 0));
+            assertEquals("level-9", opened.read(opened.locate(5), 1));
+            assertEquals("level-3", opened.read(opened.locate(8), 1));
+
+            // Rewriting a compressed file keeps the dictionary codes of the decompressed segments.
+            ColumnarFile.write(opened, new byte[0], plainPath);
+            final TableStorage reopened = ColumnarFile.open(plainPath, dataTypes).getStorage();
+            assertEquals("level-1", reopened.read(reopened.locate(6), 1));
+            assertEquals("changed", reopened.read(reopened.locate(5), 2));
+            assertTrue(((CompressedColumnVector) reopened.getBlock(1).getColumn(1)).getSegment() instanceof DictionaryColumnVector);
+            assertEquals(3, reopened.getSegmentCache().stats().missCount());
+        }
+        finally
+        {
+            Files.deleteIfExists(plainPath);
+            Files.deleteIfExists(compressedPath);
+        }
+    }
+
+    @Test
+    public void testSnapshot_CopiesOnlyChangedBlocks()
+    {
+        final TableStorage storage = new TableStorage(new Class<?>[] {Long.class, String.class}, 4, null);
+        storage.setColumnEncoding(1, ColumnEncoding.DICTIONARY);
+        for (long index = 0; index < 10; index++)
+        {
+            storage.insert(index + 1, new Object[] {index, "v" + index % 3});
+        }
+        final StorageBlock[] original = {storage.getBlock(0), storage.getBlock(1), storage.getBlock(2)};
+
+        final StorageSnapshot snapshot = storage.snapshot();
+        assertEquals(1, storage.getOpenSnapshotCount());
+        storage.write(storage.locate(2), 0, 100L);
+        storage.delete(6);
+        storage.insert(11, new Object[] {10L, "v9"});
+        assertTrue(storage.getBlock(0) != original[0]);
+        assertTrue(storage.getBlock(1) != original[1]);
+        assertTrue(storage.getBlock(2) != original[2]);
+        assertSame(original[0], snapshot.getBlock(0));
+        assertEquals(100L, storage.read(storage.locate(2), 0));
+        assertTrue(storage.getBlock(0).getColumn(1) instanceof DictionaryColumnVector);
+
+        // The snapshot still holds the rows as of the moment it was taken.
+        assertEquals(10, snapshot.size());
+        assertEquals(1L, snapshot.read(snapshot.locate(2), 0));
+        assertEquals("v2", snapshot.read(snapshot.locate(6), 1));
+        assertEquals(LocationMap.MISSING, snapshot.locate(11));
+        int rowCount = 0;
+        final TableStorage.Cursor cursor = snapshot.cursor();
+        while (cursor.next())
+        {
+            assertEquals(cursor.getReferenceIdentifier() - 1, cursor.getValue(0));
+            rowCount++;
+        }
+        assertEquals(10, rowCount);
+
+        // Blocks allocated or copied after the snapshot, and every block once it is released, are changed in place.
+        final StorageBlock copied = storage.getBlock(0);
+        storage.write(storage.locate(1), 0, 200L);
+        assertSame(copied, storage.getBlock(0));
+        storage.release(snapshot);
+        storage.release(snapshot);
+        assertEquals(0, storage.getOpenSnapshotCount());
+        assertTrue(snapshot.isReleased());
+        final StorageSnapshot next = storage.snapshot();
+        storage.release(next);
+        final StorageBlock full = storage.getBlock(1);
+        storage.delete(5);
+        assertSame(full, storage.getBlock(1));
+        assertEquals(2, storage.compactBlock(1));
+    }
+
+    @Test
+    public void testSnapshot_ConcurrentReadsOfPackedColumns() throws InterruptedException
+    {
+        final TableStorage storage = new TableStorage(new Class<?>[] {Long.class}, 1024, null);
+        storage.setColumnEncoding(0, ColumnEncoding.PACKED);
+        for (long index = 0; index < 4096; index++)
+        {
+            storage.insert(index + 1, new Object[] {index * 3 + index % 7});
+        }
+        assertTrue(((PackedLongColumnVector) storage.getBlock(0).getColumn(0)).isDeltaEncoded());
+
+        // Every reader jumps between the batches of the packed vectors, which are shared by the snapshot and the storage.
+        final StorageSnapshot snapshot = storage.snapshot();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Thread[] readers = new Thread[4];
+        for (int reader = 0; reader < readers.length; reader++)
+        {
+            final Random random = new Random(reader);
+            readers[reader] = new Thread(() -> {
+                try
+                {
+                    for (int read = 0; read < 200_000 && failure.get() == null; read++)
+                    {
+                        final long index = random.nextInt(4096);
+                        assertEquals(index * 3 + index % 7, snapshot.read(snapshot.locate(index + 1), 0));
+                    }
+                }
+                catch (final Throwable e)
+                {
+                    failure.set(e);
+                }
+            });
+            readers[reader].start();
+        }
+        for (final Thread reader : readers)
+        {
+            reader.join();
+        }
+        storage.release(snapshot);
+        assertEquals(null, failure.get());
+    }
+
+    @Test
+    public void testSpill_PagesInOriginalVectorKinds() throws IOException
+    {
+        final TableStorage storage = new TableStorage(new Class<?>[] {Long.class, Long.class, String.class, Boolean.class}, 256, null);
+        storage.setColumnEncoding(0, ColumnEncoding.PACKED);
+        storage.setColumnEncoding(2, ColumnEncoding.DICTIONARY);
+        final Path directory = Files.createTempDirectory("spill-test").resolve("spill");
+        storage.enableSpilling(directory, true);
+        for (long index = 0; index < 512; index++)
+        {
+            storage.insert(index + 1, new Object[] {index, index * index, "v" + index % 5, index % 3 == 0});
+        }
+        final StorageBlock block = storage.getBlock(0);
+        final long[] residentBytes = new long[4];
+        for (int column = 0; column < residentBytes.length; column++)
+        {
+            residentBytes[column] = block.getColumn(column).estimateValueBytes();
+        }
+        assertTrue(block.getColumn(0) instanceof PackedLongColumnVector);
+
+        assertTrue(storage.spillColdestBlock());
+        for (int column = 0; column < residentBytes.length; column++)
+        {
+            assertTrue(block.getColumn(column) instanceof SpilledColumnVector);
+            assertEquals(0L, block.getColumn(column).estimateValueBytes());
+        }
+
+        // Paged in values take the space of the vectors that were spilled, rather than that of boxed values.
+        assertEquals(7L, storage.read(storage.locate(8), 0));
+        assertEquals(49L, storage.read(storage.locate(8), 1));
+        assertEquals("v2", storage.read(storage.locate(8), 2));
+        assertEquals(false, storage.read(storage.locate(8), 3));
+        for (int column = 0; column < residentBytes.length; column++)
+        {
+            assertEquals(residentBytes[column], block.getColumn(column).estimateValueBytes());
+        }
+        storage.write(storage.locate(8), 0, -1L);
+        assertEquals(-1L, storage.read(storage.locate(8), 0));
+        assertEquals(8L, storage.read(storage.locate(9), 0));
+
+        storage.close();
+        assertFalse(Files.exists(directory));
+    }
+
+    @Test
+    public void testSnapshot_DiscardsSpillFilesOfCopiedBlocks() throws IOException
+    {
+        final TableStorage storage = new TableStorage(new Class<?>[] {Long.class, String.class}, 64, null);
+        final Path directory = Files.createTempDirectory("spill-test").resolve("spill");
+        storage.enableSpilling(directory, true);
+        for (long index = 0; index < 128; index++)
+        {
+            storage.insert(index + 1, new Object[] {index, "v" + index});
+        }
+        assertTrue(storage.spillColdestBlock());
+        final long spilledBytes = storage.getSpillManager().getSpilledBytes();
+        assertTrue(spilledBytes > 0);
+
+        // The snapshot still pages in the spill files of the block the storage copied before changing it.
+        final StorageSnapshot snapshot = storage.snapshot();
+        storage.write(storage.locate(5), 0, -1L);
+        assertEquals(-1L, storage.read(storage.locate(5), 0));
+        assertEquals(4L, snapshot.read(snapshot.locate(5), 0));
+        assertEquals(spilledBytes, storage.getSpillManager().getSpilledBytes());
+        final StorageSnapshot later = storage.snapshot();
+
+        // Snapshots taken after the copy do not share the replaced block.
+        storage.release(snapshot);
+        assertEquals(0L, storage.getSpillManager().getSpilledBytes());
+        assertEquals(-1L, later.read(later.locate(5), 0));
+        storage.release(later);
+        storage.close();
+        assertFalse(Files.exists(directory));
+    }
+}